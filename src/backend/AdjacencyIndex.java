@@ -0,0 +1,152 @@
+package backend;
+
+import java.util.*;
+
+/**
+ * A compact index of the arcs of a Diagram, by successor and by predecessor.  Nodes are numbered
+ * as in the DiagramGraph it is made from; the nodes a node i has an arc to are
+ * targets[outStart[i]..outStart[i+1]), and the nodes with an arc to it are
+ * sources[inStart[i]..inStart[i+1]).  outEdges and inEdges hold the number of the edge (in edges)
+ * each arc comes from, in the same places.  Building it walks the int arrays of the snapshot once,
+ * so it takes time linear in the size of the diagram and reads no node, edge or label.
+ *
+ * ofTransitions() indexes the transitions: like the compiled forms, only singly-directed edges with
+ * a non-empty label.  ofGraph() indexes the diagram as a plain graph: every edge, with an edge that
+ * is not singly directed giving an arc each way.
+ */
+class AdjacencyIndex {
+
+	/** The nodes, by number. */
+	final Node[] nodes;
+
+	/** The number of each node. */
+	final HashMap<Node, Integer> index;
+
+	/** The edges, by number. */
+	final Edge[] edges;
+
+	final int[] outStart;
+	final int[] targets;
+	final int[] outEdges;
+	final int[] inStart;
+	final int[] sources;
+	final int[] inEdges;
+
+	/**
+	 * @param graph		A snapshot of the diagram.
+	 * @return			The index of the transitions between its nodes.
+	 */
+	static AdjacencyIndex ofTransitions(DiagramGraph graph) {
+		Arcs arcs = new Arcs();
+		for (int e = 0; e < graph.edges.length; e ++) {
+			if (graph.isTransition(e))
+				arcs.add(graph.edgeSource[e], graph.edgeTarget[e], e);
+		}
+		return new AdjacencyIndex(graph, arcs);
+	}
+
+	/**
+	 * @param graph		A snapshot of the diagram.
+	 * @return			The index of the diagram as a graph.
+	 */
+	static AdjacencyIndex ofGraph(DiagramGraph graph) {
+		Arcs arcs = new Arcs();
+		for (int e = 0; e < graph.edges.length; e ++) {
+			int from = graph.edgeSource[e];
+			int to = graph.edgeTarget[e];
+			if (from == DiagramGraph.NO_NODE)
+				continue;
+			arcs.add(from, to, e);
+			if (graph.direction[e] != EdgeDirection.SINGLE && from != to)
+				arcs.add(to, from, e);
+		}
+		return new AdjacencyIndex(graph, arcs);
+	}
+
+	private AdjacencyIndex(DiagramGraph graph, Arcs arcs) {
+		nodes = graph.nodes;
+		index = graph.index;
+		edges = graph.edges;
+		int n = nodes.length;
+		int count = arcs.count;
+		outStart = new int[n + 1];
+		inStart = new int[n + 1];
+		for (int j = 0; j < count; j ++) {
+			outStart[arcs.from[j] + 1] ++;
+			inStart[arcs.to[j] + 1] ++;
+		}
+		for (int i = 0; i < n; i ++) {
+			outStart[i + 1] += outStart[i];
+			inStart[i + 1] += inStart[i];
+		}
+		targets = new int[count];
+		outEdges = new int[count];
+		sources = new int[count];
+		inEdges = new int[count];
+		int[] outFill = Arrays.copyOf(outStart, n);
+		int[] inFill = Arrays.copyOf(inStart, n);
+		for (int j = 0; j < count; j ++) {
+			int out = outFill[arcs.from[j]] ++;
+			targets[out] = arcs.to[j];
+			outEdges[out] = arcs.edge[j];
+			int in = inFill[arcs.to[j]] ++;
+			sources[in] = arcs.from[j];
+			inEdges[in] = arcs.edge[j];
+		}
+	}
+
+	/**
+	 * @return		The number of nodes.
+	 */
+	int size() {
+		return nodes.length;
+	}
+
+	/**
+	 * Marks every node reachable from the marked nodes, following the arcs forwards or backwards,
+	 * by a breadth-first search.
+	 * @param marked		The nodes to start from; the nodes reached are marked as well.
+	 * @param forward		True to follow arcs from their start node to their end node.
+	 */
+	void spread(boolean[] marked, boolean forward) {
+		int[] start = forward ? outStart : inStart;
+		int[] adjacent = forward ? targets : sources;
+		int[] queue = new int[nodes.length];
+		int tail = 0;
+		for (int i = 0; i < nodes.length; i ++) {
+			if (marked[i])
+				queue[tail ++] = i;
+		}
+		for (int head = 0; head < tail; head ++) {
+			int node = queue[head];
+			for (int j = start[node]; j < start[node + 1]; j ++) {
+				int next = adjacent[j];
+				if (!marked[next]) {
+					marked[next] = true;
+					queue[tail ++] = next;
+				}
+			}
+		}
+	}
+
+	/**
+	 * The arcs collected before they are sorted, as (from, to, edge) triples.
+	 */
+	private static class Arcs {
+		int[] from = new int[16];
+		int[] to = new int[16];
+		int[] edge = new int[16];
+		int count;
+
+		void add(int f, int t, int e) {
+			if (count == from.length) {
+				from = Arrays.copyOf(from, count * 2);
+				to = Arrays.copyOf(to, count * 2);
+				edge = Arrays.copyOf(edge, count * 2);
+			}
+			from[count] = f;
+			to[count] = t;
+			edge[count ++] = e;
+		}
+	}
+}
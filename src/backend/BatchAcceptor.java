@@ -0,0 +1,215 @@
+package backend;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Runs a compiled automaton over many inputs at once.  The inputs are split into ranges that are
+ * simulated in parallel on a shared fork/join pool; each range writes its own words of the accept
+ * bitmap, so no locking is needed.  Within a range the inputs are walked as the BatchStrategy says.
+ */
+public class BatchAcceptor {
+
+	/** Ranges with fewer inputs than this are simulated without splitting further.  A multiple of 64
+	 * so that ranges line up with the words of the accept bitmap. */
+	private static final int SPLIT_THRESHOLD = 256;
+
+	/** The number of inputs the interleaved strategy advances together. */
+	static final int LANES = 8;
+
+	/** The most characters the interleaved strategy takes before it retires the inputs that got
+	 * stuck and gives their lanes new ones. */
+	private static final int MAX_RUN = 64;
+
+	/** Shared by all batches; sized to the number of processors. */
+	private static ForkJoinPool _pool;
+
+	/** The automaton the inputs are run through. */
+	private final CompiledAutomaton _automaton;
+
+	/** How the inputs of a range are walked. */
+	private final BatchStrategy _strategy;
+
+	/**
+	 * @param automaton		The compiled automaton to run.  It must have a start state.
+	 */
+	public BatchAcceptor(CompiledAutomaton automaton) {
+		this(automaton, BatchStrategy.SEQUENTIAL);
+	}
+
+	/**
+	 * @param automaton		The compiled automaton to run.  It must have a start state.
+	 * @param strategy		How the inputs of a range are walked.
+	 */
+	public BatchAcceptor(CompiledAutomaton automaton, BatchStrategy strategy) {
+		_automaton = automaton;
+		_strategy = strategy;
+	}
+
+	/**
+	 * Simulates every input and returns which were accepted.
+	 * @param inputs		The input strings.
+	 * @return				The results, in the order of the inputs.
+	 */
+	public BatchResult run(List<? extends CharSequence> inputs) {
+		CharSequence[] array = inputs.toArray(new CharSequence[inputs.size()]);
+		int size = array.length;
+		long[] words = new long[(size + 63) / 64];
+		int[] rejectPositions = new int[size];
+		if (size <= SPLIT_THRESHOLD)
+			simulateRange(array, 0, size, words, rejectPositions);
+		else
+			pool().invoke(new AcceptTask(array, 0, size, words, rejectPositions));
+		return new BatchResult(BitSet.valueOf(words), rejectPositions, _automaton.getRevision());
+	}
+
+	/**
+	 * Simulates the inputs in [from, to) with the chosen strategy.
+	 */
+	private void simulateRange(CharSequence[] inputs, int from, int to, long[] words, int[] rejectPositions) {
+		if (_strategy == BatchStrategy.INTERLEAVED)
+			acceptInterleaved(inputs, from, to, words, rejectPositions);
+		else
+			acceptRange(inputs, from, to, words, rejectPositions);
+	}
+
+	/**
+	 * Simulates the inputs in [from, to) one after another.  Writes the accept bits and the
+	 * rejection positions.
+	 */
+	private void acceptRange(CharSequence[] inputs, int from, int to, long[] words, int[] rejectPositions) {
+		CompiledAutomaton automaton = _automaton;
+		int start = automaton.getStart();
+		for (int i = from; i < to; i ++) {
+			CharSequence input = inputs[i];
+			int length = input.length();
+			int state = start;
+			int position = 0;
+			while (position < length) {
+				state = automaton.next(state, input.charAt(position));
+				if (state == CompiledAutomaton.NO_STATE)
+					break;
+				position ++;
+			}
+			if (state != CompiledAutomaton.NO_STATE && automaton.isAccept(state)) {
+				words[i >>> 6] |= 1L << i;
+				rejectPositions[i] = -1;
+			}
+			else
+				rejectPositions[i] = position;
+		}
+	}
+
+	/**
+	 * Simulates the inputs in [from, to) LANES at a time.  Each turn of the inner loop takes one
+	 * character of every running input, so the table loads of the lanes do not depend on each other
+	 * and the processor can have them all in flight at once.  The lanes run together for as many
+	 * characters as the shortest of them has left (at most MAX_RUN); then the finished and stuck
+	 * lanes are retired and given the next inputs.  Writes the same results as acceptRange.
+	 */
+	private void acceptInterleaved(CharSequence[] inputs, int from, int to, long[] words, int[] rejectPositions) {
+		CompiledAutomaton automaton = _automaton;
+		int start = automaton.getStart();
+		int[] index = new int[LANES];
+		CharSequence[] lane = new CharSequence[LANES];
+		int[] state = new int[LANES];
+		int[] position = new int[LANES];
+		int[] length = new int[LANES];
+		Arrays.fill(index, -1);
+		Arrays.fill(state, CompiledAutomaton.NO_STATE);
+		int nextInput = from;
+		while (true) {
+			//Give the idle lanes new inputs, and find how far the running lanes can all go.
+			int run = MAX_RUN;
+			boolean running = false;
+			for (int l = 0; l < LANES; l ++) {
+				if (index[l] < 0 && nextInput < to) {
+					index[l] = nextInput;
+					lane[l] = inputs[nextInput ++];
+					state[l] = start;
+					position[l] = 0;
+					length[l] = lane[l].length();
+				}
+				if (index[l] >= 0) {
+					running = true;
+					run = Math.min(run, length[l] - position[l]);
+				}
+			}
+			if (!running)
+				return;
+
+			for (int k = 0; k < run; k ++) {
+				for (int l = 0; l < LANES; l ++) {
+					int s = state[l];
+					if (s == CompiledAutomaton.NO_STATE)
+						continue;
+					s = automaton.next(s, lane[l].charAt(position[l]));
+					if (s != CompiledAutomaton.NO_STATE)
+						position[l] ++;
+					state[l] = s;
+				}
+			}
+
+			//Retire the lanes that reached the end of their input or got stuck.
+			for (int l = 0; l < LANES; l ++) {
+				int i = index[l];
+				if (i < 0 || (state[l] != CompiledAutomaton.NO_STATE && position[l] < length[l]))
+					continue;
+				if (state[l] != CompiledAutomaton.NO_STATE && automaton.isAccept(state[l])) {
+					words[i >>> 6] |= 1L << i;
+					rejectPositions[i] = -1;
+				}
+				else
+					rejectPositions[i] = position[l];
+				index[l] = -1;
+				lane[l] = null;
+				state[l] = CompiledAutomaton.NO_STATE;
+			}
+		}
+	}
+
+	/**
+	 * @return		The shared pool, created the first time it is needed.
+	 */
+	static synchronized ForkJoinPool pool() {
+		if (_pool == null)
+			_pool = new ForkJoinPool();
+		return _pool;
+	}
+
+	/**
+	 * Splits a range of inputs in half until it is small enough, then simulates it.
+	 */
+	@SuppressWarnings("serial")
+	private class AcceptTask extends RecursiveAction {
+		private final CharSequence[] _inputs;
+		private final int _from;
+		private final int _to;
+		private final long[] _words;
+		private final int[] _rejectPositions;
+
+		AcceptTask(CharSequence[] inputs, int from, int to, long[] words, int[] rejectPositions) {
+			_inputs = inputs;
+			_from = from;
+			_to = to;
+			_words = words;
+			_rejectPositions = rejectPositions;
+		}
+
+		protected void compute() {
+			if (_to - _from <= SPLIT_THRESHOLD) {
+				simulateRange(_inputs, _from, _to, _words, _rejectPositions);
+				return;
+			}
+			//Split on a word boundary of the accept bitmap.
+			int middle = ((_from + _to) >>> 1) & ~63;
+			if (middle <= _from)
+				middle = _from + SPLIT_THRESHOLD;
+			invokeAll(new AcceptTask(_inputs, _from, middle, _words, _rejectPositions),
+					new AcceptTask(_inputs, middle, _to, _words, _rejectPositions));
+		}
+	}
+}
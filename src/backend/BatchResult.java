@@ -0,0 +1,71 @@
+package backend;
+
+import java.util.BitSet;
+
+/**
+ * The outcome of simulating a batch of inputs: one accept bit per input, plus the position at
+ * which each rejected input was rejected.  It carries the revision of the diagram it was worked
+ * out for, so a result that comes back from another thread after an edit can be told apart.
+ */
+public class BatchResult {
+
+	/** Bit i is set if and only if input i was accepted. */
+	private final BitSet _accepted;
+
+	/** The rejection position of each input, or -1 for accepted inputs. */
+	private final int[] _rejectPositions;
+
+	/** The revision of the diagram the inputs were simulated on. */
+	private final int _revision;
+
+	/**
+	 * @param accepted			The accepted inputs.
+	 * @param rejectPositions	The rejection position of each input, or -1 if it was accepted.
+	 * @param revision			The revision of the diagram the inputs were simulated on.
+	 */
+	public BatchResult(BitSet accepted, int[] rejectPositions, int revision) {
+		_accepted = accepted;
+		_rejectPositions = rejectPositions;
+		_revision = revision;
+	}
+
+	/**
+	 * @return		The revision of the diagram the inputs were simulated on.
+	 */
+	public int getRevision() {
+		return _revision;
+	}
+
+	/**
+	 * @return		The number of inputs in the batch.
+	 */
+	public int size() {
+		return _rejectPositions.length;
+	}
+
+	/**
+	 * @return		The set of accepted inputs, by index.  Do not modify it.
+	 */
+	public BitSet getAccepted() {
+		return _accepted;
+	}
+
+	/**
+	 * @param index		The index of an input.
+	 * @return			True if the input was accepted.
+	 */
+	public boolean isAccepted(int index) {
+		return _accepted.get(index);
+	}
+
+	/**
+	 * Returns where an input was rejected.  This is the position of the first character that is not
+	 * in the input alphabet, or the length of the input if it was read to the end but did not finish
+	 * in an accept state.
+	 * @param index		The index of an input.
+	 * @return			The rejection position, or -1 if the input was accepted.
+	 */
+	public int getRejectPosition(int index) {
+		return _rejectPositions[index];
+	}
+}
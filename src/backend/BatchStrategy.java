@@ -0,0 +1,11 @@
+package backend;
+
+/**
+ * How a BatchAcceptor walks the inputs of one range.  SEQUENTIAL runs them one after another.
+ * INTERLEAVED advances several inputs in lockstep, one character of each per turn, so that the
+ * table loads of the different inputs overlap instead of each waiting on the last; it is faster
+ * when the transition table does not fit in the cache.
+ */
+public enum BatchStrategy {
+	SEQUENTIAL, INTERLEAVED
+}
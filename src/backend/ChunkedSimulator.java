@@ -0,0 +1,333 @@
+package backend;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.CharBuffer;
+import java.util.LinkedList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Simulates a single long input on several processors.  The input is cut into chunks, and each
+ * chunk is simulated from every state at once, giving a map from the state the chunk starts in to
+ * the state it ends in.  Since the start state of the first chunk is known, folding the maps
+ * together in order gives the same outcome as a plain simulation.
+ *
+ * Simulating a chunk from every state sounds like n times the work, but the runs for different
+ * start states usually land in the same state after a few characters; runs that meet are merged,
+ * and from then on they are stepped only once.
+ */
+public class ChunkedSimulator {
+
+	/** Inputs shorter than twice this are simulated sequentially; chunks are never shorter. */
+	private static final int MIN_CHUNK = 1 << 16;
+
+	/** Size of the blocks read from a Reader; each block is one chunk. */
+	private static final int READ_CHUNK = 1 << 20;
+
+	/** Automata with more states than this are simulated sequentially. */
+	private static final int MAX_SPECULATIVE_STATES = 1024;
+
+	/** How often (in characters) runs that have met are merged. */
+	private static final int MERGE_INTERVAL = 64;
+
+	/** The automaton the input is run through. */
+	private final CompiledAutomaton _automaton;
+
+	/**
+	 * @param automaton		The compiled automaton to run.  It must have a start state.
+	 */
+	public ChunkedSimulator(CompiledAutomaton automaton) {
+		_automaton = automaton;
+	}
+
+	/**
+	 * Simulates the automaton on the given characters.
+	 * @param input		The input characters.
+	 * @return			The outcome of the simulation.
+	 */
+	public SimulationResult run(CharSequence input) {
+		int length = input.length();
+		int processors = Runtime.getRuntime().availableProcessors();
+		if (length < 2 * MIN_CHUNK || processors == 1 || _automaton.getStateCount() > MAX_SPECULATIVE_STATES)
+			return fold(new ChunkMap[] { sequential(input, 0, length, 0, _automaton.getStart()) }, length);
+
+		int chunks = Math.min(processors * 4, length / MIN_CHUNK);
+		ChunkMap[] maps = new ChunkMap[chunks];
+		@SuppressWarnings({"unchecked", "rawtypes"})
+		ForkJoinTask<ChunkMap>[] tasks = new ForkJoinTask[chunks];
+		for (int i = 1; i < chunks; i ++) {
+			int from = (int) ((long) length * i / chunks);
+			int to = (int) ((long) length * (i + 1) / chunks);
+			tasks[i] = BatchAcceptor.pool().submit(new ChunkTask(input, from, to, from));
+		}
+		//The first chunk only needs to be run from the start state.
+		maps[0] = sequential(input, 0, (int) ((long) length / chunks), 0, _automaton.getStart());
+		for (int i = 1; i < chunks; i ++)
+			maps[i] = tasks[i].join();
+		return fold(maps, length);
+	}
+
+	/**
+	 * Simulates the automaton on the characters of a reader.  The reader is consumed in blocks, and
+	 * only a few blocks per processor are held in memory at any time.  The first block is always
+	 * simulated sequentially, so an input shorter than a block never goes to the other processors;
+	 * with one processor, or an automaton too large to run from every state, every block is.
+	 * @param input				The input characters; read to the end but not closed.
+	 * @return					The outcome of the simulation.
+	 * @throws IOException		If the input cannot be read.
+	 */
+	public SimulationResult run(Reader input) throws IOException {
+		int processors = Runtime.getRuntime().availableProcessors();
+		boolean speculate = processors > 1 && _automaton.getStateCount() <= MAX_SPECULATIVE_STATES;
+		int maxInFlight = processors * 2;
+		LinkedList<ForkJoinTask<ChunkMap>> inFlight = new LinkedList<ForkJoinTask<ChunkMap>>();
+		int state = _automaton.getStart();
+		int last = state;
+		long stuckAt = -1;
+		long position = 0;
+		boolean first = true;
+		while (true) {
+			char[] block = new char[READ_CHUNK];
+			int filled = 0;
+			int read;
+			while (filled < block.length && (read = input.read(block, filled, block.length - filled)) != -1)
+				filled += read;
+			if (filled == 0)
+				break;
+			CharSequence chunk = CharBuffer.wrap(block, 0, filled);
+			if (first || !speculate) {
+				//Nothing is in flight: this is the first block, or no block is sent to the other processors.
+				if (state != CompiledAutomaton.NO_STATE) {
+					ChunkMap map = sequential(chunk, 0, filled, position, state);
+					last = map._last[0];
+					stuckAt = map._stuck[0];
+					state = map._end[0];
+				}
+				first = false;
+			}
+			else
+				inFlight.addLast(BatchAcceptor.pool().submit(new ChunkTask(chunk, 0, filled, position)));
+			position += filled;
+
+			//Fold in finished chunks, waiting for the oldest one if too many are outstanding.
+			while (!inFlight.isEmpty() && (inFlight.size() >= maxInFlight || inFlight.getFirst().isDone())) {
+				ChunkMap map = join(inFlight.removeFirst());
+				if (state != CompiledAutomaton.NO_STATE) {
+					last = map._last[state];
+					stuckAt = map._stuck[state];
+					state = map._end[state];
+				}
+			}
+			if (filled < block.length)
+				break;
+		}
+		while (!inFlight.isEmpty()) {
+			ChunkMap map = join(inFlight.removeFirst());
+			if (state != CompiledAutomaton.NO_STATE) {
+				last = map._last[state];
+				stuckAt = map._stuck[state];
+				state = map._end[state];
+			}
+		}
+		return result(state, last, stuckAt, position);
+	}
+
+	/**
+	 * Folds the chunk maps together, starting from the start state.
+	 */
+	private SimulationResult fold(ChunkMap[] maps, long length) {
+		int state = _automaton.getStart();
+		int last = state;
+		long stuckAt = -1;
+		for (int i = 0; i < maps.length && state != CompiledAutomaton.NO_STATE; i ++) {
+			//The first map is only defined for the start state, at index 0.
+			int index = i == 0 ? 0 : state;
+			last = maps[i]._last[index];
+			stuckAt = maps[i]._stuck[index];
+			state = maps[i]._end[index];
+		}
+		return result(state, last, stuckAt, length);
+	}
+
+	/**
+	 * Builds the result of a simulation that ended in the given state, or that got stuck in the
+	 * state last at position stuckAt.
+	 */
+	private SimulationResult result(int state, int last, long stuckAt, long length) {
+		if (state == CompiledAutomaton.NO_STATE)
+			return new SimulationResult(_automaton.getNode(last), false, stuckAt, stuckAt);
+		return new SimulationResult(_automaton.getNode(state), _automaton.isAccept(state), length, -1);
+	}
+
+	/**
+	 * Runs one state alone over [from, to), as a map with a single entry.
+	 * @param start		The state the run starts in.
+	 */
+	private ChunkMap sequential(CharSequence input, int from, int to, long offset, int start) {
+		CompiledAutomaton automaton = _automaton;
+		int state = start;
+		int last = state;
+		long stuckAt = -1;
+		for (int i = from; i < to; i ++) {
+			state = automaton.next(state, input.charAt(i));
+			if (state == CompiledAutomaton.NO_STATE) {
+				stuckAt = offset + i - from;
+				break;
+			}
+			last = state;
+		}
+		return new ChunkMap(new int[] { state }, new int[] { last }, new long[] { stuckAt });
+	}
+
+	/**
+	 * Runs every state over [from, to), merging runs as they meet.
+	 * @param offset		The position of input[from] in the whole input.
+	 */
+	private ChunkMap speculative(CharSequence input, int from, int to, long offset) {
+		CompiledAutomaton automaton = _automaton;
+		int n = automaton.getStateCount();
+
+		//Each run has a current state; every start state belongs to a run.  Once a run gets stuck
+		//the start states in it are settled and the run is dropped at the next merge.
+		int[] runState = new int[n];
+		int[] runLast = new int[n];
+		long[] runStuck = new long[n];
+		int[] runOf = new int[n];
+		int[] end = new int[n];
+		int[] last = new int[n];
+		long[] stuck = new long[n];
+		int[] seen = new int[n];
+		int runs = n;
+		for (int s = 0; s < n; s ++) {
+			runState[s] = s;
+			runLast[s] = s;
+			runStuck[s] = -1;
+			runOf[s] = s;
+		}
+
+		for (int i = from; i < to && runs > 0; i ++) {
+			int symbol = automaton.symbolOf(input.charAt(i));
+			for (int r = 0; r < runs; r ++) {
+				int current = runState[r];
+				if (current == CompiledAutomaton.NO_STATE)
+					continue;
+				int next = symbol < 0 ? CompiledAutomaton.NO_STATE : automaton.step(current, symbol);
+				if (next == CompiledAutomaton.NO_STATE) {
+					runLast[r] = current;
+					runStuck[r] = offset + i - from;
+				}
+				runState[r] = next;
+			}
+			if ((i - from) % MERGE_INTERVAL == MERGE_INTERVAL - 1)
+				runs = merge(runState, runLast, runStuck, runOf, runs, end, last, stuck, seen);
+		}
+
+		for (int s = 0; s < n; s ++) {
+			int r = runOf[s];
+			if (r >= 0) {
+				end[s] = runState[r];
+				last[s] = runState[r] == CompiledAutomaton.NO_STATE ? runLast[r] : runState[r];
+				stuck[s] = runStuck[r];
+			}
+		}
+		return new ChunkMap(end, last, stuck);
+	}
+
+	/**
+	 * Merges runs that are in the same state and settles runs that are stuck.
+	 * @return		The new number of runs.
+	 */
+	private static int merge(int[] runState, int[] runLast, long[] runStuck, int[] runOf, int runs,
+			int[] end, int[] last, long[] stuck, int[] seen) {
+		//seen[state] is the new index of the run in that state, plus one (zero meaning none yet);
+		//remap[r] is the new index of run r, or -1 if it is stuck.
+		int[] remap = new int[runs];
+		int kept = 0;
+		for (int r = 0; r < runs; r ++) {
+			int state = runState[r];
+			if (state == CompiledAutomaton.NO_STATE) {
+				remap[r] = -1;
+				continue;
+			}
+			if (seen[state] == 0) {
+				seen[state] = kept + 1;
+				runState[kept] = state;
+				kept ++;
+			}
+			remap[r] = seen[state] - 1;
+		}
+		for (int s = 0; s < runOf.length; s ++) {
+			int r = runOf[s];
+			if (r < 0)
+				continue;
+			if (remap[r] < 0) {
+				end[s] = CompiledAutomaton.NO_STATE;
+				last[s] = runLast[r];
+				stuck[s] = runStuck[r];
+				runOf[s] = -1;
+			}
+			else
+				runOf[s] = remap[r];
+		}
+		for (int r = 0; r < kept; r ++) {
+			seen[runState[r]] = 0;
+			runStuck[r] = -1;
+		}
+		return kept;
+	}
+
+	/**
+	 * Waits for a chunk to finish.
+	 */
+	private static ChunkMap join(ForkJoinTask<ChunkMap> task) {
+		try {
+			return task.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException(e);
+		} catch (ExecutionException e) {
+			throw new IllegalStateException(e.getCause());
+		}
+	}
+
+	/**
+	 * The outcome of one chunk for each state it can start in: the state it ends in (or NO_STATE),
+	 * and if it gets stuck, the state it got stuck in and the position in the whole input where that
+	 * happens.
+	 */
+	private static class ChunkMap {
+		private final int[] _end;
+		private final int[] _last;
+		private final long[] _stuck;
+
+		ChunkMap(int[] end, int[] last, long[] stuck) {
+			_end = end;
+			_last = last;
+			_stuck = stuck;
+		}
+	}
+
+	/**
+	 * Simulates one chunk from every state.
+	 */
+	@SuppressWarnings("serial")
+	private class ChunkTask extends RecursiveTask<ChunkMap> {
+		private final CharSequence _input;
+		private final int _from;
+		private final int _to;
+		private final long _offset;
+
+		ChunkTask(CharSequence input, int from, int to, long offset) {
+			_input = input;
+			_from = from;
+			_to = to;
+			_offset = offset;
+		}
+
+		protected ChunkMap compute() {
+			return speculative(_input, _from, _to, _offset);
+		}
+	}
+}
@@ -0,0 +1,223 @@
+package backend;
+
+import java.util.*;
+
+/**
+ * A compiled, table-driven form of the singly-directed transitions of a Diagram.  Nodes are
+ * numbered 0..n-1 and input characters are interned to symbols 0..k-1, so that one step of a
+ * simulation is a single array lookup instead of a scan over the node's connected edges with
+ * the labels re-split on every character.
+ *
+ * A compiled automaton never changes after it is built.  Diagram.compile() caches it and only
+ * builds a new one when the diagram's revision changes.
+ */
+public class CompiledAutomaton {
+
+	/** Stored in the transition table where a node has no edge for a symbol. */
+	public static final int NO_STATE = -1;
+
+	/** The revision of the diagram this automaton was compiled from. */
+	private final int _revision;
+
+	/** The nodes of the diagram, indexed by state number. */
+	private final Node[] _states;
+
+	/** The state number of each node. */
+	private final HashMap<Node, Integer> _stateIndex;
+
+	/** The text of each node when the diagram was compiled, indexed by state number. */
+	private final String[] _text;
+
+	/** The input alphabet. */
+	private final SymbolTable _symbols;
+
+	/** The number of symbols, which is the length of a row of the table. */
+	private final int _symbolCount;
+
+	/** The transition table, laid out row by row as [state * symbolCount + symbol]. */
+	private final int[] _table;
+
+	/** The accept states. */
+	private final BitSet _accept;
+
+	/** The start state, or NO_STATE if there is not exactly one start node. */
+	private final int _start;
+
+	/** False if some node has more than one edge for the same symbol. */
+	private final boolean _deterministic;
+
+	/**
+	 * Compiles a snapshot of a diagram.  Only its transitions (see DiagramGraph.isTransition) take
+	 * part in the transition table; when a node has several edges for the same symbol the first
+	 * one seen is kept and the automaton is marked as not deterministic.
+	 * @param graph		A snapshot of the diagram.
+	 */
+	CompiledAutomaton(DiagramGraph graph) {
+		_revision = graph.getRevision();
+		_states = graph.nodes;
+		_stateIndex = graph.index;
+		_text = graph.text;
+		_symbols = new SymbolTable();
+		_accept = new BitSet(_states.length);
+
+		int start = NO_STATE;
+		int startCount = 0;
+		for (int i = 0; i < _states.length; i ++) {
+			if (graph.accept[i])
+				_accept.set(i);
+			if (graph.start[i]) {
+				start = i;
+				startCount ++;
+			}
+		}
+		_start = startCount == 1 ? start : NO_STATE;
+
+		//Intern every symbol that appears on a usable edge, and remember the (from, symbol, to)
+		//triples.  The labels were parsed when they were set (see LabelSymbols).
+		int[] triples = new int[16];
+		int count = 0;
+		for (int e = 0; e < graph.getEdgeCount(); e ++) {
+			if (!graph.isTransition(e))
+				continue;
+			int from = graph.edgeSource[e];
+			int to = graph.edgeTarget[e];
+			for (char c : graph.symbols[e].getChars()) {
+				int symbol = _symbols.intern(c);
+				if (count + 3 > triples.length)
+					triples = Arrays.copyOf(triples, triples.length * 2);
+				triples[count ++] = from;
+				triples[count ++] = symbol;
+				triples[count ++] = to;
+			}
+		}
+		_symbolCount = _symbols.size();
+
+		//Fill the table, keeping the first edge seen for each (state, symbol).
+		boolean deterministic = true;
+		_table = new int[_states.length * _symbolCount];
+		Arrays.fill(_table, NO_STATE);
+		for (int i = 0; i < count; i += 3) {
+			int index = triples[i] * _symbolCount + triples[i + 1];
+			if (_table[index] == NO_STATE)
+				_table[index] = triples[i + 2];
+			else
+				deterministic = false;
+		}
+		_deterministic = deterministic;
+	}
+
+	/**
+	 * @param c		An input character.
+	 * @return		The symbol number of the character, or -1 if it is not in the alphabet.
+	 */
+	public int symbolOf(char c) {
+		return _symbols.symbolOf(c);
+	}
+
+	/**
+	 * @param state		A state number.
+	 * @param symbol	A symbol number.
+	 * @return			The state reached from the state on the symbol, or NO_STATE.
+	 */
+	public int step(int state, int symbol) {
+		return _table[state * _symbolCount + symbol];
+	}
+
+	/**
+	 * @param state		A state number.
+	 * @param c			An input character.
+	 * @return			The state reached from the state on the character, or NO_STATE if there is
+	 * 					no such edge or the character is not in the alphabet.
+	 */
+	public int next(int state, char c) {
+		int symbol = _symbols.symbolOf(c);
+		return symbol < 0 ? NO_STATE : _table[state * _symbolCount + symbol];
+	}
+
+	/**
+	 * @return		The revision of the diagram this was compiled from.
+	 */
+	public int getRevision() {
+		return _revision;
+	}
+
+	/**
+	 * @return		The number of states (nodes).
+	 */
+	public int getStateCount() {
+		return _states.length;
+	}
+
+	/**
+	 * @return		The number of symbols in the input alphabet.
+	 */
+	public int getSymbolCount() {
+		return _symbolCount;
+	}
+
+	/**
+	 * @param symbol	A symbol number.
+	 * @return			The input character of the symbol.
+	 */
+	public char getSymbol(int symbol) {
+		return _symbols.getSymbol(symbol);
+	}
+
+	/**
+	 * @return		The start state, or NO_STATE if the diagram does not have exactly one start node.
+	 */
+	public int getStart() {
+		return _start;
+	}
+
+	/**
+	 * @param state		A state number.
+	 * @return			True if the state is an accept state.
+	 */
+	public boolean isAccept(int state) {
+		return _accept.get(state);
+	}
+
+	/**
+	 * @param state		A state number.
+	 * @return			The node of the state.
+	 */
+	public Node getNode(int state) {
+		return _states[state];
+	}
+
+	/**
+	 * @param state		A state number.
+	 * @return			The text of its node when the diagram was compiled.
+	 */
+	public String getText(int state) {
+		return _text[state];
+	}
+
+	/**
+	 * @param n		A node of the compiled diagram.
+	 * @return		The state number of the node, or NO_STATE if it was not compiled.
+	 */
+	public int indexOf(Node n) {
+		Integer state = _stateIndex.get(n);
+		return state == null ? NO_STATE : state;
+	}
+
+	/**
+	 * @return		True if no node has two edges for the same symbol.
+	 */
+	public boolean isDeterministic() {
+		return _deterministic;
+	}
+
+	/**
+	 * @return		True if every state has an edge for every symbol.
+	 */
+	public boolean isComplete() {
+		for (int i = 0; i < _table.length; i ++) {
+			if (_table[i] == NO_STATE)
+				return false;
+		}
+		return true;
+	}
+}
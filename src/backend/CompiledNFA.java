@@ -0,0 +1,298 @@
+package backend;
+
+import java.util.*;
+
+/**
+ * A compiled, bit-parallel form of a Diagram simulated as a nondeterministic FSM.  Nodes are
+ * numbered 0..n-1 and a set of current nodes is a long[] bitset of (n + 63) / 64 words.  For every
+ * node and symbol the set of nodes reachable on that symbol, epsilon transitions included, is
+ * computed up front, so one step of a simulation ORs together one precomputed mask per current
+ * node, a word at a time.  For a few thousand states this keeps an NFA run close to the speed of
+ * the DFSM table.
+ *
+ * Epsilon transitions are edge label pieces for which Edge.isEpsilon is true.  The start set and
+ * every successor mask are closed under them.
+ *
+ * A compiled NFA never changes after it is built.  Diagram.compileNFA() caches it and only builds
+ * a new one when the diagram's revision changes.
+ */
+public class CompiledNFA {
+
+	/** The revision of the diagram this was compiled from. */
+	private final int _revision;
+
+	/** The nodes of the diagram, indexed by state number. */
+	private final Node[] _states;
+
+	/** The state number of each node. */
+	private final HashMap<Node, Integer> _stateIndex;
+
+	/** The text of each node when the diagram was compiled, indexed by state number. */
+	private final String[] _text;
+
+	/** The input alphabet. */
+	private final SymbolTable _symbols;
+
+	/** The number of symbols. */
+	private final int _symbolCount;
+
+	/** The number of words in a state set. */
+	private final int _words;
+
+	/** The successor masks, laid out as [(state * symbolCount + symbol) * words + word]. */
+	private final long[] _successors;
+
+	/** The epsilon closure of the start nodes. */
+	private final long[] _start;
+
+	/** The accept states. */
+	private final long[] _accept;
+
+	/**
+	 * Compiles a snapshot of a diagram.  Only its transitions (see DiagramGraph.isTransition) take
+	 * part.
+	 * @param graph		A snapshot of the diagram.
+	 */
+	CompiledNFA(DiagramGraph graph) {
+		_revision = graph.getRevision();
+		_states = graph.nodes;
+		_stateIndex = graph.index;
+		_text = graph.text;
+		_symbols = new SymbolTable();
+		int n = _states.length;
+		_words = (n + 63) >>> 6;
+		_accept = new long[_words];
+		for (int i = 0; i < n; i ++) {
+			if (graph.accept[i])
+				_accept[i >>> 6] |= 1L << i;
+		}
+
+		//Collect the (from, symbol, to) triples and the epsilon edges.
+		int[] triples = new int[16];
+		int count = 0;
+		int[] epsilonCount = new int[n];
+		int[][] epsilon = new int[n][];
+		for (int e = 0; e < graph.getEdgeCount(); e ++) {
+			if (!graph.isTransition(e))
+				continue;
+			int from = graph.edgeSource[e];
+			int to = graph.edgeTarget[e];
+			LabelSymbols symbols = graph.symbols[e];
+			if (symbols.hasEpsilon()) {
+				if (epsilon[from] == null)
+					epsilon[from] = new int[2];
+				else if (epsilonCount[from] == epsilon[from].length)
+					epsilon[from] = Arrays.copyOf(epsilon[from], epsilon[from].length * 2);
+				epsilon[from][epsilonCount[from] ++] = to;
+			}
+			for (char c : symbols.getChars()) {
+				if (count + 3 > triples.length)
+					triples = Arrays.copyOf(triples, triples.length * 2);
+				triples[count ++] = from;
+				triples[count ++] = _symbols.intern(c);
+				triples[count ++] = to;
+			}
+		}
+		_symbolCount = _symbols.size();
+
+		//The epsilon closure of every state, by a depth-first search from each.
+		long[] closure = new long[n * _words];
+		int[] stack = new int[n];
+		for (int s = 0; s < n; s ++) {
+			int base = s * _words;
+			int top = 0;
+			closure[base + (s >>> 6)] |= 1L << s;
+			stack[top ++] = s;
+			while (top > 0) {
+				int state = stack[-- top];
+				for (int i = 0; i < epsilonCount[state]; i ++) {
+					int next = epsilon[state][i];
+					long bit = 1L << next;
+					if ((closure[base + (next >>> 6)] & bit) == 0) {
+						closure[base + (next >>> 6)] |= bit;
+						stack[top ++] = next;
+					}
+				}
+			}
+		}
+
+		//A state reaches, on a symbol, the closures of the targets of its edges for the symbol, and
+		//everything the states in its own closure reach on that symbol.
+		long[] direct = new long[n * _symbolCount * _words];
+		for (int i = 0; i < count; i += 3)
+			or(direct, (triples[i] * _symbolCount + triples[i + 1]) * _words, closure, triples[i + 2] * _words, _words);
+		_successors = new long[direct.length];
+		for (int s = 0; s < n; s ++) {
+			for (int t = 0; t < n; t ++) {
+				if ((closure[s * _words + (t >>> 6)] & (1L << t)) == 0)
+					continue;
+				for (int symbol = 0; symbol < _symbolCount; symbol ++)
+					or(_successors, (s * _symbolCount + symbol) * _words, direct, (t * _symbolCount + symbol) * _words, _words);
+			}
+		}
+
+		_start = new long[_words];
+		for (int i = 0; i < n; i ++) {
+			if (graph.start[i])
+				or(_start, 0, closure, i * _words, _words);
+		}
+	}
+
+	/**
+	 * ORs length words of source, from sourceOffset, into target, from targetOffset.
+	 */
+	private static void or(long[] target, int targetOffset, long[] source, int sourceOffset, int length) {
+		for (int i = 0; i < length; i ++)
+			target[targetOffset + i] |= source[sourceOffset + i];
+	}
+
+	/**
+	 * @return		A new state set holding the epsilon closure of the start nodes.
+	 */
+	public long[] getStart() {
+		return _start.clone();
+	}
+
+	/**
+	 * @return		A new, empty state set.
+	 */
+	public long[] newStateSet() {
+		return new long[_words];
+	}
+
+	/**
+	 * @param c		An input character.
+	 * @return		The symbol number of the character, or -1 if it is not in the alphabet.
+	 */
+	public int symbolOf(char c) {
+		return _symbols.symbolOf(c);
+	}
+
+	/**
+	 * Takes one step of the simulation.
+	 * @param current	The current state set.
+	 * @param symbol	The symbol number of the input character, or -1 if it is not in the alphabet.
+	 * @param next		Filled with the state set after the step.  Must not be current.
+	 */
+	public void step(long[] current, int symbol, long[] next) {
+		Arrays.fill(next, 0);
+		if (symbol < 0)
+			return;
+		int words = _words;
+		for (int w = 0; w < words; w ++) {
+			long word = current[w];
+			while (word != 0) {
+				int state = (w << 6) + Long.numberOfTrailingZeros(word);
+				word &= word - 1;
+				int base = (state * _symbolCount + symbol) * words;
+				for (int i = 0; i < words; i ++)
+					next[i] |= _successors[base + i];
+			}
+		}
+	}
+
+	/**
+	 * @param current	The current state set.
+	 * @param c			An input character.
+	 * @return			A new state set after taking the character.
+	 */
+	public long[] next(long[] current, char c) {
+		long[] next = new long[_words];
+		step(current, _symbols.symbolOf(c), next);
+		return next;
+	}
+
+	/**
+	 * @param set		A state set.
+	 * @return			True if the set holds an accept state.
+	 */
+	public boolean isAccepting(long[] set) {
+		for (int w = 0; w < _words; w ++) {
+			if ((set[w] & _accept[w]) != 0)
+				return true;
+		}
+		return false;
+	}
+
+	/**
+	 * @param set		A state set.
+	 * @return			True if the set is empty, so that no input will be accepted from it.
+	 */
+	public boolean isEmpty(long[] set) {
+		for (int w = 0; w < _words; w ++) {
+			if (set[w] != 0)
+				return false;
+		}
+		return true;
+	}
+
+	/**
+	 * @param set		A state set.
+	 * @return			The nodes in the set.
+	 */
+	public Set<Node> getNodes(long[] set) {
+		Set<Node> nodes = new LinkedHashSet<Node>();
+		for (int w = 0; w < _words; w ++) {
+			long word = set[w];
+			while (word != 0) {
+				nodes.add(_states[(w << 6) + Long.numberOfTrailingZeros(word)]);
+				word &= word - 1;
+			}
+		}
+		return nodes;
+	}
+
+	/**
+	 * @return		The revision of the diagram this was compiled from.
+	 */
+	public int getRevision() {
+		return _revision;
+	}
+
+	/**
+	 * @return		The number of states (nodes).
+	 */
+	public int getStateCount() {
+		return _states.length;
+	}
+
+	/**
+	 * @return		The number of symbols in the input alphabet.
+	 */
+	public int getSymbolCount() {
+		return _symbolCount;
+	}
+
+	/**
+	 * @param symbol	A symbol number.
+	 * @return			The input character of the symbol.
+	 */
+	public char getSymbol(int symbol) {
+		return _symbols.getSymbol(symbol);
+	}
+
+	/**
+	 * @param state		A state number.
+	 * @return			The node of the state.
+	 */
+	public Node getNode(int state) {
+		return _states[state];
+	}
+
+	/**
+	 * @param state		A state number.
+	 * @return			The text of its node when the diagram was compiled.
+	 */
+	public String getText(int state) {
+		return _text[state];
+	}
+
+	/**
+	 * @param n		A node of the compiled diagram.
+	 * @return		The state number of the node, or -1 if it was not compiled.
+	 */
+	public int indexOf(Node n) {
+		Integer state = _stateIndex.get(n);
+		return state == null ? -1 : state;
+	}
+}
@@ -0,0 +1,188 @@
+package backend;
+
+import java.util.*;
+
+/**
+ * Everything that keeps a Diagram from being simulated as a DFSM, as typed errors that point at
+ * the offending nodes and edges.  Only the first few errors are found up front; the rest are found
+ * as iterator() is advanced, so a badly broken diagram (say a large import) costs no more to
+ * diagnose than a slightly broken one.  The total number of errors is always known exactly.
+ *
+ * Diagnostics describe the diagram at one revision.  Iterating them after the diagram has changed
+ * throws a ConcurrentModificationException, unless they have been frozen (see freeze()): frozen
+ * diagnostics hold only the errors found up front and never look at the diagram again, so they can
+ * be read from any thread, however the diagram is edited.
+ */
+public class DFSMDiagnostics implements Iterable<DFSMError> {
+
+	/** The number of errors found up front, and of lines in the message, unless told otherwise. */
+	public static final int DEFAULT_LIMIT = 100;
+
+	//_diagram and _validator are null once frozen.
+	private final Diagram _diagram;
+	private final DFSMValidator _validator;
+	private final int _revision;
+	private final List<String> _unknownInput;
+	private final int _limit;
+	private final boolean _nondeterministic;
+	private final long _count;
+	private final List<DFSMError> _errors;
+	private String _message;
+
+	/**
+	 * Takes the first errors of the diagram.
+	 * @param diagram			The diagram.
+	 * @param validator			The validation state of the diagram.
+	 * @param unknownInput		The input symbols that are not in the input alphabet, in order.
+	 * @param limit				The number of errors to find up front.
+	 * @param nondeterministic	Whether to report only what keeps the diagram from being an NFA.
+	 */
+	DFSMDiagnostics(Diagram diagram, DFSMValidator validator, List<String> unknownInput, int limit, boolean nondeterministic) {
+		_diagram = diagram;
+		_validator = validator;
+		_revision = diagram.getRevision();
+		_unknownInput = unknownInput;
+		_limit = limit;
+		_nondeterministic = nondeterministic;
+		_count = validator.getErrorCount(nondeterministic) + unknownInput.size();
+
+		List<DFSMError> errors = new ArrayList<DFSMError>((int) Math.min(_count, limit));
+		Iterator<DFSMError> iter = iterator();
+		while (errors.size() < limit && iter.hasNext())
+			errors.add(iter.next());
+		_errors = Collections.unmodifiableList(errors);
+	}
+
+	/**
+	 * Copies diagnostics, keeping only what has been found: the count, the first errors and the
+	 * message, all as they read now.
+	 * @param diagnostics	The diagnostics.
+	 */
+	private DFSMDiagnostics(DFSMDiagnostics diagnostics) {
+		_diagram = null;
+		_validator = null;
+		_revision = diagnostics._revision;
+		_unknownInput = Collections.emptyList();
+		_limit = diagnostics._limit;
+		_nondeterministic = diagnostics._nondeterministic;
+		_count = diagnostics._count;
+		List<DFSMError> errors = new ArrayList<DFSMError>(diagnostics._errors.size());
+		for (DFSMError error : diagnostics._errors)
+			errors.add(new DFSMError(error));
+		_errors = Collections.unmodifiableList(errors);
+		_message = diagnostics.getMessage();
+	}
+
+	/**
+	 * Takes a copy of these diagnostics that does not refer to the diagram or its validation state
+	 * and does not change with them.  Iterating it goes through getErrors() only, so when isTruncated()
+	 * the errors past the limit are counted but cannot be listed.  Call this while the diagram is
+	 * still at the revision these describe.
+	 * @return		The frozen diagnostics.
+	 */
+	DFSMDiagnostics freeze() {
+		return _validator == null ? this : new DFSMDiagnostics(this);
+	}
+
+	/**
+	 * @return		True if there are no errors.
+	 */
+	public boolean isValid() {
+		return _count == 0;
+	}
+
+	/**
+	 * @return		The total number of errors, including those not found yet.
+	 */
+	public long getErrorCount() {
+		return _count;
+	}
+
+	/**
+	 * @return		The first errors, at most as many as the limit these diagnostics were made with.
+	 */
+	public List<DFSMError> getErrors() {
+		return _errors;
+	}
+
+	/**
+	 * @return		True if there are more errors than getErrors() returns.
+	 */
+	public boolean isTruncated() {
+		return _count > _errors.size();
+	}
+
+	/**
+	 * @return		The revision of the diagram these diagnostics describe.
+	 */
+	public int getRevision() {
+		return _revision;
+	}
+
+	/**
+	 * Goes through every error, finding them as it goes.
+	 * @return		The errors, in the order getMessage() reports them.
+	 */
+	public Iterator<DFSMError> iterator() {
+		if (_validator == null)
+			return _errors.iterator();
+		final Iterator<DFSMError> errors = _validator.errors(_nondeterministic);
+		final Iterator<String> input = _unknownInput.iterator();
+		return new Iterator<DFSMError>() {
+			public boolean hasNext() {
+				if (_diagram.getRevision() != _revision)
+					throw new ConcurrentModificationException();
+				return errors.hasNext() || input.hasNext();
+			}
+
+			public DFSMError next() {
+				if (!hasNext())
+					throw new NoSuchElementException();
+				if (errors.hasNext())
+					return errors.next();
+				return new DFSMError(DFSMErrorType.UNKNOWN_INPUT, null, null, input.next());
+			}
+
+			public void remove() {
+				throw new UnsupportedOperationException();
+			}
+		};
+	}
+
+	/**
+	 * Describes the errors, one per line, as the simulator has always shown them: the start nodes
+	 * and the unlabeled edges are each reported on a single line.  After as many lines as the limit
+	 * the remaining errors are only counted.
+	 * @return		The message, or the empty string if there are no errors.
+	 */
+	public String getMessage() {
+		if (_message != null)
+			return _message;
+
+		StringBuilder message = new StringBuilder();
+		Iterator<DFSMError> iter = iterator();
+		long seen = 0;
+		int lines = 0;
+		DFSMErrorType last = null;
+		while (iter.hasNext()) {
+			DFSMError error = iter.next();
+			if (error.getType() == last && (last == DFSMErrorType.MULTIPLE_STARTS || last == DFSMErrorType.UNLABELED_EDGE)) {
+				seen ++;
+				continue;
+			}
+			if (lines == _limit)
+				break;
+			seen ++;
+			last = error.getType();
+			if (last == DFSMErrorType.UNLABELED_EDGE)
+				message.append("There are " + _validator.getUnlabeledCount() + " edges without a label.\n");
+			else
+				message.append(error.getMessage());
+			lines ++;
+		}
+		if (seen < _count)
+			message.append("... and " + (_count - seen) + " more errors.\n");
+		_message = message.toString();
+		return _message;
+	}
+}
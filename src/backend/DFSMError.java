@@ -0,0 +1,104 @@
+package backend;
+
+/**
+ * One problem that keeps a Diagram from being simulated as a DFSM, with the node or edge it is
+ * about so that the frontend can point at it.
+ *
+ * Which fields are set depends on the type:
+ * 	NO_START				nothing.
+ * 	MULTIPLE_STARTS			the node (one error per start node).
+ * 	UNLABELED_EDGE			the edge.
+ * 	NON_SINGLE_EDGE			the edge.
+ * 	EPSILON_EDGE			the edge.
+ * 	DUPLICATE_LABEL			the node and the symbol it has several edges for.
+ * 	MISSING_TRANSITION		the node and the symbol it has no edge for.
+ * 	UNKNOWN_INPUT			the input symbol that is not in the input alphabet.
+ */
+public class DFSMError {
+	private final DFSMErrorType _type;
+	private final Node _node;
+	private final Edge _edge;
+	private final String _symbol;
+
+	/** The description, fixed when the error was frozen, or null to work it out when asked. */
+	private final String _message;
+
+	public DFSMError(DFSMErrorType type, Node node, Edge edge, String symbol) {
+		_type = type;
+		_node = node;
+		_edge = edge;
+		_symbol = symbol;
+		_message = null;
+	}
+
+	/**
+	 * Copies an error with its description fixed as it reads now, so later changes to the text of
+	 * its node or edge do not show in it.
+	 * @param error		The error.
+	 */
+	DFSMError(DFSMError error) {
+		_type = error._type;
+		_node = error._node;
+		_edge = error._edge;
+		_symbol = error._symbol;
+		_message = error.getMessage();
+	}
+
+	public DFSMErrorType getType() {
+		return _type;
+	}
+
+	/**
+	 * @return		The node the error is about, or null.
+	 */
+	public Node getNode() {
+		return _node;
+	}
+
+	/**
+	 * @return		The edge the error is about, or null.
+	 */
+	public Edge getEdge() {
+		return _edge;
+	}
+
+	/**
+	 * @return		The symbol the error is about, or null.
+	 */
+	public String getSymbol() {
+		return _symbol;
+	}
+
+	/**
+	 * @return		A one-line description of the error, in the same words the simulator has always
+	 * 				used.
+	 */
+	public String getMessage() {
+		if (_message != null)
+			return _message;
+		switch (_type) {
+		case NO_START:
+			return "There is no start node.\n";
+		case MULTIPLE_STARTS:
+			return "There are multiple start nodes.\n";
+		case UNLABELED_EDGE:
+			return "There is an edge without a label.\n";
+		case NON_SINGLE_EDGE:
+			return !_edge.getText().equals("") ? "Edge " + _edge.getNodeString() + " is not a singly-directed edge.\n"
+												: "There is a non-singly directed edge.\n";
+		case EPSILON_EDGE:
+			return "Edge " + _edge.getNodeString() + " is an epsilon transition.\n";
+		case DUPLICATE_LABEL:
+			return "Node " + _node.getText() + " has multiple edges labeled " + _symbol + ".\n";
+		case MISSING_TRANSITION:
+			return !_node.getText().equals("") ? "Node " + _node.getText() + " doesn't have an edge labeled " + _symbol + ".\n"
+												: "There is a node without label " + _symbol + ".\n";
+		default:
+			return "Input character \'" + _symbol + "\' is not in the input alphabet.\n";
+		}
+	}
+
+	public String toString() {
+		return getMessage().trim();
+	}
+}
@@ -0,0 +1,8 @@
+package backend;
+
+/**
+ * The kinds of problem that keep a Diagram from being simulated as a DFSM.
+ */
+public enum DFSMErrorType {
+	NO_START, MULTIPLE_STARTS, UNLABELED_EDGE, NON_SINGLE_EDGE, EPSILON_EDGE, DUPLICATE_LABEL, MISSING_TRANSITION, UNKNOWN_INPUT
+}
@@ -0,0 +1,365 @@
+package backend;
+
+import java.util.*;
+
+/**
+ * Keeps track of everything that stops a Diagram from being a valid DFSM, and keeps it up to date
+ * as nodes and edges are added, removed and edited, so that asking whether the diagram is valid
+ * does not mean going over the whole diagram again.
+ *
+ * The checks are the ones deterministicSimulation has always made: exactly one start node, every
+ * edge labeled and singly-directed, no node with two edges for the same symbol, and every node with
+ * an edge for every symbol of the input alphabet (the union of all edge labels).  Epsilon
+ * transitions are not allowed either.  An NFA only needs the first two, and may have several start
+ * nodes.
+ */
+class DFSMValidator {
+
+	/** The diagram being validated. */
+	private final Diagram _diagram;
+
+	/** The nodes that were in the diagram the last time they were looked at. */
+	private final Set<Node> _nodes = new HashSet<Node>();
+
+	/** The start nodes of the diagram. */
+	private final Set<Node> _starts = new HashSet<Node>();
+
+	/** The edges of the diagram without a label. */
+	private final Set<Edge> _unlabeled = new LinkedHashSet<Edge>();
+
+	/** The edges of the diagram that are not singly-directed. */
+	private final Set<Edge> _nonSingle = new LinkedHashSet<Edge>();
+
+	/** The singly-directed edges of the diagram with an epsilon transition in their label. */
+	private final Set<Edge> _epsilon = new LinkedHashSet<Edge>();
+
+	/** The node and symbols each counted edge was counted under, so it can be taken back out. */
+	private final HashMap<Edge, Contribution> _contributions = new HashMap<Edge, Contribution>();
+
+	/** For each node, how many times each symbol appears on its outgoing edges. */
+	private final HashMap<Node, HashMap<String, Integer>> _outLabels = new HashMap<Node, HashMap<String, Integer>>();
+
+	/** The input alphabet: for each symbol, the number of nodes with an outgoing edge for it. */
+	private final HashMap<String, Integer> _alphabet = new HashMap<String, Integer>();
+
+	/** The number of (node, symbol) pairs where the node has more than one edge for the symbol. */
+	private int _duplicates;
+
+	/** The number of (node, symbol) pairs where the node has an edge for the symbol. */
+	private long _pairs;
+
+	/**
+	 * Builds the validation state of the diagram from scratch.
+	 * @param diagram		The diagram to validate.
+	 */
+	DFSMValidator(Diagram diagram) {
+		_diagram = diagram;
+		//Every node is in the diagram, so the edges are counted once each after the nodes, rather
+		//than again for each end as nodeChanged would.  Edges connected to a node but not in the
+		//diagram still count for the node.
+		for (Node n : diagram.getNodes()) {
+			_nodes.add(n);
+			if (n.isStart())
+				_starts.add(n);
+			for (Edge e : n.getConnected()) {
+				if (!diagram.getEdges().contains(e))
+					edgeChanged(e);
+			}
+		}
+		for (Edge e : diagram.getEdges())
+			edgeChanged(e);
+	}
+
+	/**
+	 * Brings the state up to date after a node was added, removed or edited.
+	 * @param n		The node.
+	 */
+	void nodeChanged(Node n) {
+		boolean inDiagram = _diagram.getNodes().contains(n);
+		if (inDiagram && n.isStart())
+			_starts.add(n);
+		else
+			_starts.remove(n);
+
+		//Whether its outgoing edges count depends on whether the node is in the diagram.
+		boolean wasInDiagram = inDiagram ? !_nodes.add(n) : _nodes.remove(n);
+		if (inDiagram != wasInDiagram) {
+			for (Edge e : n.getConnected())
+				edgeChanged(e);
+		}
+	}
+
+	/**
+	 * Brings the state up to date after an edge was added, removed or edited, or was connected to or
+	 * disconnected from a node.
+	 * @param e		The edge.
+	 */
+	void edgeChanged(Edge e) {
+		//Take the edge back out.
+		Contribution old = _contributions.remove(e);
+		if (old != null) {
+			for (String s : old._symbols)
+				decrement(old._node, s);
+		}
+		_unlabeled.remove(e);
+		_nonSingle.remove(e);
+		_epsilon.remove(e);
+
+		//Put it back in as it is now.
+		String text = e.getText();
+		if (_diagram.getEdges().contains(e)) {
+			if (text.equals(""))
+				_unlabeled.add(e);
+			if (e.getDirection() != EdgeDirection.SINGLE)
+				_nonSingle.add(e);
+			else if (e.getSymbols().hasEpsilon())
+				_epsilon.add(e);
+		}
+		Node start = e.getStartNode();
+		if (e.getDirection() == EdgeDirection.SINGLE && !text.equals("") && start != null
+				&& _diagram.getNodes().contains(start) && start.getConnected().contains(e)) {
+			String[] symbols = e.getSymbols().getSymbols();
+			for (String s : symbols)
+				increment(start, s);
+			_contributions.put(e, new Contribution(start, symbols));
+		}
+	}
+
+	/**
+	 * Counts one more edge for symbol s out of node n.
+	 */
+	private void increment(Node n, String s) {
+		HashMap<String, Integer> labels = _outLabels.get(n);
+		if (labels == null) {
+			labels = new HashMap<String, Integer>();
+			_outLabels.put(n, labels);
+		}
+		Integer count = labels.get(s);
+		if (count == null) {
+			labels.put(s, 1);
+			_pairs ++;
+			Integer nodes = _alphabet.get(s);
+			_alphabet.put(s, nodes == null ? 1 : nodes + 1);
+		}
+		else {
+			labels.put(s, count + 1);
+			if (count == 1)
+				_duplicates ++;
+		}
+	}
+
+	/**
+	 * Counts one fewer edge for symbol s out of node n.
+	 */
+	private void decrement(Node n, String s) {
+		HashMap<String, Integer> labels = _outLabels.get(n);
+		int count = labels.get(s);
+		if (count == 1) {
+			labels.remove(s);
+			if (labels.isEmpty())
+				_outLabels.remove(n);
+			_pairs --;
+			int nodes = _alphabet.get(s);
+			if (nodes == 1)
+				_alphabet.remove(s);
+			else
+				_alphabet.put(s, nodes - 1);
+		}
+		else {
+			labels.put(s, count - 1);
+			if (count == 2)
+				_duplicates --;
+		}
+	}
+
+	/**
+	 * @return		The number of (node, symbol) pairs where the node has no edge for a symbol of the
+	 * 				input alphabet.
+	 */
+	private long missing() {
+		return (long) _diagram.getNodes().size() * _alphabet.size() - _pairs;
+	}
+
+	/**
+	 * @return		True if the diagram is a valid DFSM.  This takes constant time.
+	 */
+	boolean isValid() {
+		return !_diagram.getNodes().isEmpty() && _starts.size() == 1 && _unlabeled.isEmpty()
+				&& _nonSingle.isEmpty() && _epsilon.isEmpty() && _duplicates == 0 && missing() == 0;
+	}
+
+	/**
+	 * @return		True if the diagram can be simulated as an NFA: it has at least one start node,
+	 * 				and every edge is labeled and singly-directed.  This takes constant time.
+	 */
+	boolean isValidNFA() {
+		return !_diagram.getNodes().isEmpty() && _starts.size() >= 1 && _unlabeled.isEmpty() && _nonSingle.isEmpty();
+	}
+
+	/**
+	 * @return		The number of edges without a label.
+	 */
+	int getUnlabeledCount() {
+		return _unlabeled.size();
+	}
+
+	/**
+	 * @return		The input alphabet.  Do not modify it.
+	 */
+	Set<String> getAlphabet() {
+		return _alphabet.keySet();
+	}
+
+	/**
+	 * @param nondeterministic		Whether to count only the errors that keep the diagram from being
+	 * 								a valid NFA.
+	 * @return						The number of errors errors() goes through.  This takes constant
+	 * 								time.
+	 */
+	long getErrorCount(boolean nondeterministic) {
+		if (nondeterministic)
+			return (_starts.size() < 1 ? 1 : 0) + _unlabeled.size() + _nonSingle.size();
+		long count = _starts.size() == 1 ? 0 : Math.max(_starts.size(), 1);
+		return count + _unlabeled.size() + _nonSingle.size() + _epsilon.size() + _duplicates + missing();
+	}
+
+	/**
+	 * Goes through everything that keeps the diagram from being a valid DFSM: start nodes, unlabeled
+	 * edges, non-singly-directed edges, epsilon transitions, duplicate labels and then missing
+	 * transitions.  The errors are found as the iterator is advanced, and only the kinds of error
+	 * that are actually present are looked for, so taking the first few errors of a badly broken
+	 * diagram is cheap.
+	 * @param nondeterministic		Whether to go through only the errors that keep the diagram from
+	 * 								being a valid NFA (no start node, unlabeled and non-singly-directed
+	 * 								edges).
+	 * @return						The errors.  The diagram must not be changed while it is in use.
+	 */
+	Iterator<DFSMError> errors(boolean nondeterministic) {
+		return new ErrorIterator(nondeterministic);
+	}
+
+	/**
+	 * Walks the validation state one kind of error at a time.
+	 */
+	private class ErrorIterator implements Iterator<DFSMError> {
+		private int _phase;
+		private Iterator<Node> _nodeIter;
+		private Iterator<Edge> _edgeIter;
+		private Iterator<Map.Entry<Node, HashMap<String, Integer>>> _labelsIter;
+		private Node _node;
+		private HashMap<String, Integer> _labels;
+		private Iterator<String> _symbolIter;
+		private DFSMError _next;
+		private final boolean _nondeterministic;
+
+		ErrorIterator(boolean nondeterministic) {
+			_nondeterministic = nondeterministic;
+		}
+
+		public boolean hasNext() {
+			while (_next == null && _phase < 7)
+				_next = advance();
+			return _next != null;
+		}
+
+		public DFSMError next() {
+			if (!hasNext())
+				throw new NoSuchElementException();
+			DFSMError next = _next;
+			_next = null;
+			return next;
+		}
+
+		public void remove() {
+			throw new UnsupportedOperationException();
+		}
+
+		/**
+		 * Finds the next error of the current phase, or moves on to the next phase and returns null.
+		 */
+		private DFSMError advance() {
+			switch (_phase) {
+			case 0:
+				_phase ++;
+				_nodeIter = _starts.size() > 1 && !_nondeterministic ? _starts.iterator() : Collections.<Node>emptyIterator();
+				if (_starts.size() < 1)
+					return new DFSMError(DFSMErrorType.NO_START, null, null, null);
+				return null;
+			case 1:
+				if (_nodeIter.hasNext())
+					return new DFSMError(DFSMErrorType.MULTIPLE_STARTS, _nodeIter.next(), null, null);
+				_edgeIter = _unlabeled.iterator();
+				_phase ++;
+				return null;
+			case 2:
+				if (_edgeIter.hasNext())
+					return new DFSMError(DFSMErrorType.UNLABELED_EDGE, null, _edgeIter.next(), null);
+				_edgeIter = _nonSingle.iterator();
+				_phase ++;
+				return null;
+			case 3:
+				if (_edgeIter.hasNext())
+					return new DFSMError(DFSMErrorType.NON_SINGLE_EDGE, null, _edgeIter.next(), null);
+				_edgeIter = !_nondeterministic ? _epsilon.iterator() : Collections.<Edge>emptyIterator();
+				_phase ++;
+				return null;
+			case 4:
+				if (_edgeIter.hasNext())
+					return new DFSMError(DFSMErrorType.EPSILON_EDGE, null, _edgeIter.next(), null);
+				_labelsIter = _duplicates > 0 && !_nondeterministic ? _outLabels.entrySet().iterator()
+							: Collections.<Map.Entry<Node, HashMap<String, Integer>>>emptyIterator();
+				_symbolIter = Collections.<String>emptyIterator();
+				_phase ++;
+				return null;
+			case 5:
+				while (_symbolIter.hasNext()) {
+					String s = _symbolIter.next();
+					if (_labels.get(s) > 1)
+						return new DFSMError(DFSMErrorType.DUPLICATE_LABEL, _node, null, s);
+				}
+				if (_labelsIter.hasNext()) {
+					Map.Entry<Node, HashMap<String, Integer>> entry = _labelsIter.next();
+					_node = entry.getKey();
+					_labels = entry.getValue();
+					_symbolIter = _labels.keySet().iterator();
+					return null;
+				}
+				_nodeIter = missing() > 0 && !_nondeterministic ? _diagram.getNodes().iterator() : Collections.<Node>emptyIterator();
+				_symbolIter = Collections.<String>emptyIterator();
+				_phase ++;
+				return null;
+			case 6:
+				while (_symbolIter.hasNext()) {
+					String s = _symbolIter.next();
+					if (_labels == null || !_labels.containsKey(s))
+						return new DFSMError(DFSMErrorType.MISSING_TRANSITION, _node, null, s);
+				}
+				if (_nodeIter.hasNext()) {
+					_node = _nodeIter.next();
+					_labels = _outLabels.get(_node);
+					//Skip nodes that have every symbol without looking at the symbols.
+					if (_labels == null || _labels.size() != _alphabet.size())
+						_symbolIter = _alphabet.keySet().iterator();
+					return null;
+				}
+				_phase ++;
+				return null;
+			default:
+				return null;
+			}
+		}
+	}
+
+	/**
+	 * The symbols an edge was counted under, and the node it was counted for.
+	 */
+	private static class Contribution {
+		private final Node _node;
+		private final String[] _symbols;
+
+		Contribution(Node node, String[] symbols) {
+			_node = node;
+			_symbols = symbols;
+		}
+	}
+}
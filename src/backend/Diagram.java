@@ -1,5 +1,11 @@
 package backend;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.math.BigInteger;
+import java.nio.charset.Charset;
 import java.util.*;
 
 import frontend.DrawingPanel;
@@ -11,103 +17,382 @@ import frontend.MainFrame;
  *
  */
 public class Diagram implements Cloneable {
+	private static final int STREAM_BUFFER_SIZE = 8192;
+	static final int MAX_DETERMINIZED_NODES = 1000;
+	private static final int MAX_PRODUCT_NODES = 10000;
+	
+	/*
+	 * _store keeps the nodes and edges (see DiagramStore); _nodes and _edges are its collection views.
+	 *
+	 * _nodesAtClone and _cloneNodes are the node handles of this diagram and of its last clone, by id, as they were
+	 * when it was made, and the same for the edges; getNodeMap() and getEdgeMap() are built from them when they are
+	 * asked for.
+	 */
+	private DiagramStore _store;
 	private Collection<Node> _nodes;
 	private Collection<Edge> _edges;
 	private int _revision;
 	private MainFrame _frame;
+	private Node[] _nodesAtClone;
+	private Node[] _cloneNodes;
+	private Edge[] _edgesAtClone;
+	private Edge[] _cloneEdges;
 	private HashMap<Node, Node> _oldNodeToNew;
 	private HashMap<Edge, Edge> _newEdgeToOld;
+	private DiagramGraph _graph;
+	private DiagramSnapshot _snapshot;
+	private CompiledAutomaton _compiled;
+	private CompiledNFA _compiledNFA;
+	private LazyDFA _lazyDFA;
+	private Reachability _reachability;
+	private GraphAnalysis _graphAnalysis;
+	private Witnesses _witnesses;
+	private DFSMValidator _validator;
 
 	public Diagram() {
-		_nodes = new HashSet<Node>();
-		_edges = new HashSet<Edge>();
+		setStore(new DiagramStore(this, 0, 0));
 		_revision = 0;
+		_validator = new DFSMValidator(this);
+	}
+
+	/**
+	 * @param store		The store to keep the nodes and edges in.
+	 */
+	private void setStore(DiagramStore store) {
+		_store = store;
+		_nodes = store.new NodeCollection();
+		_edges = store.new EdgeCollection();
 	}
 
 	public void setDrawingPanel(DrawingPanel container, MainFrame frame) { 
 		_frame = frame;
 	}
 
+	/**
+	 * Adds a node to this diagram.  Its data moves into the store of this diagram, and out of the diagram it was in
+	 * before, if any.
+	 * @param n
+	 * @return		True if it was not in this diagram already.
+	 */
 	public boolean addNode(Node n) {
-		return _nodes.add(n);
+		boolean added = n.getStore() != _store;
+		if (added) {
+			if (n.getDiagram() != null)
+				n.getDiagram().removeNode(n);
+			n.moveTo(_store);
+		}
+		nodeChanged(n);
+		return added;
 	}
 
+	/**
+	 * Adds an edge to this diagram.  Its data moves into the store of this diagram, and out of the diagram it was in
+	 * before, if any.
+	 * @param e
+	 * @return		True if it was not in this diagram already.
+	 */
 	public boolean addEdge(Edge e) {
-		return _edges.add(e);
+		boolean added = e.getStore() != _store;
+		if (added) {
+			if (e.getDiagram() != null)
+				e.getDiagram().removeEdge(e);
+			e.moveTo(_store);
+		}
+		edgeChanged(e);
+		return added;
+	}
+
+	/**
+	 * Makes a node and adds it to this diagram, as the Node constructor and addNode() do, but straight into the
+	 * store of this diagram.
+	 * @see Node#Node(double, double, double, boolean, boolean, String)
+	 */
+	public Node createNode(double x, double y, double radius, boolean isStart, boolean isAccept, String label) {
+		Node n = new Node(_store, x, y, radius, isStart, isAccept, label);
+		nodeChanged(n);
+		return n;
+	}
+
+	/**
+	 * Makes a self-looping edge and adds it to this diagram, as the Edge constructor and addEdge() do, but straight
+	 * into the store of this diagram.  It is not connected to the node.
+	 * @see Edge#Edge(Node, Node, EdgeDirection, String, double)
+	 */
+	public Edge createEdge(Node start, Node end, EdgeDirection dir, String label, double angle) {
+		Edge e = new Edge(_store, start, end, dir, label, angle);
+		edgeChanged(e);
+		return e;
+	}
+
+	/**
+	 * Makes a non self-looping edge and adds it to this diagram, as the Edge constructor and addEdge() do, but
+	 * straight into the store of this diagram.  It is not connected to the nodes.
+	 * @see Edge#Edge(Node, Node, EdgeDirection, String, double, int)
+	 */
+	public Edge createEdge(Node start, Node end, EdgeDirection dir, String label, double arc_chord_height, int arc_side) {
+		Edge e = new Edge(_store, start, end, dir, label, arc_chord_height, arc_side);
+		edgeChanged(e);
+		return e;
 	}
 	
 	public MainFrame getFrame() {
 		return _frame;
 	}
 
+	/**
+	 * Removes a node from this diagram.  Its data moves to a store of its own, so it can still be used (and added
+	 * again, as undo does), and its id here is given to the next node added.
+	 * @param n
+	 * @return		True if it was in this diagram.
+	 */
 	public boolean removeNode(Node n) {
-		return _nodes.remove(n);
+		boolean removed = n.getStore() == _store;
+		if (removed)
+			n.moveTo(DiagramStore.ofNode());
+		nodeChanged(n);
+		return removed;
 	}
 
+	/**
+	 * Removes an edge from this diagram.  Its data moves to a store of its own, as for removeNode().
+	 * @param e
+	 * @return		True if it was in this diagram.
+	 */
 	public boolean removeEdge(Edge e) {
-		return _edges.remove(e);
+		boolean removed = e.getStore() == _store;
+		if (removed)
+			e.moveTo(DiagramStore.ofEdge());
+		edgeChanged(e);
+		return removed;
 	}
 
+	/**
+	 * @return		The nodes of this diagram, in the order of their ids.  The collection is a live view; adding and
+	 * 				removing go through addNode() and removeNode().
+	 */
 	public Collection<Node> getNodes() {
 		return _nodes;
 	}
 
+	/**
+	 * @return		The edges of this diagram, in the order of their ids.  The collection is a live view; adding and
+	 * 				removing go through addEdge() and removeEdge().
+	 */
 	public Collection<Edge> getEdges() {
 		return _edges;
 	}
 	
+	/**
+	 * @return		The node of the last clone of this diagram made from each node of this one, or null if no clone
+	 * 				has been made.
+	 */
 	public HashMap<Node, Node> getNodeMap() {
+		if (_oldNodeToNew == null && _nodesAtClone != null) {
+			_oldNodeToNew = new HashMap<Node, Node>();
+			for (int id = 0; id < _nodesAtClone.length; id ++) {
+				if (_nodesAtClone[id] != null)
+					_oldNodeToNew.put(_nodesAtClone[id], _cloneNodes[id]);
+			}
+		}
 		return _oldNodeToNew;
 	}
 	
+	/**
+	 * @return		The edge of this diagram each edge of its last clone was made from, or null if no clone has been
+	 * 				made.
+	 */
 	public HashMap<Edge, Edge> getEdgeMap() {
+		if (_newEdgeToOld == null && _edgesAtClone != null) {
+			_newEdgeToOld = new HashMap<Edge, Edge>();
+			for (int id = 0; id < _edgesAtClone.length; id ++) {
+				if (_edgesAtClone[id] != null)
+					_newEdgeToOld.put(_cloneEdges[id], _edgesAtClone[id]);
+			}
+		}
 		return _newEdgeToOld;
 	}
 	
+	/**
+	 * Returns a copy of this diagram, with new nodes and edges and no views.  The arrays of the store are copied
+	 * whole (see DiagramStore.copy()), and the maps from the nodes and edges of this diagram to those of the copy are
+	 * only built if getNodeMap() or getEdgeMap() is called.
+	 */
 	public Diagram clone() throws CloneNotSupportedException {
 		Diagram cloned = (Diagram) super.clone();
-		cloned.setRevision(getRevision());
-		Collection<Node> cloned_nodes = new HashSet<Node>();
-		Collection<Node> old_nodes = getNodes();
-		Collection<Edge> cloned_edges = new HashSet<Edge>();
-		Collection<Edge> old_edges = getEdges();
+		cloned._compiled = null;
+		cloned._compiledNFA = null;
+		cloned._lazyDFA = null;
+		cloned._reachability = null;
+		cloned._graphAnalysis = null;
+		cloned._graph = null;
+		cloned._snapshot = null;
+		cloned._witnesses = null;
+		cloned._validator = null;
+		cloned._nodesAtClone = null;
+		cloned._cloneNodes = null;
+		cloned._edgesAtClone = null;
+		cloned._cloneEdges = null;
+		cloned._oldNodeToNew = null;
+		cloned._newEdgeToOld = null;
+		cloned.setStore(_store.copy(cloned));
 		
-		HashMap<Node, Node> nodeMap = new HashMap<Node, Node>();
-		HashMap<Edge, Edge> edgeMap = new HashMap<Edge, Edge>();
-		HashMap<Edge, Edge> newEdgeMap = new HashMap<Edge, Edge>();
+		_nodesAtClone = _store.nodes.clone();
+		_cloneNodes = cloned._store.nodes.clone();
+		_edgesAtClone = _store.edges.clone();
+		_cloneEdges = cloned._store.edges.clone();
+		_oldNodeToNew = null;
+		_newEdgeToOld = null;
 		
-		for (Node oldNode : old_nodes) {
-			Node newNode = oldNode.clone();
-			nodeMap.put(oldNode, newNode);
-			
-			cloned_nodes.add(newNode);
-		}
-		for (Edge oldEdge : old_edges) {
-			Edge newEdge = oldEdge.clone();
-			edgeMap.put(newEdge, oldEdge);
-			newEdgeMap.put(oldEdge, newEdge);
-			cloned_edges.add(newEdge);
+		cloned._validator = new DFSMValidator(cloned);
+		cloned.setRevision(getRevision());
+		return cloned;
+	}
+	
+	/**
+	 * Returns a snapshot of the structure of this diagram in compressed sparse row form (see
+	 * DiagramGraph).  It is taken once per revision, and the compiled forms and the analyses are all
+	 * built from it, so the nodes, edges and labels are read once however many of them are asked for.
+	 * @return		The snapshot for the current revision.
+	 */
+	public DiagramGraph graph() {
+		if (_graph == null || _graph.getRevision() != _revision)
+			_graph = new DiagramGraph(_store, _revision);
+		return _graph;
+	}
+	
+	/**
+	 * Returns a copy of this diagram as it is now, which later edits do not change, for analysis and
+	 * simulation on another thread (see DiagramSnapshot).  It takes constant time unless the diagram
+	 * is invalid, when the first errors are found as well, and it is taken once per revision; the
+	 * graph is shared with graph() if that has been built for the revision.  Call this on the thread
+	 * that edits the diagram.
+	 * @return		The snapshot for the current revision.
+	 */
+	public DiagramSnapshot snapshot() {
+		if (_snapshot == null || _snapshot.getRevision() != _revision) {
+			DiagramGraph graph = _graph != null && _graph.getRevision() == _revision ? _graph : null;
+			_snapshot = new DiagramSnapshot(_store.share(), _revision, graph,
+					isValidDFSM() ? null : diagnose(), isValidNFA() ? null : nfaDiagnostics());
 		}
-		
-		_newEdgeToOld = edgeMap;
-		_oldNodeToNew = nodeMap;
-		
-		for (Node oldNode : old_nodes) {
-			Collection<Edge> connected = new HashSet<Edge>();
-			Node newNode = nodeMap.get(oldNode);
-			for(Edge e : oldNode.getConnected()) {
-				connected.add(newEdgeMap.get(e));
+		return _snapshot;
+	}
+	
+	/**
+	 * Returns the compiled transition table of this diagram.  The table is built the first time it
+	 * is asked for and then reused until the diagram's revision changes, so repeated simulations of
+	 * an unchanged diagram do not parse any edge labels.
+	 * @return		The compiled automaton for the current revision.
+	 */
+	public CompiledAutomaton compile() {
+		if (_compiled == null || _compiled.getRevision() != _revision)
+			_compiled = new CompiledAutomaton(graph());
+		return _compiled;
+	}
+	
+	/**
+	 * Returns the compiled NFA of this diagram, cached by revision like compile().
+	 * @return		The compiled NFA for the current revision.
+	 */
+	public CompiledNFA compileNFA() {
+		if (_compiledNFA == null || _compiledNFA.getRevision() != _revision)
+			_compiledNFA = new CompiledNFA(graph());
+		return _compiledNFA;
+	}
+	
+	/**
+	 * Returns the lazily determinized form of compileNFA(), which is kept (with the transitions it
+	 * has worked out so far) until the diagram's revision changes.
+	 * @return		The lazy DFA for the current revision.
+	 */
+	public LazyDFA lazyDFA() {
+		CompiledNFA nfa = compileNFA();
+		if (_lazyDFA == null || _lazyDFA.getNFA() != nfa)
+			_lazyDFA = new LazyDFA(nfa, LazyDFA.DEFAULT_MAX_STATES);
+		return _lazyDFA;
+	}
+	
+	/**
+	 * Finds the unreachable and dead nodes of this diagram, in time linear in its size.  The result
+	 * is cached by revision like compile(), so it can be asked for on every repaint.
+	 * @return		The reachability of every node for the current revision.
+	 */
+	public Reachability analyzeReachability() {
+		if (_reachability == null || _reachability.getRevision() != _revision)
+			_reachability = new Reachability(graph());
+		return _reachability;
+	}
+	
+	/**
+	 * Analyzes this diagram as a plain graph: its components, strong components, a topological
+	 * order and a cycle (see GraphAnalysis).  The analysis is done once per revision and then kept.
+	 * @return		The analysis for the current revision.
+	 */
+	public GraphAnalysis analyzeGraph() {
+		if (_graphAnalysis == null || _graphAnalysis.getRevision() != _revision)
+			_graphAnalysis = new GraphAnalysis(graph());
+		return _graphAnalysis;
+	}
+	
+	/**
+	 * Removes every node that is unreachable or dead (see Reachability.getUseless()), along with the
+	 * edges connected to it.  The language of the FSM does not change, but a complete DFSM loses its
+	 * dead node and with it the transitions into that node.
+	 * @return		The removed nodes and edges, so that the frontend can take them off the canvas.
+	 */
+	public List<DiagramObject> trim() {
+		List<DiagramObject> removed = new ArrayList<DiagramObject>();
+		for (Node n : analyzeReachability().getUseless()) {
+			for (Edge e : new ArrayList<Edge>(n.getConnected())) {
+				e.getStartNode().removeConnected(e);
+				e.getEndNode().removeConnected(e);
+				if (removeEdge(e))
+					removed.add(e);
 			}
-			newNode.setConnected(connected);
+			removeNode(n);
+			removed.add(n);
 		}
-		for (Edge newEdge : cloned_edges) {
-			newEdge.setStartNode(nodeMap.get(edgeMap.get(newEdge).getStartNode()));
-			newEdge.setEndNode(nodeMap.get(edgeMap.get(newEdge).getEndNode()));
-		}
-		
-		cloned._edges = cloned_edges;
-		cloned._nodes = cloned_nodes;
-		return cloned;
+		return removed;
+	}
+	
+	/**
+	 * Returns whether this diagram can be simulated as an NFA: it has at least one start node and
+	 * every edge is labeled and singly-directed.  This takes constant time.
+	 * @return		True if the diagram can be simulated nondeterministically.
+	 */
+	public boolean isValidNFA() {
+		return _validator.isValidNFA();
+	}
+	
+	/**
+	 * Returns whether this diagram is currently a valid DFSM.  The validation state is kept up to
+	 * date as the diagram is edited, so this takes constant time.
+	 * @return		True if the diagram can be simulated deterministically.
+	 */
+	public boolean isValidDFSM() {
+		return _validator.isValid();
+	}
+	
+	/**
+	 * Called by a node of this diagram (and by addNode/removeNode) whenever something about it
+	 * changes.  Bumps the revision so that cached data is rebuilt, and updates the validation state.
+	 * @param n		The node that changed.
+	 */
+	void nodeChanged(Node n) {
+		_revision ++;
+		if (_validator != null)
+			_validator.nodeChanged(n);
+	}
+	
+	/**
+	 * Called by an edge of this diagram, or a node it is connected to, (and by addEdge/removeEdge)
+	 * whenever something about the edge changes.  Bumps the revision so that cached data is rebuilt,
+	 * and updates the validation state.
+	 * @param e		The edge that changed.
+	 */
+	void edgeChanged(Edge e) {
+		_revision ++;
+		if (_validator != null)
+			_validator.edgeChanged(e);
 	}
 	
 	/**
@@ -119,209 +404,450 @@ public class Diagram implements Cloneable {
 	 * @throws InvalidDFSMException		If the FSM is invalid.
 	 */
 	public List<DiagramObject> deterministicSimulation(String input) throws InvalidDFSMException {
-		//Temporary helper variables used throughout the method.
-		//tempNode is the start node we base the simulation on. tempDest is used in the simulation
-		//loop where we add objects.  Message is the error message to return.
-		String tempInput;
-		Node tempNode = null;
-		Node tempDest = null;
-		//Edge tempEdgeTaken = null;
-		String message = "";
-		
-		/*	simulation is the list of objects to return in simulation.
-		*	start_nodes contains the set of start nodes in the FSM
-		*	edge_labels contains in the input alphabet (it is the union of all the edge
-		*	labels seen in the FSM).
-		*	temp_edge_labels is used when we go through each node to make sure that
-		*	each node has all the characters in the input alphabet.
-		*	already_seen is used to keep track of which error messages we have already
-		*	printed out, so that we don't print out duplicate error messages for anything.
-		*/
+		//Check the FSM itself and the input string; if we have found at least one error, then throw
+		//the exception.  Otherwise continue.
+		checkNotEmpty();
+		DFSMDiagnostics diagnostics = diagnose(input);
+		if (!diagnostics.isValid())
+			throw new InvalidDFSMException(diagnostics);
+
+		//Step through simulation, starting from the start node, progressively adding objects to the
+		//list to return.  The FSM is valid at this point, so there is exactly one start node and every
+		//character has exactly one edge to follow in the compiled table.
 		LinkedList<DiagramObject> simulation = new LinkedList<DiagramObject>();
-		Set<Node> start_nodes = Collections.synchronizedSet(new HashSet<Node>());
-		Set<String> edge_labels = Collections.synchronizedSet(new HashSet<String>());
-		Set<String> temp_edge_labels = Collections.synchronizedSet(new HashSet<String>());
-		Set<String> already_seen = Collections.synchronizedSet(new HashSet<String>());
-		
-		//If the FSM is empty.
-		if (_nodes.size() == 0)
-			throw new InvalidDFSMException("There are no nodes in the FSM.\n");
-		
-		//Set tempNode to be a start node that doesn't have an empty label
-		for (Node n : _nodes) {
-			if (n.isStart()) {
-				start_nodes.add(n);
-				if (tempNode == null || (tempNode != null && tempNode.getTextField().getText().equals("")))
-					tempNode = n;
-			}
+		CompiledAutomaton automaton = compile();
+		int state = automaton.getStart();
+		simulation.add(automaton.getNode(state));
+		for (int i = 0; i < input.length(); i ++) {
+			state = automaton.next(state, input.charAt(i));
+			simulation.add(automaton.getNode(state));
 		}
+		return simulation;
+	}
+	
+	/**
+	 * Simulates the FSM on a stream of characters without keeping the input or the trace in memory.
+	 * The FSM is checked first exactly as in deterministicSimulation, then the input is read in
+	 * blocks and stepped through the compiled transition table.  If a character is not in the input
+	 * alphabet the simulation stops there and the input is rejected.
+	 * @param input						The input characters.  It is read to the end (or to the
+	 * 									first character that is not in the alphabet) but not closed.
+	 * @param listener					Told about every node visited, or null for no trace.
+	 * @return							The outcome of the simulation.
+	 * @throws InvalidDFSMException		If the FSM is invalid.
+	 * @throws IOException				If the input cannot be read.
+	 */
+	public SimulationResult simulate(Reader input, SimulationListener listener) throws InvalidDFSMException, IOException {
+		CompiledAutomaton automaton = checkedAutomaton();
+		int state = automaton.getStart();
+		if (listener != null)
+			listener.visited(0, automaton.getNode(state));
 		
-		//If no start node doesn't have an empty label, then just pick any start node.
-		if (tempNode == null) {
-			for (Node n : _nodes) {
-				if (tempNode == null && !n.getTextField().getText().equals("")) {
-					tempNode = n;
-					break;
-				}
+		char[] buffer = new char[STREAM_BUFFER_SIZE];
+		long position = 0;
+		int read;
+		while ((read = input.read(buffer)) != -1) {
+			for (int i = 0; i < read; i ++) {
+				int next = automaton.next(state, buffer[i]);
+				if (next == CompiledAutomaton.NO_STATE)
+					return new SimulationResult(automaton.getNode(state), false, position, position);
+				state = next;
+				position ++;
+				if (listener != null)
+					listener.visited(position, automaton.getNode(state));
 			}
 		}
+		return new SimulationResult(automaton.getNode(state), automaton.isAccept(state), position, -1);
+	}
+	
+	/**
+	 * Simulates the FSM on a stream of UTF-8 encoded bytes.  See simulate(Reader, SimulationListener).
+	 * @param input						The input bytes; read but not closed.
+	 * @param listener					Told about every node visited, or null for no trace.
+	 * @return							The outcome of the simulation.
+	 * @throws InvalidDFSMException		If the FSM is invalid.
+	 * @throws IOException				If the input cannot be read.
+	 */
+	public SimulationResult simulate(InputStream input, SimulationListener listener) throws InvalidDFSMException, IOException {
+		return simulate(new InputStreamReader(input, Charset.forName("UTF-8")), listener);
+	}
+	
+	/**
+	 * Simulates the FSM on a sequence of characters.  See simulate(Reader, SimulationListener).
+	 * @param input						The input characters.
+	 * @param listener					Told about every node visited, or null for no trace.
+	 * @return							The outcome of the simulation.
+	 * @throws InvalidDFSMException		If the FSM is invalid.
+	 */
+	public SimulationResult simulate(CharSequence input, SimulationListener listener) throws InvalidDFSMException {
+		CompiledAutomaton automaton = checkedAutomaton();
+		int state = automaton.getStart();
+		if (listener != null)
+			listener.visited(0, automaton.getNode(state));
 		
-		//If there are no or multiple start nodes, alert the user.
-		if (start_nodes.size() < 1)
-			message += "There is no start node.\n";
-		else if (start_nodes.size() > 1)
-			message += "There are multiple start nodes.\n";
-		
-		//Count the number of edges without a label, and alert the user.
-		int no_label_count = 0;
-		for (Edge e : _edges) {
-			if (e.getTextField().getText().equals(""))
-				no_label_count ++;
-		}
-		if (no_label_count > 0)
-			message += "There are " + no_label_count + " edges without a label.\n";
-		
-		//Make sure each edge is singly directed.
-		for (Edge e : _edges) {
-			if (e.getDirection() != EdgeDirection.SINGLE)
-				message += !e.getTextField().getText().equals("") ? "Edge " + e.getNodeString() + " is not a singly-directed edge.\n"
-														: "There is a non-singly directed edge.\n";
-		}
-		
-		//Sets up the input alphabet (fills the edge_labels set).
-		//Goes through each edge of each node, and adds that node's labels to the input
-		//alphabet.  If any node has multiple edges (which we determine by checking to see
-		//if they've already been added to temp_edge_labels), then we print an error to the
-		//user.  Already_seen makes sure we don't print multiple messages to the user.
-		for (Node n : _nodes) {
-			already_seen = Collections.synchronizedSet(new HashSet<String>());
-			temp_edge_labels = Collections.synchronizedSet(new HashSet<String>());
-			for (Edge e : n.getConnected()) {
-				if (e.getDirection() == EdgeDirection.SINGLE && e.getStartNode() == n && !e.getTextField().getText().equals("")) {
-					//Split on commas so that the user can input multiple characters per edge
-					String[] splitcomma = e.getTextField().getText().split(",");
-					String[] labels = new String[splitcomma.length];
-					for (int i = 0; i < splitcomma.length; i ++) {
-						String s = splitcomma[i];
-						String[] tempArray = s.split("(\\s*)");
-						for (String inputchar : tempArray)
-							labels[i] = inputchar;
-					}
-					for (String s : labels) {
-						//If we haven't already seen this character from this node, then add it to the edge_labels (possibly already
-						//there), and to temp_edge_labels, so we know if we see a duplicate.
-						if (!temp_edge_labels.contains(s)) {
-							edge_labels.add(s);
-							temp_edge_labels.add(s);
-						}
-						//If we see a duplicate from a given node, check to make sure we haven't already alerted the user of this same error.
-						else if (!already_seen.contains(s)) {
-							message += "Node " + n.getTextField().getText() + " has multiple edges labeled " + s + ".\n";
-							already_seen.add(s);
-						}
-					}
-				}
-			}
+		int length = input.length();
+		for (int i = 0; i < length; i ++) {
+			int next = automaton.next(state, input.charAt(i));
+			if (next == CompiledAutomaton.NO_STATE)
+				return new SimulationResult(automaton.getNode(state), false, i, i);
+			state = next;
+			if (listener != null)
+				listener.visited(i + 1, automaton.getNode(state));
 		}
-		
-		//For each node, make sure that it has all the labels from the input alphabet.
-		//Fill up temp_edge_labels with each of the labels coming out of a node, then check
-		//to make sure that each string in temp_edge_labels is in the input alphabet, and each
-		//character of the input alphabet is in temp_edge_labels (these sets should be equal).
-		for (Node n : _nodes) {
-			already_seen = Collections.synchronizedSet(new HashSet<String>());
-			temp_edge_labels = Collections.synchronizedSet(new HashSet<String>());
-			for (Edge e : n.getConnected()) {
-				if (e.getDirection() == EdgeDirection.SINGLE && e.getStartNode() == n && !e.getTextField().getText().equals("")) {
-					//Split on commas so that the user can input multiple characters per edge
-					String[] splitcomma = e.getTextField().getText().split(",");
-					String[] labels = new String[splitcomma.length];
-					for (int i = 0; i < splitcomma.length; i ++) {
-						String s = splitcomma[i];
-						String[] tempArray = s.split("(\\s*)");
-						for (String inputchar : tempArray)
-							labels[i] = inputchar;
-					}
-					for (String s : labels) {
-						//Add all characters coming out a node to the temp_edge_labels set.
-						if (!temp_edge_labels.contains(s))
-							temp_edge_labels.add(s);
-					}
-				}
-			}
-			
-			//Make sure that all the strings in the input alphabet are in the temp_edge_labels, meaning
-			//that this node has all characters in the input alphabet.
-			already_seen = Collections.synchronizedSet(new HashSet<String>());
-			for (String s : edge_labels) {
-				if(!temp_edge_labels.remove(s)) {
-					if (!already_seen.contains(s)) {
-						if (!n.getTextField().getText().equals(""))
-							message += "Node " + n.getTextField().getText() + " doesn't have an edge labeled " + s + ".\n";
-						else
-							message += "There is a node without label " + s + ".\n";
-						already_seen.add(s);
-					}
-				}
-			}
-		}
-		
+		return new SimulationResult(automaton.getNode(state), automaton.isAccept(state), length, -1);
+	}
+	
+	/**
+	 * Simulates the FSM on one long sequence of characters using all processors.  The input is cut
+	 * into chunks that are simulated from every state in parallel and then combined in order; the
+	 * outcome is the same as simulate(CharSequence, null).
+	 * @param input						The input characters.
+	 * @return							The outcome of the simulation.
+	 * @throws InvalidDFSMException		If the FSM is invalid.
+	 */
+	public SimulationResult simulateParallel(CharSequence input) throws InvalidDFSMException {
+		return new ChunkedSimulator(checkedAutomaton()).run(input);
+	}
+	
+	/**
+	 * Simulates the FSM on the characters of a reader using all processors.  Only a few blocks of
+	 * the input per processor are in memory at once.  See simulateParallel(CharSequence).
+	 * @param input						The input characters; read to the end but not closed.
+	 * @return							The outcome of the simulation.
+	 * @throws InvalidDFSMException		If the FSM is invalid.
+	 * @throws IOException				If the input cannot be read.
+	 */
+	public SimulationResult simulateParallel(Reader input) throws InvalidDFSMException, IOException {
+		return new ChunkedSimulator(checkedAutomaton()).run(input);
+	}
+	
+	/**
+	 * Simulates the FSM on many inputs at once.  The FSM is checked and compiled once, then the
+	 * inputs are spread across all processors.  Characters that are not in the input alphabet do not
+	 * make this throw; the input is simply rejected at that position.
+	 * @param inputs					The input strings.
+	 * @return							Which inputs were accepted, and where the others were rejected.
+	 * @throws InvalidDFSMException		If the FSM is invalid.
+	 */
+	public BatchResult acceptAll(List<? extends CharSequence> inputs) throws InvalidDFSMException {
+		return acceptAll(inputs, BatchStrategy.SEQUENTIAL);
+	}
+	
+	/**
+	 * Simulates the FSM on many inputs at once, as acceptAll(inputs) does, walking the inputs of each
+	 * processor's share with the given strategy.  BatchStrategy.INTERLEAVED is faster on FSMs whose
+	 * transition table is too large for the cache; the results are the same either way.
+	 * @param inputs					The input strings.
+	 * @param strategy					How each share of the inputs is walked.
+	 * @return							Which inputs were accepted, and where the others were rejected.
+	 * @throws InvalidDFSMException		If the FSM is invalid.
+	 */
+	public BatchResult acceptAll(List<? extends CharSequence> inputs, BatchStrategy strategy) throws InvalidDFSMException {
+		return new BatchAcceptor(checkedAutomaton(), strategy).run(inputs);
+	}
+	
+	/**
+	 * Finds everything that keeps this diagram from being a valid DFSM.  The validation state is kept
+	 * up to date as the diagram is edited, so this only looks at the errors it reports.
+	 * @return		The diagnostics for the current revision.
+	 */
+	public DFSMDiagnostics diagnose() {
+		return diagnose("", DFSMDiagnostics.DEFAULT_LIMIT);
+	}
+	
+	/**
+	 * Finds everything that keeps this diagram from being simulated on the given input: the errors
+	 * of diagnose(), followed by every input character that is not in the input alphabet.
+	 * @param input		The input string.
+	 * @return			The diagnostics for the current revision and the input.
+	 */
+	public DFSMDiagnostics diagnose(CharSequence input) {
+		return diagnose(input, DFSMDiagnostics.DEFAULT_LIMIT);
+	}
+	
+	/**
+	 * See diagnose(CharSequence).
+	 * @param input		The input string.
+	 * @param limit		The number of errors to find up front; the rest are found as the diagnostics
+	 * 					are iterated.
+	 * @return			The diagnostics for the current revision and the input.
+	 */
+	public DFSMDiagnostics diagnose(CharSequence input, int limit) {
 		//For each character in the input string, make sure that the character is in the input alphabet.
-		//If it's not and we haven't already alerted the user, then add to the error message.
-		already_seen = Collections.synchronizedSet(new HashSet<String>());
+		Set<String> edge_labels = _validator.getAlphabet();
+		Set<Character> already_seen = new HashSet<Character>();
+		List<String> unknown = new ArrayList<String>();
 		for (int i = 0; i < input.length(); i ++) {
-			if (!already_seen.contains(input.substring(i, i+1)) && !edge_labels.contains(input.substring(i, i+1))) {
-				message += "Input character \'" + input.substring(i, i+1) + "\' is not in the input alphabet.\n";
-				already_seen.add(input.substring(i, i+1));
-			}
+			char c = input.charAt(i);
+			if (already_seen.add(c) && !edge_labels.contains(String.valueOf(c)))
+				unknown.add(String.valueOf(c));
 		}
-		
-		//If we have found at least one error, then throw the exception.  Otherwise continue.
-		if (!message.equals(""))
-			throw new InvalidDFSMException(message);
-		if (input.length() == 0) {
-			simulation.add(tempNode);
-			return simulation;
+		return new DFSMDiagnostics(this, _validator, unknown, limit, false);
+	}
+	
+	/**
+	 * Checks the FSM and returns its compiled table.
+	 * @return							The compiled automaton of this (valid) FSM.
+	 * @throws InvalidDFSMException		If the FSM is invalid.
+	 */
+	private CompiledAutomaton checkedAutomaton() throws InvalidDFSMException {
+		if (!isValidDFSM()) {
+			checkNotEmpty();
+			throw new InvalidDFSMException(diagnose());
 		}
-
-		//Step through simulation, starting from the start node, progressively adding objects to the
-		//set to return.
-		simulation.add(tempNode);
+		return compile();
+	}
+	
+	/**
+	 * @throws InvalidDFSMException		If there are no nodes at all.
+	 */
+	private void checkNotEmpty() throws InvalidDFSMException {
+		//If the FSM is empty.
+		if (_nodes.size() == 0)
+			throw new InvalidDFSMException("There are no nodes in the FSM.\n");
+	}
+	
+	/**
+	 * The nondeterministicSimulation method returns the simulation of the FSM as an NFA: duplicate
+	 * labels, missing transitions, several start nodes and epsilon transitions are all allowed.  It
+	 * returns, for the start and then for each input character, the set of nodes the FSM can be in.
+	 * Once the set is empty it stays empty, and the input is rejected.
+	 * @param input						The input string.
+	 * @return							The sets of nodes, in order; input.length() + 1 of them.
+	 * @throws InvalidDFSMException		If the FSM has no start node, or an unlabeled or
+	 * 									non-singly-directed edge.
+	 */
+	public List<Set<DiagramObject>> nondeterministicSimulation(String input) throws InvalidDFSMException {
+		CompiledNFA nfa = checkedNFA();
+		LinkedList<Set<DiagramObject>> simulation = new LinkedList<Set<DiagramObject>>();
+		long[] current = nfa.getStart();
+		long[] next = nfa.newStateSet();
+		simulation.add(new LinkedHashSet<DiagramObject>(nfa.getNodes(current)));
 		for (int i = 0; i < input.length(); i ++) {
-			tempInput = input.substring(i, i+1);
-			for (Edge e : tempNode.getConnected()){
-				String[] splitcomma = e.getTextField().getText().split(",");
-				String[] labels = new String[splitcomma.length];
-				for (int j = 0; j < splitcomma.length; j ++) {
-					String s = splitcomma[j];
-					String[] tempArray = s.split("(\\s*)");
-					for (String inputchar : tempArray)
-						labels[j] = inputchar;
-				}
-				for (String s : labels) {
-					if (e.getStartNode() == tempNode && s.equals(tempInput)) {
-						tempDest = e.getEndNode();
-						//tempEdgeTaken = e;
-						break;
-					}
-				}
-			}
-			//simulation.add(tempEdgeTaken);
-			simulation.add(tempDest);
-			tempNode = tempDest;
+			nfa.step(current, nfa.symbolOf(input.charAt(i)), next);
+			long[] temp = current;
+			current = next;
+			next = temp;
+			simulation.add(new LinkedHashSet<DiagramObject>(nfa.getNodes(current)));
 		}
 		return simulation;
 	}
 	
-//	public List<Set<DiagramObject>> nondeterministicSimulation(String input) throws InvalidDFSMException {
-//		String tempInput;
-//		Node tempDest = null;
-//		Set<DiagramObject> one_step = new HashSet<DiagramObject>();
-//		LinkedList<Set<DiagramObject>> simulation = new LinkedList<Set<DiagramObject>>();
-//		
-//		
-//		return null;
-//	}
+	/**
+	 * Runs the FSM as an NFA on the given characters without keeping a trace.  The subsets of nodes
+	 * met are remembered (see lazyDFA()), so repeated runs cost about as much as on a DFSM.
+	 * @param input						The input characters.
+	 * @return							True if the input is accepted.
+	 * @throws InvalidDFSMException		If the FSM cannot be simulated as an NFA.
+	 */
+	public boolean nondeterministicAccepts(CharSequence input) throws InvalidDFSMException {
+		checkedNFA();
+		return lazyDFA().accepts(input);
+	}
+	
+	/**
+	 * Minimizes this DFSM with Hopcroft's algorithm.  Nodes the start node cannot reach are dropped
+	 * and equivalent nodes are merged; see Minimization for the new diagram and how its nodes map
+	 * back to these.
+	 * @return							The minimized form of this DFSM.
+	 * @throws InvalidDFSMException		If the FSM is invalid.
+	 */
+	public Minimization minimize() throws InvalidDFSMException {
+		return new Minimizer(checkedAutomaton()).run();
+	}
+	
+	/**
+	 * Builds the DFSM of this FSM by subset construction, as a new diagram with its own layout.
+	 * Each node of the new diagram is labeled with the set of nodes of this one it stands for.
+	 * @return							The new diagram.
+	 * @throws InvalidDFSMException		If the FSM cannot be simulated as an NFA, or the DFSM would
+	 * 									be too large to draw.
+	 */
+	public Diagram determinize() throws InvalidDFSMException {
+		Diagram dfa = LazyDFA.determinize(checkedNFA(), MAX_DETERMINIZED_NODES);
+		if (dfa == null)
+			throw new InvalidDFSMException("The DFSM would have more than " + MAX_DETERMINIZED_NODES + " nodes.\n");
+		return dfa;
+	}
+	
+	/**
+	 * Converts this DFSM to a regular expression by state elimination.  The expression is a DAG
+	 * that is small even when written out it would be huge; check its length() before writing it.
+	 * @return							The expression, or null if no input is accepted.
+	 * @throws InvalidDFSMException		If the FSM is invalid.
+	 */
+	public RegularExpression toRegex() throws InvalidDFSMException {
+		return new StateElimination(new StringCounter(checkedAutomaton())).run();
+	}
+	
+	/**
+	 * Builds the FSM of a regular expression, as a new diagram with its own layout.  The syntax is
+	 * that of RegexMatcher.  The FSM is either the Thompson NFA of the expression, with epsilon
+	 * transitions, or the minimal DFSM, built from the NFA by subset construction and then
+	 * minimized.
+	 * @param regex						The expression.
+	 * @param deterministic				True for the minimal DFSM, false for the NFA.
+	 * @return							The new diagram.
+	 * @throws java.util.regex.PatternSyntaxException
+	 * 									If the expression is not well formed.
+	 * @throws InvalidDFSMException		If a character of the expression cannot label an edge, or
+	 * 									the DFSM would be too large to draw.
+	 */
+	public static Diagram fromRegex(String regex, boolean deterministic) throws InvalidDFSMException {
+		RegexMatcher matcher = RegexMatcher.compile(regex);
+		SymbolTable symbols = matcher.getSymbols();
+		for (int i = 0; i < symbols.size(); i ++) {
+			char c = symbols.getSymbol(i);
+			if (c == ',' || Character.isWhitespace(c) || Edge.isEpsilon(String.valueOf(c)))
+				throw new InvalidDFSMException("The character '" + c + "' cannot label an edge.\n");
+		}
+		if (!deterministic)
+			return matcher.toDiagram();
+		Diagram dfa = matcher.determinize(MAX_DETERMINIZED_NODES);
+		if (dfa == null)
+			throw new InvalidDFSMException("The DFSM would have more than " + MAX_DETERMINIZED_NODES + " nodes.\n");
+		return dfa.minimize().getDiagram();
+	}
+	
+	/**
+	 * Finds shortest accepted and rejected inputs of this DFSM, and a shortest input to each node.
+	 * The search is done once per revision and then kept, like compile().
+	 * @return							The witnesses for the current revision.
+	 * @throws InvalidDFSMException		If the FSM is invalid.
+	 */
+	public Witnesses findWitnesses() throws InvalidDFSMException {
+		CompiledAutomaton automaton = checkedAutomaton();
+		if (_witnesses == null || _witnesses.getRevision() != automaton.getRevision())
+			_witnesses = new Witnesses(automaton);
+		return _witnesses;
+	}
+	
+	/**
+	 * Counts the inputs of a given length that this DFSM accepts, modulo a number.  Lengths in the
+	 * millions and beyond are fine; see StringCounter.
+	 * @param length					The length of the inputs.
+	 * @param modulus					The modulus, from 1 to 2^31.
+	 * @return							The number of accepted inputs, modulo the modulus.
+	 * @throws InvalidDFSMException		If the FSM is invalid.
+	 */
+	public long countAccepted(long length, long modulus) throws InvalidDFSMException {
+		if (length < 0 || modulus < 1 || modulus > StringCounter.MAX_MODULUS)
+			throw new IllegalArgumentException("length must not be negative and modulus must be from 1 to 2^31");
+		return new StringCounter(checkedAutomaton()).count(length, modulus);
+	}
+	
+	/**
+	 * Counts the inputs of a given length that this DFSM accepts, exactly.  The count can have as
+	 * many digits as the length, so this is slower than countAccepted(length, modulus) for long
+	 * inputs.
+	 * @param length					The length of the inputs.
+	 * @return							The number of accepted inputs.
+	 * @throws InvalidDFSMException		If the FSM is invalid.
+	 */
+	public BigInteger countAccepted(int length) throws InvalidDFSMException {
+		if (length < 0)
+			throw new IllegalArgumentException("length must not be negative");
+		return new StringCounter(checkedAutomaton()).count(length);
+	}
+	
+	/**
+	 * Builds a generator that draws accepted inputs of a given length uniformly at random.
+	 * @param length					The length of the inputs.
+	 * @return							The generator.
+	 * @throws InvalidDFSMException		If the FSM is invalid.
+	 */
+	public RandomStringGenerator randomAccepted(int length) throws InvalidDFSMException {
+		if (length < 0)
+			throw new IllegalArgumentException("length must not be negative");
+		return new RandomStringGenerator(new StringCounter(checkedAutomaton()), length);
+	}
+	
+	/**
+	 * Checks whether this DFSM and another accept the same language, without building their product
+	 * (see EquivalenceChecker).
+	 * @param other						The other DFSM.
+	 * @return							A shortest input that one of them accepts and the other
+	 * 									rejects, or null if they accept the same language.
+	 * @throws InvalidDFSMException		If either FSM is invalid.
+	 */
+	public String distinguish(Diagram other) throws InvalidDFSMException {
+		return new EquivalenceChecker(checkedAutomaton(), other.checkedAutomaton()).distinguish();
+	}
+	
+	/**
+	 * @param other						Another DFSM.
+	 * @return							True if it accepts the same language as this one.
+	 * @throws InvalidDFSMException		If either FSM is invalid.
+	 */
+	public boolean isEquivalent(Diagram other) throws InvalidDFSMException {
+		return distinguish(other) == null;
+	}
+	
+	/**
+	 * Builds the product of this DFSM and another, as a new diagram with its own layout.  Only the
+	 * pairs of nodes reachable from the pair of start nodes are built (see ProductConstruction), and
+	 * no drawing panel is needed, so this can be run headless.  Each node is labeled with the pair
+	 * of nodes it stands for.
+	 * @param other						The other DFSM.
+	 * @param operation					Which language to build.
+	 * @return							The new diagram.
+	 * @throws InvalidDFSMException		If either FSM is invalid, or the product would be too large
+	 * 									to draw.
+	 */
+	public Diagram product(Diagram other, ProductOperation operation) throws InvalidDFSMException {
+		Diagram product = new ProductConstruction(checkedAutomaton(), other.checkedAutomaton(), operation).build(MAX_PRODUCT_NODES);
+		if (product == null)
+			throw new InvalidDFSMException("The product would have more than " + MAX_PRODUCT_NODES + " nodes.\n");
+		return product;
+	}
+	
+	/**
+	 * @param other						Another DFSM.
+	 * @return							A DFSM accepting the strings both accept.
+	 * @throws InvalidDFSMException		See product().
+	 */
+	public Diagram intersection(Diagram other) throws InvalidDFSMException {
+		return product(other, ProductOperation.INTERSECTION);
+	}
+	
+	/**
+	 * @param other						Another DFSM.
+	 * @return							A DFSM accepting the strings either accepts.
+	 * @throws InvalidDFSMException		See product().
+	 */
+	public Diagram union(Diagram other) throws InvalidDFSMException {
+		return product(other, ProductOperation.UNION);
+	}
+	
+	/**
+	 * @param other						Another DFSM.
+	 * @return							A DFSM accepting the strings this one accepts and the other
+	 * 									does not.
+	 * @throws InvalidDFSMException		See product().
+	 */
+	public Diagram difference(Diagram other) throws InvalidDFSMException {
+		return product(other, ProductOperation.DIFFERENCE);
+	}
+	
+	/**
+	 * Checks that the FSM can be simulated as an NFA and returns its compiled form.
+	 * @return							The compiled NFA.
+	 * @throws InvalidDFSMException		If the FSM cannot be simulated as an NFA.
+	 */
+	private CompiledNFA checkedNFA() throws InvalidDFSMException {
+		if (!isValidNFA()) {
+			checkNotEmpty();
+			throw new InvalidDFSMException(nfaDiagnostics());
+		}
+		return compileNFA();
+	}
+	
+	/**
+	 * @return		Everything that keeps this diagram from being simulated as an NFA.
+	 */
+	private DFSMDiagnostics nfaDiagnostics() {
+		return new DFSMDiagnostics(this, _validator, Collections.<String>emptyList(), DFSMDiagnostics.DEFAULT_LIMIT, true);
+	}
 
 	public void setRevision(int revision) {
 		_revision = revision;
@@ -0,0 +1,166 @@
+package backend;
+
+import java.util.*;
+
+/**
+ * Builds a new Diagram from states and transitions worked out by some algorithm (determinizing,
+ * minimizing, ...), and lays it out so that it can be shown in a tab.  All transitions between
+ * the same two states become one edge, labeled with the symbols comma separated.
+ *
+ * The nodes and edges are made with the constructors used when opening a file, so the diagram
+ * is headless until a DrawingPanel attaches views to it.
+ *
+ * The layout puts the states in columns by their distance from a start state, in the order they
+ * were added, so states that are close in the automaton are close on the canvas.
+ */
+class DiagramBuilder {
+
+	/** Distance between the centers of neighbouring nodes. */
+	static final double SPACING = 150;
+
+	/** Distance of the first row and column from the corner of the canvas. */
+	static final double MARGIN = 80;
+
+	/** Arc chord height of an edge that shares its two nodes with an edge going the other way. */
+	private static final double CURVED_HEIGHT = 150;
+
+	/** Arc chord height that draws an edge as (almost) a straight line. */
+	private static final double STRAIGHT_HEIGHT = 100000.0;
+
+	private final List<String> _labels = new ArrayList<String>();
+	private final List<Boolean> _starts = new ArrayList<Boolean>();
+	private final List<Boolean> _accepts = new ArrayList<Boolean>();
+
+	/** The nodes of the built diagram, by state number. */
+	private Node[] _nodes;
+
+	/** The symbols of every edge, by (from, to). */
+	private final LinkedHashMap<Long, StringBuilder> _transitions = new LinkedHashMap<Long, StringBuilder>();
+
+	/**
+	 * Adds a state.
+	 * @param label		The label of the node.
+	 * @param start		Whether it is a start state.
+	 * @param accept	Whether it is an accept state.
+	 * @return			The number of the state.
+	 */
+	int addState(String label, boolean start, boolean accept) {
+		_labels.add(label);
+		_starts.add(start);
+		_accepts.add(accept);
+		return _labels.size() - 1;
+	}
+
+	/**
+	 * @return		The number of states added so far.
+	 */
+	int getStateCount() {
+		return _labels.size();
+	}
+
+	/**
+	 * @param state		The number of a state.
+	 * @return			Its node in the diagram made by the last call to build().
+	 */
+	Node getNode(int state) {
+		return _nodes[state];
+	}
+
+	/**
+	 * Adds a transition.
+	 * @param from		The number of the state it leaves.
+	 * @param to		The number of the state it enters.
+	 * @param symbol	The label piece of the transition (a symbol, or Edge.EPSILON).
+	 */
+	void addTransition(int from, int to, String symbol) {
+		Long key = ((long) from << 32) | to;
+		StringBuilder label = _transitions.get(key);
+		if (label == null)
+			_transitions.put(key, new StringBuilder(symbol));
+		else
+			label.append(',').append(symbol);
+	}
+
+	/**
+	 * Gives every state reached from the queue a layer one more than the state it is reached from.
+	 * @return		The largest layer given out, or maxLayer if that is larger.
+	 */
+	private static int spread(List<List<Integer>> adjacent, int[] layer, ArrayDeque<Integer> queue, int maxLayer) {
+		while (!queue.isEmpty()) {
+			int state = queue.poll();
+			maxLayer = Math.max(maxLayer, layer[state]);
+			for (int next : adjacent.get(state)) {
+				if (layer[next] < 0) {
+					layer[next] = layer[state] + 1;
+					queue.add(next);
+				}
+			}
+		}
+		return maxLayer;
+	}
+
+	/**
+	 * Builds and lays out the diagram.
+	 * @return		The new diagram.
+	 */
+	Diagram build() {
+		int n = _labels.size();
+
+		//Find each state's distance from a start state, over the transitions in either direction
+		//so that states no start reaches still end up near their neighbours.
+		List<List<Integer>> adjacent = new ArrayList<List<Integer>>(n);
+		for (int i = 0; i < n; i ++)
+			adjacent.add(new ArrayList<Integer>());
+		for (Long key : _transitions.keySet()) {
+			int from = (int) (key >>> 32);
+			int to = (int) (long) key;
+			adjacent.get(from).add(to);
+			adjacent.get(to).add(from);
+		}
+		int[] layer = new int[n];
+		Arrays.fill(layer, -1);
+		ArrayDeque<Integer> queue = new ArrayDeque<Integer>();
+		for (int i = 0; i < n; i ++) {
+			if (_starts.get(i)) {
+				layer[i] = 0;
+				queue.add(i);
+			}
+		}
+		boolean placed = !queue.isEmpty();
+		int maxLayer = spread(adjacent, layer, queue, 0);
+		for (int i = 0; i < n; i ++) {
+			//Start each group of states that nothing so far reaches in a new column.
+			if (layer[i] < 0) {
+				layer[i] = placed ? maxLayer + 1 : 0;
+				placed = true;
+				queue.add(i);
+				maxLayer = spread(adjacent, layer, queue, layer[i]);
+			}
+		}
+
+		int[] rows = new int[maxLayer + 1];
+		Diagram diagram = new Diagram();
+		Node[] nodes = new Node[n];
+		_nodes = nodes;
+		for (int i = 0; i < n; i ++) {
+			double x = MARGIN + layer[i] * SPACING;
+			double y = MARGIN + rows[layer[i]] ++ * SPACING;
+			nodes[i] = diagram.createNode(x, y, Node.DEFAULT_RADIUS, _starts.get(i), _accepts.get(i), _labels.get(i));
+		}
+		for (Map.Entry<Long, StringBuilder> entry : _transitions.entrySet()) {
+			int from = (int) (entry.getKey() >>> 32);
+			int to = (int) (long) entry.getKey();
+			String label = entry.getValue().toString();
+			Edge edge;
+			if (from == to)
+				edge = diagram.createEdge(nodes[from], nodes[to], EdgeDirection.SINGLE, label, Math.PI / 4);
+			else {
+				boolean reverse = _transitions.containsKey(((long) to << 32) | from);
+				edge = diagram.createEdge(nodes[from], nodes[to], EdgeDirection.SINGLE, label, reverse ? CURVED_HEIGHT : STRAIGHT_HEIGHT, 0);
+			}
+			nodes[from].addConnected(edge);
+			nodes[to].addConnected(edge);
+		}
+		return diagram;
+	}
+}
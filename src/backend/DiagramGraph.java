@@ -0,0 +1,303 @@
+package backend;
+
+import java.util.*;
+
+/**
+ * An immutable snapshot of the structure of a Diagram in compressed sparse row form.  Nodes are
+ * numbered 0..n-1 and edges 0..m-1, and everything an analysis needs about them is read once, into
+ * arrays, when the snapshot is built: the two ends of each edge, its direction, label text and
+ * label symbols (see LabelSymbols), and the text of each node and whether it is a start or accept
+ * node.
+ *
+ * The edges that start at node v are outEdges[outStart[v]..outStart[v+1]), and the edges that end
+ * at it are inEdges[inStart[v]..inStart[v+1]); targets and sources hold the node at the other end
+ * in the same places.  Unlike Node.getConnected(), the two directions are kept apart, so a walk
+ * over the successors of a node touches only the arcs it follows and allocates nothing.  An edge
+ * whose ends are not both in the diagram is numbered but has no arcs, and its ends are NO_NODE.
+ *
+ * Diagram.graph() builds a snapshot once per revision and shares it between the compiled forms and
+ * the analyses; a DiagramSnapshot builds one from its frozen store, off the event thread.  Once built
+ * it is never written, so it may be read from any thread.
+ */
+public class DiagramGraph {
+
+	/** The end of an edge that is not a node of the diagram. */
+	public static final int NO_NODE = -1;
+
+	/** The revision of the diagram this is a snapshot of. */
+	private final int _revision;
+
+	/** The nodes, by number. */
+	final Node[] nodes;
+
+	/** The number of each node. */
+	final HashMap<Node, Integer> index;
+
+	/** The edges, by number. */
+	final Edge[] edges;
+
+	/** The start and end node of each edge, or NO_NODE. */
+	final int[] edgeSource;
+	final int[] edgeTarget;
+
+	/** The direction, label text and label symbols of each edge. */
+	final EdgeDirection[] direction;
+	final String[] label;
+	final LabelSymbols[] symbols;
+
+	/** The text of each node. */
+	final String[] text;
+
+	/** The start and accept nodes. */
+	final boolean[] start;
+	final boolean[] accept;
+
+	final int[] outStart;
+	final int[] outEdges;
+	final int[] targets;
+	final int[] inStart;
+	final int[] inEdges;
+	final int[] sources;
+
+	/**
+	 * Takes a snapshot of the nodes and edges in a store, in time linear in their number.  Only the columns that
+	 * DiagramStore.share() freezes are read, and nothing is written, so the store may be a frozen one being read
+	 * off the event thread.
+	 * @param store			The store of the diagram, or a frozen copy of it.
+	 * @param revision		The revision of the diagram.
+	 */
+	DiagramGraph(DiagramStore store, int revision) {
+		_revision = revision;
+		int n = store.getNodeCount();
+		int m = store.getEdgeCount();
+		nodes = new Node[n];
+		edges = new Edge[m];
+		text = new String[n];
+		index = new HashMap<Node, Integer>(n * 2);
+		start = new boolean[n];
+		accept = new boolean[n];
+		int nextNode = 0;
+		for (int id = 0; id < store.getNodeTop(); id ++) {
+			if (store.nodes[id] == null)
+				continue;
+			int v = nextNode ++;
+			nodes[v] = store.nodes[id];
+			index.put(nodes[v], v);
+			text[v] = store.nodeText[id];
+			start[v] = store.start.get(id);
+			accept[v] = store.accept.get(id);
+		}
+
+		edgeSource = new int[m];
+		edgeTarget = new int[m];
+		direction = new EdgeDirection[m];
+		label = new String[m];
+		symbols = new LabelSymbols[m];
+		outStart = new int[n + 1];
+		inStart = new int[n + 1];
+		int arcs = 0;
+		int nextEdge = 0;
+		for (int id = 0; id < store.getEdgeTop(); id ++) {
+			if (store.edges[id] == null)
+				continue;
+			int e = nextEdge ++;
+			edges[e] = store.edges[id];
+			Integer from = index.get(store.edgeStart[id]);
+			Integer to = index.get(store.edgeEnd[id]);
+			direction[e] = DiagramStore.direction(store.direction[id]);
+			label[e] = store.edgeText[id];
+			symbols[e] = store.edgeSymbols[id] != null ? store.edgeSymbols[id] : LabelSymbols.of(label[e]);
+			if (from == null || to == null) {
+				edgeSource[e] = NO_NODE;
+				edgeTarget[e] = NO_NODE;
+				continue;
+			}
+			edgeSource[e] = from;
+			edgeTarget[e] = to;
+			outStart[from + 1] ++;
+			inStart[to + 1] ++;
+			arcs ++;
+		}
+		for (int v = 0; v < n; v ++) {
+			outStart[v + 1] += outStart[v];
+			inStart[v + 1] += inStart[v];
+		}
+
+		//Sort the edges into both lists by counting, so each list keeps the order of the edges.
+		outEdges = new int[arcs];
+		targets = new int[arcs];
+		inEdges = new int[arcs];
+		sources = new int[arcs];
+		int[] outFill = Arrays.copyOf(outStart, n);
+		int[] inFill = Arrays.copyOf(inStart, n);
+		for (int e = 0; e < m; e ++) {
+			if (edgeSource[e] == NO_NODE)
+				continue;
+			int out = outFill[edgeSource[e]] ++;
+			outEdges[out] = e;
+			targets[out] = edgeTarget[e];
+			int in = inFill[edgeTarget[e]] ++;
+			inEdges[in] = e;
+			sources[in] = edgeSource[e];
+		}
+	}
+
+	/**
+	 * @return		The revision of the diagram this is a snapshot of.
+	 */
+	public int getRevision() {
+		return _revision;
+	}
+
+	/**
+	 * @return		The number of nodes.
+	 */
+	public int getNodeCount() {
+		return nodes.length;
+	}
+
+	/**
+	 * @return		The number of edges.
+	 */
+	public int getEdgeCount() {
+		return edges.length;
+	}
+
+	/**
+	 * @param v		A node number.
+	 * @return		The node.
+	 */
+	public Node getNode(int v) {
+		return nodes[v];
+	}
+
+	/**
+	 * @param n		A node.
+	 * @return		Its number, or NO_NODE if it is not in the snapshot.
+	 */
+	public int indexOf(Node n) {
+		Integer v = index.get(n);
+		return v == null ? NO_NODE : v;
+	}
+
+	/**
+	 * @param e		An edge number.
+	 * @return		The edge.
+	 */
+	public Edge getEdge(int e) {
+		return edges[e];
+	}
+
+	/**
+	 * @param e		An edge number.
+	 * @return		The number of its start node, or NO_NODE.
+	 */
+	public int getSource(int e) {
+		return edgeSource[e];
+	}
+
+	/**
+	 * @param e		An edge number.
+	 * @return		The number of its end node, or NO_NODE.
+	 */
+	public int getTarget(int e) {
+		return edgeTarget[e];
+	}
+
+	/**
+	 * @param e		An edge number.
+	 * @return		Its direction when the snapshot was taken.
+	 */
+	public EdgeDirection getDirection(int e) {
+		return direction[e];
+	}
+
+	/**
+	 * @param e		An edge number.
+	 * @return		Its label text when the snapshot was taken.
+	 */
+	public String getLabel(int e) {
+		return label[e];
+	}
+
+	/**
+	 * @param e		An edge number.
+	 * @return		True if the edge is a transition: singly directed, labeled, and between two nodes
+	 * 				of the diagram.
+	 */
+	public boolean isTransition(int e) {
+		return direction[e] == EdgeDirection.SINGLE && edgeSource[e] != NO_NODE && label[e].length() > 0;
+	}
+
+	/**
+	 * @param v		A node number.
+	 * @return		Its text when the snapshot was taken.
+	 */
+	public String getText(int v) {
+		return text[v];
+	}
+
+	/**
+	 * @param v		A node number.
+	 * @return		True if the node was a start node when the snapshot was taken.
+	 */
+	public boolean isStart(int v) {
+		return start[v];
+	}
+
+	/**
+	 * @param v		A node number.
+	 * @return		True if the node was an accept node when the snapshot was taken.
+	 */
+	public boolean isAccept(int v) {
+		return accept[v];
+	}
+
+	/**
+	 * @param v		A node number.
+	 * @return		The position of its first outgoing edge, for getOutEdge().
+	 */
+	public int getOutStart(int v) {
+		return outStart[v];
+	}
+
+	/**
+	 * @param v		A node number.
+	 * @return		The position after its last outgoing edge.
+	 */
+	public int getOutEnd(int v) {
+		return outStart[v + 1];
+	}
+
+	/**
+	 * @param j		A position between getOutStart(v) and getOutEnd(v).
+	 * @return		The number of the edge there.
+	 */
+	public int getOutEdge(int j) {
+		return outEdges[j];
+	}
+
+	/**
+	 * @param v		A node number.
+	 * @return		The position of its first incoming edge, for getInEdge().
+	 */
+	public int getInStart(int v) {
+		return inStart[v];
+	}
+
+	/**
+	 * @param v		A node number.
+	 * @return		The position after its last incoming edge.
+	 */
+	public int getInEnd(int v) {
+		return inStart[v + 1];
+	}
+
+	/**
+	 * @param j		A position between getInStart(v) and getInEnd(v).
+	 * @return		The number of the edge there.
+	 */
+	public int getInEdge(int j) {
+		return inEdges[j];
+	}
+}
@@ -0,0 +1,21 @@
+package backend;
+
+/**
+ * What the frontend attaches to a Node or Edge to show and edit its label.  The backend keeps it
+ * only to tell it when the label text changes or the object moves, and so that the frontend can find it again; nodes and
+ * edges never need one, and a diagram with none can be built, simulated and saved headless.
+ */
+public interface DiagramObjectView {
+
+	/**
+	 * Called after the label text of the object was set.
+	 * @param text		The new text.
+	 */
+	public void textChanged(String text);
+
+	/**
+	 * Called after the object was moved or resized, or, for an edge, reshaped, given other arrows or
+	 * moved to another node; the view of an edge is also told when one of its nodes moves.
+	 */
+	public void moved();
+}
@@ -0,0 +1,214 @@
+package backend;
+
+import java.util.List;
+
+/**
+ * A diagram as it was at one revision, which does not change however the diagram is edited
+ * afterwards, as taken by Diagram.snapshot().  It can be handed to a worker thread to validate,
+ * minimize, determinize or simulate the FSM while the user goes on editing on the event thread.
+ *
+ * Taking one of a valid diagram costs constant time: the snapshot shares the columns of the
+ * diagram's store (see DiagramStore.share()), and the diagram copies a group of them only the first
+ * time it writes to it afterwards.  Whether the diagram was a valid DFSM and a valid NFA is read
+ * from its validation state when the snapshot is taken, along with the errors if it was not.  The
+ * errors are frozen (see DFSMDiagnostics.freeze()), so reading them never touches the diagram.  The
+ * graph, the compiled forms and the analyses are built from the frozen columns the first time they
+ * are asked for and then kept.
+ *
+ * Every result carries the revision it was worked out for (see getRevision()), so a result that
+ * comes back after the diagram has changed can be told apart and dropped.  The nodes and edges the
+ * results name are those of the diagram; what was read from them (their text, ends, direction and
+ * whether they are start and accept nodes) is what they had when the snapshot was taken.
+ */
+public class DiagramSnapshot {
+
+	private final int _revision;
+	private final DiagramStore _store;
+
+	/** Why the diagram was not a valid DFSM, frozen (see DFSMDiagnostics.freeze()), or null. */
+	private final DFSMDiagnostics _dfsmErrors;
+
+	/** Why the diagram could not be simulated as an NFA, frozen, or null if it could. */
+	private final DFSMDiagnostics _nfaErrors;
+
+	private DiagramGraph _graph;
+	private CompiledAutomaton _compiled;
+	private CompiledNFA _compiledNFA;
+	private Reachability _reachability;
+	private GraphAnalysis _graphAnalysis;
+	private Witnesses _witnesses;
+
+	/**
+	 * @param store			The frozen store of the diagram.
+	 * @param revision		The revision of the diagram.
+	 * @param graph			The graph of the diagram at the revision if it has been built already, or
+	 * 						null.
+	 * @param dfsmErrors	Why the diagram is not a valid DFSM, or null if it is.  They are frozen
+	 * 						here, while the diagram is still at the revision.
+	 * @param nfaErrors		Why the diagram cannot be simulated as an NFA, or null if it can.
+	 */
+	DiagramSnapshot(DiagramStore store, int revision, DiagramGraph graph, DFSMDiagnostics dfsmErrors, DFSMDiagnostics nfaErrors) {
+		_store = store;
+		_revision = revision;
+		_graph = graph;
+		_dfsmErrors = dfsmErrors == null ? null : dfsmErrors.freeze();
+		_nfaErrors = nfaErrors == null ? null : nfaErrors.freeze();
+	}
+
+	/**
+	 * @return		The revision of the diagram this is a snapshot of.
+	 */
+	public int getRevision() {
+		return _revision;
+	}
+
+	/**
+	 * @return		True if the diagram was a valid DFSM.
+	 */
+	public boolean isValidDFSM() {
+		return _dfsmErrors == null;
+	}
+
+	/**
+	 * @return		True if the diagram could be simulated as an NFA.
+	 */
+	public boolean isValidNFA() {
+		return _nfaErrors == null;
+	}
+
+	/**
+	 * @return		The structure of the diagram in compressed sparse row form; see Diagram.graph().
+	 */
+	public synchronized DiagramGraph graph() {
+		if (_graph == null)
+			_graph = new DiagramGraph(_store, _revision);
+		return _graph;
+	}
+
+	/**
+	 * @return		The compiled transition table of the diagram; see Diagram.compile().
+	 */
+	public synchronized CompiledAutomaton compile() {
+		if (_compiled == null)
+			_compiled = new CompiledAutomaton(graph());
+		return _compiled;
+	}
+
+	/**
+	 * @return		The compiled NFA of the diagram; see Diagram.compileNFA().
+	 */
+	public synchronized CompiledNFA compileNFA() {
+		if (_compiledNFA == null)
+			_compiledNFA = new CompiledNFA(graph());
+		return _compiledNFA;
+	}
+
+	/**
+	 * @return		The unreachable and dead nodes of the diagram; see Diagram.analyzeReachability().
+	 */
+	public synchronized Reachability analyzeReachability() {
+		if (_reachability == null)
+			_reachability = new Reachability(graph());
+		return _reachability;
+	}
+
+	/**
+	 * @return		The analysis of the diagram as a plain graph; see Diagram.analyzeGraph().
+	 */
+	public synchronized GraphAnalysis analyzeGraph() {
+		if (_graphAnalysis == null)
+			_graphAnalysis = new GraphAnalysis(graph());
+		return _graphAnalysis;
+	}
+
+	/**
+	 * Simulates the FSM on many inputs at once; see Diagram.acceptAll(List).
+	 * @param inputs					The input strings.
+	 * @return							Which inputs were accepted, and where the others were rejected.
+	 * @throws InvalidDFSMException		If the FSM was invalid.
+	 */
+	public BatchResult acceptAll(List<? extends CharSequence> inputs) throws InvalidDFSMException {
+		return acceptAll(inputs, BatchStrategy.SEQUENTIAL);
+	}
+
+	/**
+	 * Simulates the FSM on many inputs at once; see Diagram.acceptAll(List, BatchStrategy).
+	 * @param inputs					The input strings.
+	 * @param strategy					How each share of the inputs is walked.
+	 * @return							Which inputs were accepted, and where the others were rejected.
+	 * @throws InvalidDFSMException		If the FSM was invalid.
+	 */
+	public BatchResult acceptAll(List<? extends CharSequence> inputs, BatchStrategy strategy) throws InvalidDFSMException {
+		return new BatchAcceptor(checkedAutomaton(), strategy).run(inputs);
+	}
+
+	/**
+	 * Minimizes the DFSM; see Diagram.minimize().
+	 * @return							The minimized form of the DFSM.
+	 * @throws InvalidDFSMException		If the FSM was invalid.
+	 */
+	public Minimization minimize() throws InvalidDFSMException {
+		return new Minimizer(checkedAutomaton()).run();
+	}
+
+	/**
+	 * Finds shortest accepted and rejected inputs of the DFSM; see Diagram.findWitnesses().
+	 * @return							The witnesses.
+	 * @throws InvalidDFSMException		If the FSM was invalid.
+	 */
+	public Witnesses findWitnesses() throws InvalidDFSMException {
+		CompiledAutomaton automaton = checkedAutomaton();
+		synchronized (this) {
+			if (_witnesses == null)
+				_witnesses = new Witnesses(automaton);
+			return _witnesses;
+		}
+	}
+
+	/**
+	 * Builds the DFSM of the FSM by subset construction; see Diagram.determinize().
+	 * @return							The new diagram.
+	 * @throws InvalidDFSMException		If the FSM could not be simulated as an NFA, or the DFSM
+	 * 									would be too large to draw.
+	 */
+	public Diagram determinize() throws InvalidDFSMException {
+		Diagram dfa = LazyDFA.determinize(checkedNFA(), Diagram.MAX_DETERMINIZED_NODES);
+		if (dfa == null)
+			throw new InvalidDFSMException("The DFSM would have more than " + Diagram.MAX_DETERMINIZED_NODES + " nodes.\n");
+		return dfa;
+	}
+
+	/**
+	 * Checks the FSM and returns its compiled table.
+	 * @return							The compiled automaton of the (valid) FSM.
+	 * @throws InvalidDFSMException		If the FSM was invalid.
+	 */
+	private CompiledAutomaton checkedAutomaton() throws InvalidDFSMException {
+		if (_dfsmErrors != null) {
+			checkNotEmpty();
+			throw new InvalidDFSMException(_dfsmErrors);
+		}
+		return compile();
+	}
+
+	/**
+	 * Checks that the FSM could be simulated as an NFA and returns its compiled form.
+	 * @return							The compiled NFA.
+	 * @throws InvalidDFSMException		If the FSM could not be simulated as an NFA.
+	 */
+	private CompiledNFA checkedNFA() throws InvalidDFSMException {
+		if (_nfaErrors != null) {
+			checkNotEmpty();
+			throw new InvalidDFSMException(_nfaErrors);
+		}
+		return compileNFA();
+	}
+
+	/**
+	 * @throws InvalidDFSMException		If there were no nodes at all.
+	 */
+	private void checkNotEmpty() throws InvalidDFSMException {
+		if (_store.getNodeCount() == 0)
+			throw new InvalidDFSMException("There are no nodes in the FSM.\n");
+	}
+}
@@ -0,0 +1,638 @@
+package backend;
+
+import java.util.AbstractCollection;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * The nodes and edges of a diagram, kept column by column in arrays indexed by id: one array holds the x-coordinates
+ * of all the nodes, one their radii, one bit set says which of them are start nodes, and so on.  Node and Edge are
+ * thin handles that hold only the store and their id, and read and write their columns here, so a large diagram is a
+ * few dozen arrays rather than hundreds of thousands of objects, and a walk over one column touches memory in order.
+ *
+ * An id stays the same for as long as its node or edge is in the store.  When one is removed its id goes on a free
+ * list and is given to the next one added, so the arrays do not grow with churn.  A node or edge that is not in any
+ * diagram lives in a store of its own, with no owner, and moves into the diagram's store when it is added (see
+ * Node.moveTo and Edge.moveTo).
+ *
+ * The edges connected to each node are kept with the node, in an array filled up to its degree.  An edge remembers
+ * where it is in the arrays of its start and end node (startSlot and endSlot), so it is connected, disconnected and
+ * looked up in constant time.
+ *
+ * share() freezes the columns a simulation reads (the handles, node text, start and accept nodes, and the ends,
+ * direction and label of the edges) into a store of their own, without copying them.  The two stores then share those
+ * arrays until this one next writes to them; the write copies the group of columns it touches first (see unshare), so
+ * the frozen store never sees it.
+ */
+final class DiagramStore {
+
+	/** The edge directions, by the number kept in the direction column. */
+	static final EdgeDirection[] DIRECTIONS = EdgeDirection.values();
+
+	/** The slot of an edge that is not connected to a node. */
+	static final int NO_SLOT = -1;
+
+	/** What Edge.getSlot gives for a node that is neither the start nor the end of the edge. */
+	static final int NOT_AN_END = -2;
+
+	/** The groups of columns that share() freezes, each copied as a whole on the first write after it. */
+	static final int NODE_LIST = 1;
+	static final int NODE_TEXT = 2;
+	static final int NODE_KIND = 4;
+	static final int EDGE_LIST = 8;
+	static final int EDGE_ENDS = 16;
+	static final int EDGE_DIRECTION = 32;
+	static final int EDGE_TEXT = 64;
+	static final int NODE_GROUPS = NODE_LIST | NODE_TEXT | NODE_KIND;
+	static final int EDGE_GROUPS = EDGE_LIST | EDGE_ENDS | EDGE_DIRECTION | EDGE_TEXT;
+
+	/** The diagram this is the store of, or null for a node or edge in no diagram. */
+	final Diagram owner;
+
+	//The node columns.  nodes[id] is null if the id is free.
+	Node[] nodes;
+	double[] x;
+	double[] y;
+	double[] radius;
+	double[] offsetX;
+	double[] offsetY;
+	String[] nodeText;
+	Edge[][] connected;
+	int[] degree;
+	BitSet start = new BitSet();
+	BitSet accept = new BitSet();
+	BitSet nodeSelected = new BitSet();
+	BitSet nodeCurrent = new BitSet();
+	BitSet resizing = new BitSet();
+
+	//The edge columns.  edges[id] is null if the id is free.
+	Edge[] edges;
+	Node[] edgeStart;
+	Node[] edgeEnd;
+	byte[] direction;
+	String[] edgeText;
+	LabelSymbols[] edgeSymbols;
+	double[] height;
+	double[] angle;
+	double[] edgeOffset;
+	int[] startSlot;
+	int[] endSlot;
+	BitSet turn = new BitSet();
+	BitSet edgeSelected = new BitSet();
+	BitSet edgeCurrent = new BitSet();
+
+	/*
+	 * _nodeTop and _edgeTop are one more than the highest id ever given out; the ids below them are either in use
+	 * or on the free lists.
+	 *
+	 * _nodeCount and _edgeCount are the numbers in use.
+	 */
+	private int _nodeTop;
+	private int _nodeCount;
+	private int[] _freeNodes = new int[0];
+	private int _freeNodeCount;
+	private int _edgeTop;
+	private int _edgeCount;
+	private int[] _freeEdges = new int[0];
+	private int _freeEdgeCount;
+
+	/** The groups of columns that are shared with a frozen store, and must be copied before they are written. */
+	private int _shared;
+
+	/**
+	 * Makes an empty store.
+	 * @param owner				The diagram it is the store of, or null.
+	 * @param nodeCapacity		The number of nodes it has room for before it grows.
+	 * @param edgeCapacity		The number of edges it has room for before it grows.
+	 */
+	DiagramStore(Diagram owner, int nodeCapacity, int edgeCapacity) {
+		this.owner = owner;
+		nodes = new Node[nodeCapacity];
+		x = new double[nodeCapacity];
+		y = new double[nodeCapacity];
+		radius = new double[nodeCapacity];
+		offsetX = new double[nodeCapacity];
+		offsetY = new double[nodeCapacity];
+		nodeText = new String[nodeCapacity];
+		connected = new Edge[nodeCapacity][];
+		degree = new int[nodeCapacity];
+		edges = new Edge[edgeCapacity];
+		edgeStart = new Node[edgeCapacity];
+		edgeEnd = new Node[edgeCapacity];
+		direction = new byte[edgeCapacity];
+		edgeText = new String[edgeCapacity];
+		edgeSymbols = new LabelSymbols[edgeCapacity];
+		height = new double[edgeCapacity];
+		angle = new double[edgeCapacity];
+		edgeOffset = new double[edgeCapacity];
+		startSlot = new int[edgeCapacity];
+		endSlot = new int[edgeCapacity];
+	}
+
+	/**
+	 * @return		A store of its own for a node in no diagram.
+	 */
+	static DiagramStore ofNode() {
+		return new DiagramStore(null, 1, 0);
+	}
+
+	/**
+	 * @return		A store of its own for an edge in no diagram.
+	 */
+	static DiagramStore ofEdge() {
+		return new DiagramStore(null, 0, 1);
+	}
+
+	/**
+	 * @param d		An edge direction, or null.
+	 * @return		The number the direction column keeps for it.
+	 */
+	static byte directionNumber(EdgeDirection d) {
+		return (byte) (d == null ? -1 : d.ordinal());
+	}
+
+	/**
+	 * @param number		A number from the direction column.
+	 * @return				The edge direction it stands for, or null.
+	 */
+	static EdgeDirection direction(byte number) {
+		return number < 0 ? null : DIRECTIONS[number];
+	}
+
+	/**
+	 * @return		One more than the highest node id ever given out.
+	 */
+	int getNodeTop() {
+		return _nodeTop;
+	}
+
+	/**
+	 * @return		The number of nodes in the store.
+	 */
+	int getNodeCount() {
+		return _nodeCount;
+	}
+
+	/**
+	 * @return		One more than the highest edge id ever given out.
+	 */
+	int getEdgeTop() {
+		return _edgeTop;
+	}
+
+	/**
+	 * @return		The number of edges in the store.
+	 */
+	int getEdgeCount() {
+		return _edgeCount;
+	}
+
+	/**
+	 * Freezes the columns a simulation reads into a store with no owner, in constant time.  The arrays are shared
+	 * until this store next writes to them, and are copied then (see unshare), so the frozen store stays as it is.
+	 * Only the frozen columns and the counts may be read from it; it may be read from any thread.
+	 * @return		The frozen store.
+	 */
+	DiagramStore share() {
+		DiagramStore frozen = new DiagramStore(null, 0, 0);
+		frozen.nodes = nodes;
+		frozen.nodeText = nodeText;
+		frozen.start = start;
+		frozen.accept = accept;
+		frozen.edges = edges;
+		frozen.edgeStart = edgeStart;
+		frozen.edgeEnd = edgeEnd;
+		frozen.direction = direction;
+		frozen.edgeText = edgeText;
+		frozen.edgeSymbols = edgeSymbols;
+		frozen._nodeTop = _nodeTop;
+		frozen._nodeCount = _nodeCount;
+		frozen._edgeTop = _edgeTop;
+		frozen._edgeCount = _edgeCount;
+		_shared = NODE_GROUPS | EDGE_GROUPS;
+		return frozen;
+	}
+
+	/**
+	 * Copies the groups of columns that are shared with a frozen store, among the given ones, so they can be
+	 * written.  Called before every write to a frozen column.
+	 * @param groups		The groups about to be written.
+	 */
+	void unshare(int groups) {
+		groups &= _shared;
+		if (groups == 0)
+			return;
+		if ((groups & NODE_LIST) != 0)
+			nodes = nodes.clone();
+		if ((groups & NODE_TEXT) != 0)
+			nodeText = nodeText.clone();
+		if ((groups & NODE_KIND) != 0) {
+			start = (BitSet) start.clone();
+			accept = (BitSet) accept.clone();
+		}
+		if ((groups & EDGE_LIST) != 0)
+			edges = edges.clone();
+		if ((groups & EDGE_ENDS) != 0) {
+			edgeStart = edgeStart.clone();
+			edgeEnd = edgeEnd.clone();
+		}
+		if ((groups & EDGE_DIRECTION) != 0)
+			direction = direction.clone();
+		if ((groups & EDGE_TEXT) != 0) {
+			edgeText = edgeText.clone();
+			edgeSymbols = edgeSymbols.clone();
+		}
+		_shared &= ~groups;
+	}
+
+	/**
+	 * Gives a node an id, reusing a free one if there is one.  Its columns are cleared.
+	 * @param n		The node.
+	 * @return		Its id.
+	 */
+	int addNode(Node n) {
+		unshare(NODE_GROUPS);
+		int id;
+		if (_freeNodeCount > 0)
+			id = _freeNodes[-- _freeNodeCount];
+		else {
+			if (_nodeTop == nodes.length)
+				growNodes(Math.max(4, nodes.length * 2));
+			id = _nodeTop ++;
+		}
+		nodes[id] = n;
+		_nodeCount ++;
+		return id;
+	}
+
+	/**
+	 * Frees the id of a node and clears its columns.
+	 * @param id
+	 */
+	void removeNode(int id) {
+		unshare(NODE_GROUPS);
+		nodes[id] = null;
+		x[id] = 0;
+		y[id] = 0;
+		radius[id] = 0;
+		offsetX[id] = 0;
+		offsetY[id] = 0;
+		nodeText[id] = null;
+		connected[id] = null;
+		degree[id] = 0;
+		start.clear(id);
+		accept.clear(id);
+		nodeSelected.clear(id);
+		nodeCurrent.clear(id);
+		resizing.clear(id);
+		if (_freeNodeCount == _freeNodes.length)
+			_freeNodes = Arrays.copyOf(_freeNodes, Math.max(4, _freeNodes.length * 2));
+		_freeNodes[_freeNodeCount ++] = id;
+		_nodeCount --;
+	}
+
+	/**
+	 * Copies the columns of a node from another store (or this one) to an id of this one.
+	 * @param from		The store it is in.
+	 * @param i			Its id there.
+	 * @param id		The id here.
+	 */
+	void copyNode(DiagramStore from, int i, int id) {
+		unshare(NODE_GROUPS);
+		x[id] = from.x[i];
+		y[id] = from.y[i];
+		radius[id] = from.radius[i];
+		offsetX[id] = from.offsetX[i];
+		offsetY[id] = from.offsetY[i];
+		nodeText[id] = from.nodeText[i];
+		connected[id] = from.connected[i];
+		degree[id] = from.degree[i];
+		start.set(id, from.start.get(i));
+		accept.set(id, from.accept.get(i));
+		nodeSelected.set(id, from.nodeSelected.get(i));
+		nodeCurrent.set(id, from.nodeCurrent.get(i));
+		resizing.set(id, from.resizing.get(i));
+	}
+
+	/**
+	 * Gives an edge an id, reusing a free one if there is one.  It is connected to no node.
+	 * @param e		The edge.
+	 * @return		Its id.
+	 */
+	int addEdge(Edge e) {
+		unshare(EDGE_GROUPS);
+		int id;
+		if (_freeEdgeCount > 0)
+			id = _freeEdges[-- _freeEdgeCount];
+		else {
+			if (_edgeTop == edges.length)
+				growEdges(Math.max(4, edges.length * 2));
+			id = _edgeTop ++;
+		}
+		edges[id] = e;
+		startSlot[id] = NO_SLOT;
+		endSlot[id] = NO_SLOT;
+		_edgeCount ++;
+		return id;
+	}
+
+	/**
+	 * Frees the id of an edge and clears its columns.
+	 * @param id
+	 */
+	void removeEdge(int id) {
+		unshare(EDGE_GROUPS);
+		edges[id] = null;
+		edgeStart[id] = null;
+		edgeEnd[id] = null;
+		direction[id] = 0;
+		edgeText[id] = null;
+		edgeSymbols[id] = null;
+		height[id] = 0;
+		angle[id] = 0;
+		edgeOffset[id] = 0;
+		startSlot[id] = NO_SLOT;
+		endSlot[id] = NO_SLOT;
+		turn.clear(id);
+		edgeSelected.clear(id);
+		edgeCurrent.clear(id);
+		if (_freeEdgeCount == _freeEdges.length)
+			_freeEdges = Arrays.copyOf(_freeEdges, Math.max(4, _freeEdges.length * 2));
+		_freeEdges[_freeEdgeCount ++] = id;
+		_edgeCount --;
+	}
+
+	/**
+	 * Copies the columns of an edge from another store (or this one) to an id of this one.
+	 * @param from		The store it is in.
+	 * @param i			Its id there.
+	 * @param id		The id here.
+	 */
+	void copyEdge(DiagramStore from, int i, int id) {
+		unshare(EDGE_GROUPS);
+		edgeStart[id] = from.edgeStart[i];
+		edgeEnd[id] = from.edgeEnd[i];
+		direction[id] = from.direction[i];
+		edgeText[id] = from.edgeText[i];
+		edgeSymbols[id] = from.edgeSymbols[i];
+		height[id] = from.height[i];
+		angle[id] = from.angle[i];
+		edgeOffset[id] = from.edgeOffset[i];
+		startSlot[id] = from.startSlot[i];
+		endSlot[id] = from.endSlot[i];
+		turn.set(id, from.turn.get(i));
+		edgeSelected.set(id, from.edgeSelected.get(i));
+		edgeCurrent.set(id, from.edgeCurrent.get(i));
+	}
+
+	/**
+	 * Puts an edge at the end of the connected edges of a node.
+	 * @param id	The id of the node.
+	 * @param e		The edge.
+	 * @return		Where it was put.
+	 */
+	int connect(int id, Edge e) {
+		Edge[] list = connected[id];
+		if (list == null)
+			list = connected[id] = new Edge[4];
+		else if (degree[id] == list.length)
+			list = connected[id] = Arrays.copyOf(list, list.length * 2);
+		list[degree[id]] = e;
+		return degree[id] ++;
+	}
+
+	/**
+	 * Takes the edge at a place out of the connected edges of a node, moving the last one into its place.
+	 * @param id		The id of the node.
+	 * @param slot		The place.
+	 * @return			The edge that was moved into the place, or null if it was the last.
+	 */
+	Edge disconnect(int id, int slot) {
+		Edge[] list = connected[id];
+		int last = -- degree[id];
+		Edge moved = slot == last ? null : list[last];
+		list[slot] = moved;
+		list[last] = null;
+		return moved;
+	}
+
+	/**
+	 * Copies this store for a clone of its diagram.  Every node and edge gets a new handle with the same id, the
+	 * connections and ends are mapped to the new handles, and the views are left behind.  Connections to edges
+	 * outside the store are dropped, and ends outside it become null.
+	 * @param cloned		The clone.
+	 * @return				The copy.
+	 */
+	DiagramStore copy(Diagram cloned) {
+		DiagramStore copy = new DiagramStore(cloned, 0, 0);
+		copy.nodes = new Node[nodes.length];
+		copy.x = x.clone();
+		copy.y = y.clone();
+		copy.radius = radius.clone();
+		copy.offsetX = offsetX.clone();
+		copy.offsetY = offsetY.clone();
+		copy.nodeText = nodeText.clone();
+		copy.connected = new Edge[connected.length][];
+		copy.degree = new int[degree.length];
+		copy.start = (BitSet) start.clone();
+		copy.accept = (BitSet) accept.clone();
+		copy.nodeSelected = (BitSet) nodeSelected.clone();
+		copy.nodeCurrent = (BitSet) nodeCurrent.clone();
+		copy.resizing = (BitSet) resizing.clone();
+		copy.edges = new Edge[edges.length];
+		copy.edgeStart = new Node[edgeStart.length];
+		copy.edgeEnd = new Node[edgeEnd.length];
+		copy.direction = direction.clone();
+		copy.edgeText = edgeText.clone();
+		copy.edgeSymbols = edgeSymbols.clone();
+		copy.height = height.clone();
+		copy.angle = angle.clone();
+		copy.edgeOffset = edgeOffset.clone();
+		copy.startSlot = new int[startSlot.length];
+		copy.endSlot = new int[endSlot.length];
+		Arrays.fill(copy.startSlot, NO_SLOT);
+		Arrays.fill(copy.endSlot, NO_SLOT);
+		copy.turn = (BitSet) turn.clone();
+		copy.edgeSelected = (BitSet) edgeSelected.clone();
+		copy.edgeCurrent = (BitSet) edgeCurrent.clone();
+		copy._nodeTop = _nodeTop;
+		copy._nodeCount = _nodeCount;
+		copy._freeNodes = _freeNodes.clone();
+		copy._freeNodeCount = _freeNodeCount;
+		copy._edgeTop = _edgeTop;
+		copy._edgeCount = _edgeCount;
+		copy._freeEdges = _freeEdges.clone();
+		copy._freeEdgeCount = _freeEdgeCount;
+
+		for (int id = 0; id < _nodeTop; id ++) {
+			if (nodes[id] != null)
+				copy.nodes[id] = new Node(copy, id);
+		}
+		for (int id = 0; id < _edgeTop; id ++) {
+			if (edges[id] != null) {
+				copy.edges[id] = new Edge(copy, id);
+				copy.edgeStart[id] = copy.nodeOf(edgeStart[id], this);
+				copy.edgeEnd[id] = copy.nodeOf(edgeEnd[id], this);
+			}
+		}
+		for (int id = 0; id < _nodeTop; id ++) {
+			for (int j = 0; j < degree[id]; j ++) {
+				Edge e = connected[id][j];
+				if (e.getStore() == this) {
+					Edge copied = copy.edges[e.getId()];
+					copied.setSlot(copy.nodes[id], copy.connect(id, copied));
+				}
+			}
+		}
+		return copy;
+	}
+
+	/**
+	 * @param n			A node.
+	 * @param from		The store this one was copied from.
+	 * @return			The handle here of the node, or null if it was not in the other store.
+	 */
+	private Node nodeOf(Node n, DiagramStore from) {
+		return n != null && n.getStore() == from ? nodes[n.getId()] : null;
+	}
+
+	/**
+	 * Makes room for more nodes.
+	 * @param capacity
+	 */
+	private void growNodes(int capacity) {
+		nodes = Arrays.copyOf(nodes, capacity);
+		x = Arrays.copyOf(x, capacity);
+		y = Arrays.copyOf(y, capacity);
+		radius = Arrays.copyOf(radius, capacity);
+		offsetX = Arrays.copyOf(offsetX, capacity);
+		offsetY = Arrays.copyOf(offsetY, capacity);
+		nodeText = Arrays.copyOf(nodeText, capacity);
+		connected = Arrays.copyOf(connected, capacity);
+		degree = Arrays.copyOf(degree, capacity);
+	}
+
+	/**
+	 * Makes room for more edges.
+	 * @param capacity
+	 */
+	private void growEdges(int capacity) {
+		edges = Arrays.copyOf(edges, capacity);
+		edgeStart = Arrays.copyOf(edgeStart, capacity);
+		edgeEnd = Arrays.copyOf(edgeEnd, capacity);
+		direction = Arrays.copyOf(direction, capacity);
+		edgeText = Arrays.copyOf(edgeText, capacity);
+		edgeSymbols = Arrays.copyOf(edgeSymbols, capacity);
+		height = Arrays.copyOf(height, capacity);
+		angle = Arrays.copyOf(angle, capacity);
+		edgeOffset = Arrays.copyOf(edgeOffset, capacity);
+		startSlot = Arrays.copyOf(startSlot, capacity);
+		endSlot = Arrays.copyOf(endSlot, capacity);
+	}
+
+	/**
+	 * The nodes of the store as a collection, in order of id.  Adding and removing go through the owner, so that it
+	 * is told.
+	 */
+	class NodeCollection extends AbstractCollection<Node> {
+		public Iterator<Node> iterator() {
+			return new StoreIterator<Node>() {
+				Node[] handles() {
+					return nodes;
+				}
+				int top() {
+					return _nodeTop;
+				}
+				void remove(Node n) {
+					owner.removeNode(n);
+				}
+			};
+		}
+		public int size() {
+			return _nodeCount;
+		}
+		public boolean contains(Object o) {
+			return o instanceof Node && ((Node) o).getStore() == DiagramStore.this;
+		}
+		public boolean add(Node n) {
+			return owner.addNode(n);
+		}
+		public boolean remove(Object o) {
+			return o instanceof Node && owner.removeNode((Node) o);
+		}
+	}
+
+	/**
+	 * The edges of the store as a collection, in order of id.  Adding and removing go through the owner, so that it
+	 * is told.
+	 */
+	class EdgeCollection extends AbstractCollection<Edge> {
+		public Iterator<Edge> iterator() {
+			return new StoreIterator<Edge>() {
+				Edge[] handles() {
+					return edges;
+				}
+				int top() {
+					return _edgeTop;
+				}
+				void remove(Edge e) {
+					owner.removeEdge(e);
+				}
+			};
+		}
+		public int size() {
+			return _edgeCount;
+		}
+		public boolean contains(Object o) {
+			return o instanceof Edge && ((Edge) o).getStore() == DiagramStore.this;
+		}
+		public boolean add(Edge e) {
+			return owner.addEdge(e);
+		}
+		public boolean remove(Object o) {
+			return o instanceof Edge && owner.removeEdge((Edge) o);
+		}
+	}
+
+	/**
+	 * Walks the handles of one kind in order of id, skipping free ids.  The current array and top of the store are
+	 * read again at each step, and free ids are skipped only when the next handle is asked for, so a handle removed
+	 * during the walk (even after share() has swapped the array) is never returned.
+	 */
+	private abstract class StoreIterator<T> implements Iterator<T> {
+		private int _next;
+		private T _last;
+
+		/** @return		The current array of handles of the store. */
+		abstract T[] handles();
+
+		/** @return		The current top of the ids of the store. */
+		abstract int top();
+
+		abstract void remove(T handle);
+
+		public boolean hasNext() {
+			T[] handles = handles();
+			int top = top();
+			while (_next < top && handles[_next] == null)
+				_next ++;
+			return _next < top;
+		}
+
+		public T next() {
+			if (!hasNext())
+				throw new NoSuchElementException();
+			_last = handles()[_next ++];
+			return _last;
+		}
+
+		public void remove() {
+			if (_last == null)
+				throw new IllegalStateException();
+			remove(_last);
+			_last = null;
+		}
+	}
+}
@@ -1,95 +1,54 @@
 package backend;
 
-import java.awt.*;
-import java.awt.geom.Arc2D;
-import java.awt.geom.Point2D;
-
-import javax.swing.JLabel;
-import javax.swing.JTextField;
-
-import frontend.*;
+import java.util.Arrays;
 
 /**
- * The Edge class represents an edge drawn between two nodes on the screen.
+ * The Edge class represents an edge drawn between two nodes on the screen.  Like Node it holds only strings and
+ * numbers; the text field and label next to it on a DrawingPanel belong to a view the frontend attaches.  The strings
+ * and numbers themselves are kept in the DiagramStore of the edge's diagram; an Edge is a handle on them.
  * @author ewald
  *
  */
 public class Edge implements DiagramObject, Cloneable {
 	
 	/*
-	 * _start and _end are the Start/End nodes of the edge.
+	 * _store is the DiagramStore this edge's data is kept in (the store of its diagram, or one of its own if it is in
+	 * 		no diagram), and _id is its id there.  The store keeps, by id:
 	 * 
-	 * _direction is the EdgeDirection (e.g. Singly directed).
+	 * the Start/End nodes of the edge, and where the edge is in the connected edges of each;
 	 * 
-	 * _area and _label are the label and area drawn next to the edge.
+	 * the EdgeDirection (e.g. Singly directed);
 	 * 
-	 * _curve is the actual arc of the edge drawn on the canvas.
+	 * the label drawn next to the edge, as typed by the user;
 	 * 
-	 * _height and _turn are complex variables that handle drawing the edge.
+	 * the height and turn, complex variables that handle drawing the edge, and the angle, which handles drawing
+	 * 		self-looping edges;
 	 * 
-	 * _selected is whether or not this edge is selected.
+	 * whether or not this edge is selected, and whether it is the current object in simulation;
 	 * 
-	 * _angle is a complex variable that handles drawing self-looping edges.
+	 * the offset used when dragging edges, from the center to the mouse.
 	 * 
-	 * _offset is used when dragging edges to get the offset from the center
-	 * 		to the mouse.
+	 * _view is what the frontend shows the label with, or null if the edge is not shown.
 	 * 
-	 * _container is the containing DrawingPanel, referenced so that the edge
-	 * 		can add and manipulate listeners.
-	 * 
-	 * _current is whether or not the edge is the current object in simulation.
-	 */
-	private Node _start;
-	private Node _end;
-	private EdgeDirection _direction;
-	private JTextField _area;
-    private JLabel _label;
-    private Arc2D _curve;
-    private double _height; // from midpoint between two centers to center of the arc
-    private boolean _turn = false; // false for negative, true for positive
-    private boolean _selected;
-    private double _angle; // only applies for self loop
-    private double _offset;
-    private DrawingPanel _container;
-    private boolean _current = false;
+	 * The diagram of the store is told whenever the edge changes in a way that matters to simulation, so it can bump
+	 * 		its revision.
+	 */
+	private DiagramStore _store;
+	private int _id;
+    private DiagramObjectView _view;
     
     //static constants used to draw the edge.
     private static final int ARROW_SIZE = 12;
-    private static final int TEXTBOX_HEIGHT = 25;
-    private static final int TEXTBOX_WIDTH = 40;
     private static final int TEXTBOX_OFFSET = 25;
     public static String DEFAULT_STRING = "0";
 	private static final int RADIUS_TOLERANCE = 6;
+	
+	/** The label piece that stands for an epsilon transition. */
+	public static final String EPSILON = "\\epsilon";
     
 	/**
-	 * The default constructor is used when we are not creating an edge from opening a file.
-	 * @param s			Start Node
-	 * @param e			End Node
-	 * @param container	The containing DrawingPanel
-	 * @param d			The direction of this edge.
-	 */
-	public Edge(Node s, Node e, DrawingPanel container, EdgeDirection d) {
-		_start = s;
-		_end = e;
-        _container = container;
-        _label = new JLabel();
-        _selected = true;
-        _angle = Math.PI / 4;
-        _offset = 0;
-		_direction = d;
-		_curve = new Arc2D.Double(Arc2D.OPEN);
-		_turn = false;
-		_area = new JTextField(DEFAULT_STRING);
-		_label = new JLabel(DEFAULT_STRING);
-		
-		//added support for self loop
-        _height = 100000.0;
-        
-        setAreaAndLabel();
-	}
-	/**
-	 * Constructor for opening a self-looping edge from a file.  Need to call setContainerAndArea after
-	 * constructing with this constructor to set the container.
+	 * Constructor for a self-looping edge, as opened from a file.  The edge is in no diagram until it is added to
+	 * one; Diagram.createEdge makes one straight into a diagram.
 	 * @param start		Start Node
 	 * @param end		End Node (will be equal to start)
 	 * @param dir		Direction
@@ -97,214 +56,261 @@ public class Edge implements DiagramObject, Cloneable {
 	 * @param angle		Angle of the self arc
 	 */
 	public Edge(Node start, Node end, EdgeDirection dir, String label, double angle) {
-		_start = start;
-		_end = end;
-		_direction = dir;
-		_label = new JLabel(label);
-		_area = new JTextField(label);
-		_angle = angle;
-		_selected = false;
-		_offset = 0;
-		_curve = new Arc2D.Double(Arc2D.OPEN);
-		_turn = false;
+		this(DiagramStore.ofEdge(), start, end, dir, label, angle);
 	}
 	
 	/**
-	 * Constructor for opening a non self-looping edge from a file.  Need to call setContainerAndArea after
-	 * constructing with this constructor to set the container.
-	 * @param start		Start Node
-	 * @param end		End Node (will be equal to start)
-	 * @param dir		Direction
-	 * @param label		Label
-	 * @param angle		Angle of the self arc
+	 * Constructor for a non self-looping edge, as opened from a file.  The edge is in no diagram until it is added
+	 * to one; Diagram.createEdge makes one straight into a diagram.
+	 * @param start				Start Node
+	 * @param end				End Node
+	 * @param dir				Direction
+	 * @param label				Label
+	 * @param arc_chord_height	Height of the arc over the chord between the nodes
+	 * @param arc_side			Positive to turn the arc the other way
 	 */
 	public Edge(Node start, Node end, EdgeDirection dir, String label, double arc_chord_height, int arc_side) {
-		_start = start;
-		_end = end;
-		_direction = dir;
-		_label = new JLabel(label);
-		_area = new JTextField(label);
-		_angle = Math.PI / 4;
-		_selected = false;
-		_offset = 0;
-		_height = arc_chord_height;
-		if(arc_side > 0) _turn = true;
-		else _turn = false;
+		this(DiagramStore.ofEdge(), start, end, dir, label, arc_chord_height, arc_side);
 	}
 	
 	/**
-	 * This method must be called directly after constructing an edge from a file.
-	 * This will set the container, area, and label of the edge.
+	 * Makes a self-looping edge in a store.
+	 * @param store		The store.
+	 * @see #Edge(Node, Node, EdgeDirection, String, double)
 	 */
-	public void setContainerAndArea(DrawingPanel container) {
-		_container = container;
-		setAreaAndLabel();
+	Edge(DiagramStore store, Node start, Node end, EdgeDirection dir, String label, double angle) {
+		this(store, start, end, dir, label);
+		store.angle[_id] = angle;
 	}
+	
 	/**
-	 * This method is called in every constructor to set the default text area and
-	 * label.
+	 * Makes a non self-looping edge in a store.
+	 * @param store		The store.
+	 * @see #Edge(Node, Node, EdgeDirection, String, double, int)
 	 */
-	private void setAreaAndLabel() {
-		_area.setBorder(null);
-		
-		_curve = new Arc2D.Double(Arc2D.OPEN);
-        
-        this.resetArc();
-		_area.setVisible(true);
-  		_area.setOpaque(false);
- 		_area.setSize(100, 20);
-		_area.setBackground(new Color(0,0,0,0));
- 		_area.setSize(TEXTBOX_WIDTH, TEXTBOX_HEIGHT);
-		_area.setHorizontalAlignment(JTextField.CENTER);
-		_area.selectAll();
-		_area.setEditable(true);
-		_area.setEnabled(true);
-        _area.addKeyListener(new EnterListener(_container, _area));
-		_area.getDocument().addDocumentListener(new HTMLParser(_label));
-		_label.setVisible(false);
-		_label.setOpaque(false);
-		_label.setSize(100, 20);
-		_label.setBackground(new Color(0,0,0,0));
-		_label.setSize(TEXTBOX_WIDTH, TEXTBOX_HEIGHT);
-		_label.setHorizontalAlignment(JTextField.CENTER);
-
-		_container.add(_label);
-		_container.add(_area);
+	Edge(DiagramStore store, Node start, Node end, EdgeDirection dir, String label, double arc_chord_height, int arc_side) {
+		this(store, start, end, dir, label);
+		store.angle[_id] = Math.PI / 4;
+		store.height[_id] = arc_chord_height;
+		store.turn.set(_id, arc_side > 0);
+	}
+	
+	private Edge(DiagramStore store, Node start, Node end, EdgeDirection dir, String label) {
+		_store = store;
+		_id = store.addEdge(this);
+		store.edgeStart[_id] = start;
+		store.edgeEnd[_id] = end;
+		store.direction[_id] = DiagramStore.directionNumber(dir);
+		store.edgeText[_id] = label;
 	}
 	
 	/**
-	 * This method gets a self loop, used if this edge's start node and end node are equal.
-	 * @param n		The node on which to self loop.
-	 * @return		The Arc that we should draw
+	 * Makes the handle of an edge that is already in a store.
+	 * @param store		The store.
+	 * @param id		The id of the edge there.
+	 */
+	Edge(DiagramStore store, int id) {
+		_store = store;
+		_id = id;
+	}
+	
+	/**
+	 * Tells the owning diagram (if any) that this edge has changed.
+	 */
+	private void changed() {
+		if (_store.owner != null)
+			_store.owner.edgeChanged(this);
+	}
+	
+	/**
+	 * Tells the view of this edge (if any) that it has moved.
+	 */
+	private void moved() {
+		if (_view != null)
+			_view.moved();
+	}
+	
+	/**
+	 * @return		The store this edge is kept in.
+	 */
+	DiagramStore getStore() {
+		return _store;
+	}
+	
+	/**
+	 * @return		The id of this edge in its store.
+	 */
+	int getId() {
+		return _id;
+	}
+	
+	/**
+	 * @return		The diagram this edge belongs to, or null.
+	 */
+	Diagram getDiagram() {
+		return _store.owner;
+	}
+	
+	/**
+	 * Moves this edge, with everything about it, to another store; the id it had is freed.
+	 * @param store
+	 */
+	void moveTo(DiagramStore store) {
+		int id = store.addEdge(this);
+		store.copyEdge(_store, _id, id);
+		_store.removeEdge(_id);
+		_store = store;
+		_id = id;
+	}
+	
+	/**
+	 * @param n		A node.
+	 * @return		Where this edge is in the connected edges of the node if it is the start or end node (NO_SLOT if
+	 * 				it is not connected there), or NOT_AN_END if it is neither.
+	 */
+	int getSlot(Node n) {
+		if (n == _store.edgeStart[_id])
+			return _store.startSlot[_id];
+		if (n == _store.edgeEnd[_id])
+			return _store.endSlot[_id];
+		return DiagramStore.NOT_AN_END;
+	}
+	
+	/**
+	 * Remembers where this edge is in the connected edges of its start or end node.  A self loop only uses the
+	 * place at its start.
+	 * @param n			A node; nothing is remembered if it is neither the start nor the end.
+	 * @param slot		The place, or NO_SLOT.
+	 */
+	void setSlot(Node n, int slot) {
+		if (n == _store.edgeStart[_id])
+			_store.startSlot[_id] = slot;
+		else if (n == _store.edgeEnd[_id])
+			_store.endSlot[_id] = slot;
+	}
+	
+	/**
+	 * Looks up where this edge is at its start and end nodes, after one of them was changed.
+	 */
+	private void findSlots() {
+		Node start = getStartNode();
+		Node end = getEndNode();
+		_store.startSlot[_id] = start == null ? DiagramStore.NO_SLOT : start.scan(this);
+		_store.endSlot[_id] = end == null || end == start ? DiagramStore.NO_SLOT : end.scan(this);
+	}
+	
+	/**
+	 * @param view		The view the frontend shows this edge with, or null.
+	 */
+	public void setView(DiagramObjectView view) {
+		_view = view;
+	}
+	
+	/**
+	 * @return		The view the frontend shows this edge with, or null if it has none.
+	 */
+	public DiagramObjectView getView() {
+		return _view;
+	}
+	
+	/**
+	 * Splits the text of an edge label into the input symbols it stands for.  Labels are comma
+	 * separated, and each piece stands for the last character typed into it (so "0, 1" is the
+	 * two symbols "0" and "1").  Pieces with nothing but whitespace give null.  Epsilon pieces
+	 * (see isEpsilon) are not input symbols and are left out.
+	 * @param text		The text of the label.
+	 * @return			The symbols of the label, in order.
+	 */
+	public static String[] parseLabel(String text) {
+		String[] splitcomma = text.split(",");
+		String[] labels = new String[splitcomma.length];
+		int count = 0;
+		for (int i = 0; i < splitcomma.length; i ++) {
+			if (isEpsilon(splitcomma[i]))
+				continue;
+			String[] tempArray = splitcomma[i].split("(\\s*)");
+			if (tempArray.length > 0)
+				labels[count] = tempArray[tempArray.length - 1];
+			count ++;
+		}
+		return count == labels.length ? labels : Arrays.copyOf(labels, count);
+	}
+	
+	/**
+	 * @param piece		One comma separated piece of an edge label.
+	 * @return			True if the piece is an epsilon (empty string) transition: either the
+	 * 					escape \epsilon that the label renders as a greek epsilon, or the character
+	 * 					itself.
+	 */
+	public static boolean isEpsilon(String piece) {
+		String trimmed = piece.trim();
+		return trimmed.equals(EPSILON) || trimmed.equals("\u03B5");
+	}
+	
+	/**
+	 * @param text		The text of an edge label.
+	 * @return			True if one of the pieces of the label is an epsilon transition.
+	 */
+	public static boolean hasEpsilon(String text) {
+		for (String piece : text.split(",")) {
+			if (isEpsilon(piece))
+				return true;
+		}
+		return false;
+	}
+	
+	/**
+	 * @return		A copy of this edge between the same nodes, with no view and in no diagram.  It is not connected
+	 * 				to the nodes.
 	 */
-    public static Arc2D getSelfLoop(Node n) {
-        double cx = n.getRadius() * .6;
-        double cy = n.getRadius() * .6;
-        double dc = Math.sqrt(cx*cx + cy*cy);
-
-        // Obtain the radius vector and size.
-        double rx = (-cy) / dc * 5 + cx;
-        double ry = (cx) / dc * 5 + cy;
-        double dr = Math.sqrt(rx * rx + ry * ry);
-
-        // Obtain the center of the arc.
-        double ax = n.getCenter().getX() + rx;
-        double ay = n.getCenter().getY() + ry;
-
-        Arc2D c = new Arc2D.Double();
-        c.setArcByCenter(ax, ay, dr, -Math.PI/2, Math.PI/2, Arc2D.OPEN);
-        c.setAngles(n.getCenter(), n.getCenter());
-
-        return c;
-    }
-    
 	public Edge clone() throws CloneNotSupportedException {
 		Edge cloned = (Edge) super.clone();
-		cloned.setDirection(getDirection());
-		cloned.setAngle(getAngle());
-		cloned.setHeight(getHeight());
-		cloned.setTurn(_turn);
-		cloned._area = new JTextField(_area.getText());
-		cloned._label = new JLabel(_label.getText());
-		
-		cloned._area.setBorder(null);
-		
-		cloned._curve = new Arc2D.Double(Arc2D.OPEN);
-        
-		cloned.resetArc();
-		cloned._area.setVisible(false);
-		cloned._area.setOpaque(false);
-		cloned._area.setSize(100, 20);
-		cloned._area.setBackground(new Color(0,0,0,0));
-		cloned._area.setSize(TEXTBOX_WIDTH, TEXTBOX_HEIGHT);
-		cloned._area.setHorizontalAlignment(JTextField.CENTER);
-		cloned._area.selectAll();
-		cloned._area.setEditable(true);
-		cloned._area.setEnabled(true);
-		cloned._area.addKeyListener(new EnterListener(_container, cloned._area));
-        cloned._area.getDocument().addDocumentListener(new HTMLParser(cloned._label));
-        cloned._label.setVisible(true);
-        cloned._label.setOpaque(false);
-        cloned._label.setSize(100, 20);
-        cloned._label.setBackground(new Color(0,0,0,0));
-        cloned._label.setSize(TEXTBOX_WIDTH, TEXTBOX_HEIGHT);
-        cloned._label.setHorizontalAlignment(JTextField.CENTER);
+		cloned._view = null;
+		cloned._store = DiagramStore.ofEdge();
+		cloned._id = cloned._store.addEdge(cloned);
+		cloned._store.copyEdge(_store, _id, cloned._id);
+		cloned._store.startSlot[cloned._id] = DiagramStore.NO_SLOT;
+		cloned._store.endSlot[cloned._id] = DiagramStore.NO_SLOT;
 		return cloned;
 	}
     
     /**
-     * This method returns the shape that we should draw on the screen to
-     * represent the edge.
-     * @return		Returns the curve which defines the arc on the screen.
+     * @return		The point the label of the edge is centered on, as {x, y}.
      */
-    public Shape resetArc() {
-
+    public double[] getLabelCenter() {
+    	Node start = getStartNode();
+    	Node end = getEndNode();
+    	double height = getHeight();
+    	boolean turn = getTurn();
+    	double angle = getAngle();
+    	
     	// If this is not the self-loop
-    	if(_start != _end) {
-
-        	// Obtain the half segment vector from the start to the end.
+    	if(start != end) {
         	double[] halfSegment = {
-        		(_end.getCenter().getX() - _start.getCenter().getX()) / 2,
-        		(_end.getCenter().getY() - _start.getCenter().getY()) / 2,
+        		(end.getX() - start.getX()) / 2,
+        		(end.getY() - start.getY()) / 2,
         	};
         	double halfSegmentSize = Math.sqrt(halfSegment[0] * halfSegment[0] + halfSegment[1] * halfSegment[1]);
-        	
-        	// Obtain the radius vector (from center of the arc to the end)
         	double[] radius = {
-        		(-halfSegment[1]) / halfSegmentSize * _height + halfSegment[0],
-        		(halfSegment[0]) / halfSegmentSize * _height + halfSegment[1]
+        		(-halfSegment[1]) / halfSegmentSize * height + halfSegment[0],
+        		(halfSegment[0]) / halfSegmentSize * height + halfSegment[1]
         	};
         	double radiusSize = Math.sqrt(radius[0] * radius[0] + radius[1] * radius[1]);
 	        
-        	// Obtain the center of the arc.
-        	double[] arcCenter = {
-        		_start.getCenter().getX() + radius[0],
-        		_start.getCenter().getY() + radius[1]
-        	};
-
-        	// Draw the curve
-        	_curve.setArcByCenter(arcCenter[0], arcCenter[1], radiusSize, -Math.PI/2, Math.PI/2, Arc2D.OPEN);
-        	if(_turn)
-        		_curve.setAngles(_start.getCenter(), _end.getCenter());
-	        else
-	        	_curve.setAngles(_end.getCenter(), _start.getCenter());
-	        
 	        // Find the label location
         	double[] label = {
-        		(_turn ? -1 : 1) * halfSegment[1] / halfSegmentSize * (radiusSize + (_turn ? 1 : -1) * _height + TEXTBOX_OFFSET) + halfSegment[0],
-        		(_turn ? 1 : -1) * halfSegment[0] / halfSegmentSize * (radiusSize + (_turn ? 1 : -1) * _height + TEXTBOX_OFFSET) + halfSegment[1]
+        		(turn ? -1 : 1) * halfSegment[1] / halfSegmentSize * (radiusSize + (turn ? 1 : -1) * height + TEXTBOX_OFFSET) + halfSegment[0],
+        		(turn ? 1 : -1) * halfSegment[0] / halfSegmentSize * (radiusSize + (turn ? 1 : -1) * height + TEXTBOX_OFFSET) + halfSegment[1]
         	};
-	
-	        _area.setLocation((int) (_start.getCenter().getX() + label[0]) - TEXTBOX_WIDTH / 2, 
-	        		(int) (_start.getCenter().getY() + label[1]) - TEXTBOX_HEIGHT / 2);
-	        _label.setLocation((int) (_start.getCenter().getX() + label[0]) - TEXTBOX_WIDTH / 2, 
-	        		(int) (_start.getCenter().getY() + label[1]) - TEXTBOX_HEIGHT / 2);
-	        
-	        return _curve;
+        	return new double[] {start.getX() + label[0], start.getY() + label[1]};
     	}
-    	// Drawing self-loop
+    	// Self-loop
     	else {
-    		// Obtain the center of the arc.
-        	double[] arcCenter = {
-        		_start.getCenter().getX() + Math.cos(_angle) * _start.getRadius() * Math.sqrt(2),
-        		_start.getCenter().getY() + Math.sin(_angle) * _start.getRadius() * Math.sqrt(2)
-        	};
-        	
-        	// Draw the curve
-        	_curve.setArcByCenter(arcCenter[0], arcCenter[1], _start.getRadius(), -_angle * 180 / Math.PI - 135, 270, Arc2D.OPEN);
-        	
-        	// Find the label location
         	double[] label = {
-        		Math.cos(_angle) * (_start.getRadius() * (Math.sqrt(2) + 1) + TEXTBOX_OFFSET),
-        		Math.sin(_angle) * (_start.getRadius() * (Math.sqrt(2) + 1) + TEXTBOX_OFFSET)
+        		Math.cos(angle) * (start.getRadius() * (Math.sqrt(2) + 1) + TEXTBOX_OFFSET),
+        		Math.sin(angle) * (start.getRadius() * (Math.sqrt(2) + 1) + TEXTBOX_OFFSET)
         	};
-	
-	        _area.setLocation((int) (_start.getCenter().getX() + label[0]) - TEXTBOX_WIDTH / 2, 
-	        		(int) (_start.getCenter().getY() + label[1]) - TEXTBOX_HEIGHT / 2);
-	        _label.setLocation((int) (_start.getCenter().getX() + label[0]) - TEXTBOX_WIDTH / 2, 
-	        		(int) (_start.getCenter().getY() + label[1]) - TEXTBOX_HEIGHT / 2);
-        	
-	        return _curve;
+        	return new double[] {start.getX() + label[0], start.getY() + label[1]};
     	}
     }
     
@@ -334,26 +340,31 @@ public class Edge implements DiagramObject, Cloneable {
      * @return		Whether or not the mouse intersects this edge
      */
     public boolean intersects(double x, double y) {
+    	Node start = getStartNode();
+    	Node end = getEndNode();
+    	double height = getHeight();
+    	boolean turn = getTurn();
+    	double angle = getAngle();
     	
-    	if(_start != _end) {
+    	if(start != end) {
         	// Obtain the half segment vector from the start to the end.
         	double[] halfSegment = {
-        		(_end.getCenter().getX() - _start.getCenter().getX()) / 2,
-        		(_end.getCenter().getY() - _start.getCenter().getY()) / 2,
+        		(end.getX() - start.getX()) / 2,
+        		(end.getY() - start.getY()) / 2,
         	};
         	double halfSegmentSize = Math.sqrt(halfSegment[0] * halfSegment[0] + halfSegment[1] * halfSegment[1]);
         	
         	// Obtain the radius vector (from center of the arc to the end)
         	double[] radius = {
-        		(-halfSegment[1]) / halfSegmentSize * _height + halfSegment[0],
-        		(halfSegment[0]) / halfSegmentSize * _height + halfSegment[1]
+        		(-halfSegment[1]) / halfSegmentSize * height + halfSegment[0],
+        		(halfSegment[0]) / halfSegmentSize * height + halfSegment[1]
         	};
         	double radiusSize = Math.sqrt(radius[0] * radius[0] + radius[1] * radius[1]);
 	        
         	// Obtain the center of the arc.
         	double[] arcCenter = {
-        		_start.getCenter().getX() + radius[0],
-        		_start.getCenter().getY() + radius[1]
+        		start.getX() + radius[0],
+        		start.getY() + radius[1]
         	};
         	
         	// Obtain the vector from the center of the arc to the mouse.
@@ -362,9 +373,9 @@ public class Edge implements DiagramObject, Cloneable {
 	        
 	        // Obtain the virtual angle
 	        double thetaMouse = theta(mouse[0], mouse[1]);
-	        double thetaP = theta(_start.getCenter().getX() - arcCenter[0], _start.getCenter().getY() - arcCenter[1]);
-	        double thetaQ = theta(_end.getCenter().getX() - arcCenter[0], _end.getCenter().getY() - arcCenter[1]);
-	        if(_turn) { // needs to reverse
+	        double thetaP = theta(start.getX() - arcCenter[0], start.getY() - arcCenter[1]);
+	        double thetaQ = theta(end.getX() - arcCenter[0], end.getY() - arcCenter[1]);
+	        if(turn) { // needs to reverse
 	        	double tmp = thetaP;
 	        	thetaP = thetaQ;
 	        	thetaQ = tmp;
@@ -377,8 +388,8 @@ public class Edge implements DiagramObject, Cloneable {
     	else {
     		// Obtain the center of the arc.
         	double[] arcCenter = {
-        		_start.getCenter().getX() + Math.cos(_angle) * _start.getRadius() * Math.sqrt(2),
-        		_start.getCenter().getY() + Math.sin(_angle) * _start.getRadius() * Math.sqrt(2)
+        		start.getX() + Math.cos(angle) * start.getRadius() * Math.sqrt(2),
+        		start.getY() + Math.sin(angle) * start.getRadius() * Math.sqrt(2)
         	};
 
         	// Obtain the vector from the center of the arc to the mouse.
@@ -386,40 +397,39 @@ public class Edge implements DiagramObject, Cloneable {
         	double mouseSize = Math.sqrt(mouse[0] * mouse[0] + mouse[1] * mouse[1]);
 	        
 	        // Check if mouse is in the range.
-	        return (Math.abs(mouseSize - _start.getRadius()) < RADIUS_TOLERANCE);
+	        return (Math.abs(mouseSize - start.getRadius()) < RADIUS_TOLERANCE);
     	}
     }
     
     /**
-     * @return		The curve to draw on the screen.
+     * @return		The corners of the forward arrow, as the x-coordinates and then the y-coordinates; the tip
+     * 				is the last.
      */
-    public Arc2D getCurve() {
-    	return _curve;
-    }
-
-    /**
-     * @return		The forward arrow to draw on the screen.
-     */
-    public Polygon getForward() {
+    public int[][] getForwardPoints() {
+    	Node start = getStartNode();
+    	Node end = getEndNode();
+    	double height = getHeight();
+    	boolean turn = getTurn();
+    	double angle = getAngle();
     	
-    	if(_start != _end) {
+    	if(start != end) {
 	    	// Obtain the half segment vector from the start to the end.
 	    	double[] halfSegment = {
-	    		(_end.getCenter().getX() - _start.getCenter().getX()) / 2,
-	    		(_end.getCenter().getY() - _start.getCenter().getY()) / 2,
+	    		(end.getX() - start.getX()) / 2,
+	    		(end.getY() - start.getY()) / 2,
 	    	};
 	    	double halfSegmentSize = Math.sqrt(halfSegment[0] * halfSegment[0] + halfSegment[1] * halfSegment[1]);
 	    	
 	    	// Obtain the radius vector (from center of the arc to the end)
 	    	double[] radius = {
-	    		(halfSegment[1]) / halfSegmentSize * _height + halfSegment[0],
-	    		(-halfSegment[0]) / halfSegmentSize * _height + halfSegment[1]
+	    		(halfSegment[1]) / halfSegmentSize * height + halfSegment[0],
+	    		(-halfSegment[0]) / halfSegmentSize * height + halfSegment[1]
 	    	};
 	    	double radiusSize = Math.sqrt(radius[0] * radius[0] + radius[1] * radius[1]);
 	    	
 	    	// Find the angle to turn around the radius vector to the quasi-tangent vector
-	    	double sinTheta = _end.getRadius() / (2 * radiusSize);
-	    	double cosTheta = Math.sqrt(1 - sinTheta * sinTheta) * (_turn ? -1 : 1);
+	    	double sinTheta = end.getRadius() / (2 * radiusSize);
+	    	double cosTheta = Math.sqrt(1 - sinTheta * sinTheta) * (turn ? -1 : 1);
 	    	
 	    	// Find the doubleAngle
 	    	double sinTwoTheta = 2 * sinTheta * cosTheta;
@@ -433,14 +443,14 @@ public class Edge implements DiagramObject, Cloneable {
 	    	
 	    	// Obtain the arrow tip position.
 	    	double[] arrowTip = {
-	    		_end.getCenter().getX() - radius[0] + quasiTangent[0],
-	    		_end.getCenter().getY() - radius[1] + quasiTangent[1] 
+	    		end.getX() - radius[0] + quasiTangent[0],
+	    		end.getY() - radius[1] + quasiTangent[1] 
 	    	};
 	    	
 	    	// Obtain the arrow base position.
 	    	double[] arrowBase = {
-	    		(_turn ? -1 : 1) * (quasiTangent[1]) / radiusSize * ARROW_SIZE + arrowTip[0],
-	    		(_turn ? 1 : -1) * (quasiTangent[0]) / radiusSize * ARROW_SIZE + arrowTip[1]
+	    		(turn ? -1 : 1) * (quasiTangent[1]) / radiusSize * ARROW_SIZE + arrowTip[0],
+	    		(turn ? 1 : -1) * (quasiTangent[0]) / radiusSize * ARROW_SIZE + arrowTip[1]
 	    	};
 	    	
 	    	// Obtain the arrow left base and right base.
@@ -457,26 +467,24 @@ public class Edge implements DiagramObject, Cloneable {
 	    	int[] xpoints = {(int) arrowLeft[0], (int) arrowRight[0], (int) arrowTip[0]};
 	    	int[] ypoints = {(int) arrowLeft[1], (int) arrowRight[1], (int) arrowTip[1]};
 	    	
-	    	// Draw a triangle and return
-	    	Polygon arrow = new Polygon(xpoints, ypoints, 3);
-	    	return arrow;
+	    	return new int[][] {xpoints, ypoints};
     	}
     	else {
     		double[] arrowTangent = {
-        		Math.cos(_angle + Math.PI / 4),
-        		Math.sin(_angle + Math.PI / 4)
+        		Math.cos(angle + Math.PI / 4),
+        		Math.sin(angle + Math.PI / 4)
     		};
     		
     		// Obtain the center of the arc.
         	double[] arrowTip = {
-        		_start.getCenter().getX() + Math.cos(_angle - Math.PI / 4) * _start.getRadius(),
-        		_start.getCenter().getY() + Math.sin(_angle - Math.PI / 4) * _start.getRadius()
+        		start.getX() + Math.cos(angle - Math.PI / 4) * start.getRadius(),
+        		start.getY() + Math.sin(angle - Math.PI / 4) * start.getRadius()
         	};
         	
         	// Obtain the arrow base position.
 	    	double[] arrowBase = {
-        		_start.getCenter().getX() + Math.cos(_angle - Math.PI / 4) * (_start.getRadius() + ARROW_SIZE),
-        		_start.getCenter().getY() + Math.sin(_angle - Math.PI / 4) * (_start.getRadius() + ARROW_SIZE)
+        		start.getX() + Math.cos(angle - Math.PI / 4) * (start.getRadius() + ARROW_SIZE),
+        		start.getY() + Math.sin(angle - Math.PI / 4) * (start.getRadius() + ARROW_SIZE)
 	    	};
 	    	
 	    	// Obtain the arrow left base and right base.
@@ -493,35 +501,39 @@ public class Edge implements DiagramObject, Cloneable {
 	    	int[] xpoints = {(int) arrowLeft[0], (int) arrowRight[0], (int) arrowTip[0]};
 	    	int[] ypoints = {(int) arrowLeft[1], (int) arrowRight[1], (int) arrowTip[1]};
 	    	
-	    	// Draw a triangle and return
-	    	Polygon arrow = new Polygon(xpoints, ypoints, 3);
-	    	return arrow;
+	    	return new int[][] {xpoints, ypoints};
     	}
     }
     
     /**
-     * @return		The backward arrow to draw on the screen.
+     * @return		The corners of the backward arrow, as the x-coordinates and then the y-coordinates; the tip
+     * 				is the last.
      */
-    public Polygon getBackward() {
+    public int[][] getBackwardPoints() {
+    	Node start = getStartNode();
+    	Node end = getEndNode();
+    	double height = getHeight();
+    	boolean turn = getTurn();
+    	double angle = getAngle();
 
-    	if(_start != _end) {
+    	if(start != end) {
 	    	// Obtain the half segment vector from the start to the end.
 	    	double[] halfSegment = {
-	    		(_end.getCenter().getX() - _start.getCenter().getX()) / 2,
-	    		(_end.getCenter().getY() - _start.getCenter().getY()) / 2,
+	    		(end.getX() - start.getX()) / 2,
+	    		(end.getY() - start.getY()) / 2,
 	    	};
 	    	double halfSegmentSize = Math.sqrt(halfSegment[0] * halfSegment[0] + halfSegment[1] * halfSegment[1]);
 	    	
 	    	// Obtain the radius vector (from center of the arc to the start)
 	    	double[] radius = {
-	    		(halfSegment[1]) / halfSegmentSize * _height - halfSegment[0],
-	    		(-halfSegment[0]) / halfSegmentSize * _height - halfSegment[1]
+	    		(halfSegment[1]) / halfSegmentSize * height - halfSegment[0],
+	    		(-halfSegment[0]) / halfSegmentSize * height - halfSegment[1]
 	    	};
 	    	double radiusSize = Math.sqrt(radius[0] * radius[0] + radius[1] * radius[1]);
 	    	
 	    	// Find the angle to turn around the radius vector to the quasi-tangent vector
-	    	double sinTheta = _start.getRadius() / (2 * radiusSize);
-	    	double cosTheta = Math.sqrt(1 - sinTheta * sinTheta) * (_turn ? 1 : -1);
+	    	double sinTheta = start.getRadius() / (2 * radiusSize);
+	    	double cosTheta = Math.sqrt(1 - sinTheta * sinTheta) * (turn ? 1 : -1);
 	    	
 	    	// Find the doubleAngle
 	    	double sinTwoTheta = 2 * sinTheta * cosTheta;
@@ -535,14 +547,14 @@ public class Edge implements DiagramObject, Cloneable {
 	    	
 	    	// Obtain the arrow tip position.
 	    	double[] arrowTip = {
-	    		_start.getCenter().getX() - radius[0] + quasiTangent[0],
-	    		_start.getCenter().getY() - radius[1] + quasiTangent[1] 
+	    		start.getX() - radius[0] + quasiTangent[0],
+	    		start.getY() - radius[1] + quasiTangent[1] 
 	    	};
 	    	
 	    	// Obtain the arrow base position.
 	    	double[] arrowBase = {
-	    		(_turn ? 1 : -1) * (quasiTangent[1]) / radiusSize * ARROW_SIZE + arrowTip[0],
-	    		(_turn ? -1 : 1) * (quasiTangent[0]) / radiusSize * ARROW_SIZE + arrowTip[1]
+	    		(turn ? 1 : -1) * (quasiTangent[1]) / radiusSize * ARROW_SIZE + arrowTip[0],
+	    		(turn ? -1 : 1) * (quasiTangent[0]) / radiusSize * ARROW_SIZE + arrowTip[1]
 	    	};
 	    	
 	    	// Obtain the arrow left base and right base.
@@ -559,26 +571,24 @@ public class Edge implements DiagramObject, Cloneable {
 	    	int[] xpoints = {(int) arrowLeft[0], (int) arrowRight[0], (int) arrowTip[0]};
 	    	int[] ypoints = {(int) arrowLeft[1], (int) arrowRight[1], (int) arrowTip[1]};
 	    	
-	    	// Draw a triangle and return
-	    	Polygon arrow = new Polygon(xpoints, ypoints, 3);
-	    	return arrow;
+	    	return new int[][] {xpoints, ypoints};
     	}
     	else {
     		double[] arrowTangent = {
-        		Math.cos(_angle - Math.PI / 4),
-        		Math.sin(_angle - Math.PI / 4)
+        		Math.cos(angle - Math.PI / 4),
+        		Math.sin(angle - Math.PI / 4)
     		};
     		
     		// Obtain the center of the arc.
         	double[] arrowTip = {
-        		_start.getCenter().getX() + Math.cos(_angle + Math.PI / 4) * _start.getRadius(),
-        		_start.getCenter().getY() + Math.sin(_angle + Math.PI / 4) * _start.getRadius()
+        		start.getX() + Math.cos(angle + Math.PI / 4) * start.getRadius(),
+        		start.getY() + Math.sin(angle + Math.PI / 4) * start.getRadius()
         	};
         	
         	// Obtain the arrow base position.
 	    	double[] arrowBase = {
-        		_start.getCenter().getX() + Math.cos(_angle + Math.PI / 4) * (_start.getRadius() + ARROW_SIZE),
-        		_start.getCenter().getY() + Math.sin(_angle + Math.PI / 4) * (_start.getRadius() + ARROW_SIZE)
+        		start.getX() + Math.cos(angle + Math.PI / 4) * (start.getRadius() + ARROW_SIZE),
+        		start.getY() + Math.sin(angle + Math.PI / 4) * (start.getRadius() + ARROW_SIZE)
 	    	};
 	    	
 	    	// Obtain the arrow left base and right base.
@@ -595,9 +605,7 @@ public class Edge implements DiagramObject, Cloneable {
 	    	int[] xpoints = {(int) arrowLeft[0], (int) arrowRight[0], (int) arrowTip[0]};
 	    	int[] ypoints = {(int) arrowLeft[1], (int) arrowRight[1], (int) arrowTip[1]};
 	    	
-	    	// Draw a triangle and return
-	    	Polygon arrow = new Polygon(xpoints, ypoints, 3);
-	    	return arrow;
+	    	return new int[][] {xpoints, ypoints};
     	}
     }
     
@@ -605,194 +613,227 @@ public class Edge implements DiagramObject, Cloneable {
      * @param h		The height to set for the edge.
      */
     public void setHeight(double h) {
-    	_height = h;
+    	_store.height[_id] = h;
+    	moved();
     }
 
     /**
      * @param t		The turn to set for the edge (used in drawing).
      */
     public void setTurn(boolean t) {
-    	_turn = t;
+    	_store.turn.set(_id, t);
+    	moved();
     }
     
     /**
      * @return The turn to set for the edge (used in drawing).
      */
     public boolean getTurn() {
-    	return _turn;
+    	return _store.turn.get(_id);
     }
     
     /**
      * @return		True if edge is selected; false otherwise.
      */
     public boolean isSelected(){
-        return _selected;
+        return _store.edgeSelected.get(_id);
     }
 
     /**
      * @param selected		True if the edge should be selected.
      */
     public void setSelected(boolean selected){
-        _selected = selected;
+        _store.edgeSelected.set(_id, selected);
     }
     
     /**
-     * @return		The text field drawn next to the edge.
+     * @return		The label drawn next to the edge, as typed.
      */
-	public JTextField getTextField(){
-		return _area;
+	public String getText(){
+		return _store.edgeText[_id];
 	}
 	
 	/**
-	 * @param label		The textField to set next to the edge.
+	 * @return		The input symbols of the label, parsed when they are first asked for after the label is set.
 	 */
-	public void setFieldText(JTextField label) {
-		_area = label;
+	LabelSymbols getSymbols() {
+		LabelSymbols symbols = _store.edgeSymbols[_id];
+		//No unshare: the column may be shared with a frozen store, but that has the same text, so the same symbols.
+		if (symbols == null)
+			symbols = _store.edgeSymbols[_id] = LabelSymbols.of(getText());
+		return symbols;
 	}
-
+	
 	/**
-	 * @return		The JLabel drawn next to the edge.
+	 * @param text		The label to set next to the edge; it is shown on the view if there is one.
 	 */
-    public JLabel getLabel(){
-        return _label;
-    }
-    
-    /**
-     * @param s		The text to set on the JLabel.
-     */
-    public void setLabel(String s){
-        _label.setText(s);
-    }
+	public void setText(String text) {
+		if (text.equals(_store.edgeText[_id]))
+			return;
+		_store.unshare(DiagramStore.EDGE_TEXT);
+		_store.edgeText[_id] = text;
+		_store.edgeSymbols[_id] = null;
+		if (_view != null)
+			_view.textChanged(text);
+		changed();
+	}
     
     /**
      * @return		The start node.
      */
 	public Node getStartNode() {
-		return _start;
+		return _store.edgeStart[_id];
 	}
 	
 	/**
 	 * @return		The end node.
 	 */
 	public Node getEndNode() {
-		return _end;
+		return _store.edgeEnd[_id];
 	}
 	
 	/**
 	 * @param d		The edge direction to set.
 	 */
 	public void setDirection(EdgeDirection d){
-		_direction = d;
+		_store.unshare(DiagramStore.EDGE_DIRECTION);
+		_store.direction[_id] = DiagramStore.directionNumber(d);
+		changed();
+		moved();
 	}
 
 	/**
 	 * @return		The edge direction.
 	 */
 	public EdgeDirection getDirection() {
-		return _direction;
+		return DiagramStore.direction(_store.direction[_id]);
 	}
 
 	/**
 	 * @param val		Whether or not this is the current edge in simulation.
 	 */
     public void setCurrent(boolean val) {
-        _current = val;
+        _store.edgeCurrent.set(_id, val);
     }
     
     /**
      * @return		Whether or not this is the current edge in simulation.
      */
     public boolean getCurrent() {
-        return _current;
+        return _store.edgeCurrent.get(_id);
     }
     
     /**
      * Return the name of this edge.
      */
     public String getName() {
-        return ("Edge " + getNodeString() +  ": " + _area.getText());
+        return ("Edge " + getNodeString() +  ": " + getText());
     }
     
     /**
      * @return		Helper to get name; returns the string of which nodes the edge goes to and from.
      */
 	public String getNodeString() {
-		return "(" + getStartNode().getTextField().getText() + ", " + getEndNode().getTextField().getText() + ")";
+		return "(" + getStartNode().getText() + ", " + getEndNode().getText() + ")";
 	}
 	
 	/**
 	 * @param offset		Sets the offset of this Edge to the mouse.
 	 */	
 	public void setOffset(double offset) {
-		_offset = offset;
+		_store.edgeOffset[_id] = offset;
 	}
 	
 	/**
 	 * @return		Returns the offset.
 	 */
 	public double getOffset() {
-		return _offset;
+		return _store.edgeOffset[_id];
 	}
 	
 	/**
 	 * @param angle		Sets the angle of this edge (for self looping).
 	 */
 	public void setAngle(double angle) {
-		_angle = angle;
+		_store.angle[_id] = angle;
+		moved();
 	}
 	
 	/**
 	 * @return		The angle of the edge.
 	 */
 	public double getAngle() {
-		return _angle;
+		return _store.angle[_id];
 	}
 	
 	/**
 	 * @return		The arc-chord height.
 	 */
 	public double getHeight() {
-		return _height;
+		return _store.height[_id];
 	}
 	
+	/**
+	 * Moves the start of this edge to another node.  The edges connected to the nodes stay as they are.
+	 * @param st		The new start node.
+	 */
 	public void setStartNode(Node st) {
-		_start = st;
+		_store.unshare(DiagramStore.EDGE_ENDS);
+		_store.edgeStart[_id] = st;
+		findSlots();
+		changed();
+		moved();
 	}
 	
+	/**
+	 * Moves the end of this edge to another node.  The edges connected to the nodes stay as they are.
+	 * @param end		The new end node.
+	 */
 	public void setEndNode(Node end) {
-		_end = end;
+		_store.unshare(DiagramStore.EDGE_ENDS);
+		_store.edgeEnd[_id] = end;
+		findSlots();
+		changed();
+		moved();
 	}
 	
-	public Point2D.Double getArcCenter() {
+	/**
+	 * @return		The center of the arc, as {x, y}.
+	 */
+	public double[] getArcCenter() {
+		Node start = getStartNode();
+		Node end = getEndNode();
+		double height = getHeight();
+		double angle = getAngle();
 		
-		if(_start == _end) {
+		if(start == end) {
 			// Obtain the center of the arc.
         	double[] arcCenter = {
-        		_start.getCenter().getX() + Math.cos(_angle) * _start.getRadius() * Math.sqrt(2),
-        		_start.getCenter().getY() + Math.sin(_angle) * _start.getRadius() * Math.sqrt(2)
+        		start.getX() + Math.cos(angle) * start.getRadius() * Math.sqrt(2),
+        		start.getY() + Math.sin(angle) * start.getRadius() * Math.sqrt(2)
         	};
-        	return new Point2D.Double(arcCenter[0], arcCenter[1]);
+        	return arcCenter;
 		} 
 		else {
 			// Obtain the half segment vector from the start to the end.
 	    	double[] halfSegment = {
-	    		(_end.getCenter().getX() - _start.getCenter().getX()) / 2,
-	    		(_end.getCenter().getY() - _start.getCenter().getY()) / 2,
+	    		(end.getX() - start.getX()) / 2,
+	    		(end.getY() - start.getY()) / 2,
 	    	};
 	    	double halfSegmentSize = Math.sqrt(halfSegment[0] * halfSegment[0] + halfSegment[1] * halfSegment[1]);
 	    	
 	    	// Obtain the radius vector (from center of the arc to the end)
 	    	double[] radius = {
-	    		(-halfSegment[1]) / halfSegmentSize * _height + halfSegment[0],
-	    		(halfSegment[0]) / halfSegmentSize * _height + halfSegment[1]
+	    		(-halfSegment[1]) / halfSegmentSize * height + halfSegment[0],
+	    		(halfSegment[0]) / halfSegmentSize * height + halfSegment[1]
 	    	};
 	        
 	    	// Obtain the center of the arc.
 	    	double[] arcCenter = {
-	    		_start.getCenter().getX() + radius[0],
-	    		_start.getCenter().getY() + radius[1]
+	    		start.getX() + radius[0],
+	    		start.getY() + radius[1]
 	    	};
-	    	return new Point2D.Double(arcCenter[0], arcCenter[1]);
+	    	return arcCenter;
 		}
 	}
-}
\ No newline at end of file
+}
@@ -0,0 +1,166 @@
+package backend;
+
+import java.util.*;
+
+/**
+ * Hopcroft and Karp's check that two DFSMs accept the same language.  Starting from the pair of
+ * start states, every pair of states the two machines can be in together is merged in a union-find
+ * structure, and the pairs their transitions lead to are visited next, unless the two states are
+ * already known to be equivalent.  Since every merge joins two classes, at most n1 + n2 pairs are
+ * ever visited, so the check takes near-linear time and never builds the product of the machines.
+ *
+ * The pairs are visited breadth first, so the first pair found with one accepting and one
+ * rejecting state is reached by a shortest string that tells the machines apart.
+ *
+ * A missing transition goes to a dead state of that machine, and a symbol that only one of the
+ * machines knows leads the other one to its dead state.
+ */
+class EquivalenceChecker {
+
+	private final CompiledAutomaton _first;
+	private final CompiledAutomaton _second;
+
+	/** The symbols of both machines. */
+	private final char[] _alphabet;
+
+	/** The symbol number in each machine of every symbol of _alphabet, or -1. */
+	private final int[] _firstSymbol;
+	private final int[] _secondSymbol;
+
+	/** The union-find forest over the states of both machines and their dead states: state s of the
+	 * first machine is s, and state s of the second is firstCount + 1 + s. */
+	private int[] _parent;
+	private int[] _rank;
+
+	/** The pairs visited so far, in order, with the pair and symbol each was reached from. */
+	private int[] _pairFirst;
+	private int[] _pairSecond;
+	private int[] _from;
+	private char[] _via;
+	private int _pairs;
+
+	EquivalenceChecker(CompiledAutomaton first, CompiledAutomaton second) {
+		_first = first;
+		_second = second;
+		SymbolTable symbols = new SymbolTable();
+		for (int i = 0; i < first.getSymbolCount(); i ++)
+			symbols.intern(first.getSymbol(i));
+		for (int i = 0; i < second.getSymbolCount(); i ++)
+			symbols.intern(second.getSymbol(i));
+		int k = symbols.size();
+		_alphabet = new char[k];
+		_firstSymbol = new int[k];
+		_secondSymbol = new int[k];
+		for (int i = 0; i < k; i ++) {
+			_alphabet[i] = symbols.getSymbol(i);
+			_firstSymbol[i] = first.symbolOf(_alphabet[i]);
+			_secondSymbol[i] = second.symbolOf(_alphabet[i]);
+		}
+	}
+
+	/**
+	 * Runs the check.
+	 * @return		A shortest string one machine accepts and the other rejects, or null if they
+	 * 				accept the same language.
+	 */
+	String distinguish() {
+		int firstDead = _first.getStateCount();
+		int secondDead = _second.getStateCount();
+		int offset = firstDead + 1;
+		int size = offset + secondDead + 1;
+		_parent = new int[size];
+		_rank = new int[size];
+		for (int i = 0; i < size; i ++)
+			_parent[i] = i;
+		_pairFirst = new int[16];
+		_pairSecond = new int[16];
+		_from = new int[16];
+		_via = new char[16];
+
+		int start = visit(_first.getStart(), _second.getStart(), -1, '\0');
+		union(_first.getStart(), offset + _second.getStart());
+		if (start >= 0)
+			return witness(start);
+		for (int head = 0; head < _pairs; head ++) {
+			int p = _pairFirst[head];
+			int q = _pairSecond[head];
+			for (int symbol = 0; symbol < _alphabet.length; symbol ++) {
+				int nextP = p == firstDead || _firstSymbol[symbol] < 0 ? CompiledAutomaton.NO_STATE : _first.step(p, _firstSymbol[symbol]);
+				int nextQ = q == secondDead || _secondSymbol[symbol] < 0 ? CompiledAutomaton.NO_STATE : _second.step(q, _secondSymbol[symbol]);
+				if (nextP == CompiledAutomaton.NO_STATE)
+					nextP = firstDead;
+				if (nextQ == CompiledAutomaton.NO_STATE)
+					nextQ = secondDead;
+				if (!union(nextP, offset + nextQ))
+					continue;
+				int differs = visit(nextP, nextQ, head, _alphabet[symbol]);
+				if (differs >= 0)
+					return witness(differs);
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Adds a pair to the end of the queue.
+	 * @return		The number of the pair if its states differ in acceptance, or -1.
+	 */
+	private int visit(int p, int q, int from, char via) {
+		if (_pairs == _pairFirst.length) {
+			int length = _pairs * 2;
+			_pairFirst = Arrays.copyOf(_pairFirst, length);
+			_pairSecond = Arrays.copyOf(_pairSecond, length);
+			_from = Arrays.copyOf(_from, length);
+			_via = Arrays.copyOf(_via, length);
+		}
+		_pairFirst[_pairs] = p;
+		_pairSecond[_pairs] = q;
+		_from[_pairs] = from;
+		_via[_pairs] = via;
+		int pair = _pairs ++;
+		boolean acceptP = p < _first.getStateCount() && _first.isAccept(p);
+		boolean acceptQ = q < _second.getStateCount() && _second.isAccept(q);
+		return acceptP != acceptQ ? pair : -1;
+	}
+
+	/**
+	 * @return		The string that reaches the given pair, read off the chain of pairs it came from.
+	 */
+	private String witness(int pair) {
+		StringBuilder witness = new StringBuilder();
+		for (int i = pair; _from[i] >= 0; i = _from[i])
+			witness.append(_via[i]);
+		return witness.reverse().toString();
+	}
+
+	/**
+	 * @return		The representative of the class of the element, halving the path to it.
+	 */
+	private int find(int x) {
+		while (_parent[x] != x) {
+			_parent[x] = _parent[_parent[x]];
+			x = _parent[x];
+		}
+		return x;
+	}
+
+	/**
+	 * Merges the classes of two elements.
+	 * @return		False if they were already in the same class.
+	 */
+	private boolean union(int a, int b) {
+		a = find(a);
+		b = find(b);
+		if (a == b)
+			return false;
+		if (_rank[a] < _rank[b]) {
+			int temp = a;
+			a = b;
+			b = temp;
+		}
+		_parent[b] = a;
+		if (_rank[a] == _rank[b])
+			_rank[a] ++;
+		return true;
+	}
+}
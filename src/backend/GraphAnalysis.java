@@ -0,0 +1,391 @@
+package backend;
+
+import java.util.*;
+
+/**
+ * Analyses of a diagram as a plain graph, as worked out by Diagram.analyzeGraph(): its connected
+ * components, its strongly connected components, a topological order and a cycle.  Every edge
+ * counts, whatever its label; a singly-directed edge goes from its start node to its end node, and
+ * an edge with no direction or both directions goes both ways.
+ *
+ * Everything is worked out over an AdjacencyIndex of Diagram.graph() without recursion (Tarjan's
+ * algorithm runs off an explicit stack), in time linear in the size of the diagram, so graphs with
+ * hundreds of thousands of nodes do not overflow the stack.
+ *
+ * A cycle is a closed walk that uses no edge twice, so an edge that goes both ways is not a cycle
+ * on its own, although it does mean there is no topological order.
+ */
+public class GraphAnalysis {
+
+	private final int _revision;
+	private final DiagramGraph _snapshot;
+	private final AdjacencyIndex _graph;
+
+	/** The connected component of every node, ignoring directions. */
+	private final int[] _component;
+	private final int _componentCount;
+
+	/** The strongly connected component of every node, numbered so that every arc between two
+	 * components goes from a lower number to a higher one. */
+	private final int[] _strong;
+	private final int _strongCount;
+
+	/** The nodes in topological order, or null if there is none. */
+	private final int[] _order;
+
+	/** The nodes of a cycle in order, and the edges from each to the next, or null if there is none. */
+	private int[] _cycleNodes;
+	private int[] _cycleEdges;
+
+	GraphAnalysis(DiagramGraph snapshot) {
+		_revision = snapshot.getRevision();
+		_snapshot = snapshot;
+		_graph = AdjacencyIndex.ofGraph(snapshot);
+		int n = _graph.size();
+
+		_component = new int[n];
+		_componentCount = findComponents();
+		_strong = new int[n];
+		_strongCount = findStrongComponents();
+
+		//There is a topological order if and only if every strong component is one node with no
+		//loop, and then the component numbers are one.
+		boolean acyclic = _strongCount == n;
+		for (int v = 0; v < n && acyclic; v ++) {
+			for (int j = _graph.outStart[v]; j < _graph.outStart[v + 1]; j ++)
+				acyclic &= _graph.targets[j] != v;
+		}
+		if (acyclic) {
+			_order = new int[n];
+			for (int v = 0; v < n; v ++)
+				_order[_strong[v]] = v;
+		}
+		else
+			_order = null;
+		findCycle();
+	}
+
+	/**
+	 * Numbers the connected components by breadth-first search over the arcs both ways.
+	 * @return		The number of components.
+	 */
+	private int findComponents() {
+		int n = _graph.size();
+		Arrays.fill(_component, -1);
+		int[] queue = new int[n];
+		int count = 0;
+		for (int root = 0; root < n; root ++) {
+			if (_component[root] >= 0)
+				continue;
+			int tail = 0;
+			_component[root] = count;
+			queue[tail ++] = root;
+			for (int head = 0; head < tail; head ++) {
+				int v = queue[head];
+				for (int j = _graph.outStart[v]; j < _graph.outStart[v + 1]; j ++) {
+					if (_component[_graph.targets[j]] < 0) {
+						_component[_graph.targets[j]] = count;
+						queue[tail ++] = _graph.targets[j];
+					}
+				}
+				for (int j = _graph.inStart[v]; j < _graph.inStart[v + 1]; j ++) {
+					if (_component[_graph.sources[j]] < 0) {
+						_component[_graph.sources[j]] = count;
+						queue[tail ++] = _graph.sources[j];
+					}
+				}
+			}
+			count ++;
+		}
+		return count;
+	}
+
+	/**
+	 * Numbers the strongly connected components with Tarjan's algorithm, run off an explicit stack
+	 * of (node, next arc) frames instead of recursion.
+	 * @return		The number of components.
+	 */
+	private int findStrongComponents() {
+		int n = _graph.size();
+		int[] number = new int[n];
+		int[] low = new int[n];
+		Arrays.fill(number, -1);
+		boolean[] onStack = new boolean[n];
+		int[] stack = new int[n];
+		int stackTop = 0;
+		int[] frameNode = new int[n];
+		int[] frameArc = new int[n];
+		int counter = 0;
+		int count = 0;
+		for (int root = 0; root < n; root ++) {
+			if (number[root] >= 0)
+				continue;
+			int top = 0;
+			frameNode[0] = root;
+			frameArc[0] = _graph.outStart[root];
+			number[root] = low[root] = counter ++;
+			stack[stackTop ++] = root;
+			onStack[root] = true;
+			while (top >= 0) {
+				int v = frameNode[top];
+				if (frameArc[top] < _graph.outStart[v + 1]) {
+					int w = _graph.targets[frameArc[top] ++];
+					if (number[w] < 0) {
+						number[w] = low[w] = counter ++;
+						stack[stackTop ++] = w;
+						onStack[w] = true;
+						top ++;
+						frameNode[top] = w;
+						frameArc[top] = _graph.outStart[w];
+					}
+					else if (onStack[w])
+						low[v] = Math.min(low[v], number[w]);
+					continue;
+				}
+				if (low[v] == number[v]) {
+					int w;
+					do {
+						w = stack[-- stackTop];
+						onStack[w] = false;
+						_strong[w] = count;
+					} while (w != v);
+					count ++;
+				}
+				top --;
+				if (top >= 0)
+					low[frameNode[top]] = Math.min(low[frameNode[top]], low[v]);
+			}
+		}
+		//Tarjan's algorithm finishes a component only after every component it has arcs to.
+		for (int v = 0; v < n; v ++)
+			_strong[v] = count - 1 - _strong[v];
+		return count;
+	}
+
+	/**
+	 * Finds a cycle inside some strong component, if there is one.  A loop is a cycle.  Otherwise
+	 * a singly-directed edge inside a component closes a cycle with a shortest path back from its
+	 * end to its start.  Otherwise the edges of each component all go both ways, and the component
+	 * has a cycle if it has at least as many edges as nodes; it is found by a depth-first search
+	 * that never goes straight back along the edge it came by.
+	 */
+	private void findCycle() {
+		int n = _graph.size();
+		for (int v = 0; v < n; v ++) {
+			for (int j = _graph.outStart[v]; j < _graph.outStart[v + 1]; j ++) {
+				if (_graph.targets[j] == v) {
+					_cycleNodes = new int[] {v};
+					_cycleEdges = new int[] {_graph.outEdges[j]};
+					return;
+				}
+			}
+		}
+		for (int v = 0; v < n; v ++) {
+			for (int j = _graph.outStart[v]; j < _graph.outStart[v + 1]; j ++) {
+				int w = _graph.targets[j];
+				if (_strong[w] == _strong[v] && _snapshot.direction[_graph.outEdges[j]] == EdgeDirection.SINGLE) {
+					closeCycle(v, w, _graph.outEdges[j]);
+					return;
+				}
+			}
+		}
+		//Only edges that go both ways are left inside components; each gives two arcs.
+		int[] nodeCount = new int[_strongCount];
+		int[] arcCount = new int[_strongCount];
+		for (int v = 0; v < n; v ++) {
+			nodeCount[_strong[v]] ++;
+			for (int j = _graph.outStart[v]; j < _graph.outStart[v + 1]; j ++) {
+				if (_strong[_graph.targets[j]] == _strong[v])
+					arcCount[_strong[v]] ++;
+			}
+		}
+		for (int c = 0; c < _strongCount; c ++) {
+			if (arcCount[c] / 2 >= nodeCount[c]) {
+				for (int v = 0; v < n; v ++) {
+					if (_strong[v] == c) {
+						undirectedCycle(v);
+						return;
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Makes the cycle of the arc from v to w and a shortest path from w back to v inside their
+	 * strong component.
+	 */
+	private void closeCycle(int v, int w, int edge) {
+		int n = _graph.size();
+		int[] parent = new int[n];
+		int[] parentEdge = new int[n];
+		Arrays.fill(parent, -1);
+		int[] queue = new int[n];
+		int tail = 0;
+		queue[tail ++] = w;
+		parent[w] = w;
+		for (int head = 0; head < tail && parent[v] < 0; head ++) {
+			int u = queue[head];
+			for (int j = _graph.outStart[u]; j < _graph.outStart[u + 1]; j ++) {
+				int x = _graph.targets[j];
+				if (parent[x] < 0 && _strong[x] == _strong[v]) {
+					parent[x] = u;
+					parentEdge[x] = _graph.outEdges[j];
+					queue[tail ++] = x;
+				}
+			}
+		}
+		//The path back is w = p0, p1, ..., pm = v; the cycle is v, p0, ..., p(m-1).
+		int m = 0;
+		for (int u = v; u != w; u = parent[u])
+			m ++;
+		_cycleNodes = new int[m + 1];
+		_cycleEdges = new int[m + 1];
+		_cycleNodes[0] = v;
+		_cycleEdges[0] = edge;
+		int k = m;
+		for (int u = v; u != w; u = parent[u]) {
+			_cycleNodes[k] = parent[u];
+			_cycleEdges[k] = parentEdge[u];
+			k --;
+		}
+	}
+
+	/**
+	 * Finds a cycle by a depth-first search from a node, over arcs inside its strong component,
+	 * that never goes back along the edge it came by.  The component must have one.
+	 */
+	private void undirectedCycle(int root) {
+		int n = _graph.size();
+		int[] depth = new int[n];
+		Arrays.fill(depth, -1);
+		int[] frameNode = new int[n];
+		int[] frameArc = new int[n];
+		int[] frameEdge = new int[n];
+		int top = 0;
+		frameNode[0] = root;
+		frameArc[0] = _graph.outStart[root];
+		frameEdge[0] = -1;
+		depth[root] = 0;
+		while (top >= 0) {
+			int v = frameNode[top];
+			if (frameArc[top] == _graph.outStart[v + 1]) {
+				depth[v] = -2;
+				top --;
+				continue;
+			}
+			int j = frameArc[top] ++;
+			int w = _graph.targets[j];
+			int edge = _graph.outEdges[j];
+			if (edge == frameEdge[top] || _strong[w] != _strong[root] || depth[w] == -2)
+				continue;
+			if (depth[w] >= 0) {
+				//Back to a node on the path: the cycle is the path from it to v, and this edge.
+				int length = top - depth[w] + 1;
+				_cycleNodes = new int[length];
+				_cycleEdges = new int[length];
+				for (int k = 0; k < length; k ++) {
+					_cycleNodes[k] = frameNode[depth[w] + k];
+					_cycleEdges[k] = k + 1 < length ? frameEdge[depth[w] + k + 1] : edge;
+				}
+				return;
+			}
+			top ++;
+			frameNode[top] = w;
+			frameArc[top] = _graph.outStart[w];
+			frameEdge[top] = edge;
+			depth[w] = top;
+		}
+	}
+
+	/**
+	 * @return		The number of connected components, ignoring directions.
+	 */
+	public int getComponentCount() {
+		return _componentCount;
+	}
+
+	/**
+	 * @param n		A node of the diagram.
+	 * @return		The number of its connected component, from 0 to getComponentCount() - 1, or -1
+	 * 				if it is not in the diagram.
+	 */
+	public int getComponent(Node n) {
+		Integer i = _graph.index.get(n);
+		return i == null ? -1 : _component[i];
+	}
+
+	/**
+	 * @return		The number of strongly connected components.
+	 */
+	public int getStrongComponentCount() {
+		return _strongCount;
+	}
+
+	/**
+	 * @param n		A node of the diagram.
+	 * @return		The number of its strongly connected component, or -1 if it is not in the
+	 * 				diagram.  Every edge between two components goes from a lower number to a
+	 * 				higher one.
+	 */
+	public int getStrongComponent(Node n) {
+		Integer i = _graph.index.get(n);
+		return i == null ? -1 : _strong[i];
+	}
+
+	/**
+	 * @return		The nodes in an order where every edge goes from an earlier node to a later one,
+	 * 				or null if there is no such order.
+	 */
+	public List<Node> getTopologicalOrder() {
+		if (_order == null)
+			return null;
+		List<Node> order = new ArrayList<Node>(_order.length);
+		for (int v : _order)
+			order.add(_graph.nodes[v]);
+		return order;
+	}
+
+	/**
+	 * @param n		A node of the diagram.
+	 * @return		Its position in getTopologicalOrder(), or -1 if there is no such order or it is
+	 * 				not in the diagram.
+	 */
+	public int getTopologicalPosition(Node n) {
+		Integer i = _graph.index.get(n);
+		return i == null || _order == null ? -1 : _strong[i];
+	}
+
+	/**
+	 * @return		The nodes of a cycle, in order, or null if there is no cycle.  The last node has
+	 * 				an edge back to the first.
+	 */
+	public List<Node> getCycle() {
+		if (_cycleNodes == null)
+			return null;
+		List<Node> cycle = new ArrayList<Node>(_cycleNodes.length);
+		for (int v : _cycleNodes)
+			cycle.add(_graph.nodes[v]);
+		return cycle;
+	}
+
+	/**
+	 * @return		The edges of getCycle(): the edge from each node to the next, and from the last
+	 * 				back to the first; or null if there is no cycle.
+	 */
+	public List<Edge> getCycleEdges() {
+		if (_cycleEdges == null)
+			return null;
+		List<Edge> cycle = new ArrayList<Edge>(_cycleEdges.length);
+		for (int e : _cycleEdges)
+			cycle.add(_graph.edges[e]);
+		return cycle;
+	}
+
+	/**
+	 * @return		The revision of the diagram this was worked out for.
+	 */
+	public int getRevision() {
+		return _revision;
+	}
+}
@@ -4,8 +4,23 @@ import java.lang.Exception;
 
 @SuppressWarnings("serial")
 public class InvalidDFSMException extends Exception {
+	private final DFSMDiagnostics _diagnostics;
 
 	public InvalidDFSMException(String message) {
 		super(message);
+		_diagnostics = null;
+	}
+
+	public InvalidDFSMException(DFSMDiagnostics diagnostics) {
+		super(diagnostics.getMessage());
+		_diagnostics = diagnostics;
+	}
+
+	/**
+	 * @return		The errors that made the FSM invalid, or null if the FSM is invalid for some other
+	 * 				reason (such as having no nodes at all).
+	 */
+	public DFSMDiagnostics getDiagnostics() {
+		return _diagnostics;
 	}
 }
\ No newline at end of file
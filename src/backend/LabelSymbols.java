@@ -0,0 +1,85 @@
+package backend;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * The input symbols of an edge label, parsed once (see Edge.parseLabel) and shared: every edge with the same label
+ * text gets the same LabelSymbols, and an edge keeps its own until its text changes (see Edge.getSymbols()).  The
+ * validator and the compiled forms read labels through here, so a label is not split again for every check, rebuild
+ * or clone.
+ *
+ * A LabelSymbols never changes, so it can be read from any thread.
+ */
+final class LabelSymbols {
+
+	/** The number of label texts whose symbols are remembered. */
+	private static final int CACHE_SIZE = 4096;
+
+	/** The symbols of the label texts seen most recently, by text. */
+	private static final Map<String, LabelSymbols> CACHE = new LinkedHashMap<String, LabelSymbols>(64, 0.75f, true) {
+		protected boolean removeEldestEntry(Map.Entry<String, LabelSymbols> eldest) {
+			return size() > CACHE_SIZE;
+		}
+	};
+
+	/** The symbols, as Edge.parseLabel gives them; null for pieces with nothing but whitespace. */
+	private final String[] _symbols;
+
+	/** The symbols that are one character long, in order. */
+	private final char[] _chars;
+
+	/** True if a piece of the label is an epsilon transition. */
+	private final boolean _epsilon;
+
+	private LabelSymbols(String text) {
+		_symbols = Edge.parseLabel(text);
+		int count = 0;
+		char[] chars = new char[_symbols.length];
+		for (String s : _symbols) {
+			if (s != null && s.length() == 1)
+				chars[count ++] = s.charAt(0);
+		}
+		_chars = count == chars.length ? chars : Arrays.copyOf(chars, count);
+		_epsilon = Edge.hasEpsilon(text);
+	}
+
+	/**
+	 * @param text		The text of an edge label.
+	 * @return			Its symbols; the same object for the same text, as long as the text is among the most
+	 * 					recently asked for.
+	 */
+	static LabelSymbols of(String text) {
+		synchronized (CACHE) {
+			LabelSymbols symbols = CACHE.get(text);
+			if (symbols == null) {
+				symbols = new LabelSymbols(text);
+				CACHE.put(text, symbols);
+			}
+			return symbols;
+		}
+	}
+
+	/**
+	 * @return		The symbols, as Edge.parseLabel gives them.  Do not modify it.
+	 */
+	String[] getSymbols() {
+		return _symbols;
+	}
+
+	/**
+	 * @return		The symbols that are one character long, in order; the ones a simulation can follow.  Do not
+	 * 				modify it.
+	 */
+	char[] getChars() {
+		return _chars;
+	}
+
+	/**
+	 * @return		True if a piece of the label is an epsilon transition.
+	 */
+	boolean hasEpsilon() {
+		return _epsilon;
+	}
+}
@@ -0,0 +1,129 @@
+package backend;
+
+import java.util.*;
+
+/**
+ * Runs a CompiledNFA as a DFA that is built while it runs.  Every set of NFA states the run
+ * meets is hash-consed to a number, and every transition between two sets is worked out once,
+ * with the bit-parallel NFA step, and then remembered; later runs over the same sets are a single
+ * array lookup per character.  Full subset construction can blow up, but real inputs tend to
+ * meet only a few of the sets, so only those are ever built.
+ *
+ * A set is a bitset of NFA states.  The cache, its bound and the fall back to stepping the NFA
+ * when it thrashes are those of SubsetCache.  The cache is shared by every run, so runs are
+ * synchronized.
+ */
+public class LazyDFA extends SubsetCache<long[]> {
+
+	/** The number of sets remembered unless told otherwise. */
+	public static final int DEFAULT_MAX_STATES = 4096;
+
+	private final CompiledNFA _nfa;
+
+	/**
+	 * @param nfa			The NFA to run.
+	 * @param maxStates		The number of sets to remember before emptying the cache.
+	 */
+	public LazyDFA(CompiledNFA nfa, int maxStates) {
+		super(nfa.getSymbolCount(), maxStates);
+		_nfa = nfa;
+		flush();
+	}
+
+	/**
+	 * Runs the automaton on the given characters.
+	 * @param input		The input characters.
+	 * @return			True if the input is accepted.
+	 */
+	public boolean accepts(CharSequence input) {
+		return run(input);
+	}
+
+	long[] startSet() {
+		return _nfa.getStart();
+	}
+
+	long[] successor(int state, int symbol) {
+		long[] successor = _nfa.newStateSet();
+		_nfa.step(_sets.get(state), symbol, successor);
+		return successor;
+	}
+
+	/**
+	 * Finishes a run by stepping the NFA directly.
+	 * @param current	The set of states the run is in.
+	 * @param from		The position of the next character.
+	 */
+	boolean stepNFA(long[] current, CharSequence input, int from) {
+		current = current.clone();
+		long[] next = _nfa.newStateSet();
+		int length = input.length();
+		for (int i = from; i < length && !_nfa.isEmpty(current); i ++) {
+			_nfa.step(current, _nfa.symbolOf(input.charAt(i)), next);
+			long[] temp = current;
+			current = next;
+			next = temp;
+		}
+		return _nfa.isAccepting(current);
+	}
+
+	/**
+	 * Builds the full DFA of an NFA, as a new diagram.  Its nodes are labeled with the sets of NFA
+	 * nodes they stand for, and if some set is empty it becomes a dead node, so that the result is a
+	 * complete DFSM.
+	 * @param nfa		The NFA.
+	 * @param limit		The largest number of nodes to build.
+	 * @return			The new diagram, or null if it would have more than limit nodes.
+	 */
+	static Diagram determinize(CompiledNFA nfa, int limit) {
+		LazyDFA dfa = new LazyDFA(nfa, limit + 1);
+		return dfa.explore(limit) ? dfa.build() : null;
+	}
+
+	int symbolOf(char c) {
+		return _nfa.symbolOf(c);
+	}
+
+	char getSymbol(int symbol) {
+		return _nfa.getSymbol(symbol);
+	}
+
+	boolean isAccepting(long[] set) {
+		return _nfa.isAccepting(set);
+	}
+
+	boolean isEmpty(long[] set) {
+		return _nfa.isEmpty(set);
+	}
+
+	int hash(long[] set) {
+		return Arrays.hashCode(set);
+	}
+
+	boolean equal(long[] a, long[] b) {
+		return Arrays.equals(a, b);
+	}
+
+	/**
+	 * @return		The set of NFA nodes a set stands for, as {p,q,...}.
+	 */
+	String getLabel(int state) {
+		StringBuilder label = new StringBuilder("{");
+		long[] set = _sets.get(state);
+		for (int w = 0; w < set.length; w ++) {
+			for (long word = set[w]; word != 0; word &= word - 1) {
+				if (label.length() > 1)
+					label.append(',');
+				label.append(_nfa.getText((w << 6) + Long.numberOfTrailingZeros(word)));
+			}
+		}
+		return label.append('}').toString();
+	}
+
+	/**
+	 * @return		The NFA this runs.
+	 */
+	public CompiledNFA getNFA() {
+		return _nfa;
+	}
+}
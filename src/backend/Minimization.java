@@ -0,0 +1,156 @@
+package backend;
+
+import java.util.*;
+
+/**
+ * The minimized form of a DFSM, as worked out by Diagram.minimize(): which nodes of the original
+ * diagram were merged, the minimized transition table, and (built the first time it is asked for)
+ * a new diagram drawing the minimized machine.
+ *
+ * Blocks are numbered 0..getBlockCount()-1 in breadth-first order from the start block, which is
+ * block 0.  Nodes the start node cannot reach are in no block.
+ */
+public class Minimization {
+
+	/** The largest number of original names put in the label of a merged node. */
+	private static final int MAX_LABEL_NAMES = 5;
+
+	private final CompiledAutomaton _automaton;
+	private final int[] _blockOfState;
+	private final int _blocks;
+	private final int[] _table;
+	private final boolean[] _accept;
+	private final int _symbols;
+	private Diagram _diagram;
+	private Node[] _nodes;
+
+	Minimization(CompiledAutomaton automaton, int[] blockOfState, int blocks, int[] table, boolean[] accept) {
+		_automaton = automaton;
+		_blockOfState = blockOfState;
+		_blocks = blocks;
+		_table = table;
+		_accept = accept;
+		_symbols = automaton.getSymbolCount();
+	}
+
+	/**
+	 * @return		The revision of the diagram this was worked out for.
+	 */
+	public int getRevision() {
+		return _automaton.getRevision();
+	}
+
+	/**
+	 * @return		The number of states of the minimized machine.
+	 */
+	public int getBlockCount() {
+		return _blocks;
+	}
+
+	/**
+	 * @param original		A node of the original diagram.
+	 * @return				The block the node was merged into, or -1 if it is unreachable.
+	 */
+	public int getBlock(Node original) {
+		int state = _automaton.indexOf(original);
+		return state < 0 ? -1 : _blockOfState[state];
+	}
+
+	/**
+	 * @param block		A block.
+	 * @param symbol	A symbol number of the original automaton.
+	 * @return			The block reached on the symbol, or CompiledAutomaton.NO_STATE.
+	 */
+	public int step(int block, int symbol) {
+		return _table[block * _symbols + symbol];
+	}
+
+	/**
+	 * @param block		A block.
+	 * @return			True if the block is made of accept nodes.
+	 */
+	public boolean isAccept(int block) {
+		return _accept[block];
+	}
+
+	/**
+	 * @param block		A block.
+	 * @return			The original nodes merged into the block.
+	 */
+	public List<Node> getOriginals(int block) {
+		List<Node> originals = new ArrayList<Node>();
+		for (int s = 0; s < _blockOfState.length; s ++) {
+			if (_blockOfState[s] == block)
+				originals.add(_automaton.getNode(s));
+		}
+		return originals;
+	}
+
+	/**
+	 * @return		The minimized machine as a new diagram.  Each node is labeled with the names of
+	 * 				the original nodes merged into it.
+	 */
+	public synchronized Diagram getDiagram() {
+		if (_diagram != null)
+			return _diagram;
+
+		//Gather the names of every block in one pass over the original states.
+		StringBuilder[] labels = new StringBuilder[_blocks];
+		int[] names = new int[_blocks];
+		for (int s = 0; s < _blockOfState.length; s ++) {
+			int b = _blockOfState[s];
+			if (b < 0)
+				continue;
+			names[b] ++;
+			if (names[b] == 1)
+				labels[b] = new StringBuilder(_automaton.getText(s));
+			else if (names[b] <= MAX_LABEL_NAMES)
+				labels[b].append(',').append(_automaton.getText(s));
+			else if (names[b] == MAX_LABEL_NAMES + 1)
+				labels[b].append(",...");
+		}
+
+		DiagramBuilder builder = new DiagramBuilder();
+		for (int b = 0; b < _blocks; b ++) {
+			String label = labels[b] == null ? "" : names[b] == 1 ? labels[b].toString() : "{" + labels[b] + "}";
+			builder.addState(label, b == 0, _accept[b]);
+		}
+		for (int b = 0; b < _blocks; b ++) {
+			for (int symbol = 0; symbol < _symbols; symbol ++) {
+				int next = _table[b * _symbols + symbol];
+				if (next != CompiledAutomaton.NO_STATE)
+					builder.addTransition(b, next, String.valueOf(_automaton.getSymbol(symbol)));
+			}
+		}
+		_diagram = builder.build();
+		_nodes = new Node[_blocks];
+		for (int b = 0; b < _blocks; b ++)
+			_nodes[b] = builder.getNode(b);
+		return _diagram;
+	}
+
+	/**
+	 * @param original		A node of the original diagram.
+	 * @return				The node of getDiagram() it was merged into, or null if it is unreachable.
+	 */
+	public Node getNode(Node original) {
+		int block = getBlock(original);
+		if (block < 0)
+			return null;
+		getDiagram();
+		return _nodes[block];
+	}
+
+	/**
+	 * @param minimized		A node of getDiagram().
+	 * @return				The original nodes merged into it.
+	 */
+	public List<Node> getOriginals(Node minimized) {
+		getDiagram();
+		for (int b = 0; b < _blocks; b ++) {
+			if (_nodes[b] == minimized)
+				return getOriginals(b);
+		}
+		return Collections.emptyList();
+	}
+}
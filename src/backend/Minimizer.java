@@ -0,0 +1,279 @@
+package backend;
+
+import java.util.*;
+
+/**
+ * Hopcroft's partition refinement over a CompiledAutomaton, in O(n k log n) time for n states and
+ * k symbols.  Everything is kept in int arrays so that machines with a million states minimize in
+ * a few seconds.
+ *
+ * States that cannot be reached from the start state are dropped first.  If some reachable state
+ * is missing a transition, a dead state is added for it to go to; the dead state is only drawn if
+ * it ends up merged with a real state.
+ */
+class Minimizer {
+
+	private final CompiledAutomaton _automaton;
+	private final int _symbols;
+
+	/** The reachable states (plus the dead state, if any), in the order they are numbered here. */
+	private int[] _states;
+
+	/** The number of states here, including the dead state. */
+	private int _count;
+
+	/** The number of the dead state here, or -1 if there is none. */
+	private int _dead;
+
+	/** The number here of each state of the automaton, or -1 if it is not reachable. */
+	private int[] _local;
+
+	//The partition: the states of block b are _elements[_first[b].._end[b]), the first _marked[b]
+	//of which are marked; _location[s] is the index of s in _elements.
+	private int[] _elements;
+	private int[] _location;
+	private int[] _blockOf;
+	private int[] _first;
+	private int[] _end;
+	private int[] _marked;
+	private int _blocks;
+
+	/** The splitters still to be processed, as block * symbols + symbol. */
+	private int[] _work;
+	private int _workSize;
+
+	/** Whether each (block, symbol) is waiting in _work. */
+	private boolean[] _waiting;
+
+	Minimizer(CompiledAutomaton automaton) {
+		_automaton = automaton;
+		_symbols = automaton.getSymbolCount();
+	}
+
+	/**
+	 * Minimizes the automaton.
+	 * @return		The minimized form.
+	 */
+	Minimization run() {
+		number();
+		int[] predStart = new int[_symbols * (_count + 1) + 1];
+		int[] preds = predecessors(predStart);
+		refine(predStart, preds);
+		return result();
+	}
+
+	/**
+	 * Numbers the states reachable from the start state by a breadth-first search.
+	 */
+	private void number() {
+		int n = _automaton.getStateCount();
+		_local = new int[n];
+		Arrays.fill(_local, -1);
+		_states = new int[n + 1];
+		_dead = -1;
+		int start = _automaton.getStart();
+		_local[start] = 0;
+		_states[0] = start;
+		_count = 1;
+		for (int i = 0; i < _count; i ++) {
+			for (int symbol = 0; symbol < _symbols; symbol ++) {
+				int next = _automaton.step(_states[i], symbol);
+				if (next == CompiledAutomaton.NO_STATE) {
+					_dead = -2;
+					continue;
+				}
+				if (_local[next] < 0) {
+					_local[next] = _count;
+					_states[_count ++] = next;
+				}
+			}
+		}
+		if (_dead == -2) {
+			_dead = _count;
+			_states[_count ++] = CompiledAutomaton.NO_STATE;
+		}
+	}
+
+	/**
+	 * @return		The number here of the state reached from state s (numbered here) on symbol.
+	 */
+	private int step(int s, int symbol) {
+		if (s == _dead)
+			return _dead;
+		int next = _automaton.step(_states[s], symbol);
+		return next == CompiledAutomaton.NO_STATE ? _dead : _local[next];
+	}
+
+	/**
+	 * Builds the predecessor lists of every state on every symbol, as one array: the predecessors
+	 * of s on symbol are preds[predStart[symbol * (count + 1) + s] .. predStart[symbol * (count + 1) + s + 1]).
+	 */
+	private int[] predecessors(int[] predStart) {
+		int stride = _count + 1;
+		for (int s = 0; s < _count; s ++) {
+			for (int symbol = 0; symbol < _symbols; symbol ++)
+				predStart[symbol * stride + step(s, symbol) + 1] ++;
+		}
+		for (int i = 1; i < predStart.length; i ++)
+			predStart[i] += predStart[i - 1];
+		int[] fill = Arrays.copyOf(predStart, predStart.length);
+		int[] preds = new int[_count * _symbols];
+		for (int s = 0; s < _count; s ++) {
+			for (int symbol = 0; symbol < _symbols; symbol ++)
+				preds[fill[symbol * stride + step(s, symbol)] ++] = s;
+		}
+		return preds;
+	}
+
+	/**
+	 * Refines the partition into accept and other states until no block can be split.
+	 */
+	private void refine(int[] predStart, int[] preds) {
+		int m = _count;
+		_elements = new int[m];
+		_location = new int[m];
+		_blockOf = new int[m];
+		_first = new int[m];
+		_end = new int[m];
+		_marked = new int[m];
+		_waiting = new boolean[m * Math.max(_symbols, 1)];
+		_work = new int[16];
+
+		//Accept states go first, then the others.
+		int size = 0;
+		for (int pass = 0; pass < 2; pass ++) {
+			int from = size;
+			for (int s = 0; s < m; s ++) {
+				boolean accept = s != _dead && _automaton.isAccept(_states[s]);
+				if (accept == (pass == 0)) {
+					_elements[size] = s;
+					_location[s] = size ++;
+				}
+			}
+			if (size > from) {
+				_first[_blocks] = from;
+				_end[_blocks] = size;
+				for (int i = from; i < size; i ++)
+					_blockOf[_elements[i]] = _blocks;
+				_blocks ++;
+			}
+		}
+		if (_blocks == 2) {
+			int smaller = _end[0] - _first[0] <= _end[1] - _first[1] ? 0 : 1;
+			for (int symbol = 0; symbol < _symbols; symbol ++)
+				push(smaller, symbol);
+		}
+
+		int stride = m + 1;
+		int[] splitter = new int[m];
+		int[] touched = new int[m];
+		while (_workSize > 0) {
+			int item = _work[-- _workSize];
+			int block = item / _symbols;
+			int symbol = item % _symbols;
+			_waiting[item] = false;
+
+			//Copy the splitter, since marking may move its states around.
+			int length = _end[block] - _first[block];
+			System.arraycopy(_elements, _first[block], splitter, 0, length);
+			int touchedCount = 0;
+			for (int i = 0; i < length; i ++) {
+				int s = splitter[i];
+				for (int p = predStart[symbol * stride + s]; p < predStart[symbol * stride + s + 1]; p ++) {
+					int pred = preds[p];
+					int b = _blockOf[pred];
+					int position = _location[pred];
+					int markTo = _first[b] + _marked[b];
+					if (position < markTo)
+						continue;
+					if (_marked[b] == 0)
+						touched[touchedCount ++] = b;
+					//Swap pred to the end of the marked part of its block.
+					int other = _elements[markTo];
+					_elements[markTo] = pred;
+					_location[pred] = markTo;
+					_elements[position] = other;
+					_location[other] = position;
+					_marked[b] ++;
+				}
+			}
+
+			for (int t = 0; t < touchedCount; t ++) {
+				int b = touched[t];
+				int marked = _marked[b];
+				_marked[b] = 0;
+				if (marked == _end[b] - _first[b])
+					continue;
+				//The marked states become a new block.
+				int created = _blocks ++;
+				_first[created] = _first[b];
+				_end[created] = _first[b] + marked;
+				_first[b] += marked;
+				for (int i = _first[created]; i < _end[created]; i ++)
+					_blockOf[_elements[i]] = created;
+				int smaller = marked <= _end[b] - _first[b] ? created : b;
+				for (int c = 0; c < _symbols; c ++) {
+					if (_waiting[b * _symbols + c])
+						push(created, c);
+					else
+						push(smaller, c);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Adds (block, symbol) to the splitters to process.
+	 */
+	private void push(int block, int symbol) {
+		int item = block * _symbols + symbol;
+		if (_waiting[item])
+			return;
+		_waiting[item] = true;
+		if (_workSize == _work.length)
+			_work = Arrays.copyOf(_work, _work.length * 2);
+		_work[_workSize ++] = item;
+	}
+
+	/**
+	 * Renumbers the blocks in breadth-first order from the start state, and packs up the result.
+	 * A block that holds only the added dead state is left out, and transitions to it are missing.
+	 */
+	private Minimization result() {
+		int deadAlone = _dead >= 0 && _end[_blockOf[_dead]] - _first[_blockOf[_dead]] == 1 ? _blockOf[_dead] : -1;
+		int[] order = new int[_blocks];
+		Arrays.fill(order, -1);
+		int[] queue = new int[_blocks];
+		int blocks = 0;
+		order[_blockOf[0]] = blocks;
+		queue[blocks ++] = _blockOf[0];
+		for (int head = 0; head < blocks; head ++) {
+			int representative = _elements[_first[queue[head]]];
+			for (int symbol = 0; symbol < _symbols; symbol ++) {
+				int next = _blockOf[step(representative, symbol)];
+				if (order[next] < 0 && next != deadAlone) {
+					order[next] = blocks;
+					queue[blocks ++] = next;
+				}
+			}
+		}
+
+		int[] blockOfState = new int[_automaton.getStateCount()];
+		Arrays.fill(blockOfState, -1);
+		for (int s = 0; s < _count; s ++) {
+			if (s != _dead)
+				blockOfState[_states[s]] = order[_blockOf[s]];
+		}
+		int[] table = new int[blocks * _symbols];
+		boolean[] accept = new boolean[blocks];
+		for (int b = 0; b < blocks; b ++) {
+			int representative = _elements[_first[queue[b]]];
+			for (int symbol = 0; symbol < _symbols; symbol ++) {
+				int next = _blockOf[step(representative, symbol)];
+				table[b * _symbols + symbol] = next == deadAlone ? CompiledAutomaton.NO_STATE : order[next];
+			}
+			accept[b] = representative != _dead && _automaton.isAccept(_states[representative]);
+		}
+		return new Minimization(_automaton, blockOfState, blocks, table, accept);
+	}
+}
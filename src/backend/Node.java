@@ -1,63 +1,43 @@
 package backend;
 
-import java.awt.*;
-import java.awt.geom.*;
+import java.util.AbstractCollection;
 import java.util.Collection;
-import java.util.HashSet;
-
-import javax.swing.JLabel;
-import javax.swing.JTextField;
-import javax.swing.text.BadLocationException;
-
-import frontend.*;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
 
 /**
  * This is the node class. This contains data for both visual and logical representation of a node for FSMs/graphs.
+ * It holds only strings and numbers, so a diagram can be built, simulated and saved headless; the text field and
+ * label that show the name on a DrawingPanel belong to a view the frontend attaches (see DiagramObjectView).  The
+ * strings and numbers themselves are kept in the DiagramStore of the node's diagram; a Node is a handle on them.
  *
  * @author ewald
  */
 public class Node implements DiagramObject, Cloneable {
 	/*
-	 * _center is the center point of this node.
-	 * 
-	 * _radius is the node's radius in pixels.
-	 * 
-	 * _area is the JTextField into which the user types when renaming the node.
+	 * _store is the DiagramStore this node's data is kept in (the store of its diagram, or one of its own if it is in
+	 * no diagram), and _id is its id there.  The store keeps, by id:
 	 * 
-	 * _connected is a collection of all edges that connect to this node.
+	 * the center point and radius in pixels;
 	 * 
-	 * _startState is true if and only if this node is a start state.
+	 * the name, as typed by the user;
 	 * 
-	 * _endState is true if and only if this node is an accept state.
+	 * the edges connected to this node;
 	 * 
-	 * _offset is the offset from the mouse cursor to the center of the node. This is used for relocation via mouse drag.
+	 * whether it is a start state and whether it is an accept state;
 	 * 
-	 * _selected is true if and only if the node is currently selected.
+	 * the offset from the mouse cursor to the center, used for relocation via mouse drag;
 	 * 
-	 * _resizing is true if and only if the node is currently being resized.
+	 * whether it is selected, being resized, and the current node in simulation.
 	 * 
-	 * _current is true if and only if this node is the current node in simulation.
+	 * _view is what the frontend shows the name with, or null if the node is not shown.
 	 * 
-	 * _container is the DrawingPanel that contains this node.
-	 * 
-	 * _label is the JLabel used to display the html version of this node's name when the name is not being edited.
-	 * 
-	 * _startSymbol is the triangle used to toggle whether this node is a start state.
-	 */
-	private Point2D.Double _center;
-	private double _radius;
-	private JTextField _area;
-	private Collection<Edge> _connected;
-	private boolean _startState;
-	private boolean _endState;
-	private Point _offset;
-	private boolean _selected;
-	private boolean _resizing;
-	private boolean _current = false;
-	private DrawingPanel _container;
-	private JLabel _label;
-	private Polygon _startSymbol;
-	private java.awt.geom.Ellipse2D.Double _circle;
+	 * The diagram of the store is told whenever the node changes in a way that matters to simulation, so it can bump
+	 * its revision.
+	 */
+	private DiagramStore _store;
+	private int _id;
+	private DiagramObjectView _view;
 
 	//Static variables used to draw the node.
 	public static final double MIN_RADIUS = 20;
@@ -65,41 +45,8 @@ public class Node implements DiagramObject, Cloneable {
 	public static String DEFAULT_LABEL = null;
 
 	/**
-	 * The constructor for the node takes the x,y to add the node to, and
-	 * the DrawingPanel which contains this Node (used to add listeners
-	 * to the Node's label).
-	 * @param x
-	 * @param y
-	 * @param container
-	 */
-	public Node(double x, double y, DrawingPanel container) {
-		_container = container;
-		_center = new Point2D.Double(x, y);
-		_radius = DEFAULT_RADIUS;
-		_connected = new HashSet<Edge>();
-		_startState = false;
-		_endState = false;
-		_selected = true;
-		
-		_area = new JTextField();
-		
-		if (DEFAULT_LABEL == null){
-			int size = _container.getDiagram().getNodes().size();
-			String s = "q_"+ size;
-			if (_label == null || _label.equals(""))
-				_label = new JLabel("<html>q<sub>"+size+"</sub>");
-			_area.setText(s);
-		}
-		else{
-			_label = new JLabel(DEFAULT_LABEL);
-			_area.setText(DEFAULT_LABEL);
-		}
-
-		setAreaAndLabel();
-	}
-
-	/**
-	 * The constructor used when opening from a file.
+	 * The constructor used when opening from a file, and by the DrawingPanel.  The node is in no diagram until it is
+	 * added to one; Diagram.createNode makes one straight into a diagram.
 	 * @param x				The x-coordinate of the center.
 	 * @param y				The y-coordinate of the center.
 	 * @param radius		The radius of the node.
@@ -108,127 +55,150 @@ public class Node implements DiagramObject, Cloneable {
 	 * @param label			The String to put on the label text.
 	 */
 	public Node (double x, double y, double radius, boolean isStart, boolean isAccept, String label) {
-		_center = new Point2D.Double(x, y);
-		_radius = radius;
-		_startState = isStart;
-		_endState = isAccept;
-		_connected = new HashSet<Edge>();
-		_selected = false;
-		
-		String html = "";
-		try {
-			html = HTMLParser.setLabelText(label);
-		} catch (BadLocationException e) {
-		}
-		
-		_label = new JLabel(html);
-		_area = new JTextField(label);
-		_area.setText(label);
+		this(DiagramStore.ofNode(), x, y, radius, isStart, isAccept, label);
 	}
 
 	/**
-	 * Helper for opening a Node from a file.
+	 * Makes a node in a store.
+	 * @param store			The store.
+	 * @see #Node(double, double, double, boolean, boolean, String)
 	 */
-	public void setContainerAndLabel(DrawingPanel container) {
-		_container = container;
-		setAreaAndLabel();
+	Node(DiagramStore store, double x, double y, double radius, boolean isStart, boolean isAccept, String label) {
+		_store = store;
+		_id = store.addNode(this);
+		store.x[_id] = x;
+		store.y[_id] = y;
+		store.radius[_id] = radius;
+		store.start.set(_id, isStart);
+		store.accept.set(_id, isAccept);
+		store.nodeText[_id] = label;
 	}
 
 	/**
-	 * Helper for both of the constructors. Sets up the JTextField used to edit the node's name, and the JLabel used to 
-	 * display the name in HTML when the node is not selected.
+	 * Makes the handle of a node that is already in a store.
+	 * @param store			The store.
+	 * @param id			The id of the node there.
 	 */
-	private void setAreaAndLabel() {
-		_offset = new Point(0,0);
-
-		double hypo = 2*_radius;
-		double temp = hypo*hypo;
-		double dimension = Math.sqrt(temp/2);
-		_area.setBorder(null);
-		_area.setVisible(false);
-		_area.setOpaque(false);
-		_area.setSize((int)(dimension), 15);
-		_area.setHorizontalAlignment(JTextField.CENTER);
-		_area.setEditable(true);
-		_area.setEnabled(true);
-		_area.setBackground(new Color(0,0,0,0));
-		_area.getDocument().addDocumentListener(new HTMLParser(_label));
-		_area.addKeyListener(new EnterListener(_container, _area));
-		_label.setVisible(true);
-		_label.setOpaque(false);
-		_label.setSize((int)(dimension), 15);
-		_label.setHorizontalAlignment(JTextField.CENTER);
-		_label.setText(_label.getText());
-
-		_container.add(_label);
-		_container.add(_area);
-
-		_startSymbol = new Polygon();
-		_startSymbol.addPoint((int)(this.getCenter().x - this.getRadius()),(int) (this.getCenter().y));
-		_startSymbol.addPoint((int)(this.getCenter().x - this.getRadius() - 20),(int) (this.getCenter().y + 10));
-		_startSymbol.addPoint((int)(this.getCenter().x - this.getRadius() - 20),(int) (this.getCenter().y - 10));
+	Node(DiagramStore store, int id) {
+		_store = store;
+		_id = id;
 	}
 
 	/**
-	 * Returns a full clone of this node (as opposed to a shallow clone).
+	 * Returns a full clone of this node (as opposed to a shallow clone).  The clone has no view and belongs to no
+	 * diagram, but is connected to the same edges.
 	 */
 	public Node clone() throws CloneNotSupportedException {
 		Node clonedObject = (Node) super.clone();
-		clonedObject._center = new Point2D.Double(getCenter().getX(), getCenter().getY());
-		clonedObject.setRadius(_radius);
-		clonedObject.setStart(_startState);
-		clonedObject.setEnd(_endState);
-		clonedObject.setSelected(_selected);
-		clonedObject._container = _container;
-		clonedObject._area = new JTextField(_area.getText());
-		clonedObject._label = new JLabel(_label.getText());
-
-		double hypo = 2*_radius;
-		double temp = hypo*hypo;
-		double dimension = Math.sqrt(temp/2);
-		clonedObject._area.setBorder(null);
-		clonedObject._area.setVisible(false);
-		clonedObject._area.setOpaque(false);
-		clonedObject._area.setSize((int)(dimension), 15);
-		clonedObject._area.setHorizontalAlignment(JTextField.CENTER);
-		clonedObject._area.setEditable(true);
-		clonedObject._area.setEnabled(true);
-		clonedObject._area.setBackground(new Color(0,0,0,0));
-		clonedObject._area.getDocument().addDocumentListener(new HTMLParser(clonedObject._label));
-		clonedObject._area.addKeyListener(new EnterListener(_container, clonedObject._area));
-		clonedObject._label.setVisible(true);
-		clonedObject._label.setOpaque(false);
-		clonedObject._label.setSize((int)(dimension), 15);
-		clonedObject._label.setHorizontalAlignment(JTextField.CENTER);
-		clonedObject._label.setText(clonedObject._label.getText());
-		
-		
-		clonedObject._startSymbol = new Polygon();
-		clonedObject._startSymbol.addPoint((int)(this.getCenter().x - this.getRadius()),(int) (this.getCenter().y));
-		clonedObject._startSymbol.addPoint((int)(this.getCenter().x - this.getRadius() - 20),(int) (this.getCenter().y + 10));
-		clonedObject._startSymbol.addPoint((int)(this.getCenter().x - this.getRadius() - 20),(int) (this.getCenter().y - 10));
+		clonedObject._view = null;
+		clonedObject._store = DiagramStore.ofNode();
+		clonedObject._id = clonedObject._store.addNode(clonedObject);
+		clonedObject._store.copyNode(_store, _id, clonedObject._id);
+		Edge[] connected = _store.connected[_id];
+		clonedObject._store.connected[clonedObject._id] = connected == null ? null : connected.clone();
 		return clonedObject;
 	}
 
 	/**
-	 * Returns the "start symbol" (a triangle) associated with this node for toggling start state.
+	 * Tells the owning diagram (if any) that this node has changed.
 	 */
-	public Polygon getStartSymbol(){
-		return _startSymbol;
+	private void changed() {
+		if (_store.owner != null)
+			_store.owner.nodeChanged(this);
 	}
-	
+
 	/**
-	 * 
+	 * Tells the view of this node, and those of the edges connected to it, that it has moved.
 	 */
-	public void setConnected(Collection<Edge> connected) {
-		_connected = connected;
+	private void moved() {
+		if (_view != null)
+			_view.moved();
+		Edge[] connected = _store.connected[_id];
+		for (int i = 0; i < _store.degree[_id]; i ++) {
+			if (connected[i].getView() != null)
+				connected[i].getView().moved();
+		}
+	}
+
+	/**
+	 * Tells the owning diagram (if any) that an edge was connected to or disconnected from this node.
+	 */
+	private void changed(Edge e) {
+		if (_store.owner != null)
+			_store.owner.edgeChanged(e);
+	}
+
+	/**
+	 * @return		The store this node is kept in.
+	 */
+	DiagramStore getStore() {
+		return _store;
+	}
+
+	/**
+	 * @return		The id of this node in its store.
+	 */
+	int getId() {
+		return _id;
+	}
+
+	/**
+	 * @return		The diagram this node belongs to, or null.
+	 */
+	Diagram getDiagram() {
+		return _store.owner;
+	}
+
+	/**
+	 * Moves this node, with everything about it, to another store; the id it had is freed.
+	 * @param store
+	 */
+	void moveTo(DiagramStore store) {
+		int id = store.addNode(this);
+		store.copyNode(_store, _id, id);
+		_store.removeNode(_id);
+		_store = store;
+		_id = id;
+	}
+
+	/**
+	 * Sets the view the frontend shows this node with.
+	 * @param view		The view, or null.
+	 */
+	public void setView(DiagramObjectView view) {
+		_view = view;
+	}
+
+	/**
+	 * Returns the view the frontend shows this node with, or null if it has none.
+	 */
+	public DiagramObjectView getView() {
+		return _view;
 	}
 
 	/**
-	 * Resets the start symbol to a new polygon.
+	 * Returns the corners of the start symbol, as the x-coordinates and then the y-coordinates.
 	 */
-	public void newStartSymbol(){
-		_startSymbol = new Polygon();
+	public int[][] getStartSymbolPoints() {
+		double x = getX();
+		double y = getY();
+		double radius = getRadius();
+		return new int[][] {
+			{(int)(x - radius), (int)(x - radius - 20), (int)(x - radius - 20)},
+			{(int)(y), (int)(y + 10), (int)(y - 10)}
+		};
+	}
+	
+	/**
+	 * Connects this node to exactly the given edges.
+	 * @param connected
+	 */
+	public void setConnected(Collection<Edge> connected) {
+		Edge[] edges = connected.toArray(new Edge[connected.size()]);
+		while (_store.degree[_id] > 0)
+			removeConnected(_store.connected[_id][_store.degree[_id] - 1]);
+		for (Edge e : edges)
+			addConnected(e);
 	}
 
 	/**
@@ -237,15 +207,23 @@ public class Node implements DiagramObject, Cloneable {
 	 * @param y
 	 */
 	public void setCenter(double x, double y){
-		_center.setLocation(x, y);
+		_store.x[_id] = x;
+		_store.y[_id] = y;
+		moved();
 	}
 
 	/**
-	 * Returns the node's center as a point with double-precision coordinates.
-	 * @return
+	 * Returns the x-coordinate of the node's center.
+	 */
+	public double getX() {
+		return _store.x[_id];
+	}
+
+	/**
+	 * Returns the y-coordinate of the node's center.
 	 */
-	public Point2D.Double getCenter() {
-		return _center;
+	public double getY() {
+		return _store.y[_id];
 	}
 
 	/**
@@ -256,15 +234,25 @@ public class Node implements DiagramObject, Cloneable {
 	 * @param y
 	 */
 	public void setOffset(double x, double y){
-		_offset.setLocation(x, y);
+		//Rounded to whole pixels, like the mouse.
+		_store.offsetX[_id] = Math.floor(x + 0.5);
+		_store.offsetY[_id] = Math.floor(y + 0.5);
 	}
 
 	/**
-	 * Returns the offset from node center to mouse cursor.
+	 * Returns the x-offset from node center to mouse cursor.
 	 * @return
 	 */
-	public Point getOffset(){
-		return _offset;
+	public double getOffsetX(){
+		return _store.offsetX[_id];
+	}
+
+	/**
+	 * Returns the y-offset from node center to mouse cursor.
+	 * @return
+	 */
+	public double getOffsetY(){
+		return _store.offsetY[_id];
 	}
 
 	/**
@@ -272,7 +260,8 @@ public class Node implements DiagramObject, Cloneable {
 	 * @param r
 	 */
 	public void setRadius(double r){
-		_radius = r;
+		_store.radius[_id] = r;
+		moved();
 	}
 
 	/**	
@@ -280,7 +269,7 @@ public class Node implements DiagramObject, Cloneable {
 	 * @return
 	 */
 	public double getRadius() {
-		return _radius;
+		return _store.radius[_id];
 	}
 
 	/**
@@ -289,7 +278,11 @@ public class Node implements DiagramObject, Cloneable {
 	 * @return
 	 */
 	public boolean addConnected(Edge e){
-		return _connected.add(e);
+		if (indexOf(e) >= 0)
+			return false;
+		e.setSlot(this, _store.connect(_id, e));
+		changed(e);
+		return true;
 	}
 
 	/**
@@ -298,15 +291,79 @@ public class Node implements DiagramObject, Cloneable {
 	 * @return
 	 */
 	public boolean removeConnected(Edge e){
-		return _connected.remove(e);
+		int slot = indexOf(e);
+		if (slot < 0)
+			return false;
+		Edge moved = _store.disconnect(_id, slot);
+		if (moved != null)
+			moved.setSlot(this, slot);
+		e.setSlot(this, DiagramStore.NO_SLOT);
+		changed(e);
+		return true;
+	}
+
+	/**
+	 * Finds where an edge is in the connected edges of this node.  An edge knows where it is at its start and end
+	 * nodes, so only edges connected to other nodes are searched for.
+	 * @param e
+	 * @return		The place, or -1 if the edge is not connected to this node.
+	 */
+	int indexOf(Edge e) {
+		int slot = e.getSlot(this);
+		return slot != DiagramStore.NOT_AN_END ? slot : scan(e);
 	}
 
 	/**
-	 * Returns the collection of connected edges.
+	 * Searches the connected edges of this node for an edge.
+	 * @param e
+	 * @return		Where it is, or -1 if it is not connected to this node.
+	 */
+	int scan(Edge e) {
+		Edge[] connected = _store.connected[_id];
+		for (int i = 0; i < _store.degree[_id]; i ++) {
+			if (connected[i] == e)
+				return i;
+		}
+		return -1;
+	}
+
+	/**
+	 * Returns the collection of connected edges.  It is a live view: adding to it and removing from it connect and
+	 * disconnect edges, and contains() takes constant time for the edges that start or end here.
 	 * @return
 	 */
 	public Collection<Edge> getConnected() {
-		return _connected;
+		return new AbstractCollection<Edge>() {
+			public Iterator<Edge> iterator() {
+				return new Iterator<Edge>() {
+					private int _next;
+					public boolean hasNext() {
+						return _next < _store.degree[_id];
+					}
+					public Edge next() {
+						if (!hasNext())
+							throw new NoSuchElementException();
+						return _store.connected[_id][_next ++];
+					}
+					public void remove() {
+						//The last edge is moved into the place of the removed one, so that place is visited again.
+						removeConnected(_store.connected[_id][-- _next]);
+					}
+				};
+			}
+			public int size() {
+				return _store.degree[_id];
+			}
+			public boolean contains(Object o) {
+				return o instanceof Edge && indexOf((Edge) o) >= 0;
+			}
+			public boolean add(Edge e) {
+				return addConnected(e);
+			}
+			public boolean remove(Object o) {
+				return o instanceof Edge && removeConnected((Edge) o);
+			}
+		};
 	}
 
 	/**
@@ -314,7 +371,7 @@ public class Node implements DiagramObject, Cloneable {
 	 * @return
 	 */
 	public boolean isStart(){
-		return _startState;
+		return _store.start.get(_id);
 	}
 
 	/**
@@ -322,7 +379,9 @@ public class Node implements DiagramObject, Cloneable {
 	 * @param b
 	 */
 	public void setStart(boolean b){
-		_startState = b;
+		_store.unshare(DiagramStore.NODE_KIND);
+		_store.start.set(_id, b);
+		changed();
 	}
 
 	/**
@@ -330,7 +389,7 @@ public class Node implements DiagramObject, Cloneable {
 	 * @return
 	 */
 	public boolean isEnd() {
-		return _endState;
+		return _store.accept.get(_id);
 	}
 
 	/**
@@ -338,34 +397,31 @@ public class Node implements DiagramObject, Cloneable {
 	 * @param b
 	 */
 	public void setEnd(boolean b){
-		_endState = b;
-	}
-
-	/**
-	 * Returns this node's text field.
-	 * @return
-	 */
-	public JTextField getTextField(){
-		return _area;
+		_store.unshare(DiagramStore.NODE_KIND);
+		_store.accept.set(_id, b);
+		changed();
 	}
 
 	/**
-	 * Returns this node's jlabel.
+	 * Returns this node's name as typed (with underscores and \\<greek character>).
 	 * @return
 	 */
-	public JLabel getLabel(){
-		return _label;
+	public String getText(){
+		return _store.nodeText[_id];
 	}
 
 	/**
-	 * Returns a rectangle to be used for resizing this node.
-	 * @return
+	 * Sets this node's name, and shows it on the view if there is one.
+	 * @param text
 	 */
-	public Rectangle2D getResize() {
-		if (_circle == null) {
-			resetCircle();
-		}
-		return new Rectangle2D.Double(_circle.x + 2*_radius,_circle.y+2*_radius,8,8);
+	public void setText(String text){
+		if (text.equals(_store.nodeText[_id]))
+			return;
+		_store.unshare(DiagramStore.NODE_TEXT);
+		_store.nodeText[_id] = text;
+		if (_view != null)
+			_view.textChanged(text);
+		changed();
 	}
 
 	/**
@@ -373,7 +429,7 @@ public class Node implements DiagramObject, Cloneable {
 	 * @return
 	 */
 	public boolean resizing() {
-		return _resizing;
+		return _store.resizing.get(_id);
 	}
 
 	/**
@@ -381,38 +437,7 @@ public class Node implements DiagramObject, Cloneable {
 	 * @param r
 	 */
 	public void setResizing(boolean r) {
-		_resizing = r;
-	}
-
-	/**
-	 * Returns the actual ellipse associated with the graphical representation of this node.
-	 * @return
-	 */
-	public Ellipse2D.Double getCircle() {
-		return _circle;
-	}
-
-	/**
-	 * This method relocates the circle associated with this node based on its current location.
-	 * It then relocates the other graphical components that move with the circle:
-	 * the JLabel/JTextField and start symbol triangle.
-	 * @return
-	 */
-	public Ellipse2D.Double resetCircle() {
-		double hypo = 2*_radius;
-		double temp = hypo*hypo;
-		double dimension = Math.sqrt(temp/2);
-		Point p = new Point((int)(_center.x-(dimension/2)), (int)(_center.y-(dimension/2)));
-		_area.setSize((int)(dimension), _area.getHeight());
-		_label.setSize((int)(dimension), _label.getHeight());
-		_area.setLocation(new Point(p.x+2, (int)(_center.y-6)));
-		_label.setLocation(new Point(p.x+1, (int)(_center.y-6)));
-		_circle = new Ellipse2D.Double(_center.x-_radius, _center.y-_radius, _radius*2, _radius*2);
-		_startSymbol = new Polygon();
-		_startSymbol.addPoint((int)(this.getCenter().x - this.getRadius()),(int) (this.getCenter().y));
-		_startSymbol.addPoint((int)(this.getCenter().x - this.getRadius() - 20),(int) (this.getCenter().y + 10));
-		_startSymbol.addPoint((int)(this.getCenter().x - this.getRadius() - 20),(int) (this.getCenter().y - 10));
-		return _circle;
+		_store.resizing.set(_id, r);
 	}
 
 	/**
@@ -420,7 +445,7 @@ public class Node implements DiagramObject, Cloneable {
 	 * @return
 	 */
 	public boolean isSelected() {
-		return _selected;
+		return _store.nodeSelected.get(_id);
 	}
 
 	/**
@@ -428,32 +453,29 @@ public class Node implements DiagramObject, Cloneable {
 	 * @param b
 	 */
 	public void setSelected(boolean b){
-		_selected = b;
+		_store.nodeSelected.set(_id, b);
 	}
 
 	/**
 	 * Sets whether node is the currently-highlighted node in simulation.
 	 */
 	public void setCurrent(boolean b) {
-		_current = b;
+		_store.nodeCurrent.set(_id, b);
 	}
 
 	/**
 	 * Returns true if and only if node is currently highlighted in simulation.
 	 */
 	public boolean getCurrent() {
-		return _current;
+		return _store.nodeCurrent.get(_id);
 	}
 
 	/**
-	 * Returns the Node's name. This gives the text field's text (which includes underscores and \\<greek character> instead
+	 * Returns the Node's name. This gives the typed text (which includes underscores and \\<greek character> instead
 	 * of subscripts and the characters themselves. This was the best solution we could find, since the simulation pane
 	 * (where this name is ultimately displayed) does not support html.
 	 */
 	public String getName() {
-		return ("Node: " + _area.getText());
+		return ("Node: " + getText());
 	}
-
-
-
 }
\ No newline at end of file
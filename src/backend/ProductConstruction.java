@@ -0,0 +1,165 @@
+package backend;
+
+import java.util.*;
+
+/**
+ * Builds the product of two DFSMs for a ProductOperation, over their compiled tables.  Only the
+ * pairs of states reachable from the pair of start states are ever made, by a breadth-first
+ * search, so two large machines whose reachable product is small are cheap to combine.
+ *
+ * A missing transition, or a symbol only one of the machines knows, goes to a dead state of that
+ * machine.  Pairs that can no longer lead to acceptance under the operation (for an intersection,
+ * any pair with a dead state in it) are all sent to the single pair of dead states, which is built
+ * only if it is reached.  The result is complete over the symbols of both machines.
+ */
+class ProductConstruction {
+
+	private final CompiledAutomaton _first;
+	private final CompiledAutomaton _second;
+	private final ProductOperation _operation;
+
+	/** The symbols of both machines. */
+	private final char[] _alphabet;
+
+	/** The symbol number in each machine of every symbol of _alphabet, or -1. */
+	private final int[] _firstSymbol;
+	private final int[] _secondSymbol;
+
+	/** The dead state of each machine, numbered after its real states. */
+	private final int _firstDead;
+	private final int _secondDead;
+
+	/** The number of every pair made so far, keyed by first << 32 | second. */
+	private final HashMap<Long, Integer> _ids = new HashMap<Long, Integer>();
+
+	/** The pairs made so far, by number. */
+	private int[] _pairFirst = new int[16];
+	private int[] _pairSecond = new int[16];
+	private int _pairs;
+
+	ProductConstruction(CompiledAutomaton first, CompiledAutomaton second, ProductOperation operation) {
+		_first = first;
+		_second = second;
+		_operation = operation;
+		SymbolTable symbols = new SymbolTable();
+		for (int i = 0; i < first.getSymbolCount(); i ++)
+			symbols.intern(first.getSymbol(i));
+		for (int i = 0; i < second.getSymbolCount(); i ++)
+			symbols.intern(second.getSymbol(i));
+		int k = symbols.size();
+		_alphabet = new char[k];
+		_firstSymbol = new int[k];
+		_secondSymbol = new int[k];
+		for (int i = 0; i < k; i ++) {
+			_alphabet[i] = symbols.getSymbol(i);
+			_firstSymbol[i] = first.symbolOf(_alphabet[i]);
+			_secondSymbol[i] = second.symbolOf(_alphabet[i]);
+		}
+		_firstDead = first.getStateCount();
+		_secondDead = second.getStateCount();
+	}
+
+	/**
+	 * Builds the product.
+	 * @param limit		The largest number of nodes to build.
+	 * @return			The new diagram, or null if it would have more than limit nodes.
+	 */
+	Diagram build(int limit) {
+		int k = _alphabet.length;
+		int[] table = new int[16 * Math.max(k, 1)];
+		intern(_first.getStart(), _second.getStart());
+		for (int pair = 0; pair < _pairs; pair ++) {
+			int p = _pairFirst[pair];
+			int q = _pairSecond[pair];
+			if ((pair + 1) * k > table.length)
+				table = Arrays.copyOf(table, Math.max(table.length * 2, (pair + 1) * k));
+			for (int symbol = 0; symbol < k; symbol ++) {
+				int nextP = step(_first, p, _firstDead, _firstSymbol[symbol]);
+				int nextQ = step(_second, q, _secondDead, _secondSymbol[symbol]);
+				table[pair * k + symbol] = intern(nextP, nextQ);
+				if (_pairs > limit)
+					return null;
+			}
+		}
+
+		DiagramBuilder builder = new DiagramBuilder();
+		for (int pair = 0; pair < _pairs; pair ++) {
+			String label = "(" + name(_first, _pairFirst[pair]) + "," + name(_second, _pairSecond[pair]) + ")";
+			builder.addState(label, pair == 0, accepts(_pairFirst[pair], _pairSecond[pair]));
+		}
+		for (int pair = 0; pair < _pairs; pair ++) {
+			for (int symbol = 0; symbol < k; symbol ++)
+				builder.addTransition(pair, table[pair * k + symbol], String.valueOf(_alphabet[symbol]));
+		}
+		return builder.build();
+	}
+
+	/**
+	 * @return		The state the machine reaches from state (or its dead state) on the symbol, or its
+	 * 				dead state.
+	 */
+	private static int step(CompiledAutomaton automaton, int state, int dead, int symbol) {
+		if (state == dead || symbol < 0)
+			return dead;
+		int next = automaton.step(state, symbol);
+		return next == CompiledAutomaton.NO_STATE ? dead : next;
+	}
+
+	/**
+	 * @return		True if the pair is an accept state of the product.
+	 */
+	private boolean accepts(int p, int q) {
+		boolean acceptP = p != _firstDead && _first.isAccept(p);
+		boolean acceptQ = q != _secondDead && _second.isAccept(q);
+		switch (_operation) {
+		case INTERSECTION:
+			return acceptP && acceptQ;
+		case UNION:
+			return acceptP || acceptQ;
+		default:
+			return acceptP && !acceptQ;
+		}
+	}
+
+	/**
+	 * @return		The number of the pair, giving it one if it has not been made.  Pairs that can no
+	 * 				longer be accepted all become the pair of dead states.
+	 */
+	private int intern(int p, int q) {
+		boolean hopeless;
+		switch (_operation) {
+		case INTERSECTION:
+			hopeless = p == _firstDead || q == _secondDead;
+			break;
+		case UNION:
+			hopeless = p == _firstDead && q == _secondDead;
+			break;
+		default:
+			hopeless = p == _firstDead;
+			break;
+		}
+		if (hopeless) {
+			p = _firstDead;
+			q = _secondDead;
+		}
+		Long key = ((long) p << 32) | q;
+		Integer id = _ids.get(key);
+		if (id != null)
+			return id;
+		if (_pairs == _pairFirst.length) {
+			_pairFirst = Arrays.copyOf(_pairFirst, _pairs * 2);
+			_pairSecond = Arrays.copyOf(_pairSecond, _pairs * 2);
+		}
+		_pairFirst[_pairs] = p;
+		_pairSecond[_pairs] = q;
+		_ids.put(key, _pairs);
+		return _pairs ++;
+	}
+
+	/**
+	 * @return		The label of a state of a machine, or "{}" for its dead state.
+	 */
+	private static String name(CompiledAutomaton automaton, int state) {
+		return state == automaton.getStateCount() ? "{}" : automaton.getText(state);
+	}
+}
@@ -0,0 +1,9 @@
+package backend;
+
+/**
+ * The languages Diagram.product() can build out of two DFSMs: the strings both accept, the strings
+ * either accepts, and the strings the first accepts but the second does not.
+ */
+public enum ProductOperation {
+	INTERSECTION, UNION, DIFFERENCE
+}
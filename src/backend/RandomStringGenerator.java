@@ -0,0 +1,199 @@
+package backend;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Random;
+
+/**
+ * Draws accepted inputs of one length uniformly at random, for fuzzing.  Built once per DFSM and
+ * length by Diagram.randomAccepted(), it keeps a suffix-count table: for every remaining length r
+ * and state s, a weight proportional to the number of accepted inputs of length r from s.  An
+ * input is then drawn one character at a time, each symbol picked with probability proportional
+ * to the weight of the state it leads to, which makes every accepted input equally likely.
+ *
+ * The weights are doubles scaled so that the largest of each length is 1, so they do not overflow
+ * however long the inputs are.  When the table is small enough, the running sums of the successor
+ * weights of every state and remaining length are laid out in one row per state, so a character
+ * is drawn by scanning a single row.  Drawing an input allocates nothing apart from the result;
+ * write() streams inputs straight to a Writer.
+ *
+ * A generator never changes after it is built, so it can be shared by threads that each have their
+ * own Random.
+ */
+public class RandomStringGenerator {
+
+	/** The largest number of entries in the table of running sums. */
+	private static final long MAX_CUMULATIVE = 1 << 21;
+
+	private final int _length;
+	private final int _size;
+	private final int _symbols;
+
+	/** The successor of every state on every symbol, as [state * symbols + symbol], or -1. */
+	private final int[] _successors;
+
+	/** The input character of every symbol. */
+	private final char[] _characters;
+
+	/** The scaled weight of every state for every remaining length, as [length * size + state]. */
+	private final double[] _weights;
+
+	/** The sum of the weights of the successors of every state, as [length * size + state]: the
+	 * total that the successor weights at length - 1 are picked from. */
+	private final double[] _totals;
+
+	/** The running sums of the successor weights, as [(length * size + state) * symbols + symbol],
+	 * or null if that table would be too large. */
+	private final double[] _cumulative;
+
+	RandomStringGenerator(StringCounter counter, int length) {
+		_length = length;
+		_size = counter.size();
+		_symbols = counter.getSymbolCount();
+		_successors = new int[_size * _symbols];
+		for (int s = 0; s < _size; s ++) {
+			for (int symbol = 0; symbol < _symbols; symbol ++)
+				_successors[s * _symbols + symbol] = counter.successor(s, symbol);
+		}
+		_characters = new char[_symbols];
+		for (int symbol = 0; symbol < _symbols; symbol ++)
+			_characters[symbol] = counter.getSymbol(symbol);
+
+		_weights = new double[(length + 1) * _size];
+		_totals = new double[(length + 1) * _size];
+		for (int s = 0; s < _size; s ++)
+			_weights[s] = counter.isAccept(s) ? 1 : 0;
+		for (int r = 1; r <= length; r ++) {
+			int previous = (r - 1) * _size;
+			int base = r * _size;
+			double max = 0;
+			for (int s = 0; s < _size; s ++) {
+				double total = 0;
+				for (int j = s * _symbols; j < (s + 1) * _symbols; j ++) {
+					if (_successors[j] >= 0)
+						total += _weights[previous + _successors[j]];
+				}
+				_totals[base + s] = total;
+				max = Math.max(max, total);
+			}
+			for (int s = 0; s < _size; s ++)
+				_weights[base + s] = max == 0 ? 0 : _totals[base + s] / max;
+		}
+
+		if ((long) (length + 1) * _size * _symbols > MAX_CUMULATIVE) {
+			_cumulative = null;
+			return;
+		}
+		_cumulative = new double[(length + 1) * _size * _symbols];
+		for (int r = 1; r <= length; r ++) {
+			int previous = (r - 1) * _size;
+			for (int s = 0; s < _size; s ++) {
+				int row = (r * _size + s) * _symbols;
+				double sum = 0;
+				for (int symbol = 0; symbol < _symbols; symbol ++) {
+					int next = _successors[s * _symbols + symbol];
+					if (next >= 0)
+						sum += _weights[previous + next];
+					_cumulative[row + symbol] = sum;
+				}
+			}
+		}
+	}
+
+	/**
+	 * @return		The length of the inputs drawn.
+	 */
+	public int getLength() {
+		return _length;
+	}
+
+	/**
+	 * @return		True if no input of the length is accepted, so that none can be drawn.
+	 */
+	public boolean isEmpty() {
+		return _size == 0 || _weights[_length * _size] == 0;
+	}
+
+	/**
+	 * Draws one input.
+	 * @param random	The source of randomness.
+	 * @return			An accepted input, or null if isEmpty().
+	 */
+	public String next(Random random) {
+		if (isEmpty())
+			return null;
+		char[] input = new char[_length];
+		fill(input, random);
+		return new String(input);
+	}
+
+	/**
+	 * Draws inputs and writes each on its own line.
+	 * @param out			Where to write the inputs.
+	 * @param count			The number of inputs to draw.
+	 * @param random		The source of randomness.
+	 * @throws IOException	If writing fails.
+	 */
+	public void write(Writer out, long count, Random random) throws IOException {
+		if (isEmpty())
+			return;
+		char[] input = new char[_length + 1];
+		input[_length] = '\n';
+		for (long i = 0; i < count; i ++) {
+			fill(input, random);
+			out.write(input, 0, input.length);
+		}
+	}
+
+	/**
+	 * Fills the first getLength() characters of the array with a drawn input.
+	 */
+	private void fill(char[] input, Random random) {
+		if (_cumulative != null) {
+			fillFromRows(input, random);
+			return;
+		}
+		int state = 0;
+		for (int r = _length; r > 0; r --) {
+			int previous = (r - 1) * _size;
+			double target = random.nextDouble() * _totals[r * _size + state];
+			int chosen = -1;
+			for (int j = state * _symbols; j < (state + 1) * _symbols; j ++) {
+				int next = _successors[j];
+				if (next < 0)
+					continue;
+				double weight = _weights[previous + next];
+				if (weight == 0)
+					continue;
+				//Rounding can leave the target just past the last weight; take the last one then.
+				chosen = j;
+				if (target < weight)
+					break;
+				target -= weight;
+			}
+			input[_length - r] = _characters[chosen - state * _symbols];
+			state = _successors[chosen];
+		}
+	}
+
+	/**
+	 * Does what fill() does, using the rows of running sums.
+	 */
+	private void fillFromRows(char[] input, Random random) {
+		double[] cumulative = _cumulative;
+		int symbols = _symbols;
+		int state = 0;
+		for (int r = _length; r > 0; r --) {
+			int row = (r * _size + state) * symbols;
+			double target = random.nextDouble() * cumulative[row + symbols - 1];
+			int chosen = 0;
+			while (chosen < symbols - 1 && target >= cumulative[row + chosen])
+				chosen ++;
+			//Rounding can leave the target at the very top; step back to a symbol with a weight.
+			while (chosen > 0 && cumulative[row + chosen] == cumulative[row + chosen - 1])
+				chosen --;
+			input[_length - r] = _characters[chosen];
+			state = _successors[state * symbols + chosen];
+		}
+	}
+}
@@ -0,0 +1,106 @@
+package backend;
+
+import java.util.*;
+
+/**
+ * Which nodes of a diagram are of no use to its language, as worked out by
+ * Diagram.analyzeReachability(): the nodes no start node reaches (unreachable), and the nodes from
+ * which no accept node can be reached (dead).  Both come from one breadth-first search over an
+ * AdjacencyIndex, forwards from the start nodes and backwards from the accept nodes, so the
+ * analysis takes time linear in the size of the diagram.
+ *
+ * If the diagram has no start node, no node is counted as unreachable.
+ */
+public class Reachability {
+
+	private final int _revision;
+	private final Node[] _nodes;
+	private final HashMap<Node, Integer> _index;
+	private final boolean[] _start;
+	private final boolean[] _reachable;
+	private final boolean[] _live;
+
+	Reachability(DiagramGraph graph) {
+		_revision = graph.getRevision();
+		AdjacencyIndex adjacency = AdjacencyIndex.ofTransitions(graph);
+		_nodes = adjacency.nodes;
+		_index = adjacency.index;
+		_start = graph.start;
+		int n = adjacency.size();
+		_reachable = new boolean[n];
+		_live = new boolean[n];
+		boolean hasStart = false;
+		for (int i = 0; i < n; i ++) {
+			_reachable[i] = graph.start[i];
+			_live[i] = graph.accept[i];
+			hasStart |= _reachable[i];
+		}
+		if (hasStart)
+			adjacency.spread(_reachable, true);
+		else
+			Arrays.fill(_reachable, true);
+		adjacency.spread(_live, false);
+	}
+
+	/**
+	 * @param n		A node of the diagram.
+	 * @return		True if no start node reaches it.
+	 */
+	public boolean isUnreachable(Node n) {
+		Integer i = _index.get(n);
+		return i != null && !_reachable[i];
+	}
+
+	/**
+	 * @param n		A node of the diagram.
+	 * @return		True if it reaches no accept node.
+	 */
+	public boolean isDead(Node n) {
+		Integer i = _index.get(n);
+		return i != null && !_live[i];
+	}
+
+	/**
+	 * @return		The nodes no start node reaches.
+	 */
+	public Set<Node> getUnreachable() {
+		Set<Node> unreachable = new LinkedHashSet<Node>();
+		for (int i = 0; i < _nodes.length; i ++) {
+			if (!_reachable[i])
+				unreachable.add(_nodes[i]);
+		}
+		return unreachable;
+	}
+
+	/**
+	 * @return		The nodes that reach no accept node.
+	 */
+	public Set<Node> getDead() {
+		Set<Node> dead = new LinkedHashSet<Node>();
+		for (int i = 0; i < _nodes.length; i ++) {
+			if (!_live[i])
+				dead.add(_nodes[i]);
+		}
+		return dead;
+	}
+
+	/**
+	 * @return		The nodes Diagram.trim() removes: those that are unreachable or dead, apart from
+	 * 				the start nodes.
+	 */
+	public Set<Node> getUseless() {
+		Set<Node> useless = new LinkedHashSet<Node>();
+		for (int i = 0; i < _nodes.length; i ++) {
+			if ((!_reachable[i] || !_live[i]) && !_start[i])
+				useless.add(_nodes[i]);
+		}
+		return useless;
+	}
+
+	/**
+	 * @return		The revision of the diagram this was worked out for.
+	 */
+	public int getRevision() {
+		return _revision;
+	}
+}
@@ -0,0 +1,299 @@
+package backend;
+
+import java.util.*;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * A compiled regular expression: the Thompson NFA of the expression, run as a DFA that is built
+ * while it runs, with the cache of SubsetCache as LazyDFA is.  A set of NFA states is kept as a sorted array of the
+ * states that read a symbol (and the accept state), after following epsilon transitions, so a step
+ * costs time proportional to the size of the set rather than of the NFA; expressions with many
+ * thousands of literals compile and run in linear space.  The first time a cached set is stepped,
+ * its states are also indexed by the symbol they read, so that working out its other transitions
+ * only looks at the states that read each symbol.
+ *
+ * matches() has the meaning of java.util.regex.Matcher.matches(): the whole input must match.
+ * The same syntax is accepted as by ThompsonNFA, which is a subset of that of java.util.regex
+ * with the same meaning, so the two can be run on the same expressions and inputs to compare them.
+ * Syntax that java.util.regex would read differently is refused with a PatternSyntaxException.
+ *
+ * The cache is shared by every run, so runs are synchronized.
+ */
+public class RegexMatcher extends SubsetCache<int[]> {
+
+	/** The number of sets remembered unless told otherwise. */
+	public static final int DEFAULT_MAX_STATES = 1 << 16;
+
+	/** The number of ints the sets and their indexes may take up before the cache is emptied. */
+	private static final long MAX_CACHED_INTS = 1 << 23;
+
+	private final String _regex;
+	private final ThompsonNFA _nfa;
+	private final SymbolTable _symbols;
+
+	/** The index of each set by symbol, or null if it has not been built: the states of the set
+	 * that read symbol s move to index[k + 1 + index[s]] .. index[k + 1 + index[s + 1] - 1]. */
+	private final ArrayList<int[]> _indexes = new ArrayList<int[]>();
+
+	/** The number of ints in the cached sets and _indexes. */
+	private long _cachedInts;
+
+	//Scratch space for working out sets: the generation each state was last added in, a stack of
+	//states to follow, and the states of the set so far.
+	private final int[] _mark;
+	private int _generation;
+	private final int[] _stack;
+	private final int[] _found;
+
+	/**
+	 * Compiles an expression with a cache of DEFAULT_MAX_STATES sets.
+	 * @param regex						The expression.
+	 * @return							The compiled expression.
+	 * @throws PatternSyntaxException	If the expression is not well formed.
+	 */
+	public static RegexMatcher compile(String regex) {
+		return new RegexMatcher(regex, DEFAULT_MAX_STATES);
+	}
+
+	/**
+	 * @param regex						The expression.
+	 * @param maxStates					The number of sets to remember before emptying the cache.
+	 * @throws PatternSyntaxException	If the expression is not well formed.
+	 */
+	public RegexMatcher(String regex, int maxStates) {
+		this(new ThompsonNFA(regex), regex, maxStates);
+	}
+
+	private RegexMatcher(ThompsonNFA nfa, String regex, int maxStates) {
+		super(nfa.getSymbols().size(), maxStates);
+		_regex = regex;
+		_nfa = nfa;
+		_symbols = nfa.getSymbols();
+		_mark = new int[_nfa.size()];
+		_stack = new int[_nfa.size() * 2 + 1];
+		_found = new int[_nfa.size()];
+		flush();
+	}
+
+	void flush() {
+		_indexes.clear();
+		_cachedInts = 0;
+		super.flush();
+	}
+
+	void interned(int state, int[] set) {
+		_indexes.add(null);
+		_cachedInts += set.length;
+	}
+
+	/**
+	 * @return		The set of the start state.
+	 */
+	int[] startSet() {
+		_generation ++;
+		int count = follow(_nfa.getStart(), 0);
+		return sorted(count);
+	}
+
+	/**
+	 * @return		The set reached from a set on a symbol.
+	 */
+	private int[] step(int[] set, int symbol) {
+		_generation ++;
+		int count = 0;
+		for (int state : set) {
+			if (_nfa.reads(state, symbol))
+				count = follow(_nfa.getNext(state), count);
+		}
+		return sorted(count);
+	}
+
+	/**
+	 * @return		The set reached from a cached set on a symbol, using the index of the set.
+	 */
+	int[] successor(int state, int symbol) {
+		int[] index = _indexes.get(state);
+		if (index == null) {
+			index = buildIndex(_sets.get(state));
+			_indexes.set(state, index);
+			_cachedInts += index.length;
+		}
+		_generation ++;
+		int count = 0;
+		for (int j = _symbolCount + 1 + index[symbol]; j < _symbolCount + 1 + index[symbol + 1]; j ++)
+			count = follow(index[j], count);
+		return sorted(count);
+	}
+
+	/**
+	 * Indexes a set by symbol, with a counting sort of the states that read each symbol.
+	 */
+	private int[] buildIndex(int[] set) {
+		int k = _symbolCount;
+		int[] index = new int[k + 1];
+		for (int state : set) {
+			if (_nfa.reads(state)) {
+				for (int symbol : _nfa.getRead(state))
+					index[symbol + 1] ++;
+			}
+		}
+		for (int symbol = 0; symbol < k; symbol ++)
+			index[symbol + 1] += index[symbol];
+		index = Arrays.copyOf(index, k + 1 + index[k]);
+		int[] fill = Arrays.copyOf(index, k);
+		for (int state : set) {
+			if (_nfa.reads(state)) {
+				for (int symbol : _nfa.getRead(state))
+					index[k + 1 + fill[symbol] ++] = _nfa.getNext(state);
+			}
+		}
+		return index;
+	}
+
+	/**
+	 * @return		True if the cache has no room for another set.
+	 */
+	boolean isFull() {
+		return super.isFull() || _cachedInts >= MAX_CACHED_INTS;
+	}
+
+	/**
+	 * Adds to _found the states of the current generation that can be reached from a state by
+	 * epsilon transitions and that read a symbol or accept.
+	 * @param count		The number of states in _found.
+	 * @return			The new number of states in _found.
+	 */
+	private int follow(int state, int count) {
+		int top = 0;
+		_stack[top ++] = state;
+		while (top > 0) {
+			int s = _stack[-- top];
+			if (_mark[s] == _generation)
+				continue;
+			_mark[s] = _generation;
+			if (_nfa.reads(s) || s == _nfa.getAccept())
+				_found[count ++] = s;
+			else {
+				if (_nfa.getOther(s) != ThompsonNFA.NONE)
+					_stack[top ++] = _nfa.getOther(s);
+				if (_nfa.getNext(s) != ThompsonNFA.NONE)
+					_stack[top ++] = _nfa.getNext(s);
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * @return		The first count states of _found, sorted.
+	 */
+	private int[] sorted(int count) {
+		int[] set = Arrays.copyOf(_found, count);
+		Arrays.sort(set);
+		return set;
+	}
+
+	/**
+	 * @return		True if the set holds the accept state.
+	 */
+	boolean isAccepting(int[] set) {
+		return Arrays.binarySearch(set, _nfa.getAccept()) >= 0;
+	}
+
+	boolean isEmpty(int[] set) {
+		return set.length == 0;
+	}
+
+	int hash(int[] set) {
+		return Arrays.hashCode(set);
+	}
+
+	boolean equal(int[] a, int[] b) {
+		return Arrays.equals(a, b);
+	}
+
+	int symbolOf(char c) {
+		return _symbols.symbolOf(c);
+	}
+
+	char getSymbol(int symbol) {
+		return _symbols.getSymbol(symbol);
+	}
+
+	/**
+	 * @return		The name of the node of a set, in the order the sets were reached.
+	 */
+	String getLabel(int state) {
+		return "q_" + state;
+	}
+
+	/**
+	 * Matches the whole of the given characters.
+	 * @param input		The input characters.
+	 * @return			True if the input matches the expression.
+	 */
+	public boolean matches(CharSequence input) {
+		return run(input);
+	}
+
+	/**
+	 * Finishes a run by stepping the NFA directly.
+	 * @param current	The set of states the run is in.
+	 * @param from		The position of the next character.
+	 */
+	boolean stepNFA(int[] current, CharSequence input, int from) {
+		int length = input.length();
+		for (int i = from; i < length && current.length != 0; i ++) {
+			int symbol = _symbols.symbolOf(input.charAt(i));
+			if (symbol < 0)
+				return false;
+			current = step(current, symbol);
+		}
+		return isAccepting(current);
+	}
+
+	/**
+	 * Builds the full DFA of the expression, as a new diagram.  Its nodes are numbered in the order
+	 * they are reached, and if some set is empty it becomes a dead node, so that the result is a
+	 * complete DFSM.  The cache is left empty.
+	 * @param limit		The largest number of nodes to build.
+	 * @return			The new diagram, or null if it would have more than limit nodes.
+	 */
+	synchronized Diagram determinize(int limit) {
+		flush();
+		try {
+			return explore(limit) ? build() : null;
+		}
+		finally {
+			flush();
+		}
+	}
+
+	/**
+	 * Builds the Thompson NFA of the expression as a new diagram, with epsilon transitions.
+	 * @return		The new diagram.
+	 */
+	Diagram toDiagram() {
+		return _nfa.toDiagram();
+	}
+
+	/**
+	 * @return		The input alphabet of the expression.
+	 */
+	SymbolTable getSymbols() {
+		return _symbols;
+	}
+
+	/**
+	 * @return		The expression this was compiled from.
+	 */
+	public String pattern() {
+		return _regex;
+	}
+
+	/**
+	 * @return		The number of states of the Thompson NFA.
+	 */
+	public int getNFAStateCount() {
+		return _nfa.size();
+	}
+}
@@ -0,0 +1,214 @@
+package backend;
+
+import java.util.*;
+
+/**
+ * A regular expression, as a node of a DAG: a symbol, the empty input, the empty set, or the
+ * union, concatenation or star of smaller expressions.  Expressions are hash-consed by
+ * StateElimination, so equal subexpressions are one shared object and an expression whose
+ * written form is exponentially long still takes little space.  Check length() before calling
+ * toString().
+ *
+ * The written form uses the syntax of RegexMatcher, which java.util.regex also accepts: | for
+ * union, * and ? as postfix operators, () for the empty input, and parentheses only where they
+ * are needed.  Characters other than letters and digits are escaped with \.
+ */
+public class RegularExpression {
+
+	static final int EMPTY_SET = 0;
+	static final int EPSILON = 1;
+	static final int SYMBOL = 2;
+	static final int UNION = 3;
+	static final int CONCAT = 4;
+	static final int STAR = 5;
+
+	//Precedences, for deciding where parentheses go.
+	private static final int UNION_PRECEDENCE = 0;
+	private static final int CONCAT_PRECEDENCE = 1;
+	private static final int POSTFIX_PRECEDENCE = 2;
+	private static final int ATOM_PRECEDENCE = 3;
+
+	private final int _kind;
+	private final char _symbol;
+	private final RegularExpression _left;
+	private final RegularExpression _right;
+
+	/** The length of the written form, or Long.MAX_VALUE if it is longer than that. */
+	private final long _length;
+
+	/**
+	 * Made only by StateElimination, which makes sure every expression is made once.  A union
+	 * with the empty input must have it as its left operand.
+	 */
+	RegularExpression(int kind, char symbol, RegularExpression left, RegularExpression right) {
+		_kind = kind;
+		_symbol = symbol;
+		_left = left;
+		_right = right;
+		switch (kind) {
+		case EMPTY_SET:
+		case EPSILON:
+			_length = 2;
+			break;
+		case SYMBOL:
+			_length = Character.isLetterOrDigit(symbol) ? 1 : 2;
+			break;
+		case STAR:
+			_length = add(left.wrappedLength(ATOM_PRECEDENCE), 1);
+			break;
+		case UNION:
+			_length = left._kind == EPSILON ? add(right.wrappedLength(ATOM_PRECEDENCE), 1)
+					: add(add(left._length, 1), right._length);
+			break;
+		default:
+			_length = add(left.wrappedLength(CONCAT_PRECEDENCE), right.wrappedLength(CONCAT_PRECEDENCE));
+			break;
+		}
+	}
+
+	/**
+	 * @return		a + b, or Long.MAX_VALUE if that overflows.
+	 */
+	private static long add(long a, long b) {
+		long sum = a + b;
+		return sum < 0 ? Long.MAX_VALUE : sum;
+	}
+
+	/**
+	 * @return		The length of the written form where an operand of the given precedence is
+	 * 				needed, with parentheses if they are needed.
+	 */
+	private long wrappedLength(int precedence) {
+		return getPrecedence() < precedence ? add(_length, 2) : _length;
+	}
+
+	/**
+	 * @return		The precedence of the outermost operator of the written form.
+	 */
+	private int getPrecedence() {
+		switch (_kind) {
+		case STAR:
+			return POSTFIX_PRECEDENCE;
+		case UNION:
+			//A union with the empty input is written x?.
+			return _left._kind == EPSILON ? POSTFIX_PRECEDENCE : UNION_PRECEDENCE;
+		case CONCAT:
+			return CONCAT_PRECEDENCE;
+		default:
+			return ATOM_PRECEDENCE;
+		}
+	}
+
+	int getKind() {
+		return _kind;
+	}
+
+	char getSymbol() {
+		return _symbol;
+	}
+
+	RegularExpression getLeft() {
+		return _left;
+	}
+
+	RegularExpression getRight() {
+		return _right;
+	}
+
+	/**
+	 * @return		The number of characters of toString(), or Long.MAX_VALUE if that is more than
+	 * 				Long.MAX_VALUE.
+	 */
+	public long length() {
+		return _length;
+	}
+
+	/**
+	 * @return		The number of distinct subexpressions, counting this one: the size of the DAG.
+	 */
+	public int getDagSize() {
+		Set<RegularExpression> seen = Collections.newSetFromMap(new IdentityHashMap<RegularExpression, Boolean>());
+		ArrayDeque<RegularExpression> stack = new ArrayDeque<RegularExpression>();
+		stack.push(this);
+		while (!stack.isEmpty()) {
+			RegularExpression e = stack.pop();
+			if (!seen.add(e))
+				continue;
+			if (e._left != null)
+				stack.push(e._left);
+			if (e._right != null)
+				stack.push(e._right);
+		}
+		return seen.size();
+	}
+
+	/**
+	 * Writes the expression out, without recursion.
+	 * @return							The written form.
+	 * @throws IllegalStateException	If it is longer than a String can be.
+	 */
+	@Override
+	public String toString() {
+		if (_length > Integer.MAX_VALUE - 8)
+			throw new IllegalStateException("The expression has " + _length + " characters.");
+		StringBuilder out = new StringBuilder((int) _length);
+		//What is left to write, top last: strings, and expressions with the precedence needed there.
+		ArrayList<Object> stack = new ArrayList<Object>();
+		int[] needed = new int[16];
+		stack.add(this);
+		while (!stack.isEmpty()) {
+			int top = stack.size() - 1;
+			Object item = stack.remove(top);
+			if (item instanceof String) {
+				out.append((String) item);
+				continue;
+			}
+			RegularExpression e = (RegularExpression) item;
+			if (needed.length < top + 4)
+				needed = Arrays.copyOf(needed, needed.length * 2);
+			if (e.getPrecedence() < needed[top]) {
+				out.append('(');
+				stack.add(")");
+			}
+			switch (e._kind) {
+			case EMPTY_SET:
+				out.append("[]");
+				break;
+			case EPSILON:
+				out.append("()");
+				break;
+			case SYMBOL:
+				if (!Character.isLetterOrDigit(e._symbol))
+					out.append('\\');
+				out.append(e._symbol);
+				break;
+			case STAR:
+				stack.add("*");
+				needed[stack.size()] = ATOM_PRECEDENCE;
+				stack.add(e._left);
+				break;
+			case UNION:
+				if (e._left._kind == EPSILON) {
+					stack.add("?");
+					needed[stack.size()] = ATOM_PRECEDENCE;
+					stack.add(e._right);
+				}
+				else {
+					needed[stack.size()] = UNION_PRECEDENCE;
+					stack.add(e._right);
+					stack.add("|");
+					needed[stack.size()] = UNION_PRECEDENCE;
+					stack.add(e._left);
+				}
+				break;
+			default:
+				needed[stack.size()] = CONCAT_PRECEDENCE;
+				stack.add(e._right);
+				needed[stack.size()] = CONCAT_PRECEDENCE;
+				stack.add(e._left);
+				break;
+			}
+		}
+		return out.toString();
+	}
+}
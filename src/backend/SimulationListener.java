@@ -0,0 +1,15 @@
+package backend;
+
+/**
+ * Receives the trace of a streaming simulation one node at a time, so that the trace never has
+ * to be held in memory.
+ */
+public interface SimulationListener {
+
+	/**
+	 * Called for the start node and then once for every input character consumed.
+	 * @param position		The number of input characters consumed so far.
+	 * @param node			The node the simulation is in after those characters.
+	 */
+	public void visited(long position, Node node);
+}
@@ -0,0 +1,62 @@
+package backend;
+
+/**
+ * The outcome of a streaming simulation: whether the input was accepted, the node it ended at,
+ * and how far into the input the simulation got.
+ */
+public class SimulationResult {
+
+	/** The node the simulation ended at. */
+	private final Node _finalNode;
+
+	/** True if the whole input was consumed and the final node is an accept state. */
+	private final boolean _accepted;
+
+	/** The number of input characters consumed. */
+	private final long _length;
+
+	/** The position of the first character that is not in the input alphabet, or -1. */
+	private final long _stuckAt;
+
+	/**
+	 * @param finalNode		The node the simulation ended at.
+	 * @param accepted		Whether the input was accepted.
+	 * @param length		The number of input characters consumed.
+	 * @param stuckAt		The position of the first character not in the alphabet, or -1.
+	 */
+	public SimulationResult(Node finalNode, boolean accepted, long length, long stuckAt) {
+		_finalNode = finalNode;
+		_accepted = accepted;
+		_length = length;
+		_stuckAt = stuckAt;
+	}
+
+	/**
+	 * @return		The node the simulation ended at.
+	 */
+	public Node getFinalNode() {
+		return _finalNode;
+	}
+
+	/**
+	 * @return		True if the FSM accepted the input.
+	 */
+	public boolean isAccepted() {
+		return _accepted;
+	}
+
+	/**
+	 * @return		The number of input characters consumed.
+	 */
+	public long getLength() {
+		return _length;
+	}
+
+	/**
+	 * @return		The position of the character the simulation stopped at because it is not in the
+	 * 				input alphabet, or -1 if the whole input was consumed.
+	 */
+	public long getStuckPosition() {
+		return _stuckAt;
+	}
+}
@@ -0,0 +1,230 @@
+package backend;
+
+import java.util.*;
+
+/**
+ * Turns a DFSM into a RegularExpression by state elimination.  Only the states that can be reached
+ * from the start state and can reach an accept state take part (see StringCounter).  A new start
+ * state and a new final state are added, joined to the old ones by empty-input transitions, and
+ * the old states are then eliminated one at a time: each pair of a transition into the state and
+ * one out of it is replaced by a single transition labeled with in (loop)* out.
+ *
+ * The order of elimination decides how large the result is.  The state eliminated next is always
+ * one with the fewest pairs of transitions in and out of it (in-degree times out-degree, not
+ * counting a loop), worked out again as the graph changes; states on a chain go first and hubs go
+ * last.  The expressions are hash-consed as they are made and simplified with the identities of
+ * the empty set, the empty input and star, so the result is a DAG whose size is polynomial in the
+ * number of states even when its written form is not.
+ */
+class StateElimination {
+
+	/** Every expression made so far. */
+	private final HashMap<Key, RegularExpression> _table = new HashMap<Key, RegularExpression>();
+
+	private final RegularExpression _emptySet;
+	private final RegularExpression _epsilon;
+
+	/** The transitions out of and into each state of the generalized automaton, by the state at the
+	 * other end.  States 0..n-1 are those of the DFSM; n is the new start state and n + 1 the new
+	 * final state. */
+	private final List<HashMap<Integer, RegularExpression>> _out = new ArrayList<HashMap<Integer, RegularExpression>>();
+	private final List<HashMap<Integer, RegularExpression>> _in = new ArrayList<HashMap<Integer, RegularExpression>>();
+
+	private final int _size;
+
+	StateElimination(StringCounter automaton) {
+		_emptySet = make(RegularExpression.EMPTY_SET, '\0', null, null);
+		_epsilon = make(RegularExpression.EPSILON, '\0', null, null);
+		_size = automaton.size();
+		for (int s = 0; s < _size + 2; s ++) {
+			_out.add(new HashMap<Integer, RegularExpression>());
+			_in.add(new HashMap<Integer, RegularExpression>());
+		}
+		if (_size == 0)
+			return;
+		RegularExpression[] symbols = new RegularExpression[automaton.getSymbolCount()];
+		for (int symbol = 0; symbol < symbols.length; symbol ++)
+			symbols[symbol] = make(RegularExpression.SYMBOL, automaton.getSymbol(symbol), null, null);
+		addTransition(_size, 0, _epsilon);
+		for (int s = 0; s < _size; s ++) {
+			if (automaton.isAccept(s))
+				addTransition(s, _size + 1, _epsilon);
+			for (int symbol = 0; symbol < symbols.length; symbol ++) {
+				int next = automaton.successor(s, symbol);
+				if (next >= 0)
+					addTransition(s, next, symbols[symbol]);
+			}
+		}
+	}
+
+	/**
+	 * Eliminates every state of the DFSM.
+	 * @return		The expression, or null if the DFSM accepts nothing.
+	 */
+	RegularExpression run() {
+		if (_size == 0)
+			return null;
+		//Entries are cost << 32 | state.  An entry is stale if the cost of its state has changed
+		//since; a fresh one was added when it did.
+		PriorityQueue<Long> queue = new PriorityQueue<Long>();
+		boolean[] eliminated = new boolean[_size];
+		for (int s = 0; s < _size; s ++)
+			queue.add(((long) cost(s) << 32) | s);
+		while (!queue.isEmpty()) {
+			long entry = queue.poll();
+			int state = (int) entry;
+			if (eliminated[state] || (entry >>> 32) != cost(state))
+				continue;
+			eliminated[state] = true;
+			Set<Integer> neighbours = eliminate(state);
+			for (int s : neighbours) {
+				if (s < _size && !eliminated[s])
+					queue.add(((long) cost(s) << 32) | s);
+			}
+		}
+		return _out.get(_size).get(_size + 1);
+	}
+
+	/**
+	 * @return		The in-degree times the out-degree of a state, not counting a loop, at most
+	 * 				Integer.MAX_VALUE.
+	 */
+	private int cost(int state) {
+		int loop = _out.get(state).containsKey(state) ? 1 : 0;
+		long cost = (long) (_in.get(state).size() - loop) * (_out.get(state).size() - loop);
+		return (int) Math.min(cost, Integer.MAX_VALUE);
+	}
+
+	/**
+	 * Removes a state, joining every state with a transition into it to every state it has a
+	 * transition to.
+	 * @return		The states whose transitions changed.
+	 */
+	private Set<Integer> eliminate(int state) {
+		HashMap<Integer, RegularExpression> out = _out.get(state);
+		HashMap<Integer, RegularExpression> in = _in.get(state);
+		RegularExpression loop = out.remove(state);
+		in.remove(state);
+		RegularExpression middle = loop == null ? _epsilon : star(loop);
+		for (Map.Entry<Integer, RegularExpression> from : in.entrySet()) {
+			_out.get(from.getKey()).remove(state);
+			RegularExpression prefix = concat(from.getValue(), middle);
+			for (Map.Entry<Integer, RegularExpression> to : out.entrySet())
+				addTransition(from.getKey(), to.getKey(), concat(prefix, to.getValue()));
+		}
+		for (int to : out.keySet())
+			_in.get(to).remove(state);
+		Set<Integer> neighbours = new HashSet<Integer>(in.keySet());
+		neighbours.addAll(out.keySet());
+		in.clear();
+		out.clear();
+		return neighbours;
+	}
+
+	/**
+	 * Adds an expression to the transition from one state to another, as a union with what is
+	 * already there.
+	 */
+	private void addTransition(int from, int to, RegularExpression e) {
+		RegularExpression old = _out.get(from).get(to);
+		RegularExpression label = old == null ? e : union(old, e);
+		_out.get(from).put(to, label);
+		_in.get(to).put(from, label);
+	}
+
+	/**
+	 * @return		The union of two expressions, simplified.
+	 */
+	private RegularExpression union(RegularExpression a, RegularExpression b) {
+		if (a == b || b == _emptySet)
+			return a;
+		if (a == _emptySet)
+			return b;
+		//x* and x? already hold the empty input.
+		if (a == _epsilon && acceptsEmpty(b))
+			return b;
+		if (b == _epsilon && acceptsEmpty(a))
+			return a;
+		//The empty input goes on the left, where it is written as x?; otherwise keep the order.
+		if (b == _epsilon)
+			return make(RegularExpression.UNION, '\0', b, a);
+		return make(RegularExpression.UNION, '\0', a, b);
+	}
+
+	/**
+	 * @return		True if the expression is a star or a union with the empty input.
+	 */
+	private boolean acceptsEmpty(RegularExpression e) {
+		return e.getKind() == RegularExpression.STAR
+				|| (e.getKind() == RegularExpression.UNION && e.getLeft() == _epsilon);
+	}
+
+	/**
+	 * @return		The concatenation of two expressions, simplified.
+	 */
+	private RegularExpression concat(RegularExpression a, RegularExpression b) {
+		if (a == _emptySet || b == _emptySet)
+			return _emptySet;
+		if (a == _epsilon)
+			return b;
+		if (b == _epsilon)
+			return a;
+		return make(RegularExpression.CONCAT, '\0', a, b);
+	}
+
+	/**
+	 * @return		The star of an expression, simplified.
+	 */
+	private RegularExpression star(RegularExpression e) {
+		if (e == _emptySet || e == _epsilon)
+			return _epsilon;
+		if (e.getKind() == RegularExpression.STAR)
+			return e;
+		//(x?)* is x*.
+		if (e.getKind() == RegularExpression.UNION && e.getLeft() == _epsilon)
+			e = e.getRight();
+		return make(RegularExpression.STAR, '\0', e, null);
+	}
+
+	/**
+	 * @return		The expression with the given parts, made if it has not been made before.
+	 */
+	private RegularExpression make(int kind, char symbol, RegularExpression left, RegularExpression right) {
+		Key key = new Key(kind, symbol, left, right);
+		RegularExpression e = _table.get(key);
+		if (e == null) {
+			e = new RegularExpression(kind, symbol, left, right);
+			_table.put(key, e);
+		}
+		return e;
+	}
+
+	/**
+	 * The parts of an expression, as a hash key.  The operands are compared by identity, which is
+	 * enough because they were made by make() too.
+	 */
+	private static class Key {
+		private final int _kind;
+		private final char _symbol;
+		private final RegularExpression _left;
+		private final RegularExpression _right;
+
+		Key(int kind, char symbol, RegularExpression left, RegularExpression right) {
+			_kind = kind;
+			_symbol = symbol;
+			_left = left;
+			_right = right;
+		}
+
+		public int hashCode() {
+			return ((_kind * 31 + _symbol) * 31 + System.identityHashCode(_left)) * 31 + System.identityHashCode(_right);
+		}
+
+		public boolean equals(Object o) {
+			if (!(o instanceof Key))
+				return false;
+			Key k = (Key) o;
+			return _kind == k._kind && _symbol == k._symbol && _left == k._left && _right == k._right;
+		}
+	}
+}
@@ -0,0 +1,355 @@
+package backend;
+
+import java.math.BigInteger;
+import java.util.*;
+
+/**
+ * Counts the inputs of a given length that a DFSM accepts.  Only the states that can be reached
+ * from the start state and can reach an accept state take part; the others never add to a count.
+ *
+ * The count is the start row of M^n, summed over the accept states, where M[s][t] is the number of
+ * symbols taking s to t.  For small n it is worked out one length at a time, in time proportional
+ * to n times the number of transitions; for large n, M^n is worked out by repeated squaring over
+ * row-major long arrays, in time proportional to s^3 log n for s states.  Whichever is cheaper is
+ * used.  Counts are either exact, as BigIntegers, or modulo a number no larger than 2^31, so that
+ * every product of two residues fits in a long.
+ */
+class StringCounter {
+
+	/** The largest modulus allowed. */
+	static final long MAX_MODULUS = 1L << 31;
+
+	/** Sums of products are reduced once they pass this, which leaves room for one more product. */
+	private static final long REDUCE_AT = 1L << 62;
+
+	/** The number of states taking part; the start state is state 0. */
+	private final int _size;
+
+	/** The symbol count of the automaton, which is the length of a row of _successors. */
+	private final int _symbols;
+
+	/** The successor of every state on every symbol, as [state * symbols + symbol], or -1 if it
+	 * does not take part. */
+	private final int[] _successors;
+
+	/** Whether each state is an accept state. */
+	private final boolean[] _accept;
+
+	/** The automaton, for the characters of the symbols. */
+	private final CompiledAutomaton _automaton;
+
+	StringCounter(CompiledAutomaton automaton) {
+		_automaton = automaton;
+		int n = automaton.getStateCount();
+		int k = automaton.getSymbolCount();
+		_symbols = k;
+		int start = automaton.getStart();
+
+		//Forwards from the start state, then backwards from the accept states over what was reached.
+		int[] order = new int[n];
+		boolean[] reached = new boolean[n];
+		int count = 0;
+		reached[start] = true;
+		order[count ++] = start;
+		for (int head = 0; head < count; head ++) {
+			for (int symbol = 0; symbol < k; symbol ++) {
+				int next = automaton.step(order[head], symbol);
+				if (next != CompiledAutomaton.NO_STATE && !reached[next]) {
+					reached[next] = true;
+					order[count ++] = next;
+				}
+			}
+		}
+		//The predecessors of every reached state, as one array: those of t are
+		//predecessors[predStart[t]..predStart[t + 1]).
+		int[] predStart = new int[n + 1];
+		for (int i = 0; i < count; i ++) {
+			for (int symbol = 0; symbol < k; symbol ++) {
+				int next = automaton.step(order[i], symbol);
+				if (next != CompiledAutomaton.NO_STATE)
+					predStart[next + 1] ++;
+			}
+		}
+		for (int t = 0; t < n; t ++)
+			predStart[t + 1] += predStart[t];
+		int[] predecessors = new int[predStart[n]];
+		int[] fill = Arrays.copyOf(predStart, n);
+		for (int i = 0; i < count; i ++) {
+			for (int symbol = 0; symbol < k; symbol ++) {
+				int next = automaton.step(order[i], symbol);
+				if (next != CompiledAutomaton.NO_STATE)
+					predecessors[fill[next] ++] = order[i];
+			}
+		}
+		boolean[] live = new boolean[n];
+		int[] queue = new int[n];
+		int tail = 0;
+		for (int i = 0; i < count; i ++) {
+			if (automaton.isAccept(order[i])) {
+				live[order[i]] = true;
+				queue[tail ++] = order[i];
+			}
+		}
+		for (int head = 0; head < tail; head ++) {
+			int state = queue[head];
+			for (int j = predStart[state]; j < predStart[state + 1]; j ++) {
+				if (!live[predecessors[j]]) {
+					live[predecessors[j]] = true;
+					queue[tail ++] = predecessors[j];
+				}
+			}
+		}
+
+		int[] local = new int[n];
+		Arrays.fill(local, -1);
+		int size = 0;
+		for (int i = 0; i < count; i ++) {
+			if (live[order[i]])
+				local[order[i]] = size ++;
+		}
+		_size = size;
+		_successors = new int[size * k];
+		_accept = new boolean[size];
+		for (int i = 0; i < count; i ++) {
+			int state = order[i];
+			if (local[state] < 0)
+				continue;
+			_accept[local[state]] = automaton.isAccept(state);
+			for (int symbol = 0; symbol < k; symbol ++) {
+				int next = automaton.step(state, symbol);
+				_successors[local[state] * k + symbol] = next == CompiledAutomaton.NO_STATE ? -1 : local[next];
+			}
+		}
+	}
+
+	/**
+	 * @return		The number of states taking part.  The start state is state 0.
+	 */
+	int size() {
+		return _size;
+	}
+
+	/**
+	 * @return		The number of symbols.
+	 */
+	int getSymbolCount() {
+		return _symbols;
+	}
+
+	/**
+	 * @return		The state taking part that the state reaches on the symbol, or -1.
+	 */
+	int successor(int state, int symbol) {
+		return _successors[state * _symbols + symbol];
+	}
+
+	/**
+	 * @return		True if the state is an accept state.
+	 */
+	boolean isAccept(int state) {
+		return _accept[state];
+	}
+
+	/**
+	 * @return		The input character of a symbol.
+	 */
+	char getSymbol(int symbol) {
+		return _automaton.getSymbol(symbol);
+	}
+
+	/**
+	 * @return		True if repeated squaring is cheaper than stepping length times.
+	 */
+	private boolean squaringIsCheaper(long length) {
+		double stepping = (double) length * _size * Math.max(_symbols, 1);
+		double squaring = 2.0 * _size * _size * _size * (64 - Long.numberOfLeadingZeros(length));
+		return squaring < stepping;
+	}
+
+	/**
+	 * @param length	The length of the inputs.
+	 * @param modulus	The modulus, from 1 to MAX_MODULUS.
+	 * @return			The number of accepted inputs of that length, modulo the modulus.
+	 */
+	long count(long length, long modulus) {
+		if (_size == 0)
+			return 0;
+		long[] vector = squaringIsCheaper(length) ? power(length, modulus) : stepAll(length, modulus);
+		long total = 0;
+		for (int s = 0; s < _size; s ++) {
+			if (_accept[s])
+				total = (total + vector[s]) % modulus;
+		}
+		return total;
+	}
+
+	/**
+	 * @return		The number of inputs of the length that end in each state, by stepping.
+	 */
+	private long[] stepAll(long length, long modulus) {
+		long[] current = new long[_size];
+		long[] next = new long[_size];
+		current[0] = 1 % modulus;
+		for (long i = 0; i < length; i ++) {
+			Arrays.fill(next, 0);
+			for (int s = 0; s < _size; s ++) {
+				long ways = current[s];
+				if (ways == 0)
+					continue;
+				for (int j = s * _symbols; j < (s + 1) * _symbols; j ++) {
+					int t = _successors[j];
+					if (t >= 0) {
+						next[t] += ways;
+						if (next[t] >= modulus)
+							next[t] -= modulus;
+					}
+				}
+			}
+			long[] temp = current;
+			current = next;
+			next = temp;
+		}
+		return current;
+	}
+
+	/**
+	 * @return		The start row of M^length, by repeated squaring.
+	 */
+	private long[] power(long length, long modulus) {
+		int n = _size;
+		long[] matrix = new long[n * n];
+		for (int s = 0; s < n; s ++) {
+			for (int j = s * _symbols; j < (s + 1) * _symbols; j ++) {
+				if (_successors[j] >= 0)
+					matrix[s * n + _successors[j]] = (matrix[s * n + _successors[j]] + 1) % modulus;
+			}
+		}
+		long[] row = new long[n];
+		row[0] = 1 % modulus;
+		long[] scratch = new long[n * n];
+		while (length > 0) {
+			if ((length & 1) != 0)
+				row = multiply(row, 1, matrix, n, modulus, new long[n]);
+			length >>>= 1;
+			if (length > 0) {
+				long[] squared = multiply(matrix, n, matrix, n, modulus, scratch);
+				scratch = matrix;
+				matrix = squared;
+			}
+		}
+		return row;
+	}
+
+	/**
+	 * Multiplies a rows-by-n matrix by an n-by-n matrix, modulo the modulus.
+	 * @param product		Filled with the product; must not be either factor.
+	 * @return				product
+	 */
+	private static long[] multiply(long[] left, int rows, long[] right, int n, long modulus, long[] product) {
+		long[] sums = new long[n];
+		for (int i = 0; i < rows; i ++) {
+			Arrays.fill(sums, 0);
+			for (int m = 0; m < n; m ++) {
+				long a = left[i * n + m];
+				if (a == 0)
+					continue;
+				int base = m * n;
+				for (int j = 0; j < n; j ++) {
+					long sum = sums[j] + a * right[base + j];
+					sums[j] = sum >= REDUCE_AT ? sum % modulus : sum;
+				}
+			}
+			for (int j = 0; j < n; j ++)
+				product[i * n + j] = sums[j] % modulus;
+		}
+		return product;
+	}
+
+	/**
+	 * @param length	The length of the inputs.
+	 * @return			The exact number of accepted inputs of that length.
+	 */
+	BigInteger count(int length) {
+		if (_size == 0)
+			return BigInteger.ZERO;
+		BigInteger[] vector = squaringIsCheaper(length) ? exactPower(length) : exactStepAll(length);
+		BigInteger total = BigInteger.ZERO;
+		for (int s = 0; s < _size; s ++) {
+			if (_accept[s])
+				total = total.add(vector[s]);
+		}
+		return total;
+	}
+
+	/**
+	 * @return		The exact number of inputs of the length that end in each state, by stepping.
+	 */
+	private BigInteger[] exactStepAll(int length) {
+		BigInteger[] current = new BigInteger[_size];
+		BigInteger[] next = new BigInteger[_size];
+		Arrays.fill(current, BigInteger.ZERO);
+		current[0] = BigInteger.ONE;
+		for (int i = 0; i < length; i ++) {
+			Arrays.fill(next, BigInteger.ZERO);
+			for (int s = 0; s < _size; s ++) {
+				if (current[s].signum() == 0)
+					continue;
+				for (int j = s * _symbols; j < (s + 1) * _symbols; j ++) {
+					int t = _successors[j];
+					if (t >= 0)
+						next[t] = next[t].add(current[s]);
+				}
+			}
+			BigInteger[] temp = current;
+			current = next;
+			next = temp;
+		}
+		return current;
+	}
+
+	/**
+	 * @return		The exact start row of M^length, by repeated squaring.
+	 */
+	private BigInteger[] exactPower(int length) {
+		int n = _size;
+		BigInteger[] matrix = new BigInteger[n * n];
+		Arrays.fill(matrix, BigInteger.ZERO);
+		for (int s = 0; s < n; s ++) {
+			for (int j = s * _symbols; j < (s + 1) * _symbols; j ++) {
+				if (_successors[j] >= 0)
+					matrix[s * n + _successors[j]] = matrix[s * n + _successors[j]].add(BigInteger.ONE);
+			}
+		}
+		BigInteger[] row = new BigInteger[n];
+		Arrays.fill(row, BigInteger.ZERO);
+		row[0] = BigInteger.ONE;
+		while (length > 0) {
+			if ((length & 1) != 0)
+				row = multiply(row, 1, matrix, n);
+			length >>>= 1;
+			if (length > 0)
+				matrix = multiply(matrix, n, matrix, n);
+		}
+		return row;
+	}
+
+	/**
+	 * @return		The product of a rows-by-n matrix and an n-by-n matrix.
+	 */
+	private static BigInteger[] multiply(BigInteger[] left, int rows, BigInteger[] right, int n) {
+		BigInteger[] product = new BigInteger[rows * n];
+		Arrays.fill(product, BigInteger.ZERO);
+		for (int i = 0; i < rows; i ++) {
+			for (int m = 0; m < n; m ++) {
+				BigInteger a = left[i * n + m];
+				if (a.signum() == 0)
+					continue;
+				for (int j = 0; j < n; j ++) {
+					if (right[m * n + j].signum() != 0)
+						product[i * n + j] = product[i * n + j].add(a.multiply(right[m * n + j]));
+				}
+			}
+		}
+		return product;
+	}
+}
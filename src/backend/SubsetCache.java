@@ -0,0 +1,273 @@
+package backend;
+
+import java.util.*;
+
+/**
+ * The DFA of an NFA, built while it runs: the part that LazyDFA and RegexMatcher share.  Every set
+ * of NFA states a run meets is hash-consed to a number, and every transition between two sets is
+ * worked out once and then remembered; later runs over the same sets are a single array lookup per
+ * character.
+ *
+ * The cache is bounded.  When it is full it is emptied and filling starts over; if that happens
+ * again soon after, the input is meeting too many sets for the cache to help, and the rest of the
+ * run falls back to stepping the NFA directly.
+ *
+ * How a set is held, stepped and tested is left to subclasses, which call flush() once they are
+ * ready to work out the start set.  The cache is shared by every run, so runs are synchronized.
+ * @param <S>		The type of a set of NFA states.  A set must not be changed once it is cached.
+ */
+abstract class SubsetCache<S> {
+
+	/** If the cache fills up after fewer than this many characters per set, fall back. */
+	private static final int THRASH_FACTOR = 10;
+
+	/** Stored in the transition table for a transition that has not been worked out. */
+	private static final int UNKNOWN = -1;
+
+	final int _symbolCount;
+	final int _maxStates;
+
+	/** The number of each set met so far. */
+	private final HashMap<Key, Integer> _ids = new HashMap<Key, Integer>();
+
+	/** The sets met so far, by number. */
+	final ArrayList<S> _sets = new ArrayList<S>();
+
+	/** The transitions worked out so far, laid out as [set * symbolCount + symbol]. */
+	private int[] _transitions;
+
+	/** The sets that hold an accept state. */
+	private final BitSet _accepting = new BitSet();
+
+	/** The number of the start set. */
+	private int _start;
+
+	/** The number of the empty set, or -1 if it has not been met. */
+	private int _dead;
+
+	/** The number of times the cache has been emptied. */
+	private int _flushes;
+
+	/** The number of characters run through the cache since it was last emptied. */
+	private long _stepsSinceFlush;
+
+	/** The number of runs that have fallen back to stepping the NFA. */
+	private int _fallbacks;
+
+	/**
+	 * @param symbolCount	The number of input symbols.
+	 * @param maxStates		The number of sets to remember before emptying the cache.
+	 */
+	SubsetCache(int symbolCount, int maxStates) {
+		_symbolCount = symbolCount;
+		_maxStates = Math.max(maxStates, 2);
+	}
+
+	/**
+	 * @return		The set of the start state.
+	 */
+	abstract S startSet();
+
+	/**
+	 * @param state		The number of a cached set.
+	 * @return			The set reached from it on a symbol.
+	 */
+	abstract S successor(int state, int symbol);
+
+	/**
+	 * Finishes a run by stepping the NFA directly, when the cache has stopped helping.
+	 * @param current	The set of states the run is in, which must not be changed.
+	 * @param from		The position of the next character.
+	 * @return			True if the input is accepted.
+	 */
+	abstract boolean stepNFA(S current, CharSequence input, int from);
+
+	/**
+	 * @return		The symbol of a character, or -1 if it is not in the alphabet.
+	 */
+	abstract int symbolOf(char c);
+
+	/**
+	 * @return		The character of a symbol.
+	 */
+	abstract char getSymbol(int symbol);
+
+	abstract boolean isAccepting(S set);
+
+	abstract boolean isEmpty(S set);
+
+	abstract int hash(S set);
+
+	abstract boolean equal(S a, S b);
+
+	/**
+	 * @param state		The number of a cached set.
+	 * @return			The label of its node in build().
+	 */
+	abstract String getLabel(int state);
+
+	/**
+	 * Called when a set is given a number, after it has been added to _sets.
+	 */
+	void interned(int state, S set) {
+	}
+
+	/**
+	 * @return		True if the cache has no room for another set.
+	 */
+	boolean isFull() {
+		return _sets.size() >= _maxStates;
+	}
+
+	/**
+	 * Empties the cache, leaving only the start set (as set 0).
+	 */
+	void flush() {
+		_ids.clear();
+		_sets.clear();
+		_accepting.clear();
+		_transitions = new int[Math.max(_symbolCount, 1) * 16];
+		Arrays.fill(_transitions, UNKNOWN);
+		_dead = -1;
+		_start = intern(startSet());
+	}
+
+	/**
+	 * Returns the number of the given set, giving it one if it has not been met.
+	 */
+	private int intern(S set) {
+		Key key = new Key(set);
+		Integer id = _ids.get(key);
+		if (id != null)
+			return id;
+		id = _sets.size();
+		_ids.put(key, id);
+		_sets.add(set);
+		interned(id, set);
+		if (isAccepting(set))
+			_accepting.set(id);
+		if (isEmpty(set))
+			_dead = id;
+		if ((id + 1) * _symbolCount > _transitions.length) {
+			int oldLength = _transitions.length;
+			_transitions = Arrays.copyOf(_transitions, oldLength * 2);
+			Arrays.fill(_transitions, oldLength, _transitions.length, UNKNOWN);
+		}
+		return id;
+	}
+
+	/**
+	 * Runs the automaton on the given characters.
+	 * @param input		The input characters.
+	 * @return			True if the input is accepted.
+	 */
+	synchronized boolean run(CharSequence input) {
+		int length = input.length();
+		int state = _start;
+		int i = 0;
+		for (; i < length && state != _dead; i ++) {
+			int symbol = symbolOf(input.charAt(i));
+			if (symbol < 0) {
+				state = _dead;
+				break;
+			}
+			int next = _transitions[state * _symbolCount + symbol];
+			if (next == UNKNOWN) {
+				if (isFull()) {
+					//The cache is full: empty it, or give up on it if it filled up too quickly.
+					S current = _sets.get(state);
+					_stepsSinceFlush += i;
+					if (_flushes > 0 && _stepsSinceFlush < (long) THRASH_FACTOR * _maxStates) {
+						_fallbacks ++;
+						_stepsSinceFlush -= i;
+						return stepNFA(current, input, i);
+					}
+					flush();
+					_flushes ++;
+					_stepsSinceFlush = -i;
+					state = intern(current);
+				}
+				next = intern(successor(state, symbol));
+				_transitions[state * _symbolCount + symbol] = next;
+			}
+			state = next;
+		}
+		_stepsSinceFlush += i;
+		return state != _dead && _accepting.get(state);
+	}
+
+	/**
+	 * Works out every set reachable from the start set, whether or not the cache is full.
+	 * @param limit		The largest number of sets to build.
+	 * @return			False if there are more than limit sets.
+	 */
+	boolean explore(int limit) {
+		for (int state = 0; state < _sets.size(); state ++) {
+			for (int symbol = 0; symbol < _symbolCount; symbol ++) {
+				int next = intern(successor(state, symbol));
+				if (_sets.size() > limit)
+					return false;
+				_transitions[state * _symbolCount + symbol] = next;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Builds a diagram out of the explored sets.  If some set is empty it becomes a dead node, so
+	 * that the result is a complete DFSM.
+	 */
+	Diagram build() {
+		DiagramBuilder builder = new DiagramBuilder();
+		for (int state = 0; state < _sets.size(); state ++)
+			builder.addState(getLabel(state), state == _start, _accepting.get(state));
+		for (int state = 0; state < _sets.size(); state ++) {
+			for (int symbol = 0; symbol < _symbolCount; symbol ++)
+				builder.addTransition(state, _transitions[state * _symbolCount + symbol], String.valueOf(getSymbol(symbol)));
+		}
+		return builder.build();
+	}
+
+	/**
+	 * @return		The number of sets in the cache.
+	 */
+	public synchronized int getCachedStateCount() {
+		return _sets.size();
+	}
+
+	/**
+	 * @return		The number of times the cache has been emptied because it was full.
+	 */
+	public synchronized int getFlushCount() {
+		return _flushes;
+	}
+
+	/**
+	 * @return		The number of runs that fell back to stepping the NFA.
+	 */
+	public synchronized int getFallbackCount() {
+		return _fallbacks;
+	}
+
+	/**
+	 * A set of NFA states as a hash key.
+	 */
+	private class Key {
+		private final S _set;
+		private final int _hash;
+
+		Key(S set) {
+			_set = set;
+			_hash = hash(set);
+		}
+
+		public int hashCode() {
+			return _hash;
+		}
+
+		@SuppressWarnings("unchecked")
+		public boolean equals(Object o) {
+			return o instanceof SubsetCache.Key && equal(_set, ((Key) o)._set);
+		}
+	}
+}
@@ -0,0 +1,68 @@
+package backend;
+
+import java.util.*;
+
+/**
+ * Numbers the characters of an input alphabet 0..k-1 in the order they are added, with a direct
+ * lookup array for ASCII characters so that finding the number of an input character is cheap.
+ */
+class SymbolTable {
+
+	/** Number of characters that are interned through the direct lookup array. */
+	private static final int ASCII_SIZE = 128;
+
+	/** The characters, indexed by symbol number. */
+	private final StringBuilder _symbols = new StringBuilder();
+
+	/** Symbol number of each ASCII character, or -1 if it is not in the alphabet. */
+	private final int[] _asciiSymbol = new int[ASCII_SIZE];
+
+	/** Symbol numbers of the non-ASCII characters in the alphabet. */
+	private final HashMap<Character, Integer> _otherSymbol = new HashMap<Character, Integer>();
+
+	SymbolTable() {
+		Arrays.fill(_asciiSymbol, -1);
+	}
+
+	/**
+	 * Returns the symbol number of the given character, adding it to the alphabet if needed.
+	 */
+	int intern(char c) {
+		int symbol = symbolOf(c);
+		if (symbol < 0) {
+			symbol = _symbols.length();
+			_symbols.append(c);
+			if (c < ASCII_SIZE)
+				_asciiSymbol[c] = symbol;
+			else
+				_otherSymbol.put(c, symbol);
+		}
+		return symbol;
+	}
+
+	/**
+	 * @param c		An input character.
+	 * @return		The symbol number of the character, or -1 if it is not in the alphabet.
+	 */
+	int symbolOf(char c) {
+		if (c < ASCII_SIZE)
+			return _asciiSymbol[c];
+		Integer symbol = _otherSymbol.get(c);
+		return symbol == null ? -1 : symbol;
+	}
+
+	/**
+	 * @return		The number of symbols.
+	 */
+	int size() {
+		return _symbols.length();
+	}
+
+	/**
+	 * @param symbol	A symbol number.
+	 * @return			The character of the symbol.
+	 */
+	char getSymbol(int symbol) {
+		return _symbols.charAt(symbol);
+	}
+}
@@ -0,0 +1,406 @@
+package backend;
+
+import java.util.*;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * The NFA of a regular expression, made by Thompson's construction.  Every part of the expression
+ * becomes a fragment with one start state and one end state, and the fragments are joined with
+ * epsilon transitions, so the NFA has at most two states per literal or operator and is built in
+ * time linear in the length of the expression.  The expression is parsed without recursion, so
+ * deeply nested expressions do not overflow the stack.
+ *
+ * The syntax is: literal characters; \c for the character c, if c is not a letter or digit; [abc]
+ * and [a-z] for any one of a set of characters, in which \c is c as well; (...) for grouping; | for
+ * alternatives, any of which may be empty; and the postfix operators *, + and ?, each of which may
+ * be followed by ? (a reluctant quantifier, which matches the same inputs).  This is a subset of
+ * the syntax of java.util.regex, and means the same there.  Anything else that has a meaning there
+ * and would be taken for a literal here is refused rather than misread: the metacharacters . ^ $ {
+ * and }, escaped letters and digits (\d, \w, \Q, ...), possessive and stacked quantifiers, and
+ * negated, nested or intersected character classes.
+ *
+ * States are numbered 0..n-1.  A state either reads one of a set of symbols and moves to
+ * getNext(), or has up to two epsilon transitions, getNext() and getOther().  The end state of the
+ * whole expression, getAccept(), has none.
+ */
+class ThompsonNFA {
+
+	/** Stored as a transition that is not there. */
+	static final int NONE = -1;
+
+	//Tokens of the postfix form of the expression.  Non-negative tokens are literals: the index of
+	//a set of symbols in _sets.
+	private static final int EMPTY = -1;
+	private static final int CONCAT = -2;
+	private static final int ALTERNATE = -3;
+	private static final int STAR = -4;
+	private static final int PLUS = -5;
+	private static final int OPTIONAL = -6;
+	private static final int OPEN = -7;
+
+	/** The characters that have a meaning in java.util.regex that is not supported here. */
+	private static final String UNSUPPORTED = ".^${}";
+
+	private final SymbolTable _symbols = new SymbolTable();
+
+	/** The symbol sets of the literals, each sorted. */
+	private final List<int[]> _sets = new ArrayList<int[]>();
+
+	/** The symbol set each state reads (an index into _sets), or NONE for an epsilon state. */
+	private int[] _read = new int[16];
+	private int[] _next = new int[16];
+	private int[] _other = new int[16];
+	private int _size;
+
+	private final int _start;
+	private final int _accept;
+
+	/**
+	 * Parses and builds the NFA of a regular expression.
+	 * @param regex						The expression.
+	 * @throws PatternSyntaxException	If the expression is not well formed.
+	 */
+	ThompsonNFA(String regex) {
+		int[] postfix = toPostfix(regex);
+
+		//Build fragments off a stack of (start, end) pairs.
+		int[] stack = new int[16];
+		int top = 0;
+		for (int token : postfix) {
+			if (top + 2 > stack.length)
+				stack = Arrays.copyOf(stack, stack.length * 2);
+			int start, end;
+			if (token >= 0 || token == EMPTY) {
+				end = addState(NONE, NONE, NONE);
+				start = token == EMPTY ? end : addState(token, end, NONE);
+			}
+			else if (token == CONCAT) {
+				int secondEnd = stack[-- top];
+				int secondStart = stack[-- top];
+				end = secondEnd;
+				start = stack[top - 2];
+				_next[stack[top - 1]] = secondStart;
+				top -= 2;
+			}
+			else if (token == ALTERNATE) {
+				int secondEnd = stack[-- top];
+				int secondStart = stack[-- top];
+				int firstEnd = stack[-- top];
+				int firstStart = stack[-- top];
+				end = addState(NONE, NONE, NONE);
+				start = addState(NONE, firstStart, secondStart);
+				_next[firstEnd] = end;
+				_next[secondEnd] = end;
+			}
+			else {
+				int innerEnd = stack[-- top];
+				int innerStart = stack[-- top];
+				end = addState(NONE, NONE, NONE);
+				if (token == STAR) {
+					start = addState(NONE, innerStart, end);
+					_next[innerEnd] = start;
+				}
+				else if (token == PLUS) {
+					int loop = addState(NONE, innerStart, end);
+					_next[innerEnd] = loop;
+					start = innerStart;
+				}
+				else {
+					start = addState(NONE, innerStart, end);
+					_next[innerEnd] = end;
+				}
+			}
+			stack[top ++] = start;
+			stack[top ++] = end;
+		}
+		_start = stack[0];
+		_accept = stack[1];
+	}
+
+	/**
+	 * Adds a state.
+	 * @return		Its number.
+	 */
+	private int addState(int read, int next, int other) {
+		if (_size == _read.length) {
+			_read = Arrays.copyOf(_read, _size * 2);
+			_next = Arrays.copyOf(_next, _size * 2);
+			_other = Arrays.copyOf(_other, _size * 2);
+		}
+		_read[_size] = read;
+		_next[_size] = next;
+		_other[_size] = other;
+		return _size ++;
+	}
+
+	/**
+	 * Turns the expression into postfix tokens, with concatenation made explicit, by the
+	 * shunting-yard algorithm.
+	 */
+	private int[] toPostfix(String regex) {
+		int[] output = new int[16];
+		int length = 0;
+		int[] operators = new int[16];
+		int top = 0;
+		//Whether the last thing read can be followed by an operand without an operator in between.
+		boolean operand = false;
+		//The number of quantifiers since the last operand: one, and then one more if it is reluctant.
+		int quantifiers = 0;
+		int i = 0;
+		while (i < regex.length()) {
+			char c = regex.charAt(i);
+			//The set of a literal, or -1 if c is an operator.
+			int literal = -1;
+			int end = i + 1;
+			if (c == '[') {
+				end = i + 1;
+				while (end < regex.length() && regex.charAt(end) != ']')
+					end += regex.charAt(end) == '\\' ? 2 : 1;
+				if (end >= regex.length())
+					throw new PatternSyntaxException("Unclosed character class", regex, i);
+				literal = addSet(regex, i + 1, end);
+				end ++;
+			}
+			else if (c == ']')
+				throw new PatternSyntaxException("Unmatched ]", regex, i);
+			else if (c == '\\') {
+				if (i + 1 == regex.length())
+					throw new PatternSyntaxException("Nothing to escape", regex, i);
+				checkEscape(regex, i + 1);
+				literal = addSet(new int[] {_symbols.intern(regex.charAt(i + 1))});
+				end = i + 2;
+			}
+			else if (UNSUPPORTED.indexOf(c) >= 0)
+				throw new PatternSyntaxException("Unsupported meta character '" + c + "'", regex, i);
+			else if (c != '(' && c != '|' && c != ')' && c != '*' && c != '+' && c != '?')
+				literal = addSet(new int[] {_symbols.intern(c)});
+
+			//Room for every pending operator and two more tokens, and for two more operators.
+			if (length + top + 2 > output.length)
+				output = Arrays.copyOf(output, Math.max(output.length * 2, length + top + 2));
+			if (top + 2 > operators.length)
+				operators = Arrays.copyOf(operators, operators.length * 2);
+			if (literal >= 0 || c == '(') {
+				//An operand or a group: concatenate it to what came before.
+				if (operand) {
+					while (top > 0 && operators[top - 1] == CONCAT)
+						output[length ++] = operators[-- top];
+					operators[top ++] = CONCAT;
+				}
+				if (literal >= 0) {
+					output[length ++] = literal;
+					operand = true;
+				}
+				else {
+					operators[top ++] = OPEN;
+					operand = false;
+				}
+			}
+			else if (c == '*' || c == '+' || c == '?') {
+				if (!operand)
+					throw new PatternSyntaxException("Dangling meta character '" + c + "'", regex, i);
+				if (quantifiers == 1 && c == '?')
+					quantifiers ++;
+				else if (quantifiers > 0)
+					throw new PatternSyntaxException("Unsupported quantifier '" + c + "'", regex, i);
+				else {
+					output[length ++] = c == '*' ? STAR : c == '+' ? PLUS : OPTIONAL;
+					quantifiers ++;
+				}
+				i = end;
+				continue;
+			}
+			else {
+				//An alternative or a group ends here; an empty one matches the empty input.
+				if (!operand)
+					output[length ++] = EMPTY;
+				while (top > 0 && operators[top - 1] != OPEN)
+					output[length ++] = operators[-- top];
+				if (c == '|') {
+					operators[top ++] = ALTERNATE;
+					operand = false;
+				}
+				else {
+					if (top == 0)
+						throw new PatternSyntaxException("Unmatched closing ')'", regex, i);
+					top --;
+					operand = true;
+				}
+			}
+			quantifiers = 0;
+			i = end;
+		}
+		if (length + 1 + top > output.length)
+			output = Arrays.copyOf(output, length + 1 + top);
+		if (!operand)
+			output[length ++] = EMPTY;
+		while (top > 0) {
+			if (operators[top - 1] == OPEN)
+				throw new PatternSyntaxException("Unclosed group", regex, regex.length());
+			output[length ++] = operators[-- top];
+		}
+		return Arrays.copyOf(output, length);
+	}
+
+	/**
+	 * Adds the set of symbols of a character class, the text between its brackets.
+	 * @return		The index of the set.
+	 */
+	private int addSet(String regex, int from, int to) {
+		if (from == to)
+			throw new PatternSyntaxException("Empty character class", regex, from);
+		if (regex.charAt(from) == '^')
+			throw new PatternSyntaxException("Negated character classes are not supported", regex, from);
+		BitSet chars = new BitSet();
+		for (int i = from; i < to; i ++) {
+			char c = regex.charAt(i);
+			if (c == '[')
+				throw new PatternSyntaxException("Nested character classes are not supported", regex, i);
+			if (c == '&' && i + 1 < to && regex.charAt(i + 1) == '&')
+				throw new PatternSyntaxException("Character class intersections are not supported", regex, i);
+			if (c == '\\') {
+				checkEscape(regex, i + 1);
+				c = regex.charAt(++ i);
+			}
+			if (i + 2 < to && regex.charAt(i + 1) == '-') {
+				char last = regex.charAt(i + 2);
+				if (last < c)
+					throw new PatternSyntaxException("Illegal character range", regex, i);
+				chars.set(c, last + 1);
+				i += 2;
+			}
+			else
+				chars.set(c);
+		}
+		int[] set = new int[chars.cardinality()];
+		int count = 0;
+		for (int c = chars.nextSetBit(0); c >= 0; c = chars.nextSetBit(c + 1))
+			set[count ++] = _symbols.intern((char) c);
+		return addSet(set);
+	}
+
+	/**
+	 * Refuses an escaped letter or digit, which java.util.regex reads as a class, a back reference
+	 * or a quotation rather than as the character.
+	 * @param at		The position of the escaped character.
+	 */
+	private static void checkEscape(String regex, int at) {
+		if (Character.isLetterOrDigit(regex.charAt(at)))
+			throw new PatternSyntaxException("Unsupported escape sequence", regex, at - 1);
+	}
+
+	/**
+	 * Adds a set of symbols.
+	 * @return		The index of the set.
+	 */
+	private int addSet(int[] set) {
+		Arrays.sort(set);
+		_sets.add(set);
+		return _sets.size() - 1;
+	}
+
+	/**
+	 * @return		The number of states.
+	 */
+	int size() {
+		return _size;
+	}
+
+	/**
+	 * @return		The start state.
+	 */
+	int getStart() {
+		return _start;
+	}
+
+	/**
+	 * @return		The accept state.
+	 */
+	int getAccept() {
+		return _accept;
+	}
+
+	/**
+	 * @return		True if the state reads a symbol rather than having epsilon transitions.
+	 */
+	boolean reads(int state) {
+		return _read[state] != NONE;
+	}
+
+	/**
+	 * @return		True if the state reads the symbol.
+	 */
+	boolean reads(int state, int symbol) {
+		return _read[state] != NONE && Arrays.binarySearch(_sets.get(_read[state]), symbol) >= 0;
+	}
+
+	/**
+	 * @return		The symbols a reading state reads, sorted.  The array must not be changed.
+	 */
+	int[] getRead(int state) {
+		return _sets.get(_read[state]);
+	}
+
+	/**
+	 * @return		The state a reading state moves to, or the first epsilon transition of another.
+	 */
+	int getNext(int state) {
+		return _next[state];
+	}
+
+	/**
+	 * @return		The second epsilon transition of a state, or NONE.
+	 */
+	int getOther(int state) {
+		return _other[state];
+	}
+
+	/**
+	 * @return		The input alphabet of the expression.
+	 */
+	SymbolTable getSymbols() {
+		return _symbols;
+	}
+
+	/**
+	 * Builds the NFA as a new diagram with its own layout.  Epsilon transitions are labeled
+	 * Edge.EPSILON.
+	 * @return		The new diagram.
+	 */
+	Diagram toDiagram() {
+		DiagramBuilder builder = new DiagramBuilder();
+		//Number the states in the order they are met from the start state, so the layout follows
+		//the expression.
+		int[] order = new int[_size];
+		int[] number = new int[_size];
+		Arrays.fill(number, NONE);
+		int count = 0;
+		number[_start] = count;
+		order[count ++] = _start;
+		for (int head = 0; head < count; head ++) {
+			int state = order[head];
+			for (int next : new int[] {_next[state], _other[state]}) {
+				if (next != NONE && number[next] == NONE) {
+					number[next] = count;
+					order[count ++] = next;
+				}
+			}
+		}
+		for (int i = 0; i < count; i ++)
+			builder.addState("q_" + i, i == 0, order[i] == _accept);
+		for (int i = 0; i < count; i ++) {
+			int state = order[i];
+			if (reads(state)) {
+				for (int symbol : getRead(state))
+					builder.addTransition(i, number[_next[state]], String.valueOf(_symbols.getSymbol(symbol)));
+			}
+			else {
+				if (_next[state] != NONE)
+					builder.addTransition(i, number[_next[state]], Edge.EPSILON);
+				if (_other[state] != NONE)
+					builder.addTransition(i, number[_other[state]], Edge.EPSILON);
+			}
+		}
+		return builder.build();
+	}
+}
@@ -0,0 +1,112 @@
+package backend;
+
+/**
+ * Shortest inputs that show how a DFSM behaves: a shortest accepted input, a shortest rejected
+ * input, and a shortest input that ends at any given node.  All of them come from one
+ * breadth-first search over the compiled table from the start state, which keeps the state and
+ * symbol each state was first reached from in int arrays; a witness is read back along them.
+ * The search takes time linear in the size of the table, so it is quick even for a million states.
+ *
+ * Rejected inputs are over the input alphabet; any input with a character outside it is rejected
+ * as well.
+ */
+public class Witnesses {
+
+	private final CompiledAutomaton _automaton;
+
+	/** The states in the order they were reached, which is by distance from the start state. */
+	private final int[] _order;
+	private final int _reached;
+
+	/** The state each state was first reached from, or -1 for the start state and states never
+	 * reached. */
+	private final int[] _parent;
+
+	/** The symbol each state was first reached on. */
+	private final int[] _parentSymbol;
+
+	/** Whether each state has been reached. */
+	private final boolean[] _seen;
+
+	Witnesses(CompiledAutomaton automaton) {
+		_automaton = automaton;
+		int n = automaton.getStateCount();
+		int k = automaton.getSymbolCount();
+		_order = new int[n];
+		_parent = new int[n];
+		_parentSymbol = new int[n];
+		_seen = new boolean[n];
+		int start = automaton.getStart();
+		int tail = 0;
+		if (start != CompiledAutomaton.NO_STATE) {
+			_parent[start] = -1;
+			_seen[start] = true;
+			_order[tail ++] = start;
+		}
+		for (int head = 0; head < tail; head ++) {
+			int state = _order[head];
+			for (int symbol = 0; symbol < k; symbol ++) {
+				int next = automaton.step(state, symbol);
+				if (next != CompiledAutomaton.NO_STATE && !_seen[next]) {
+					_seen[next] = true;
+					_parent[next] = state;
+					_parentSymbol[next] = symbol;
+					_order[tail ++] = next;
+				}
+			}
+		}
+		_reached = tail;
+	}
+
+	/**
+	 * @return		A shortest accepted input, or null if no input is accepted.
+	 */
+	public String getShortestAccepted() {
+		for (int i = 0; i < _reached; i ++) {
+			if (_automaton.isAccept(_order[i]))
+				return path(_order[i]);
+		}
+		return null;
+	}
+
+	/**
+	 * @return		A shortest rejected input over the input alphabet, or null if every such input is
+	 * 				accepted.
+	 */
+	public String getShortestRejected() {
+		for (int i = 0; i < _reached; i ++) {
+			if (!_automaton.isAccept(_order[i]))
+				return path(_order[i]);
+		}
+		return null;
+	}
+
+	/**
+	 * @param target	A node of the diagram.
+	 * @return			A shortest input that ends at the node, or null if the node cannot be reached.
+	 */
+	public String getShortestPath(Node target) {
+		int state = _automaton.indexOf(target);
+		return state == CompiledAutomaton.NO_STATE || !_seen[state] ? null : path(state);
+	}
+
+	/**
+	 * @return		The input read along the parent links from the start state to the state.
+	 */
+	private String path(int state) {
+		int length = 0;
+		for (int s = state; _parent[s] >= 0; s = _parent[s])
+			length ++;
+		char[] path = new char[length];
+		for (int s = state; _parent[s] >= 0; s = _parent[s])
+			path[-- length] = _automaton.getSymbol(_parentSymbol[s]);
+		return new String(path);
+	}
+
+	/**
+	 * @return		The revision of the diagram this was worked out for.
+	 */
+	public int getRevision() {
+		return _automaton.getRevision();
+	}
+}
@@ -0,0 +1,117 @@
+package frontend;
+
+import java.awt.Polygon;
+import java.awt.Rectangle;
+import java.awt.geom.Arc2D;
+import java.awt.geom.Ellipse2D;
+import java.awt.geom.Rectangle2D;
+
+import backend.Edge;
+import backend.EdgeDirection;
+import backend.Node;
+
+/**
+ * The shapes a DrawingPanel draws and hit-tests nodes and edges with.  Nodes and edges only keep numbers (centers,
+ * radii, arc heights and angles); the shapes are built from them here, when they are painted or clicked.
+ */
+public class DiagramShapes {
+
+	/**
+	 * Returns the circle of a node.
+	 * @param n
+	 * @return
+	 */
+	public static Ellipse2D.Double circle(Node n) {
+		return new Ellipse2D.Double(n.getX()-n.getRadius(), n.getY()-n.getRadius(), n.getRadius()*2, n.getRadius()*2);
+	}
+
+	/**
+	 * Returns the rectangle dragged to resize a node.
+	 * @param n
+	 * @return
+	 */
+	public static Rectangle2D resize(Node n) {
+		return new Rectangle2D.Double(n.getX() + n.getRadius(), n.getY() + n.getRadius(), 8, 8);
+	}
+
+	/**
+	 * Returns the "start symbol" (a triangle) clicked to toggle the start state of a node.
+	 * @param n
+	 * @return
+	 */
+	public static Polygon startSymbol(Node n) {
+		int[][] points = n.getStartSymbolPoints();
+		return new Polygon(points[0], points[1], 3);
+	}
+
+	/**
+	 * Returns the arc drawn for an edge.
+	 * @param e
+	 * @return
+	 */
+	public static Arc2D curve(Edge e) {
+		Node start = e.getStartNode();
+		Node end = e.getEndNode();
+		double[] arcCenter = e.getArcCenter();
+		Arc2D curve = new Arc2D.Double(Arc2D.OPEN);
+		if (start != end) {
+			double radius = Math.sqrt((arcCenter[0] - start.getX()) * (arcCenter[0] - start.getX())
+					+ (arcCenter[1] - start.getY()) * (arcCenter[1] - start.getY()));
+			curve.setArcByCenter(arcCenter[0], arcCenter[1], radius, -Math.PI/2, Math.PI/2, Arc2D.OPEN);
+			if (e.getTurn())
+				curve.setAngles(start.getX(), start.getY(), end.getX(), end.getY());
+			else
+				curve.setAngles(end.getX(), end.getY(), start.getX(), start.getY());
+		}
+		else {
+			curve.setArcByCenter(arcCenter[0], arcCenter[1], start.getRadius(), -e.getAngle() * 180 / Math.PI - 135, 270, Arc2D.OPEN);
+		}
+		return curve;
+	}
+
+	/**
+	 * Returns the arrow drawn at the end of an edge.
+	 * @param e
+	 * @return
+	 */
+	public static Polygon forward(Edge e) {
+		int[][] points = e.getForwardPoints();
+		return new Polygon(points[0], points[1], 3);
+	}
+
+	/**
+	 * Returns the arrow drawn at the start of a doubly directed edge.
+	 * @param e
+	 * @return
+	 */
+	public static Polygon backward(Edge e) {
+		int[][] points = e.getBackwardPoints();
+		return new Polygon(points[0], points[1], 3);
+	}
+
+	/**
+	 * Returns the part of the panel a node is drawn in: its circle, with its start symbol and resize box.
+	 * @param n
+	 * @return
+	 */
+	public static Rectangle extent(Node n) {
+		return new Rectangle2D.Double(n.getX() - n.getRadius() - 21, n.getY() - n.getRadius() - 11,
+				2 * n.getRadius() + 32, 2 * n.getRadius() + 22).getBounds();
+	}
+
+	/**
+	 * Returns the part of the panel an edge is drawn in: its arc and arrows, with room for the widest stroke.
+	 * @param e
+	 * @return
+	 */
+	public static Rectangle extent(Edge e) {
+		Rectangle2D extent = curve(e).getBounds2D();
+		if (e.getDirection() != EdgeDirection.NONE)
+			extent.add(forward(e).getBounds2D());
+		if (e.getDirection() == EdgeDirection.DOUBLE)
+			extent.add(backward(e).getBounds2D());
+		Rectangle bounds = extent.getBounds();
+		bounds.grow(2, 2);
+		return bounds;
+	}
+}
@@ -6,8 +6,23 @@ package frontend;
 
 import java.awt.*;
 import java.awt.geom.Ellipse2D;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
 
+import javax.imageio.ImageIO;
+import javax.swing.CellRendererPane;
+import javax.swing.JLabel;
 import javax.swing.JPanel;
+import javax.swing.JTextField;
+import javax.swing.JViewport;
+import javax.swing.event.ChangeEvent;
+import javax.swing.event.ChangeListener;
 
 import manager.DiagramProject;
 
@@ -27,13 +42,38 @@ public class DrawingPanel extends JPanel {
 	 * _project is the DiagramProject associated with this drawingPanel; it stores most of the information associated with drawing the nodes and edges on the canvas.
 	 * _progressLine is the line displayed when the user is in the process of forming an edge.
 	 * _selectRectangle is the rectangle displayed when the user is dragging the mouse to select on the canvas.
+	 * _showUseless is whether unreachable and dead nodes are filled with UNREACHABLE_COLOR and DEAD_COLOR.
+	 * _overlay is what the nodes are coloured by, from the diagram's GraphAnalysis; it is drawn over _showUseless.
+	 * _rendererPane and _renderer stamp the text of every node and edge that is not being edited, like the cells of a JList.
+	 * _freeEditors are the text fields views gave back when they stopped editing, to reuse.
+	 * _views files the views of the nodes and edges on this panel by where they are drawn, so a repaint only looks at
+	 *   those inside its clip.
+	 * _editingViews are the views on this panel that are being edited, the only ones that may hold a text field.
+	 * _scrolled hands the text fields on when the viewport this panel is in scrolls or is resized.
+	 * _painted is scratch space for the views a repaint draws.
 	 *  
 	 */
 
 	private static final double SMALLER_RADIUS = 4;
+	private static final Color UNREACHABLE_COLOR = new Color(215, 215, 215);
+	private static final Color DEAD_COLOR = new Color(255, 214, 190);
+	private static final Color CYCLE_COLOR = new Color(204, 0, 51);
 	private DiagramProject _project;
 	public Shape _progressLine;
 	private Rectangle _selectRectangle;
+	private boolean _showUseless;
+	private GraphOverlay _overlay = GraphOverlay.NONE;
+	private final CellRendererPane _rendererPane = new CellRendererPane();
+	private final JLabel _renderer = new JLabel();
+	private final LinkedList<JTextField> _freeEditors = new LinkedList<JTextField>();
+	private final ViewIndex _views = new ViewIndex();
+	private final LinkedHashSet<LabelView> _editingViews = new LinkedHashSet<LabelView>();
+	private final ChangeListener _scrolled = new ChangeListener() {
+		public void stateChanged(ChangeEvent e) {
+			layoutViews(getVisibleRect());
+		}
+	};
+	private final ArrayList<LabelView> _painted = new ArrayList<LabelView>();
 
 	/**
 	 * Constructor: sets _project and BGColor
@@ -42,6 +82,27 @@ public class DrawingPanel extends JPanel {
 	public DrawingPanel(DiagramProject project) {
 		_project = project;
 		setBackground(Color.WHITE);
+		_renderer.setOpaque(false);
+		_renderer.setHorizontalAlignment(JLabel.CENTER);
+		add(_rendererPane);
+	}
+
+	/**
+	 * Listens to the viewport this panel is put in, if any, to hand the text fields on as it scrolls.
+	 */
+	public void addNotify() {
+		super.addNotify();
+		if (getParent() instanceof JViewport)
+			((JViewport) getParent()).addChangeListener(_scrolled);
+	}
+
+	/**
+	 * Stops listening to the viewport this panel is taken out of.
+	 */
+	public void removeNotify() {
+		if (getParent() instanceof JViewport)
+			((JViewport) getParent()).removeChangeListener(_scrolled);
+		super.removeNotify();
 	}
 
 	/**
@@ -74,13 +135,13 @@ public class DrawingPanel extends JPanel {
 	public void clearSelected() {
 		for (Node n : getDiagram().getNodes()){
 			n.setSelected(false);
-			n.getTextField().setVisible(false);
-			n.getLabel().setVisible(true);
+			if (LabelView.of(n) != null)
+				LabelView.of(n).setEditing(false);
 		}
 		for (Edge e : getDiagram().getEdges()){
 			e.setSelected(false);
-			e.getTextField().setVisible(false);
-			e.getLabel().setVisible(true);
+			if (LabelView.of(e) != null)
+				LabelView.of(e).setEditing(false);
 		}
 	}
 
@@ -103,7 +164,7 @@ public class DrawingPanel extends JPanel {
 	 */
 	public Node addNode(Point p) {
 		clearSelected();
-		Node n = new Node(p.x,p.y, this);
+		Node n = createNode(p.x, p.y);
 		getDiagram().addNode(n);
 		if (getDiagram().getNodes().size() == 1) {
 			n.setStart(true);
@@ -113,17 +174,265 @@ public class DrawingPanel extends JPanel {
 
 	}
 
+	/**
+	 * Makes a selected node at (x, y) with the default name, shown on this panel.  It is not added to the diagram.
+	 * @param x
+	 * @param y
+	 * @return
+	 */
+	public Node createNode(double x, double y) {
+		String label = Node.DEFAULT_LABEL;
+		if (label == null)
+			label = "q_" + getDiagram().getNodes().size();
+		Node n = new Node(x, y, Node.DEFAULT_RADIUS, false, false, label);
+		n.setSelected(true);
+		attach(n);
+		return n;
+	}
+
+	/**
+	 * Makes a selected edge from s to e with the default label, shown on this panel.  It is not added to the diagram
+	 * or to the nodes.
+	 * @param s		The start node.
+	 * @param e		The end node.
+	 * @param d		The direction.
+	 * @return
+	 */
+	public Edge createEdge(Node s, Node e, EdgeDirection d) {
+		Edge edge = new Edge(s, e, d, Edge.DEFAULT_STRING, 100000.0, 0);
+		edge.setSelected(true);
+		attach(edge);
+		return edge;
+	}
+
+	/**
+	 * Shows a node on this panel, giving it a view unless it has one.
+	 * @param n
+	 */
+	public void attach(Node n) {
+		if (n.getView() == null)
+			n.setView(new LabelView(this, n));
+		attach(LabelView.of(n));
+	}
+
+	/**
+	 * Shows an edge on this panel, giving it a view unless it has one.
+	 * @param e
+	 */
+	public void attach(Edge e) {
+		if (e.getView() == null)
+			e.setView(new LabelView(this, e));
+		attach(LabelView.of(e));
+	}
+
+	/**
+	 * Helper for attach: files a view by where it is now drawn, and gives it a text field if it is being edited.
+	 * @param view
+	 */
+	private void attach(LabelView view) {
+		view.setAttached(true);
+		view.layout();
+		_views.add(view);
+		editingChanged(view);
+	}
+
+	/**
+	 * Takes a node off this panel.  It keeps its view, so it can be attached again as it was.
+	 * @param n
+	 */
+	public void detach(Node n) {
+		if (LabelView.of(n) != null)
+			detach(LabelView.of(n));
+	}
+
+	/**
+	 * Takes an edge off this panel.  It keeps its view, so it can be attached again as it was.
+	 * @param e
+	 */
+	public void detach(Edge e) {
+		if (LabelView.of(e) != null)
+			detach(LabelView.of(e));
+	}
+
+	/**
+	 * Helper for detach: takes a view out of the index and gives back its text field.
+	 * @param view
+	 */
+	private void detach(LabelView view) {
+		view.setAttached(false);
+		_views.remove(view);
+		editingChanged(view);
+	}
+
+	/**
+	 * Called by a view when it starts or stops editing, and when it is attached or detached.  A view that starts
+	 * editing gets a text field at once, since it is started from where the user is looking; one that stops, or is
+	 * detached, gives its field back.
+	 * @param view
+	 */
+	void editingChanged(LabelView view) {
+		if (view.isEditing() && view.isAttached()) {
+			_editingViews.add(view);
+			view.show();
+		}
+		else {
+			_editingViews.remove(view);
+			view.hide();
+		}
+	}
+
+	/**
+	 * Called by a view after its node or edge moved: files it again, and if it is being edited while this panel is
+	 * on screen, hands its text field on if it moved into or out of the visible part.
+	 * @param view
+	 */
+	void viewMoved(LabelView view) {
+		_views.add(view);
+		if (_editingViews.contains(view) && isShowing())
+			layoutView(view, getVisibleRect());
+	}
+
+	/**
+	 * Gives a view a text field to edit its text in, reusing one that was given back if there is one.
+	 * @return
+	 */
+	JTextField takeEditor() {
+		JTextField field = _freeEditors.poll();
+		if (field == null) {
+			field = new JTextField();
+			field.setBorder(null);
+			field.setOpaque(false);
+			field.setBackground(new Color(0,0,0,0));
+			field.setHorizontalAlignment(JTextField.CENTER);
+			field.setEditable(true);
+			field.setEnabled(true);
+			field.addKeyListener(new EnterListener(this, field));
+		}
+		add(field);
+		return field;
+	}
+
+	/**
+	 * Takes back a text field a view no longer edits in, to reuse.
+	 * @param field
+	 */
+	void releaseEditor(JTextField field) {
+		remove(field);
+		_freeEditors.push(field);
+	}
+
+	/**
+	 * Gives text fields only to the views being edited that are inside the visible part of this panel.  The fields of
+	 * views that left it are given back first, so the views that came into it reuse them.  Only the views being edited
+	 * are looked at.  This is called when the viewport this panel is in scrolls.
+	 * @param visible		The visible part of this panel.
+	 */
+	public void layoutViews(Rectangle visible) {
+		for (LabelView view : _editingViews) {
+			if (!view.getBounds().intersects(visible))
+				view.hide();
+		}
+		for (LabelView view : _editingViews) {
+			if (view.getBounds().intersects(visible))
+				view.show();
+		}
+	}
+
+	/**
+	 * Gives a view being edited a text field if it is inside the visible part of this panel, or takes it back if not.
+	 * @param view
+	 * @param visible
+	 */
+	private void layoutView(LabelView view, Rectangle visible) {
+		if (view.getBounds().intersects(visible))
+			view.show();
+		else
+			view.hide();
+	}
+
+	/**
+	 * Stamps the text of the nodes and edges in _painted that is inside the clip and not being edited on screen, with
+	 * the shared renderer.  Edge labels are stamped first, so the names of nodes are drawn over them.
+	 * @param g
+	 * @param clip
+	 */
+	private void paintLabels(Graphics g, Rectangle clip) {
+		for (LabelView view : _painted) {
+			if (view.getEdge() != null)
+				paintLabel(g, view, clip);
+		}
+		for (LabelView view : _painted) {
+			if (view.getNode() != null)
+				paintLabel(g, view, clip);
+		}
+	}
+
+	/**
+	 * Helper for paintLabels.
+	 * @param g
+	 * @param view
+	 * @param clip
+	 */
+	private void paintLabel(Graphics g, LabelView view, Rectangle clip) {
+		if (view.getTextField() != null)
+			return;
+		Rectangle bounds = view.getBounds();
+		if (clip != null && !bounds.intersects(clip))
+			return;
+		_renderer.setText(view.getHtml());
+		_rendererPane.paintComponent(g, _renderer, this, bounds.x, bounds.y, bounds.width, bounds.height, true);
+	}
+
+	/**
+	 * Shows all the nodes and edges of a diagram on this panel.
+	 * @param diagram
+	 */
+	public void attachAll(Diagram diagram) {
+		for (Node n : diagram.getNodes())
+			attach(n);
+		for (Edge e : diagram.getEdges())
+			attach(e);
+	}
+
+	/**
+	 * Takes all the nodes and edges of a diagram off this panel.
+	 * @param diagram
+	 */
+	public void detachAll(Diagram diagram) {
+		for (Node n : diagram.getNodes())
+			detach(n);
+		for (Edge e : diagram.getEdges())
+			detach(e);
+	}
+
 	/**
 	 * PAINTS EVERYTHING.
 	 * Options for if selected, start, end, etc.
+	 * Only the nodes and edges _views finds inside the clip are drawn, so a repaint takes time in what it shows rather
+	 * than in the size of the diagram.
 	 */
 	public void paintComponent(Graphics g) {
 		super.paintComponent(g); 
 		Graphics2D g2 = (Graphics2D) g;
 		g2.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
-		for (Edge e: getDiagram().getEdges()) {
+		GraphAnalysis analysis = _overlay != GraphOverlay.NONE ? getDiagram().analyzeGraph() : null;
+		Collection<Edge> cycleEdges = _overlay == GraphOverlay.CYCLE && analysis.getCycleEdges() != null
+				? new HashSet<Edge>(analysis.getCycleEdges()) : Collections.<Edge>emptySet();
+		Collection<Node> cycleNodes = _overlay == GraphOverlay.CYCLE && analysis.getCycle() != null
+				? new HashSet<Node>(analysis.getCycle()) : Collections.<Node>emptySet();
+		Rectangle clip = g2.getClipBounds();
+		_painted.clear();
+		_views.find(clip, _painted);
+		for (LabelView view : _painted) {
+			Edge e = view.getEdge();
+			if (e == null)
+				continue;
 			g2.setColor(java.awt.Color.BLACK);
 			g2.setStroke(new BasicStroke(1));
+			if (cycleEdges.contains(e)) {
+				g2.setColor(CYCLE_COLOR);
+				g2.setStroke(new BasicStroke(3));
+			}
 			if(e.isSelected()){
 				g2.setColor(java.awt.Color.BLUE);
 				g2.setStroke(new BasicStroke(2));
@@ -133,14 +442,14 @@ public class DrawingPanel extends JPanel {
 				g2.setColor(new java.awt.Color(204, 0, 51));
 			}
 			if (e.getDirection() == EdgeDirection.SINGLE) {
-				Shape end = e.getForward();
+				Shape end = DiagramShapes.forward(e);
 				g2.fill(end);
 			}
 			else if (e.getDirection() == EdgeDirection.DOUBLE) {
-				g2.fill(e.getForward());
-				g2.fill(e.getBackward());
+				g2.fill(DiagramShapes.forward(e));
+				g2.fill(DiagramShapes.backward(e));
 			}
-			g2.draw(e.resetArc());
+			g2.draw(DiagramShapes.curve(e));
 			g2.setStroke(new BasicStroke(1));
 		}
 		if (_progressLine != null) {
@@ -148,10 +457,21 @@ public class DrawingPanel extends JPanel {
 			g2.setStroke(new BasicStroke(1));
 			g2.draw(_progressLine);
 		}
-		for (Node n : getDiagram().getNodes()){
+		Reachability reachability = _showUseless ? getDiagram().analyzeReachability() : null;
+		for (LabelView view : _painted) {
+			Node n = view.getNode();
+			if (n == null)
+				continue;
 			g2.setColor(java.awt.Color.WHITE);
+			if (reachability != null && reachability.isUnreachable(n))
+				g2.setColor(UNREACHABLE_COLOR);
+			else if (reachability != null && reachability.isDead(n))
+				g2.setColor(DEAD_COLOR);
+			Color overlay = overlayColor(analysis, n, cycleNodes);
+			if (overlay != null)
+				g2.setColor(overlay);
 			g2.setStroke(new BasicStroke(1));
-			Ellipse2D.Double ellipse = n.resetCircle();
+			Ellipse2D.Double ellipse = DiagramShapes.circle(n);
 			g2.fill(ellipse);
 			g2.setColor(java.awt.Color.BLACK);
 			g2.setStroke(new BasicStroke(1));
@@ -164,12 +484,12 @@ public class DrawingPanel extends JPanel {
 						BasicStroke.CAP_BUTT,
 						BasicStroke.JOIN_MITER,
 						3.0f, dash1, 0.0f));
-				g2.draw(n.getStartSymbol());
+				g2.draw(DiagramShapes.startSymbol(n));
 				g2.setColor(n.getCurrent() ? 
 						new java.awt.Color(204, 0, 51) : java.awt.Color.BLUE);
 				g2.setStroke(new BasicStroke(3));
-				g2.fill(n.getResize());
-				g2.draw(n.getResize());
+				g2.fill(DiagramShapes.resize(n));
+				g2.draw(DiagramShapes.resize(n));
 			}
 
 			if (n.getCurrent()) {
@@ -179,8 +499,8 @@ public class DrawingPanel extends JPanel {
 
 			if (n.isEnd()) {
 				double newRad = n.getRadius() - SMALLER_RADIUS;
-				double x = n.getCenter().x;
-				double y = n.getCenter().y;
+				double x = n.getX();
+				double y = n.getY();
 				g2.draw(new Ellipse2D.Double(x-newRad,y-newRad,newRad*2,newRad*2));
 			}
 
@@ -198,12 +518,14 @@ public class DrawingPanel extends JPanel {
 							new java.awt.Color(204, 0, 51) : java.awt.Color.BLACK);
 					g2.setStroke(new BasicStroke(1));
 				}
-				g2.draw(n.getStartSymbol());
+				g2.draw(DiagramShapes.startSymbol(n));
 
 			}
 
 
 		}
+		paintLabels(g, clip);
+		_painted.clear();
 		if (_selectRectangle!=null){
 			g2.setColor(java.awt.Color.black);
 			g2.setStroke(new BasicStroke(1));
@@ -214,6 +536,22 @@ public class DrawingPanel extends JPanel {
 
 	}
 
+	/**
+	 * Writes what is drawn on this panel to a png file
+	 * @param file
+	 */
+	public void writeImage(File file) {
+		BufferedImage bi = new BufferedImage(getSize().width, getSize().height, BufferedImage.TYPE_INT_ARGB); 
+		Graphics g = bi.createGraphics();
+		paint(g);
+		g.dispose();
+		try{
+			ImageIO.write(bi, "png", file);
+		}catch (Exception e) {
+			e.printStackTrace();
+		}
+	}
+
 	/**
 	 * Sets selectRectangle
 	 * @param selectRectangle
@@ -230,4 +568,76 @@ public class DrawingPanel extends JPanel {
 		return _selectRectangle;
 	}
 
+	/**
+	 * Returns the fill colour _overlay gives a node
+	 * @param analysis		The graph analysis of the diagram, or null if there is no overlay.
+	 * @param n				The node.
+	 * @param cycleNodes	The nodes of the cycle shown.
+	 * @return				The colour, or null to leave the node as it is.
+	 */
+	private Color overlayColor(GraphAnalysis analysis, Node n, Collection<Node> cycleNodes) {
+		switch (_overlay) {
+		case COMPONENTS:
+			return paletteColor(analysis.getComponent(n));
+		case STRONG_COMPONENTS:
+			return paletteColor(analysis.getStrongComponent(n));
+		case TOPOLOGICAL_ORDER:
+			int position = analysis.getTopologicalPosition(n);
+			if (position < 0)
+				return null;
+			float along = (float) position / Math.max(getDiagram().getNodes().size() - 1, 1);
+			return Color.getHSBColor(0.66f * (1 - along), 0.35f, 1f);
+		case CYCLE:
+			return cycleNodes.contains(n) ? new Color(255, 190, 200) : null;
+		default:
+			return null;
+		}
+	}
+
+	/**
+	 * Returns a light colour for a component number; neighbouring numbers get hues far apart
+	 * @param i
+	 * @return
+	 */
+	private static Color paletteColor(int i) {
+		if (i < 0)
+			return null;
+		float hue = (float) ((i * 0.618033988749895) % 1.0);
+		return Color.getHSBColor(hue, 0.35f, 1f);
+	}
+
+	/**
+	 * Sets what the nodes are coloured by
+	 * @param overlay
+	 */
+	public void setOverlay(GraphOverlay overlay) {
+		_overlay = overlay;
+		repaint();
+	}
+
+	/**
+	 * returns what the nodes are coloured by
+	 * @return
+	 */
+	public GraphOverlay getOverlay() {
+		return _overlay;
+	}
+
+	/**
+	 * Sets whether unreachable and dead nodes are highlighted
+	 * @param showUseless
+	 */
+	public void setShowUseless(boolean showUseless) {
+		_showUseless = showUseless;
+		repaint();
+	}
+
+	/**
+	 * returns whether unreachable and dead nodes are highlighted
+	 * @return
+	 */
+	public boolean isShowingUseless() {
+		return _showUseless;
+	}
+
 }
@@ -3,8 +3,7 @@ package frontend;
 import java.awt.Point;
 import java.awt.event.KeyAdapter;
 import java.awt.event.KeyEvent;
-import java.util.Collection;
-import java.util.Collections;
+import java.util.ArrayList;
 
 import backend.Edge;
 import backend.Node;
@@ -47,25 +46,22 @@ public class DrawingPanelKeyListener extends KeyAdapter {
 			
 			for (Node n : _frame.getNodesSelected()){
 				Node connectedNode;
-				Collection<Edge> edges = Collections.synchronizedCollection(n.getConnected());
-				for (Edge e : edges){
+				//The edges are copied, since they are disconnected from n along the way when they loop.
+				for (Edge e : new ArrayList<Edge>(n.getConnected())){
 					connectedNode = e.getStartNode() == n ? e.getEndNode() : e.getStartNode();
-					_frame.getDrawing().getDiagram().getEdges().remove(e);
+					_frame.getDrawing().getDiagram().removeEdge(e);
 					_frame.removeSelectedEdge(e);
-					_frame.getDrawing().remove(e.getLabel());
-					_frame.getDrawing().remove(e.getTextField());
+					_frame.getDrawing().detach(e);
 					connectedNode.removeConnected(e);
 				}
-				_frame.getDrawing().remove(n.getLabel());
-				_frame.getDrawing().remove(n.getTextField());
-				_frame.getDrawing().getDiagram().getNodes().remove(n);
+				_frame.getDrawing().detach(n);
+				_frame.getDrawing().getDiagram().removeNode(n);
 			}
 			for (Edge e : _frame.getEdgesSelected()){
-				for (Node n : _frame.getDrawing().getDiagram().getNodes())
-					n.removeConnected(e);
-				_frame.getDrawing().remove(e.getLabel());
-				_frame.getDrawing().remove(e.getTextField());
-				_frame.getDrawing().getDiagram().getEdges().remove(e);
+				e.getStartNode().removeConnected(e);
+				e.getEndNode().removeConnected(e);
+				_frame.getDrawing().detach(e);
+				_frame.getDrawing().getDiagram().removeEdge(e);
 			}
 			_frame.resetSelected();
 		}
@@ -76,8 +72,8 @@ public class DrawingPanelKeyListener extends KeyAdapter {
 			int dist;
 			int mindist = Integer.MAX_VALUE;
 			for (Node n : _frame.getDrawing().getDiagram().getNodes()) {
-				int difX = (int)n.getCenter().x - _frame.getMouseLoc().x;
-				int difY = (int)n.getCenter().y - _frame.getMouseLoc().y;
+				int difX = (int)n.getX() - _frame.getMouseLoc().x;
+				int difY = (int)n.getY() - _frame.getMouseLoc().y;
 				dist = (int)Math.sqrt(difX*difX + difY*difY);
 				if (dist < mindist) {
 					mindist = dist;
@@ -88,14 +84,14 @@ public class DrawingPanelKeyListener extends KeyAdapter {
 				return;
 			}
 			Point loc = _frame.getDrawing().getLocationOnScreen();
-			double difX = _frame.getMouseLoc().x - currNode.getCenter().x;
-			double difY = _frame.getMouseLoc().y - currNode.getCenter().y;
+			double difX = _frame.getMouseLoc().x - currNode.getX();
+			double difY = _frame.getMouseLoc().y - currNode.getY();
 			double vecX = difX/Math.sqrt((difX*difX+difY*difY));
 			double vecY = difY/Math.sqrt((difX*difX+difY*difY));
 			if (difX == 0 && difY == 0)
-				_frame.getRobot().mouseMove(loc.x + (int) currNode.getCenter().x, loc.y + (int) (currNode.getCenter().y - currNode.getRadius()));
+				_frame.getRobot().mouseMove(loc.x + (int) currNode.getX(), loc.y + (int) (currNode.getY() - currNode.getRadius()));
 			else
-				_frame.getRobot().mouseMove(loc.x + (int) (currNode.getCenter().x+(currNode.getRadius()*vecX)), loc.y + (int) (currNode.getCenter().y+(currNode.getRadius()*vecY)));
+				_frame.getRobot().mouseMove(loc.x + (int) (currNode.getX()+(currNode.getRadius()*vecX)), loc.y + (int) (currNode.getY()+(currNode.getRadius()*vecY)));
 		}
 		_frame.getDrawing().repaint();
 	}
@@ -59,7 +59,7 @@ public class DrawingPanelMouseListener extends MouseAdapter {
 			
 			//If double click inside a node, toggle end state.
 			for (Node n : _frame.getDrawing().getDiagram().getNodes()){
-				if (n.getCircle().contains(evt.getPoint())){
+				if (DiagramShapes.circle(n).contains(evt.getPoint())){
 					n.setEnd(!n.isEnd());
 					return;
 				}
@@ -69,8 +69,7 @@ public class DrawingPanelMouseListener extends MouseAdapter {
 			_frame.resetSelected();
 			Node add = _frame.getDrawing().addNode(evt.getPoint());
 			_frame.addSelectedNode(add);
-			add.getTextField().setVisible(true);
-			add.getLabel().setVisible(false);
+			LabelView.of(add).setEditing(true);
 			_frame.setHelpText(2);
 		}
 		//Otherwise, it's a single click
@@ -79,9 +78,8 @@ public class DrawingPanelMouseListener extends MouseAdapter {
 			if (evt.isControlDown()) {
 				//Iterate over all edges and nodes, toggling selection for each node and edge
 				for (Node n : _frame.getDrawing().getDiagram().getNodes()){
-					n.getTextField().setVisible(false);
-					n.getLabel().setVisible(true);
-					if (n.getCircle().contains(evt.getPoint())){
+					LabelView.of(n).setEditing(false);
+					if (DiagramShapes.circle(n).contains(evt.getPoint())){
 						if (n.isSelected())
 							_frame.removeSelectedNode(n);
 						else
@@ -106,7 +104,7 @@ public class DrawingPanelMouseListener extends MouseAdapter {
 			else{
 				//If we are setting a start node, don't do anything else except toggle start icon
 				for (Node n : _frame.getDrawing().getDiagram().getNodes()){
-					if (n.getStartSymbol().contains(evt.getPoint()) && n.isSelected()){
+					if (DiagramShapes.startSymbol(n).contains(evt.getPoint()) && n.isSelected()){
 						n.setStart(!n.isStart());
 						return;
 					}
@@ -117,41 +115,37 @@ public class DrawingPanelMouseListener extends MouseAdapter {
 				_frame.resetSelected();
 
 				for (Node n : _frame.getDrawing().getDiagram().getNodes()){
-					if (n.getCircle().contains(evt.getPoint()) || (n.isStart() && n.getStartSymbol().contains(evt.getPoint()))){
+					if (DiagramShapes.circle(n).contains(evt.getPoint()) || (n.isStart() && DiagramShapes.startSymbol(n).contains(evt.getPoint()))){
 						_frame.addSelectedNode(n);
-						n.getTextField().setVisible(true);
-						n.getTextField().select(0,0);
-						n.getLabel().setVisible(false);
+						LabelView.of(n).setEditing(true);
+						LabelView.of(n).getTextField().select(0,0);
 						_frame.getDrawing().repaint();
 						_frame.setHelpText(2);
-						if (n.getTextField().getText().equals("")){
-							n.getTextField().setVisible(true);
-							n.getLabel().setVisible(false);
-							n.getTextField().grabFocus();
+						if (n.getText().equals("")){
+							LabelView.of(n).setEditing(true);
+							LabelView.of(n).getTextField().grabFocus();
 						}
 						return;
 					}
 				}
 				for (Edge e : _frame.getDrawing().getDiagram().getEdges()){
-					Rectangle boundingBox = e.getLabel().getBounds();
+					Rectangle boundingBox = LabelView.of(e).getBounds();
 					if (e.intersects(evt.getPoint().x,evt.getPoint().y)){
 						_frame.addSelectedEdge(e);					
 						EdgeDirection dir = e.getDirection();
 						_frame.setSelectedEdgeType(dir);
 						_frame.getDrawing().repaint();
-						if (e.getTextField().getText().equals("")){
-							e.getTextField().setVisible(true);
-							e.getLabel().setVisible(false);
-							e.getTextField().grabFocus();
+						if (e.getText().equals("")){
+							LabelView.of(e).setEditing(true);
+							LabelView.of(e).getTextField().grabFocus();
 						}
 						return;
 					}
 					else if (boundingBox.contains(evt.getPoint().x, evt.getPoint().y)){
 						_frame.resetSelected();
-						e.getLabel().setVisible(false);
-						e.getTextField().setVisible(true);
-						e.getTextField().grabFocus();
-						e.getTextField().selectAll();
+						LabelView.of(e).setEditing(true);
+						LabelView.of(e).getTextField().grabFocus();
+						LabelView.of(e).getTextField().selectAll();
 						_frame.addSelectedEdge(e);
 						return;
 					}
@@ -175,7 +169,7 @@ public class DrawingPanelMouseListener extends MouseAdapter {
 		//Check if we are trying to draw another edge
 		if (evt.isShiftDown()) {
 			for (Node n : _frame.getDrawing().getDiagram().getNodes()) {
-				if (n.getCircle().contains(evt.getPoint())) {
+				if (DiagramShapes.circle(n).contains(evt.getPoint())) {
 					_frame.setEdgeStart(n);
 					break;
 				}
@@ -185,20 +179,20 @@ public class DrawingPanelMouseListener extends MouseAdapter {
 		//Set the node/resizing/edge being dragged to the thing being pressed on.
 		if (_frame.getEdgeStart() == null) {
 			for (Node n : _frame.getDrawing().getDiagram().getNodes()) {
-				if (n.getCircle().contains(evt.getPoint())) {
+				if (DiagramShapes.circle(n).contains(evt.getPoint())) {
 					_frame.setNodeDragged(n);
-					n.setOffset(evt.getX() - n.getCenter().x, evt.getY() - n.getCenter().y);
+					n.setOffset(evt.getX() - n.getX(), evt.getY() - n.getY());
 					_tempPoint = new HashMap<Node, Point2D.Double>();
 					for (Node n2 : _frame.getNodesSelected()) {
 						Point2D.Double curCenter = new Point2D.Double();
-						curCenter.x = n2.getCenter().getX();
-						curCenter.y = n2.getCenter().getY();
+						curCenter.x = n2.getX();
+						curCenter.y = n2.getY();
 						_tempPoint.put(n2, curCenter);
 					}
 					if (!_tempPoint.containsKey(_frame.getNodeDragged())) {
 						Point2D.Double curCenter = new Point2D.Double();
-						curCenter.x = _frame.getNodeDragged().getCenter().getX();
-						curCenter.y = _frame.getNodeDragged().getCenter().getY();
+						curCenter.x = _frame.getNodeDragged().getX();
+						curCenter.y = _frame.getNodeDragged().getY();
 						_tempPoint.put(_frame.getNodeDragged(), curCenter);
 					}
 					
@@ -207,7 +201,7 @@ public class DrawingPanelMouseListener extends MouseAdapter {
 				}
 			}
 			for (Node n : _frame.getDrawing().getDiagram().getNodes()) {
-				if (n.isSelected() && n.getResize().contains(evt.getPoint())) {
+				if (n.isSelected() && DiagramShapes.resize(n).contains(evt.getPoint())) {
 					_frame.setResizing(n);
 					tempRadius = n.getRadius();
 					_tempPointMoved = evt.getPoint();
@@ -221,8 +215,8 @@ public class DrawingPanelMouseListener extends MouseAdapter {
 					tempTurn = e.getTurn();
 					_tempPointMoved = evt.getPoint();
 					_frame.setEdgeDragged(e);
-					double dx = evt.getX() - e.getStartNode().getCenter().getX();
-					double dy = evt.getY() - e.getStartNode().getCenter().getY();
+					double dx = evt.getX() - e.getStartNode().getX();
+					double dy = evt.getY() - e.getStartNode().getY();
 					e.setOffset(e.getAngle() - Math.atan2(dy, dx));
 					return;
 				}
@@ -241,14 +235,14 @@ public class DrawingPanelMouseListener extends MouseAdapter {
 				HashMap<Node, Point2D.Double> tempCenterPoints = new HashMap<Node, Point2D.Double>();
 				for (Node n : _frame.getNodesSelected()) {
 					Point2D.Double tempCenter = new Point2D.Double();
-					tempCenter.x = n.getCenter().getX();
-					tempCenter.y = n.getCenter().getY();
+					tempCenter.x = n.getX();
+					tempCenter.y = n.getY();
 					tempCenterPoints.put(n, tempCenter);
 				}
 				if (!tempCenterPoints.containsKey(_frame.getNodeDragged())) {
 					Point2D.Double curCenter = new Point2D.Double();
-					curCenter.x = _frame.getNodeDragged().getCenter().getX();
-					curCenter.y = _frame.getNodeDragged().getCenter().getY();
+					curCenter.x = _frame.getNodeDragged().getX();
+					curCenter.y = _frame.getNodeDragged().getY();
 					tempCenterPoints.put(_frame.getNodeDragged(), curCenter);
 				}
 				for (Node n : _frame.getNodesSelected()) {
@@ -298,7 +292,7 @@ public class DrawingPanelMouseListener extends MouseAdapter {
 		if (_frame.getEdgeStart() != null) {
 			//Find the node which the edge is ending at
 			for (Node n : _frame.getDrawing().getDiagram().getNodes()) {
-				if (n.getCircle().contains(evt.getPoint())) {
+				if (DiagramShapes.circle(n).contains(evt.getPoint())) {
 					//Undo/Redo
 					_frame.getDrawing().getDiagramProject().pushCurrentOntoHistory("Added Edge");
 					_frame.setStar();
@@ -306,9 +300,9 @@ public class DrawingPanelMouseListener extends MouseAdapter {
 					//Reset selected edges/nodes
 					_frame.resetSelected();
 					//Create the new edge, reset all variables associated with maintaining the edge being drawn.
-					Edge newEdge = new Edge(_frame.getEdgeStart(),n,_frame.getDrawing(),_frame.getEdgeType());
-					newEdge.getTextField().grabFocus();
-					newEdge.getLabel().setVisible(false);
+					Edge newEdge = _frame.getDrawing().createEdge(_frame.getEdgeStart(),n,_frame.getEdgeType());
+					LabelView.of(newEdge).setEditing(true);
+					LabelView.of(newEdge).getTextField().grabFocus();
 					_frame.getEdgeStart().addConnected(newEdge);
 					n.addConnected(newEdge);
 					_frame.getDrawing().getDiagram().addEdge(newEdge);
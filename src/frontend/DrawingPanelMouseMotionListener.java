@@ -45,7 +45,7 @@ public class DrawingPanelMouseMotionListener extends MouseMotionAdapter {
 
 			//Check to see if there is a close node to which we can snap the end of the progress line.
 			for (Node n : _frame.getDrawing().getDiagram().getNodes()) {
-				if (n.getCircle().contains(_frame.getMouseLoc())) {
+				if (DiagramShapes.circle(n).contains(_frame.getMouseLoc())) {
 					con = n;
 				}
 			}
@@ -56,28 +56,28 @@ public class DrawingPanelMouseMotionListener extends MouseMotionAdapter {
 
 			//Determine the vector based on either the mouse location, or the center of the node to which we're drawing.
 			if (con != null) {
-				difX = con.getCenter().x - _frame.getEdgeStart().getCenter().x;
-				difY = con.getCenter().y - _frame.getEdgeStart().getCenter().y;
+				difX = con.getX() - _frame.getEdgeStart().getX();
+				difY = con.getY() - _frame.getEdgeStart().getY();
 			}
 			else {
-				difX = _frame.getMouseLoc().x - _frame.getEdgeStart().getCenter().x;
-				difY = _frame.getMouseLoc().y - _frame.getEdgeStart().getCenter().y;
+				difX = _frame.getMouseLoc().x - _frame.getEdgeStart().getX();
+				difY = _frame.getMouseLoc().y - _frame.getEdgeStart().getY();
 			}
 
 			vecX = difX/Math.sqrt((difX*difX+difY*difY));
 			vecY = difY/Math.sqrt((difX*difX+difY*difY));
 
 			//Start from the same place; if mouse is inside a node, set the end point to be the middle of that node.
-			point_start = new Point2D.Double(_frame.getEdgeStart().getCenter().x+(_frame.getEdgeStart().getRadius()*vecX),
-					_frame.getEdgeStart().getCenter().y+(_frame.getEdgeStart().getRadius()*vecY));
+			point_start = new Point2D.Double(_frame.getEdgeStart().getX()+(_frame.getEdgeStart().getRadius()*vecX),
+					_frame.getEdgeStart().getY()+(_frame.getEdgeStart().getRadius()*vecY));
 			if (con != null)
-				point_end = new Point2D.Double(con.getCenter().x-(con.getRadius()*vecX),con.getCenter().y-(con.getRadius()*vecY));
+				point_end = new Point2D.Double(con.getX()-(con.getRadius()*vecX),con.getY()-(con.getRadius()*vecY));
 
 			//Draw the lines. First case is if it's a self loop; second case is
 			//if it's to a node that the mouse is in the middle of; third case
 			//is if we just want to draw to a mouse point.
 			if (con != null && _frame.getEdgeStart() == con)
-				_frame.getDrawing()._progressLine = new Arc2D.Double(con.getCenter().getX(), con.getCenter().getY(),
+				_frame.getDrawing()._progressLine = new Arc2D.Double(con.getX(), con.getY(),
 						con.getRadius() * 2, con.getRadius() * 2, 180, 540, Arc2D.OPEN);
 			else if (con != null)
 				_frame.getDrawing()._progressLine = new Line2D.Double(point_start, point_end);
@@ -91,7 +91,7 @@ public class DrawingPanelMouseMotionListener extends MouseMotionAdapter {
 					Math.abs(_frame.getSelectPoint().x - p.x), Math.abs(_frame.getSelectPoint().y - p.y)));
 			_frame.resetSelected();
 			for (Node n : _frame.getDrawing().getDiagram().getNodes()){
-				if (_frame.getDrawing().getSelectRectangle().contains(n.getCenter()))
+				if (_frame.getDrawing().getSelectRectangle().contains(n.getX(), n.getY()))
 					_frame.addSelectedNode(n);
 			}
 			for (Edge e : _frame.getDrawing().getDiagram().getEdges()){
@@ -105,20 +105,19 @@ public class DrawingPanelMouseMotionListener extends MouseMotionAdapter {
 			
 			//If the node is not selected, then just move that one node.
 			if (!_frame.getNodeDragged().isSelected() || _frame.getNodesSelected().size() == 1){
-				double snappedX = _frame.getMouseLoc().getX() - _frame.getNodeDragged().getOffset().getX();
-				double snappedY = _frame.getMouseLoc().getY() - _frame.getNodeDragged().getOffset().getY();
+				double snappedX = _frame.getMouseLoc().getX() - _frame.getNodeDragged().getOffsetX();
+				double snappedY = _frame.getMouseLoc().getY() - _frame.getNodeDragged().getOffsetY();
 				for (Node n : _frame.getDrawing().getDiagram().getNodes()) {
 					if (n != _frame.getNodeDragged()) {
-						if (Math.abs(_frame.getMouseLoc().getX() - _frame.getNodeDragged().getOffset().getX() - n.getCenter().getX()) <= MainFrame.SNAP_DIFFERENCE) {
-							snappedX = n.getCenter().getX();
+						if (Math.abs(_frame.getMouseLoc().getX() - _frame.getNodeDragged().getOffsetX() - n.getX()) <= MainFrame.SNAP_DIFFERENCE) {
+							snappedX = n.getX();
 						}
-						if (Math.abs(_frame.getMouseLoc().getY() - _frame.getNodeDragged().getOffset().getY() - n.getCenter().getY()) <= MainFrame.SNAP_DIFFERENCE) {
-							snappedY = n.getCenter().getY();
+						if (Math.abs(_frame.getMouseLoc().getY() - _frame.getNodeDragged().getOffsetY() - n.getY()) <= MainFrame.SNAP_DIFFERENCE) {
+							snappedY = n.getY();
 						}
 					}
 				}
 				_frame.getNodeDragged().setCenter(snappedX, snappedY);
-				_frame.getNodeDragged().resetCircle();
 			}
 
 
@@ -127,15 +126,14 @@ public class DrawingPanelMouseMotionListener extends MouseMotionAdapter {
 				for (Node n : _frame.getNodesSelected()){
 					int difX = _frame.getMouseLoc().x - temp.x;
 					int difY = _frame.getMouseLoc().y - temp.y;
-					n.setCenter(n.getCenter().x + difX, n.getCenter().y + difY);
-					n.resetCircle();
+					n.setCenter(n.getX() + difX, n.getY() + difY);
 				}
 			}
 		}
 
 		//Otherwise, if we are in the middle of resizing, then correctly resize the node.
 		else if (_frame.getResizing() != null) {
-			Rectangle2D rec = _frame.getResizing().getResize();
+			Rectangle2D rec = DiagramShapes.resize(_frame.getResizing());
 
 			double dif = Math.max(_frame.getMouseLoc().x - rec.getCenterX(),_frame.getMouseLoc().y - rec.getCenterY());
 
@@ -157,22 +155,22 @@ public class DrawingPanelMouseMotionListener extends MouseMotionAdapter {
 			
 				// Find the vector A from mouse to start node.
 				double[] vectorA = {
-					_frame.getEdgeDragged().getStartNode().getCenter().getX() - _frame.getMouseLoc().getX(),
-					_frame.getEdgeDragged().getStartNode().getCenter().getY() - _frame.getMouseLoc().getY()
+					_frame.getEdgeDragged().getStartNode().getX() - _frame.getMouseLoc().getX(),
+					_frame.getEdgeDragged().getStartNode().getY() - _frame.getMouseLoc().getY()
 				};
 				double vectorASize = Math.sqrt(vectorA[0] * vectorA[0] + vectorA[1] * vectorA[1]);
 					
 				// Find the vector B from the mouse to the end
 				double[] vectorB = {
-					_frame.getEdgeDragged().getEndNode().getCenter().getX() - _frame.getMouseLoc().getX(),
-					_frame.getEdgeDragged().getEndNode().getCenter().getY() - _frame.getMouseLoc().getY()
+					_frame.getEdgeDragged().getEndNode().getX() - _frame.getMouseLoc().getX(),
+					_frame.getEdgeDragged().getEndNode().getY() - _frame.getMouseLoc().getY()
 				};
 				double vectorBSize = Math.sqrt(vectorB[0] * vectorB[0] + vectorB[1] * vectorB[1]);
 					
 				// Find the vector C from start to end.
 				double[] vectorC = {
-					_frame.getEdgeDragged().getEndNode().getCenter().getX() - _frame.getEdgeDragged().getStartNode().getCenter().getX(),
-					_frame.getEdgeDragged().getEndNode().getCenter().getY() - _frame.getEdgeDragged().getStartNode().getCenter().getY()
+					_frame.getEdgeDragged().getEndNode().getX() - _frame.getEdgeDragged().getStartNode().getX(),
+					_frame.getEdgeDragged().getEndNode().getY() - _frame.getEdgeDragged().getStartNode().getY()
 				};
 				double vectorCSize = Math.sqrt(vectorC[0] * vectorC[0] + vectorC[1] * vectorC[1]);
 					
@@ -198,8 +196,8 @@ public class DrawingPanelMouseMotionListener extends MouseMotionAdapter {
 			else {
 
 				double[] vectorA = {
-					_frame.getMouseLoc().getX() - _frame.getEdgeDragged().getStartNode().getCenter().getX(),
-					_frame.getMouseLoc().getY() - _frame.getEdgeDragged().getStartNode().getCenter().getY()
+					_frame.getMouseLoc().getX() - _frame.getEdgeDragged().getStartNode().getX(),
+					_frame.getMouseLoc().getY() - _frame.getEdgeDragged().getStartNode().getY()
 				};
 				double vectorAAngle = Math.atan2(vectorA[1], vectorA[0]);
 				_frame.getEdgeDragged().setAngle(vectorAAngle + _frame.getEdgeDragged().getOffset());
@@ -226,7 +224,7 @@ public class DrawingPanelMouseMotionListener extends MouseMotionAdapter {
 			}
 		}
 		for (Node n : _frame.getDrawing().getDiagram().getNodes()) {
-			if (n.getCircle().contains(_frame.getMouseLoc()) || (n.isStart() && n.getStartSymbol().contains(_frame.getMouseLoc()))) {
+			if (DiagramShapes.circle(n).contains(_frame.getMouseLoc()) || (n.isStart() && DiagramShapes.startSymbol(n).contains(_frame.getMouseLoc()))) {
 				if (n.isSelected())
 					_frame.setHelpText(2);
 				else
@@ -0,0 +1,11 @@
+package frontend;
+
+/**
+ * What a DrawingPanel colours the nodes of its diagram by, from Diagram.analyzeGraph().
+ * COMPONENTS and STRONG_COMPONENTS give each (strongly) connected component its own colour.
+ * TOPOLOGICAL_ORDER shades the nodes from blue to red along a topological order, if there is one.
+ * CYCLE picks out the nodes and edges of one cycle.
+ */
+public enum GraphOverlay {
+	NONE, COMPONENTS, STRONG_COMPONENTS, TOPOLOGICAL_ORDER, CYCLE
+}
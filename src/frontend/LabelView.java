@@ -0,0 +1,275 @@
+package frontend;
+
+import java.awt.Rectangle;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.swing.JTextField;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
+import javax.swing.text.BadLocationException;
+
+import backend.DiagramObjectView;
+import backend.Edge;
+import backend.Node;
+
+/**
+ * Shows the name of a node, or the label of an edge, on a DrawingPanel.  The text is shown as html (subscripts and
+ * greek characters), stamped by the panel's shared renderer, and while it is being edited a text field from the panel's
+ * pool is laid over it.  Whatever is typed is set on the node or edge, and text set on the node or edge is shown here,
+ * so the model never needs to know about Swing.
+ *
+ * A view holds no components of its own: a diagram of any size has one renderer, and a text field only for each view
+ * that is being edited and is inside the viewport (see DrawingPanel.layoutViews).  Where the text goes is worked out
+ * when the node or edge moves (see moved()), not when it is painted, along with where the node or edge itself is drawn,
+ * by which the panel finds what to paint.
+ */
+public class LabelView implements DiagramObjectView {
+
+	/*
+	 * _node and _edge are what this shows; exactly one of them is null.
+	 *
+	 * _container is the DrawingPanel this is shown on.
+	 *
+	 * _html is the html version of the text.
+	 *
+	 * _editing is true if and only if the text is being edited.
+	 *
+	 * _area is the text field borrowed from _container while the text is edited on screen, or null.
+	 *
+	 * _bounds is where the text is drawn, and _extent where the node or edge is drawn, text included, as of the last
+	 * layout().
+	 *
+	 * _attached is false while the node or edge is taken off _container (see DrawingPanel.detach).
+	 */
+	private final Node _node;
+	private final Edge _edge;
+	private final DrawingPanel _container;
+	private String _html;
+	private boolean _editing;
+	private JTextField _area;
+	private final Rectangle _bounds = new Rectangle();
+	private final Rectangle _extent = new Rectangle();
+	private boolean _attached = true;
+	private final DocumentListener _typed = new DocumentListener() {
+		public void insertUpdate(DocumentEvent e) {
+			typed();
+		}
+		public void removeUpdate(DocumentEvent e) {
+			typed();
+		}
+		public void changedUpdate(DocumentEvent e) {
+			typed();
+		}
+	};
+
+	//Static constants used to place the label of an edge.
+	private static final int TEXTBOX_HEIGHT = 25;
+	private static final int TEXTBOX_WIDTH = 40;
+
+	/**
+	 * Makes the view of a node; its text is shown, not edited.
+	 * @param container		The DrawingPanel the node is shown on.
+	 * @param node			The node.
+	 */
+	public LabelView(DrawingPanel container, Node node) {
+		_node = node;
+		_edge = null;
+		_container = container;
+		_html = html(node.getText());
+		layout();
+	}
+
+	/**
+	 * Makes the view of an edge; its text is edited if the edge is selected.
+	 * @param container		The DrawingPanel the edge is shown on.
+	 * @param edge			The edge.
+	 */
+	public LabelView(DrawingPanel container, Edge edge) {
+		_node = null;
+		_edge = edge;
+		_container = container;
+		_html = html(edge.getText());
+		layout();
+		setEditing(edge.isSelected());
+		if (_area != null)
+			_area.selectAll();
+	}
+
+	/**
+	 * Sets the text in the text field on the node or edge.
+	 */
+	private void typed() {
+		if (_node != null)
+			_node.setText(_area.getText());
+		else
+			_edge.setText(_area.getText());
+	}
+
+	/**
+	 * Shows text that was set on the node or edge.  Text that came from the field itself is already there.
+	 */
+	public void textChanged(String text) {
+		_html = html(text);
+		if (_area != null && !text.equals(_area.getText()))
+			_area.setText(text);
+	}
+
+	/**
+	 * Moves the text, and where the node or edge is filed on the container, to where it now is.
+	 */
+	public void moved() {
+		layout();
+		if (_attached)
+			_container.viewMoved(this);
+	}
+
+	/**
+	 * Works out where the text goes, and where the node or edge is drawn, from where it now is, and moves the text
+	 * field there.
+	 */
+	public void layout() {
+		if (_node != null) {
+			double hypo = 2*_node.getRadius();
+			double dimension = Math.sqrt(hypo*hypo/2);
+			_bounds.setBounds((int)(_node.getX()-(dimension/2)) + 1, (int)(_node.getY()-6), (int)(dimension), 15);
+		}
+		else {
+			double[] center = _edge.getLabelCenter();
+			_bounds.setBounds((int) center[0] - TEXTBOX_WIDTH / 2, (int) center[1] - TEXTBOX_HEIGHT / 2, TEXTBOX_WIDTH, TEXTBOX_HEIGHT);
+		}
+		_extent.setBounds(_node != null ? DiagramShapes.extent(_node) : DiagramShapes.extent(_edge));
+		_extent.add(_bounds);
+		if (_area != null)
+			_area.setBounds(_node != null ? _bounds.x + 1 : _bounds.x, _bounds.y, _bounds.width, _bounds.height);
+	}
+
+	/**
+	 * Starts or stops editing the text.  A view starts editing on screen, with a text field; it gives the field back
+	 * when it stops, or when it is scrolled out of the viewport.
+	 * @param editing
+	 */
+	public void setEditing(boolean editing) {
+		_editing = editing;
+		_container.editingChanged(this);
+	}
+
+	/**
+	 * @return		True if the text is being edited.
+	 */
+	public boolean isEditing() {
+		return _editing;
+	}
+
+	/**
+	 * @return		True unless the node or edge has been taken off the container.
+	 */
+	boolean isAttached() {
+		return _attached;
+	}
+
+	/**
+	 * @param attached		Whether the node or edge is shown on the container.
+	 */
+	void setAttached(boolean attached) {
+		_attached = attached;
+	}
+
+	/**
+	 * @return		The node this shows the name of, or null if it shows the label of an edge.
+	 */
+	Node getNode() {
+		return _node;
+	}
+
+	/**
+	 * @return		The edge this shows the label of, or null if it shows the name of a node.
+	 */
+	Edge getEdge() {
+		return _edge;
+	}
+
+	/**
+	 * Takes a text field from the container to edit the text in, unless the text is not being edited or already has
+	 * one.
+	 */
+	void show() {
+		if (!_editing || _area != null)
+			return;
+		_area = _container.takeEditor();
+		//The field is filled before it is listened to, so the model does not see it emptied on the way.
+		_area.setText(_node != null ? _node.getText() : _edge.getText());
+		_area.select(0, 0);
+		_area.getDocument().addDocumentListener(_typed);
+		layout();
+	}
+
+	/**
+	 * Gives the text field back to the container, if there is one.
+	 */
+	void hide() {
+		if (_area == null)
+			return;
+		_area.getDocument().removeDocumentListener(_typed);
+		_container.releaseEditor(_area);
+		_area = null;
+	}
+
+	/**
+	 * @return		The text field the text is being edited in, or null if it is not being edited on screen.
+	 */
+	public JTextField getTextField() {
+		return _area;
+	}
+
+	/**
+	 * @return		Where the text is drawn.
+	 */
+	public Rectangle getBounds() {
+		return _bounds;
+	}
+
+	/**
+	 * @return		Where the node or edge is drawn, text included.
+	 */
+	public Rectangle getExtent() {
+		return _extent;
+	}
+
+	/**
+	 * @return		The html version of the text.
+	 */
+	public String getHtml() {
+		return _html;
+	}
+
+	/**
+	 * @param n		A node.
+	 * @return		The view it is shown with, or null if it is not shown on a DrawingPanel.
+	 */
+	public static LabelView of(Node n) {
+		return (LabelView) n.getView();
+	}
+
+	/**
+	 * @param e		An edge.
+	 * @return		The view it is shown with, or null if it is not shown on a DrawingPanel.
+	 */
+	public static LabelView of(Edge e) {
+		return (LabelView) e.getView();
+	}
+
+	/**
+	 * Converts text to the html the label shows.
+	 * @param text
+	 * @return
+	 */
+	private static String html(String text) {
+		try {
+			return HTMLParser.setLabelText(text);
+		} catch (BadLocationException ex) {
+			Logger.getLogger(LabelView.class.getName()).log(Level.SEVERE, null, ex);
+			return text;
+		}
+	}
+}
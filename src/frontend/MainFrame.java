@@ -131,6 +131,13 @@ public class MainFrame extends javax.swing.JFrame {
 	//If we are within 3 pixels of another node, then snap to that node.
 	public static final int SNAP_DIFFERENCE = 7;
 	
+	//Longer inputs are counted modulo COUNT_MODULUS, since the exact count has as many digits as the length.
+	private static final int MAX_EXACT_COUNT_LENGTH = 2000;
+	private static final long COUNT_MODULUS = 1000000007L;
+	
+	//Longest regular expression written out in the text area.
+	private static final int MAX_REGEX_LENGTH = 100000;
+	
 	//Zooming scale
 	private static final int CANVAS_WIDTH = 1024;
 	private static final int CANVAS_HEIGHT = 1024;
@@ -172,6 +179,20 @@ public class MainFrame extends javax.swing.JFrame {
 	private javax.swing.JMenuItem jMenuItemUndo;
 	private javax.swing.JMenuItem jMenuItemSelectAll;
 	private javax.swing.JMenuItem jMenuItemShowTrans;
+	private javax.swing.JMenuItem jMenuItemConvertToDFA;
+	private javax.swing.JMenuItem jMenuItemMinimize;
+	private javax.swing.JCheckBoxMenuItem jMenuItemShowUseless;
+	private javax.swing.JMenuItem jMenuItemTrim;
+	private javax.swing.JMenu jMenuGraphOverlay;
+	private EnumMap<GraphOverlay, javax.swing.JRadioButtonMenuItem> _overlayItems;
+	private javax.swing.JMenuItem jMenuItemCompare;
+	private javax.swing.JMenuItem jMenuItemProduct;
+	private javax.swing.JMenuItem jMenuItemShortestAccepted;
+	private javax.swing.JMenuItem jMenuItemShortestRejected;
+	private javax.swing.JMenuItem jMenuItemShortestToNode;
+	private javax.swing.JMenuItem jMenuItemCount;
+	private javax.swing.JMenuItem jMenuItemImportRegex;
+	private javax.swing.JMenuItem jMenuItemToRegex;
 	private javax.swing.JMenuItem jMenuItemAbout;
 	private javax.swing.JMenuItem jMenuItemSetDefaultEdge;
 	private javax.swing.JMenuItem jMenuItemSetDefaultNode;
@@ -252,6 +273,20 @@ public class MainFrame extends javax.swing.JFrame {
 		jMenuItemRedo = new javax.swing.JMenuItem();
 		jMenuItemSelectAll = new javax.swing.JMenuItem();
 		jMenuItemShowTrans = new javax.swing.JMenuItem();
+		jMenuItemConvertToDFA = new javax.swing.JMenuItem();
+		jMenuItemMinimize = new javax.swing.JMenuItem();
+		jMenuItemShowUseless = new javax.swing.JCheckBoxMenuItem();
+		jMenuItemTrim = new javax.swing.JMenuItem();
+		jMenuGraphOverlay = new javax.swing.JMenu();
+		_overlayItems = new EnumMap<GraphOverlay, javax.swing.JRadioButtonMenuItem>(GraphOverlay.class);
+		jMenuItemCompare = new javax.swing.JMenuItem();
+		jMenuItemProduct = new javax.swing.JMenuItem();
+		jMenuItemShortestAccepted = new javax.swing.JMenuItem();
+		jMenuItemShortestRejected = new javax.swing.JMenuItem();
+		jMenuItemShortestToNode = new javax.swing.JMenuItem();
+		jMenuItemCount = new javax.swing.JMenuItem();
+		jMenuItemImportRegex = new javax.swing.JMenuItem();
+		jMenuItemToRegex = new javax.swing.JMenuItem();
 		jMenuItemAbout = new javax.swing.JMenuItem();
 		jMenuTools = new javax.swing.JMenu();
 		jMenuHelp = new javax.swing.JMenu();
@@ -302,6 +337,8 @@ public class MainFrame extends javax.swing.JFrame {
 				if (((JTabbedPane)evt.getSource()).getSelectedComponent() != null) {
 					jScrollPane1 = (JScrollPane)((JTabbedPane)evt.getSource()).getSelectedComponent();
 					drawingPanel1 = (DrawingPanel)jScrollPane1.getViewport().getView();
+					jMenuItemShowUseless.setSelected(drawingPanel1.isShowingUseless());
+					_overlayItems.get(drawingPanel1.getOverlay()).setSelected(true);
 				}
 			}
 		});
@@ -702,6 +739,131 @@ public class MainFrame extends javax.swing.JFrame {
 			}	
 		});
 		
+		jMenuItemConvertToDFA.setText("Convert to DFA");
+		jMenuTools.add(jMenuItemConvertToDFA);
+		jMenuItemConvertToDFA.addActionListener(new ActionListener(){
+			@Override
+			public void actionPerformed(ActionEvent e) {
+				convertToDFAActionPerformed(e);
+			}	
+		});
+		
+		jMenuItemMinimize.setText("Minimize DFA");
+		jMenuTools.add(jMenuItemMinimize);
+		jMenuItemMinimize.addActionListener(new ActionListener(){
+			@Override
+			public void actionPerformed(ActionEvent e) {
+				minimizeActionPerformed(e);
+			}	
+		});
+		
+		jMenuItemShowUseless.setText("Highlight Unreachable and Dead Nodes");
+		jMenuTools.add(jMenuItemShowUseless);
+		jMenuItemShowUseless.addActionListener(new ActionListener(){
+			@Override
+			public void actionPerformed(ActionEvent e) {
+				showUselessActionPerformed(e);
+			}	
+		});
+		
+		jMenuItemTrim.setText("Trim Unreachable and Dead Nodes");
+		jMenuTools.add(jMenuItemTrim);
+		jMenuItemTrim.addActionListener(new ActionListener(){
+			@Override
+			public void actionPerformed(ActionEvent e) {
+				trimActionPerformed(e);
+			}	
+		});
+		
+		jMenuGraphOverlay.setText("Graph Overlay");
+		jMenuTools.add(jMenuGraphOverlay);
+		ButtonGroup overlayGroup = new ButtonGroup();
+		String[] overlayNames = {"None", "Connected Components", "Strongly Connected Components", "Topological Order", "Cycle"};
+		for (final GraphOverlay overlay : GraphOverlay.values()) {
+			JRadioButtonMenuItem item = new JRadioButtonMenuItem(overlayNames[overlay.ordinal()], overlay == GraphOverlay.NONE);
+			overlayGroup.add(item);
+			jMenuGraphOverlay.add(item);
+			_overlayItems.put(overlay, item);
+			item.addActionListener(new ActionListener(){
+				@Override
+				public void actionPerformed(ActionEvent e) {
+					overlayActionPerformed(overlay);
+				}	
+			});
+		}
+		
+		jMenuItemCompare.setText("Compare With Another Tab...");
+		jMenuTools.add(jMenuItemCompare);
+		jMenuItemCompare.addActionListener(new ActionListener(){
+			@Override
+			public void actionPerformed(ActionEvent e) {
+				compareActionPerformed(e);
+			}	
+		});
+		
+		jMenuItemProduct.setText("Combine With Another Tab...");
+		jMenuTools.add(jMenuItemProduct);
+		jMenuItemProduct.addActionListener(new ActionListener(){
+			@Override
+			public void actionPerformed(ActionEvent e) {
+				productActionPerformed(e);
+			}	
+		});
+		
+		jMenuItemShortestAccepted.setText("Simulate Shortest Accepted Input");
+		jMenuTools.add(jMenuItemShortestAccepted);
+		jMenuItemShortestAccepted.addActionListener(new ActionListener(){
+			@Override
+			public void actionPerformed(ActionEvent e) {
+				witnessActionPerformed(e);
+			}	
+		});
+		
+		jMenuItemShortestRejected.setText("Simulate Shortest Rejected Input");
+		jMenuTools.add(jMenuItemShortestRejected);
+		jMenuItemShortestRejected.addActionListener(new ActionListener(){
+			@Override
+			public void actionPerformed(ActionEvent e) {
+				witnessActionPerformed(e);
+			}	
+		});
+		
+		jMenuItemShortestToNode.setText("Simulate Shortest Input to Selected Node");
+		jMenuTools.add(jMenuItemShortestToNode);
+		jMenuItemShortestToNode.addActionListener(new ActionListener(){
+			@Override
+			public void actionPerformed(ActionEvent e) {
+				witnessActionPerformed(e);
+			}	
+		});
+		
+		jMenuItemCount.setText("Count Accepted Inputs of Length...");
+		jMenuTools.add(jMenuItemCount);
+		jMenuItemCount.addActionListener(new ActionListener(){
+			@Override
+			public void actionPerformed(ActionEvent e) {
+				countActionPerformed(e);
+			}	
+		});
+		
+		jMenuItemImportRegex.setText("Import Regular Expression...");
+		jMenuTools.add(jMenuItemImportRegex);
+		jMenuItemImportRegex.addActionListener(new ActionListener(){
+			@Override
+			public void actionPerformed(ActionEvent e) {
+				importRegexActionPerformed(e);
+			}	
+		});
+		
+		jMenuItemToRegex.setText("Convert to Regular Expression");
+		jMenuTools.add(jMenuItemToRegex);
+		jMenuItemToRegex.addActionListener(new ActionListener(){
+			@Override
+			public void actionPerformed(ActionEvent e) {
+				toRegexActionPerformed(e);
+			}	
+		});
+		
 		jMenuTools.addSeparator();
 		jMenuItemSetDefaultEdge.setText("Set Default Edge Text");
 		jMenuTools.add(jMenuItemSetDefaultEdge);
@@ -908,7 +1070,8 @@ public class MainFrame extends javax.swing.JFrame {
 			}
 			try {
 				newTabActionPerformed(null, null);
-				Diagram diagram = DiagramProject.readDiagram(file, drawingPanel1);
+				Diagram diagram = DiagramProject.readDiagram(file);
+				drawingPanel1.attachAll(diagram);
 				DiagramProject project = DiagramProject.openProject(file.getPath(), diagram);
 				drawingPanel1.setDiagramProject(project);
 				drawingPanel1.getDiagram().setDrawingPanel(drawingPanel1, this);
@@ -1028,7 +1191,7 @@ public class MainFrame extends javax.swing.JFrame {
 			        }
 				}
 			}
-			Export.writeImage(drawingPanel1, file);
+			drawingPanel1.writeImage(file);
 		}
 	}
 	
@@ -1070,10 +1233,12 @@ public class MainFrame extends javax.swing.JFrame {
 	 */
 	private void showTransitionActionPerformed(java.awt.event.ActionEvent evt) {
 		StringBuilder builder = new StringBuilder();
-		for (Node node : drawingPanel1.getDiagram().getNodes()){
-			for (Edge edge : node.getConnected()){
-				if (edge.getStartNode() == node && edge.getDirection() == EdgeDirection.SINGLE){
-					builder.append("<"+ node.getName() + ", edge labeled: " + edge.getTextField().getText() + " -> " + edge.getEndNode().getName() +  ">\n");
+		DiagramGraph graph = drawingPanel1.getDiagram().graph();
+		for (int v = 0; v < graph.getNodeCount(); v ++){
+			for (int j = graph.getOutStart(v); j < graph.getOutEnd(v); j ++){
+				int e = graph.getOutEdge(j);
+				if (graph.getDirection(e) == EdgeDirection.SINGLE){
+					builder.append("<"+ graph.getNode(v).getName() + ", edge labeled: " + graph.getLabel(e) + " -> " + graph.getNode(graph.getTarget(e)).getName() +  ">\n");
 				}
 			}
 		}
@@ -1085,6 +1250,353 @@ public class MainFrame extends javax.swing.JFrame {
 		JOptionPane.INFORMATION_MESSAGE, null, opts, opts[0]);
 	}
 	
+	/**
+	 * Called when "Convert to DFA" is clicked.  Opens the DFSM of the current FSM in a new tab, or
+	 * shows why it cannot be built.
+	 */
+	private void convertToDFAActionPerformed(java.awt.event.ActionEvent evt) {
+		//If there are no tabs open, return.
+		if (drawingPanel1 == null)
+			return;
+		
+		try {
+			Diagram dfa = drawingPanel1.getDiagram().determinize();
+			openGeneratedDiagram(dfa, jTabbedPane1.getTitleAt(jTabbedPane1.getSelectedIndex()) + " (DFA)");
+		} catch (InvalidDFSMException ex) {
+			jTextArea1.setText(ex.getMessage());
+		}
+	}
+	
+	/**
+	 * Called when "Minimize DFA" is clicked.  Opens the minimized form of the current DFSM in a new
+	 * tab, or shows why it cannot be built.
+	 */
+	private void minimizeActionPerformed(java.awt.event.ActionEvent evt) {
+		//If there are no tabs open, return.
+		if (drawingPanel1 == null)
+			return;
+		
+		try {
+			Diagram minimized = drawingPanel1.getDiagram().minimize().getDiagram();
+			openGeneratedDiagram(minimized, jTabbedPane1.getTitleAt(jTabbedPane1.getSelectedIndex()) + " (minimized)");
+		} catch (InvalidDFSMException ex) {
+			jTextArea1.setText(ex.getMessage());
+		}
+	}
+	
+	/**
+	 * Called when "Highlight Unreachable and Dead Nodes" is clicked.  Turns the highlighting on or
+	 * off for the current tab.
+	 */
+	private void showUselessActionPerformed(java.awt.event.ActionEvent evt) {
+		//If there are no tabs open, return.
+		if (drawingPanel1 == null)
+			return;
+		drawingPanel1.setShowUseless(jMenuItemShowUseless.isSelected());
+	}
+	
+	/**
+	 * Called when "Trim Unreachable and Dead Nodes" is clicked.  Removes the nodes no start node
+	 * reaches and the nodes that reach no accept node, with their edges, as one undoable step.
+	 */
+	private void trimActionPerformed(java.awt.event.ActionEvent evt) {
+		//If there are no tabs open, return.
+		if (drawingPanel1 == null)
+			return;
+		
+		Diagram diagram = drawingPanel1.getDiagram();
+		if (diagram.analyzeReachability().getUseless().isEmpty()) {
+			jTextArea1.setText("There are no unreachable or dead nodes to trim.\n");
+			return;
+		}
+		drawingPanel1.getDiagramProject().pushCurrentOntoHistory("Trimmed Nodes");
+		setStar();
+		int nodes = 0;
+		for (DiagramObject removed : diagram.trim()) {
+			if (removed instanceof Node) {
+				drawingPanel1.detach((Node) removed);
+				nodes ++;
+			}
+			else {
+				drawingPanel1.detach((Edge) removed);
+			}
+		}
+		resetSelected();
+		jTextArea1.setText("Removed " + nodes + " unreachable or dead node" + (nodes == 1 ? "" : "s") + ".\n");
+		drawingPanel1.repaint();
+	}
+	
+	/**
+	 * Called when "Compare With Another Tab..." is clicked.  Asks for another tab and checks whether
+	 * its DFSM accepts the same language as the current one.  If not, a shortest input that tells
+	 * them apart is put in the input field, ready to be simulated.
+	 */
+	private void compareActionPerformed(java.awt.event.ActionEvent evt) {
+		//If there are no tabs open, return.
+		if (drawingPanel1 == null)
+			return;
+		
+		int tab = chooseOtherTab("Compare with:", "Compare FSMs");
+		if (tab < 0)
+			return;
+		Diagram other = ((DrawingPanel)((JScrollPane)jTabbedPane1.getComponentAt(tab)).getViewport().getView()).getDiagram();
+		
+		try {
+			String witness = drawingPanel1.getDiagram().distinguish(other);
+			if (witness == null)
+				jTextArea1.setText("The FSMs accept the same language.\n");
+			else {
+				loadInput(witness);
+				jTextArea1.setText("The FSMs do not accept the same language.  " + (witness.length() == 0 ? "The empty string" : "\"" + witness + "\"")
+						+ " is accepted by only one of them; it is in the input field.\n");
+			}
+		} catch (InvalidDFSMException ex) {
+			jTextArea1.setText(ex.getMessage());
+		}
+	}
+	
+	/**
+	 * Called when "Combine With Another Tab..." is clicked.  Asks for another tab and an operation,
+	 * and opens the product of the two DFSMs in a new tab.
+	 */
+	private void productActionPerformed(java.awt.event.ActionEvent evt) {
+		//If there are no tabs open, return.
+		if (drawingPanel1 == null)
+			return;
+		
+		int tab = chooseOtherTab("Combine with:", "Combine FSMs");
+		if (tab < 0)
+			return;
+		Diagram other = ((DrawingPanel)((JScrollPane)jTabbedPane1.getComponentAt(tab)).getViewport().getView()).getDiagram();
+		String[] operations = {"Intersection", "Union", "Difference"};
+		Object chosen = JOptionPane.showInputDialog(this, "Build the:", "Combine FSMs", JOptionPane.QUESTION_MESSAGE,
+				null, operations, operations[0]);
+		if (chosen == null)
+			return;
+		ProductOperation operation = ProductOperation.values()[Arrays.asList(operations).indexOf(chosen)];
+		
+		try {
+			String title = jTabbedPane1.getTitleAt(jTabbedPane1.getSelectedIndex()) + " " + chosen.toString().toLowerCase()
+					+ " " + jTabbedPane1.getTitleAt(tab);
+			openGeneratedDiagram(drawingPanel1.getDiagram().product(other, operation), title);
+		} catch (InvalidDFSMException ex) {
+			jTextArea1.setText(ex.getMessage());
+		}
+	}
+	
+	/**
+	 * Called when one of the "Simulate Shortest ..." items is clicked.  Finds the shortest input of
+	 * that kind, puts it in the input field and plays its simulation.
+	 */
+	private void witnessActionPerformed(java.awt.event.ActionEvent evt) {
+		//If there are no tabs open, return.
+		if (drawingPanel1 == null)
+			return;
+		
+		String witness;
+		String missing;
+		try {
+			Witnesses witnesses = drawingPanel1.getDiagram().findWitnesses();
+			if (evt.getSource() == jMenuItemShortestAccepted) {
+				witness = witnesses.getShortestAccepted();
+				missing = "The FSM accepts no input.\n";
+			}
+			else if (evt.getSource() == jMenuItemShortestRejected) {
+				witness = witnesses.getShortestRejected();
+				missing = "The FSM accepts every input over its alphabet.\n";
+			}
+			else {
+				if (_nodesSelected.size() != 1) {
+					jTextArea1.setText("Select exactly one node first.\n");
+					return;
+				}
+				witness = witnesses.getShortestPath(_nodesSelected.iterator().next());
+				missing = "No input reaches the selected node.\n";
+			}
+		} catch (InvalidDFSMException ex) {
+			jTextArea1.setText(ex.getMessage());
+			return;
+		}
+		if (witness == null) {
+			jTextArea1.setText(missing);
+			return;
+		}
+		loadInput(witness);
+		_playPauseBtnActionPerformed(evt);
+	}
+	
+	/**
+	 * Called when "Count Accepted Inputs of Length..." is clicked.  Asks for a length and shows how
+	 * many inputs of that length the DFSM accepts: exactly if the length is at most
+	 * MAX_EXACT_COUNT_LENGTH, and modulo COUNT_MODULUS otherwise.
+	 */
+	private void countActionPerformed(java.awt.event.ActionEvent evt) {
+		//If there are no tabs open, return.
+		if (drawingPanel1 == null)
+			return;
+		
+		String answer = JOptionPane.showInputDialog(this, "Length of the inputs:", "Count Accepted Inputs", JOptionPane.QUESTION_MESSAGE);
+		if (answer == null)
+			return;
+		long length;
+		try {
+			length = Long.parseLong(answer.trim());
+		} catch (NumberFormatException ex) {
+			length = -1;
+		}
+		if (length < 0) {
+			jTextArea1.setText("The length must be a whole number, at least 0.\n");
+			return;
+		}
+		try {
+			Diagram diagram = drawingPanel1.getDiagram();
+			if (length <= MAX_EXACT_COUNT_LENGTH)
+				jTextArea1.setText("The FSM accepts " + diagram.countAccepted((int) length) + " inputs of length " + length + ".\n");
+			else
+				jTextArea1.setText("The FSM accepts " + diagram.countAccepted(length, COUNT_MODULUS) + " (mod " + COUNT_MODULUS
+						+ ") inputs of length " + length + ".\n");
+		} catch (InvalidDFSMException ex) {
+			jTextArea1.setText(ex.getMessage());
+		}
+	}
+	
+	/**
+	 * Called when an item of "Graph Overlay" is clicked.  Colours the nodes of the current tab by
+	 * the chosen analysis and sums it up in the text area.
+	 * @param overlay	The overlay chosen.
+	 */
+	private void overlayActionPerformed(GraphOverlay overlay) {
+		//If there are no tabs open, return.
+		if (drawingPanel1 == null)
+			return;
+		
+		drawingPanel1.setOverlay(overlay);
+		GraphAnalysis analysis = drawingPanel1.getDiagram().analyzeGraph();
+		switch (overlay) {
+		case COMPONENTS:
+			jTextArea1.setText("The graph has " + analysis.getComponentCount() + " connected components.\n");
+			break;
+		case STRONG_COMPONENTS:
+			jTextArea1.setText("The graph has " + analysis.getStrongComponentCount() + " strongly connected components.\n");
+			break;
+		case TOPOLOGICAL_ORDER:
+			if (analysis.getTopologicalOrder() == null)
+				jTextArea1.setText("There is no topological order: the graph has a cycle, or an edge that goes both ways.\n");
+			else
+				jTextArea1.setText("The nodes are shaded from blue to red in topological order.\n");
+			break;
+		case CYCLE:
+			if (analysis.getCycle() == null)
+				jTextArea1.setText("The graph has no cycle.\n");
+			else
+				jTextArea1.setText("Found a cycle through " + analysis.getCycle().size() + " nodes.\n");
+			break;
+		default:
+			break;
+		}
+	}
+	
+	/**
+	 * Called when "Import Regular Expression..." is clicked.  Asks for an expression and opens its
+	 * FSM in a new tab: either the Thompson NFA or, if the user asks for it, the minimal DFSM.
+	 */
+	private void importRegexActionPerformed(java.awt.event.ActionEvent evt) {
+		String regex = JOptionPane.showInputDialog(this, "Regular expression (| * + ? ( ) [a-z] and \\ to escape):",
+				"Import Regular Expression", JOptionPane.QUESTION_MESSAGE);
+		if (regex == null)
+			return;
+		int answer = JOptionPane.showConfirmDialog(this, "Determinize and minimize the FSM?", "Import Regular Expression",
+				JOptionPane.YES_NO_CANCEL_OPTION);
+		if (answer != JOptionPane.YES_OPTION && answer != JOptionPane.NO_OPTION)
+			return;
+		try {
+			Diagram diagram = Diagram.fromRegex(regex, answer == JOptionPane.YES_OPTION);
+			openGeneratedDiagram(diagram, regex);
+		} catch (java.util.regex.PatternSyntaxException ex) {
+			jTextArea1.setText(ex.getMessage() + "\n");
+		} catch (InvalidDFSMException ex) {
+			jTextArea1.setText(ex.getMessage());
+		}
+	}
+	
+	/**
+	 * Called when "Convert to Regular Expression" is clicked.  Shows a regular expression for the
+	 * current DFSM, unless it is too long to show.
+	 */
+	private void toRegexActionPerformed(java.awt.event.ActionEvent evt) {
+		//If there are no tabs open, return.
+		if (drawingPanel1 == null)
+			return;
+		
+		try {
+			RegularExpression regex = drawingPanel1.getDiagram().toRegex();
+			if (regex == null)
+				jTextArea1.setText("The FSM accepts no input, so there is no expression for it.\n");
+			else if (regex.length() > MAX_REGEX_LENGTH)
+				jTextArea1.setText("The expression has " + regex.length() + " characters, too many to show.\n");
+			else
+				jTextArea1.setText(regex + "\n");
+		} catch (InvalidDFSMException ex) {
+			jTextArea1.setText(ex.getMessage());
+		}
+	}
+	
+	/**
+	 * Asks the user to pick one of the other open tabs.
+	 * @param message	The question to ask.
+	 * @param title		The title of the dialog.
+	 * @return			The index of the chosen tab, or -1 if there is none or the user cancelled.
+	 */
+	private int chooseOtherTab(String message, String title) {
+		int current = jTabbedPane1.getSelectedIndex();
+		List<String> titles = new ArrayList<String>();
+		List<Integer> tabs = new ArrayList<Integer>();
+		for (int i = 0; i < jTabbedPane1.getTabCount(); i ++) {
+			if (i != current) {
+				titles.add(jTabbedPane1.getTitleAt(i));
+				tabs.add(i);
+			}
+		}
+		if (titles.isEmpty()) {
+			jTextArea1.setText("Open another tab to use with this FSM.\n");
+			return -1;
+		}
+		Object chosen = JOptionPane.showInputDialog(this, message, title, JOptionPane.QUESTION_MESSAGE,
+				null, titles.toArray(), titles.get(0));
+		return chosen == null ? -1 : tabs.get(titles.indexOf(chosen));
+	}
+	
+	/**
+	 * Stops any simulation that is running and puts the given string in the input field.
+	 * @param input		The new input string.
+	 */
+	private void loadInput(String input) {
+		_sim = null;
+		_iter = null;
+		_simTimer.stop();
+		_playPauseBtn.setIcon(new ImageIcon(PLAY_FILEPATH));
+		drawingPanel1.clearCurrent();
+		jTextField1.setText(input);
+		jTextField1.setFont(new Font(jTextField1.getFont().getName(),Font.PLAIN,jTextField1.getFont().getSize()));
+		drawingPanel1.repaint();
+	}
+	
+	/**
+	 * Opens a diagram that was built by the backend (and so has no drawing panel yet) in a new,
+	 * unsaved tab.
+	 * @param diagram		The diagram.
+	 * @param title			The title of the tab.
+	 */
+	private void openGeneratedDiagram(Diagram diagram, String title) {
+		newTabActionPerformed(null, null);
+		drawingPanel1.attachAll(diagram);
+		DiagramProject project = DiagramProject.openProject(null, diagram);
+		drawingPanel1.setDiagramProject(project);
+		drawingPanel1.getDiagram().setDrawingPanel(drawingPanel1, this);
+		jTabbedPane1.setTitleAt(jTabbedPane1.getSelectedIndex(), title);
+		drawingPanel1.repaint();
+	}
+	
 	/**
 	 * This gets called when the mouse is pressed inside the simulation
 	 * text field.  Sets the text to be empty if the text is the
@@ -1211,8 +1723,17 @@ public class MainFrame extends javax.swing.JFrame {
 		//If simulation is not currently running, try starting it up.
 		if (_sim == null) {
 			//If the FSM is invalid, catch the error, display the message, and return.
+			//A diagram that is not a DFSM but can be run as an NFA is played back one set of
+			//nodes at a time.
 			try {
-				_sim = drawingPanel1.getDiagram().deterministicSimulation(jTextField1.getText());
+				Diagram diagram = drawingPanel1.getDiagram();
+				if (diagram.isValidDFSM() || !diagram.isValidNFA())
+					_sim = diagram.deterministicSimulation(jTextField1.getText());
+				else {
+					_sim = new ArrayList<DiagramObject>();
+					for (Set<DiagramObject> step : diagram.nondeterministicSimulation(jTextField1.getText()))
+						_sim.add(new NondeterministicStep(step));
+				}
 			} catch (InvalidDFSMException ex) {
 				_playPauseBtn.setIcon(new ImageIcon(PLAY_FILEPATH));
 				jTextArea1.setText(ex.getMessage());
@@ -1287,7 +1808,7 @@ public class MainFrame extends javax.swing.JFrame {
 				if (!_iter.hasNext()) {
 					_playPauseBtn.setIcon(new ImageIcon(PLAY_FILEPATH));
 					jTextArea1.setText(jTextArea1.getText() + ("FINISHED: Ended at " + e.getName() + ".\n"));
-					if (((Node)e).isEnd())
+					if (e instanceof NondeterministicStep ? ((NondeterministicStep)e).isAccepting() : ((Node)e).isEnd())
 						jTextArea1.setText(jTextArea1.getText() + ("FSM Accepted the input string.\n"));
 					else
 						jTextArea1.setText(jTextArea1.getText() + ("FSM Rejected the input string."));
@@ -1576,6 +2097,50 @@ public class MainFrame extends javax.swing.JFrame {
 		}
 	}
 	
+	/**
+	 * One step of the playback of an NFA simulation: the set of nodes the FSM can be in.  Making it
+	 * current highlights all of them.
+	 */
+	private static class NondeterministicStep implements DiagramObject {
+		private final Set<DiagramObject> _nodes;
+		private boolean _current;
+		
+		public NondeterministicStep(Set<DiagramObject> nodes) {
+			_nodes = nodes;
+		}
+		
+		public void setCurrent(boolean val) {
+			_current = val;
+			for (DiagramObject d : _nodes)
+				d.setCurrent(val);
+		}
+		
+		public boolean getCurrent() {
+			return _current;
+		}
+		
+		public String getName() {
+			StringBuilder name = new StringBuilder("Nodes: {");
+			for (DiagramObject d : _nodes) {
+				if (name.length() > 8)
+					name.append(", ");
+				name.append(((Node)d).getText());
+			}
+			return name.append("}").toString();
+		}
+		
+		/**
+		 * @return		True if one of the nodes is an accept node.
+		 */
+		public boolean isAccepting() {
+			for (DiagramObject d : _nodes) {
+				if (((Node)d).isEnd())
+					return true;
+			}
+			return false;
+		}
+	}
+	
 	/**
 	 * Helper used in stepping forward/backward to alert user we are back to the start.
 	 */
@@ -1722,8 +2287,10 @@ public class MainFrame extends javax.swing.JFrame {
 	
 	public void deselectAllEdgeText() {
 		if (_edgesSelected != null) {
-			for (Edge e : _edgesSelected)
-				e.getTextField().select(0, 0);
+			for (Edge e : _edgesSelected) {
+				if (LabelView.of(e).getTextField() != null)
+					LabelView.of(e).getTextField().select(0, 0);
+			}
 		}
 	}
 	
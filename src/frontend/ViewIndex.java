@@ -0,0 +1,100 @@
+package frontend;
+
+import java.awt.Rectangle;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+
+/**
+ * The views of the nodes and edges shown on a DrawingPanel, filed by where they are drawn in a grid of square cells,
+ * so that a repaint finds what is inside its clip by looking only at the cells the clip covers.  A view is filed
+ * under every cell its extent (see LabelView.getExtent()) touches, as it was when the view was last filed; the panel
+ * files it again whenever its node or edge moves (see LabelView.moved()).
+ */
+class ViewIndex {
+
+	/** The cells are 2^CELL_SHIFT pixels square. */
+	private static final int CELL_SHIFT = 8;
+
+	/** The views filed under each cell, by cell (see key()). */
+	private final HashMap<Long, ArrayList<LabelView>> _cells = new HashMap<Long, ArrayList<LabelView>>();
+
+	/** The extent each view was filed with. */
+	private final HashMap<LabelView, Rectangle> _filed = new HashMap<LabelView, Rectangle>();
+
+	/**
+	 * Files a view under its current extent, taking it out from under the old one if it was filed already.
+	 * @param view
+	 */
+	void add(LabelView view) {
+		remove(view);
+		Rectangle extent = new Rectangle(view.getExtent());
+		_filed.put(view, extent);
+		for (int x = extent.x >> CELL_SHIFT; x <= right(extent) >> CELL_SHIFT; x ++) {
+			for (int y = extent.y >> CELL_SHIFT; y <= bottom(extent) >> CELL_SHIFT; y ++) {
+				ArrayList<LabelView> cell = _cells.get(key(x, y));
+				if (cell == null)
+					_cells.put(key(x, y), cell = new ArrayList<LabelView>(4));
+				cell.add(view);
+			}
+		}
+	}
+
+	/**
+	 * Takes a view out of the index, if it is in it.
+	 * @param view
+	 */
+	void remove(LabelView view) {
+		Rectangle extent = _filed.remove(view);
+		if (extent == null)
+			return;
+		for (int x = extent.x >> CELL_SHIFT; x <= right(extent) >> CELL_SHIFT; x ++) {
+			for (int y = extent.y >> CELL_SHIFT; y <= bottom(extent) >> CELL_SHIFT; y ++) {
+				ArrayList<LabelView> cell = _cells.get(key(x, y));
+				cell.remove(view);
+				if (cell.isEmpty())
+					_cells.remove(key(x, y));
+			}
+		}
+	}
+
+	/**
+	 * Adds the views whose extents intersect an area to a collection.  A view filed under several of the cells is
+	 * only added from the first of them the area covers, so it is added once.
+	 * @param area		The area, or null for all of the views.
+	 * @param found		Where to add them.
+	 */
+	void find(Rectangle area, Collection<LabelView> found) {
+		if (area == null) {
+			found.addAll(_filed.keySet());
+			return;
+		}
+		int left = area.x >> CELL_SHIFT;
+		int top = area.y >> CELL_SHIFT;
+		for (int x = left; x <= right(area) >> CELL_SHIFT; x ++) {
+			for (int y = top; y <= bottom(area) >> CELL_SHIFT; y ++) {
+				ArrayList<LabelView> cell = _cells.get(key(x, y));
+				if (cell == null)
+					continue;
+				for (LabelView view : cell) {
+					Rectangle extent = _filed.get(view);
+					if (Math.max(extent.x >> CELL_SHIFT, left) == x && Math.max(extent.y >> CELL_SHIFT, top) == y
+							&& extent.intersects(area))
+						found.add(view);
+				}
+			}
+		}
+	}
+
+	private static int right(Rectangle r) {
+		return r.x + Math.max(r.width, 1) - 1;
+	}
+
+	private static int bottom(Rectangle r) {
+		return r.y + Math.max(r.height, 1) - 1;
+	}
+
+	private static Long key(int x, int y) {
+		return ((long) x << 32) | (y & 0xffffffffL);
+	}
+}
@@ -104,23 +104,10 @@ public class DiagramProject {
 			_undoRedoRevision--;
 			_savedRevision--;
 			Diagram oldDiagram = _history.nextUndo(_diagram);
-			for (Node n : _diagram.getNodes()) {
-				_diagram.getFrame().getDrawing().remove(n.getTextField());
-				_diagram.getFrame().getDrawing().remove(n.getLabel());
-			}
-			for (Edge e : _diagram.getEdges()) {
-				_diagram.getFrame().getDrawing().remove(e.getTextField());
-				_diagram.getFrame().getDrawing().remove(e.getLabel());
-			}
+			DrawingPanel drawing = _diagram.getFrame().getDrawing();
+			drawing.detachAll(_diagram);
 			_diagram = oldDiagram;
-			for (Node n : _diagram.getNodes()) {
-				_diagram.getFrame().getDrawing().add(n.getTextField());
-				_diagram.getFrame().getDrawing().add(n.getLabel());
-			}
-			for (Edge e : _diagram.getEdges()) {
-				_diagram.getFrame().getDrawing().add(e.getTextField());
-				_diagram.getFrame().getDrawing().add(e.getLabel());
-			}
+			drawing.attachAll(_diagram);
 			return true;
 		}
 		return false;
@@ -135,23 +122,10 @@ public class DiagramProject {
 			_undoRedoRevision++;
 			_savedRevision++;
 			Diagram newDiagram = _history.nextRedo(_diagram);
-			for (Node n : _diagram.getNodes()) {
-				_diagram.getFrame().getDrawing().remove(n.getTextField());
-				_diagram.getFrame().getDrawing().remove(n.getLabel());
-			}
-			for (Edge e : _diagram.getEdges()) {
-				_diagram.getFrame().getDrawing().remove(e.getTextField());
-				_diagram.getFrame().getDrawing().remove(e.getLabel());
-			}
+			DrawingPanel drawing = _diagram.getFrame().getDrawing();
+			drawing.detachAll(_diagram);
 			_diagram = newDiagram;
-			for (Node n : _diagram.getNodes()) {
-				_diagram.getFrame().getDrawing().add(n.getTextField());
-				_diagram.getFrame().getDrawing().add(n.getLabel());
-			}
-			for (Edge e : _diagram.getEdges()) {
-				_diagram.getFrame().getDrawing().add(e.getTextField());
-				_diagram.getFrame().getDrawing().add(e.getLabel());
-			}
+			drawing.attachAll(_diagram);
 			return true;
 		}
 		return false;
@@ -205,10 +179,11 @@ public class DiagramProject {
 	}
 	
 	/** 
-	 * Factory method that loads the saved project from a file. 
+	 * Factory method that loads the saved project from a file.  The diagram is headless; a DrawingPanel
+	 * attaches views to it to show it.
 	 * @throws IOException 
 	 */
-	public static Diagram readDiagram(File file, DrawingPanel panel) throws IOException {
+	public static Diagram readDiagram(File file) throws IOException {
 		
 		// Creates a JSON Reader based on the given reader.
 		JsonReader reader = new JsonReader(new InputStreamReader(new FileInputStream(file)));
@@ -262,12 +237,8 @@ public class DiagramProject {
 				}
 				String label = reader.nextString();
 				
-				// Create node from given data
-				Node node = new Node(x, y, radius, isStart, isAccept, label);
-				node.setContainerAndLabel(panel);
-				
-				// Add the node to the diagram.
-				diagram.addNode(node);
+				// Create node from given data, in the diagram.
+				Node node = diagram.createNode(x, y, radius, isStart, isAccept, label);
 				nodes.add(node);
 				
 				reader.endObject();
@@ -330,7 +301,7 @@ public class DiagramProject {
 					}
 					double angle = reader.nextDouble();
 					
-					edge = new Edge(nodeStart, nodeEnd, edgeDirection, label, angle);
+					edge = diagram.createEdge(nodeStart, nodeEnd, edgeDirection, label, angle);
 					
 				} else {
 					
@@ -344,16 +315,12 @@ public class DiagramProject {
 					}
 					int arcSide = reader.nextInt();
 					
-					edge = new Edge(nodeStart, nodeEnd, edgeDirection, label, arcChordHeight, arcSide);
+					edge = diagram.createEdge(nodeStart, nodeEnd, edgeDirection, label, arcChordHeight, arcSide);
 				}
 				
 				nodeStart.addConnected(edge);
 				nodeEnd.addConnected(edge);
 				
-				// Add the edge to the diagram.
-				edge.setContainerAndArea(panel);
-				diagram.addEdge(edge);
-				
 				reader.endObject();
 			}
 			reader.endArray();
@@ -390,12 +357,12 @@ public class DiagramProject {
 				Integer size = nodeMap.size();
 				nodeMap.put(node, size);
 				writer.beginObject();
-				writer.name("x").value(node.getCenter().getX());
-				writer.name("y").value(node.getCenter().getY());
+				writer.name("x").value(node.getX());
+				writer.name("y").value(node.getY());
 				writer.name("radius").value(node.getRadius());
 				writer.name("is_start").value(node.isStart());
 				writer.name("is_accept").value(node.isEnd());
-				writer.name("label").value(node.getTextField().getText());
+				writer.name("label").value(node.getText());
 				writer.endObject();
 			}
 			writer.endArray();
@@ -415,7 +382,7 @@ public class DiagramProject {
 					writer.name("edge_direction").value("NONE");
 				else
 					throw new IOException("Diagram contains invalid direction.");
-				writer.name("label").value(edge.getTextField().getText());
+				writer.name("label").value(edge.getText());
 				if(edge.getStartNode() == edge.getEndNode()) {
 					writer.name("angle").value(edge.getAngle());
 				} else {
@@ -1,14 +1,5 @@
 package manager;
 
-import java.awt.Graphics;
-import java.awt.geom.Point2D;
-import java.awt.image.BufferedImage;
-import java.io.File;
-
-import javax.imageio.ImageIO;
-
-import frontend.DrawingPanel;
-
 import backend.*;
 
 public class Export {
@@ -38,16 +29,19 @@ public class Export {
 		for (Edge e : d.getEdges()) {
 			
 			// Getting center of the arc, and the tips of both ends
-			Point2D.Double arcCenter = new Point2D.Double(e.getArcCenter().getX(), (-1)*e.getArcCenter().getY()); // center of the arc
-			Point2D.Double p = new Point2D.Double(e.getBackward().xpoints[2], (-1)*e.getBackward().ypoints[2]);
-			Point2D.Double q = new Point2D.Double(e.getForward().xpoints[2], (-1)*e.getForward().ypoints[2]);
-			double alpha = Math.atan2(p.getY() - arcCenter.getY(), p.getX() - arcCenter.getX());
-			double beta = Math.atan2(q.getY() - arcCenter.getY(), q.getX() - arcCenter.getX());
+			int[][] forward = e.getForwardPoints();
+			int[][] backward = e.getBackwardPoints();
+			double[] arcCenter = e.getArcCenter(); // center of the arc
+			arcCenter[1] = (-1)*arcCenter[1];
+			double[] p = {backward[0][2], (-1)*backward[1][2]};
+			double[] q = {forward[0][2], (-1)*forward[1][2]};
+			double alpha = Math.atan2(p[1] - arcCenter[1], p[0] - arcCenter[0]);
+			double beta = Math.atan2(q[1] - arcCenter[1], q[0] - arcCenter[0]);
 			if(!e.getTurn() && e.getStartNode() != e.getEndNode()) {
 				double tmp = alpha;
 				alpha = beta;
 				beta = tmp;
-				Point2D.Double t = p;
+				double[] t = p;
 				p = q;
 				q = t;
 			}
@@ -56,8 +50,8 @@ public class Export {
 			boolean isStraight = Math.abs(e.getHeight()) > 5000 && e.getStartNode() != e.getEndNode();
 			
 			// Find the radius of the arc
-			double dx = e.getBackward().xpoints[2] - arcCenter.getX();
-			double dy = (-1)*e.getBackward().ypoints[2] - arcCenter.getY();
+			double dx = backward[0][2] - arcCenter[0];
+			double dy = (-1)*backward[1][2] - arcCenter[1];
 			double radius = Math.sqrt(dx * dx + dy * dy);
 			
 			// Obtain the correct angle
@@ -79,14 +73,14 @@ public class Export {
 			if(isStraight) { // In the case of straight line
 				
 				double[] halfpq = {
-					(q.getX() - p.getX()) / 2,
-					(q.getY() - p.getY()) / 2
+					(q[0] - p[0]) / 2,
+					(q[1] - p[1]) / 2
 				};
 				double halfpqSize = Math.sqrt(halfpq[0] * halfpq[0] + halfpq[1] * halfpq[1]);
 				
 				// Find the exact point of the label
-				midpoint[0] = (e.getTurn() ? -1 : 1) * (halfpq[1]) / halfpqSize * 25 + halfpq[0] + p.getX();
-				midpoint[1] = (e.getTurn() ? 1 : -1) * (halfpq[0]) / halfpqSize * 25 + halfpq[1] + p.getY();
+				midpoint[0] = (e.getTurn() ? -1 : 1) * (halfpq[1]) / halfpqSize * 25 + halfpq[0] + p[0];
+				midpoint[1] = (e.getTurn() ? 1 : -1) * (halfpq[0]) / halfpqSize * 25 + halfpq[1] + p[1];
 			}
 			else { // In the case of the arc
 				
@@ -105,76 +99,65 @@ public class Export {
 				}
 				
 				// Find the midpoint of the arc.
-				midpoint[0] = arcCenter.getX() + (radius + 20) * Math.cos(gamma);
-				midpoint[1] = arcCenter.getY() + (radius + 20) * Math.sin(gamma);
+				midpoint[0] = arcCenter[0] + (radius + 20) * Math.cos(gamma);
+				midpoint[1] = arcCenter[1] + (radius + 20) * Math.sin(gamma);
 			}
 			
 			// Draw line and label
 			if (isStraight) {
-				dataToReturn += "\\draw [black] (" + p.getX()*TEX_SCALE + "," + p.getY()*TEX_SCALE + ") -- ("
-					+ q.getX()*TEX_SCALE + "," + q.getY()*TEX_SCALE + ");\n";
-				dataToReturn += "\\draw (" + midpoint[0]*TEX_SCALE + "," + midpoint[1]*TEX_SCALE + ") node {$" + e.getTextField().getText() + "$};\n";
+				dataToReturn += "\\draw [black] (" + p[0]*TEX_SCALE + "," + p[1]*TEX_SCALE + ") -- ("
+					+ q[0]*TEX_SCALE + "," + q[1]*TEX_SCALE + ");\n";
+				dataToReturn += "\\draw (" + midpoint[0]*TEX_SCALE + "," + midpoint[1]*TEX_SCALE + ") node {$" + e.getText() + "$};\n";
 			}
 			else {
-				dataToReturn += "\\draw [black] (" + p.getX()*TEX_SCALE + "," + p.getY()*TEX_SCALE + ") arc ("
+				dataToReturn += "\\draw [black] (" + p[0]*TEX_SCALE + "," + p[1]*TEX_SCALE + ") arc ("
 					+ alpha*(180/Math.PI) + ":" + beta*(180/Math.PI) + ":" + radius*TEX_SCALE + ");\n";	// Draw label
-				dataToReturn += "\\draw (" + midpoint[0]*TEX_SCALE + "," + midpoint[1]*TEX_SCALE + ") node [" + labelLocation + "] {$" + e.getTextField().getText() + "$};\n";
+				dataToReturn += "\\draw (" + midpoint[0]*TEX_SCALE + "," + midpoint[1]*TEX_SCALE + ") node [" + labelLocation + "] {$" + e.getText() + "$};\n";
 			}
 			
 			// Draw forward head arrow
 			if (e.getDirection() != EdgeDirection.NONE)
-				dataToReturn += "\\fill [black] (" + e.getForward().xpoints[0]*TEX_SCALE + "," + (-1)*e.getForward().ypoints[0]*TEX_SCALE + ") -- ("
-				+ e.getForward().xpoints[1]*TEX_SCALE + "," + (-1)*e.getForward().ypoints[1]*TEX_SCALE + ") -- (" + e.getForward().xpoints[2]*TEX_SCALE + ","
-				+ (-1)*e.getForward().ypoints[2]*TEX_SCALE + ");\n";
+				dataToReturn += "\\fill [black] (" + forward[0][0]*TEX_SCALE + "," + (-1)*forward[1][0]*TEX_SCALE + ") -- ("
+				+ forward[0][1]*TEX_SCALE + "," + (-1)*forward[1][1]*TEX_SCALE + ") -- (" + forward[0][2]*TEX_SCALE + ","
+				+ (-1)*forward[1][2]*TEX_SCALE + ");\n";
 
 			// Draw backward head arrow
 			if (e.getDirection() == EdgeDirection.DOUBLE)
-				dataToReturn += "\\fill [black] (" + e.getBackward().xpoints[0]*TEX_SCALE + "," + (-1)*e.getBackward().ypoints[0]*TEX_SCALE + ") -- ("
-				+ e.getBackward().xpoints[1]*TEX_SCALE + "," + (-1)*e.getBackward().ypoints[1]*TEX_SCALE + ") -- (" + e.getBackward().xpoints[2]*TEX_SCALE + ","
-				+ (-1)*e.getBackward().ypoints[2]*TEX_SCALE + ");\n";
+				dataToReturn += "\\fill [black] (" + backward[0][0]*TEX_SCALE + "," + (-1)*backward[1][0]*TEX_SCALE + ") -- ("
+				+ backward[0][1]*TEX_SCALE + "," + (-1)*backward[1][1]*TEX_SCALE + ") -- (" + backward[0][2]*TEX_SCALE + ","
+				+ (-1)*backward[1][2]*TEX_SCALE + ");\n";
 		
 		}
 		
 		// For each node
 		for (Node n : d.getNodes()) {
-			Point2D.Double center = new Point2D.Double(n.getCenter().getX(), -n.getCenter().getY());
+			double[] center = {n.getX(), -n.getY()};
 			double radius = n.getRadius();
 			double minorRadius = n.getRadius() - SMALLER_RADIUS;
 			
 			// Draw main circle
-			dataToReturn += "\\draw [black] (" + center.getX()*TEX_SCALE + "," + center.getY()*TEX_SCALE + ") circle (" + radius*TEX_SCALE + ");\n";
+			dataToReturn += "\\draw [black] (" + center[0]*TEX_SCALE + "," + center[1]*TEX_SCALE + ") circle (" + radius*TEX_SCALE + ");\n";
 			
 			// Draw smaller circle
 			if(n.isEnd()) {
-				dataToReturn += "\\draw [black] (" + center.getX()*TEX_SCALE + "," + center.getY()*TEX_SCALE + ") circle (" + minorRadius*TEX_SCALE + ");\n";
+				dataToReturn += "\\draw [black] (" + center[0]*TEX_SCALE + "," + center[1]*TEX_SCALE + ") circle (" + minorRadius*TEX_SCALE + ");\n";
 			}
 			
 			// Draw start triangle
 			if(n.isStart()) {
-				dataToReturn += "\\draw (" + n.getStartSymbol().xpoints[0]*TEX_SCALE + "," + (-1)*n.getStartSymbol().ypoints[0]*TEX_SCALE + ") -- ("
-				+ n.getStartSymbol().xpoints[1]*TEX_SCALE + "," + (-1)*n.getStartSymbol().ypoints[1]*TEX_SCALE + ") -- (" + n.getStartSymbol().xpoints[2]*TEX_SCALE + ","
-				+ (-1)*n.getStartSymbol().ypoints[2]*TEX_SCALE + ") -- cycle;\n";
+				int[][] start = n.getStartSymbolPoints();
+				dataToReturn += "\\draw (" + start[0][0]*TEX_SCALE + "," + (-1)*start[1][0]*TEX_SCALE + ") -- ("
+				+ start[0][1]*TEX_SCALE + "," + (-1)*start[1][1]*TEX_SCALE + ") -- (" + start[0][2]*TEX_SCALE + ","
+				+ (-1)*start[1][2]*TEX_SCALE + ") -- cycle;\n";
 			}
 			
 			// Draw label
-			dataToReturn += "\\draw (" + center.getX()*TEX_SCALE + "," + center.getY()*TEX_SCALE + ") node {$" + Export.addBrackets(n.getTextField().getText()) + "$};\n";
+			dataToReturn += "\\draw (" + center[0]*TEX_SCALE + "," + center[1]*TEX_SCALE + ") node {$" + Export.addBrackets(n.getText()) + "$};\n";
 		}
 		
 		return dataToReturn;
 	}
 	
-	public static void writeImage(DrawingPanel toWrite, File file) {
-		BufferedImage bi = new BufferedImage(toWrite.getSize().width, toWrite.getSize().height, BufferedImage.TYPE_INT_ARGB); 
-		Graphics g = bi.createGraphics();
-		toWrite.paint(g);
-		g.dispose();
-		try{
-			ImageIO.write(bi, "png", file);
-		}catch (Exception e) {
-			e.printStackTrace();
-		}
-	}
-
 	public static String addBrackets(String nodeLabel) {
 		String toReturn = "";
 		String[] underscoreSplit = nodeLabel.split("_");
@@ -2,15 +2,56 @@ package testing;
 
 import static org.junit.Assert.*;
 import org.junit.Test;
+import java.awt.Graphics;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+import javax.swing.JTextField;
 
 import manager.DiagramProject;
 import frontend.DrawingPanel;
+import frontend.LabelView;
+import backend.BatchResult;
+import backend.BatchStrategy;
+import backend.CompiledAutomaton;
+import backend.DFSMDiagnostics;
+import backend.DFSMError;
+import backend.DFSMErrorType;
+import backend.DiagramGraph;
 import backend.DiagramObject;
+import backend.DiagramSnapshot;
 import backend.Edge;
 import backend.EdgeDirection;
+import backend.Diagram;
+import backend.GraphAnalysis;
 import backend.InvalidDFSMException;
+import backend.LazyDFA;
+import backend.Minimization;
 import backend.Node;
+import backend.RandomStringGenerator;
+import backend.Reachability;
+import backend.RegexMatcher;
+import backend.RegularExpression;
+import backend.SimulationListener;
+import backend.SimulationResult;
+import backend.Witnesses;
 
 public class DiagramTest {
 
@@ -21,120 +62,120 @@ public class DiagramTest {
 	public DiagramTest() {
 
 		_container = new DrawingPanel(DiagramProject.newProject());
-		n1 = new Node(0,0,_container);
+		n1 = _container.createNode(0, 0);
 		_container.getDiagram().addNode(n1);
 		n1.setStart(true);
-		n2 = new Node(0,0,_container);
+		n2 = _container.createNode(0, 0);
 		_container.getDiagram().addNode(n2);
-		n3 = new Node(0,0,_container);
+		n3 = _container.createNode(0, 0);
 		_container.getDiagram().addNode(n3);
-		n4 = new Node(0,0,_container);
+		n4 = _container.createNode(0, 0);
 		_container.getDiagram().addNode(n4);
-		n5 = new Node(0,0,_container);
+		n5 = _container.createNode(0, 0);
 		_container.getDiagram().addNode(n5);
-		n6 = new Node(0,0,_container);
+		n6 = _container.createNode(0, 0);
 		_container.getDiagram().addNode(n6);
-		n7 = new Node(0,0,_container);
+		n7 = _container.createNode(0, 0);
 		_container.getDiagram().addNode(n7);
-		n8 = new Node(0,0,_container);
+		n8 = _container.createNode(0, 0);
 		_container.getDiagram().addNode(n8);
-		n9 = new Node(0,0,_container);
+		n9 = _container.createNode(0, 0);
 		_container.getDiagram().addNode(n9);
-		n0 = new Node(0,0,_container);
+		n0 = _container.createNode(0, 0);
 		_container.getDiagram().addNode(n0);
 
 
 
-		e1 = new Edge(n1,n2,_container,EdgeDirection.SINGLE);
+		e1 = _container.createEdge(n1, n2, EdgeDirection.SINGLE);
 		_container.getDiagram().addEdge(e1);
-		e1.getTextField().setText("0");
-		e2 = new Edge(n2,n3,_container,EdgeDirection.SINGLE);
+		e1.setText("0");
+		e2 = _container.createEdge(n2, n3, EdgeDirection.SINGLE);
 		_container.getDiagram().addEdge(e2);
-		e2.getTextField().setText("0");
-		e3 = new Edge(n3,n5,_container,EdgeDirection.SINGLE);
+		e2.setText("0");
+		e3 = _container.createEdge(n3, n5, EdgeDirection.SINGLE);
 		_container.getDiagram().addEdge(e3);
-		e3.getTextField().setText("0");
-		e4 = new Edge(n5,n7,_container,EdgeDirection.SINGLE);
+		e3.setText("0");
+		e4 = _container.createEdge(n5, n7, EdgeDirection.SINGLE);
 		_container.getDiagram().addEdge(e4);
-		e4.getTextField().setText("0");
-		e5 = new Edge(n7,n0,_container,EdgeDirection.SINGLE);
+		e4.setText("0");
+		e5 = _container.createEdge(n7, n0, EdgeDirection.SINGLE);
 		_container.getDiagram().addEdge(e5);
-		e5.getTextField().setText("0");
-		e6 = new Edge(n0,n9,_container,EdgeDirection.SINGLE);
+		e5.setText("0");
+		e6 = _container.createEdge(n0, n9, EdgeDirection.SINGLE);
 		_container.getDiagram().addEdge(e6);
-		e6.getTextField().setText("0");
-		e7 = new Edge(n9,n8,_container,EdgeDirection.SINGLE);
+		e6.setText("0");
+		e7 = _container.createEdge(n9, n8, EdgeDirection.SINGLE);
 		_container.getDiagram().addEdge(e7);
-		e7.getTextField().setText("0");
-		e8 = new Edge(n8,n6,_container,EdgeDirection.SINGLE);
+		e7.setText("0");
+		e8 = _container.createEdge(n8, n6, EdgeDirection.SINGLE);
 		_container.getDiagram().addEdge(e8);
-		e8.getTextField().setText("0");
-		e9 = new Edge(n6,n4,_container,EdgeDirection.SINGLE);
+		e8.setText("0");
+		e9 = _container.createEdge(n6, n4, EdgeDirection.SINGLE);
 		_container.getDiagram().addEdge(e9);
-		e9.getTextField().setText("0");
-		e10 = new Edge(n4,n1,_container,EdgeDirection.SINGLE);
+		e9.setText("0");
+		e10 = _container.createEdge(n4, n1, EdgeDirection.SINGLE);
 		_container.getDiagram().addEdge(e10);
-		e10.getTextField().setText("0");
+		e10.setText("0");
 
 
 
-		e11 = new Edge(n1,n3,_container,EdgeDirection.SINGLE);
+		e11 = _container.createEdge(n1, n3, EdgeDirection.SINGLE);
 		_container.getDiagram().addEdge(e11);
-		e11.getTextField().setText("2");
-		e12 = new Edge(n2,n5,_container,EdgeDirection.SINGLE);
+		e11.setText("2");
+		e12 = _container.createEdge(n2, n5, EdgeDirection.SINGLE);
 		_container.getDiagram().addEdge(e12);
-		e12.getTextField().setText("1,2");
-		e13 = new Edge(n3,n7,_container,EdgeDirection.SINGLE);
+		e12.setText("1,2");
+		e13 = _container.createEdge(n3, n7, EdgeDirection.SINGLE);
 		_container.getDiagram().addEdge(e13);
-		e13.getTextField().setText("2");
-		e14 = new Edge(n5,n0,_container,EdgeDirection.SINGLE);
+		e13.setText("2");
+		e14 = _container.createEdge(n5, n0, EdgeDirection.SINGLE);
 		_container.getDiagram().addEdge(e14);
-		e14.getTextField().setText("2");
-		e15 = new Edge(n7,n9,_container,EdgeDirection.SINGLE);
+		e14.setText("2");
+		e15 = _container.createEdge(n7, n9, EdgeDirection.SINGLE);
 		_container.getDiagram().addEdge(e15);
-		e15.getTextField().setText("2");
-		e16 = new Edge(n0,n8,_container,EdgeDirection.SINGLE);
+		e15.setText("2");
+		e16 = _container.createEdge(n0, n8, EdgeDirection.SINGLE);
 		_container.getDiagram().addEdge(e16);
-		e16.getTextField().setText("2");
-		e17 = new Edge(n9,n6,_container,EdgeDirection.SINGLE);
+		e16.setText("2");
+		e17 = _container.createEdge(n9, n6, EdgeDirection.SINGLE);
 		_container.getDiagram().addEdge(e17);
-		e17.getTextField().setText("2");
-		e18 = new Edge(n8,n4,_container,EdgeDirection.SINGLE);
+		e17.setText("2");
+		e18 = _container.createEdge(n8, n4, EdgeDirection.SINGLE);
 		_container.getDiagram().addEdge(e18);
-		e18.getTextField().setText("2");
-		e19 = new Edge(n6,n1,_container,EdgeDirection.SINGLE);
+		e18.setText("2");
+		e19 = _container.createEdge(n6, n1, EdgeDirection.SINGLE);
 		_container.getDiagram().addEdge(e19);
-		e19.getTextField().setText("2");
-		e20 = new Edge(n4,n2,_container,EdgeDirection.SINGLE);
+		e19.setText("2");
+		e20 = _container.createEdge(n4, n2, EdgeDirection.SINGLE);
 		_container.getDiagram().addEdge(e20);
-		e20.getTextField().setText("1,2");
+		e20.setText("1,2");
 
 
 
-		e21 = new Edge(n1,n1,_container,EdgeDirection.SINGLE);
+		e21 = _container.createEdge(n1, n1, EdgeDirection.SINGLE);
 		_container.getDiagram().addEdge(e21);
-		e21.getTextField().setText("1");
-		e22 = new Edge(n3,n3,_container,EdgeDirection.SINGLE);
+		e21.setText("1");
+		e22 = _container.createEdge(n3, n3, EdgeDirection.SINGLE);
 		_container.getDiagram().addEdge(e22);
-		e22.getTextField().setText("1");
-		e23 = new Edge(n0,n0,_container,EdgeDirection.SINGLE);
+		e22.setText("1");
+		e23 = _container.createEdge(n0, n0, EdgeDirection.SINGLE);
 		_container.getDiagram().addEdge(e23);
-		e23.getTextField().setText("1");
-		e24 = new Edge(n8,n8,_container,EdgeDirection.SINGLE);
+		e23.setText("1");
+		e24 = _container.createEdge(n8, n8, EdgeDirection.SINGLE);
 		_container.getDiagram().addEdge(e24);
-		e24.getTextField().setText("1");
-		e25 = new Edge(n5,n9,_container,EdgeDirection.SINGLE);
+		e24.setText("1");
+		e25 = _container.createEdge(n5, n9, EdgeDirection.SINGLE);
 		_container.getDiagram().addEdge(e25);
-		e25.getTextField().setText("1");
-		e26 = new Edge(n9,n4,_container,EdgeDirection.SINGLE);
+		e25.setText("1");
+		e26 = _container.createEdge(n9, n4, EdgeDirection.SINGLE);
 		_container.getDiagram().addEdge(e26);
-		e26.getTextField().setText("1");
-		e27 = new Edge(n6,n7,_container,EdgeDirection.SINGLE);
+		e26.setText("1");
+		e27 = _container.createEdge(n6, n7, EdgeDirection.SINGLE);
 		_container.getDiagram().addEdge(e27);
-		e27.getTextField().setText("1");
-		e28 = new Edge(n7,n6,_container,EdgeDirection.SINGLE);
+		e27.setText("1");
+		e28 = _container.createEdge(n7, n6, EdgeDirection.SINGLE);
 		_container.getDiagram().addEdge(e28);
-		e28.getTextField().setText("1");
+		e28.setText("1");
 		for (Edge e : _container.getDiagram().getEdges()){
 			e.getStartNode().addConnected(e);
 			e.getEndNode().addConnected(e);
@@ -241,7 +282,7 @@ public class DiagramTest {
 	
 	@Test
 	public void testBadFSM4(){
-		Edge e = new Edge(n1, n2, _container, EdgeDirection.SINGLE);
+		Edge e = _container.createEdge(n1, n2, EdgeDirection.SINGLE);
 		_container.getDiagram().getEdges().add(e);
 		e.getStartNode().addConnected(e);
 		e.getEndNode().addConnected(e);
@@ -296,4 +337,1132 @@ public class DiagramTest {
 		}
 	}
 
+	@Test
+	public void testCompiledAutomatonCache() {
+		CompiledAutomaton first = _container.getDiagram().compile();
+		assertSame(first, _container.getDiagram().compile());
+		assertTrue(first.isDeterministic());
+		assertTrue(first.isComplete());
+		assertEquals(3, first.getSymbolCount());
+		assertEquals(first.indexOf(n2), first.next(first.getStart(), '0'));
+		assertEquals(CompiledAutomaton.NO_STATE, first.next(first.getStart(), '7'));
+		
+		e1.setText("1");
+		CompiledAutomaton second = _container.getDiagram().compile();
+		assertNotSame(first, second);
+		assertFalse(second.isDeterministic());
+		
+		n3.setEnd(true);
+		assertTrue(_container.getDiagram().compile().isAccept(_container.getDiagram().compile().indexOf(n3)));
+	}
+
+	@Test
+	public void testDiagramGraph() {
+		Diagram diagram = new Diagram();
+		Node a = new Node(0, 0, Node.DEFAULT_RADIUS, true, false, "a");
+		Node b = new Node(150, 0, Node.DEFAULT_RADIUS, false, true, "b");
+		Node c = new Node(300, 0, Node.DEFAULT_RADIUS, false, false, "c");
+		Node outside = new Node(450, 0, Node.DEFAULT_RADIUS, false, false, "d");
+		diagram.addNode(a);
+		diagram.addNode(b);
+		diagram.addNode(c);
+		Edge ab = connect(diagram, a, b, EdgeDirection.SINGLE);
+		ab.setText("x");
+		Edge bc = connect(diagram, b, c, EdgeDirection.DOUBLE);
+		bc.setText("y");
+		Edge cc = connect(diagram, c, c, EdgeDirection.SINGLE);
+		Edge stray = connect(diagram, c, outside, EdgeDirection.SINGLE);
+		stray.setText("z");
+		
+		DiagramGraph graph = diagram.graph();
+		assertSame(graph, diagram.graph());
+		assertEquals(diagram.getRevision(), graph.getRevision());
+		assertEquals(3, graph.getNodeCount());
+		assertEquals(4, graph.getEdgeCount());
+		assertEquals(DiagramGraph.NO_NODE, graph.indexOf(outside));
+		int[] outDegree = {1, 1, 1};
+		int[] inDegree = {0, 1, 2};
+		Node[] nodes = {a, b, c};
+		for (int i = 0; i < nodes.length; i ++) {
+			int v = graph.indexOf(nodes[i]);
+			assertSame(nodes[i], graph.getNode(v));
+			assertEquals(outDegree[i], graph.getOutEnd(v) - graph.getOutStart(v));
+			assertEquals(inDegree[i], graph.getInEnd(v) - graph.getInStart(v));
+			for (int j = graph.getOutStart(v); j < graph.getOutEnd(v); j ++)
+				assertEquals(v, graph.getSource(graph.getOutEdge(j)));
+			for (int j = graph.getInStart(v); j < graph.getInEnd(v); j ++)
+				assertEquals(v, graph.getTarget(graph.getInEdge(j)));
+		}
+		assertTrue(graph.isStart(graph.indexOf(a)));
+		assertTrue(graph.isAccept(graph.indexOf(b)));
+		for (int e = 0; e < graph.getEdgeCount(); e ++) {
+			Edge edge = graph.getEdge(e);
+			assertEquals(edge == ab, graph.isTransition(e));
+			if (edge == stray)
+				assertEquals(DiagramGraph.NO_NODE, graph.getSource(e));
+		}
+		
+		//The compiled forms and the analyses share the snapshot, and an edit makes a new one.
+		assertSame(a, diagram.compile().getNode(graph.indexOf(a)));
+		cc.setText("w");
+		assertNotSame(graph, diagram.graph());
+		assertEquals(2, diagram.compile().getSymbolCount());
+		//The edge between b and c goes both ways, so it is not a transition.
+		assertFalse(diagram.analyzeReachability().isUnreachable(b));
+		assertTrue(diagram.analyzeReachability().isUnreachable(c));
+	}
+
+	@Test
+	public void testStreamingSimulation() throws InvalidDFSMException, IOException {
+		String input = "001021022220220101020121200201212210";
+		List<DiagramObject> sim = _container.getDiagram().deterministicSimulation(input);
+		final StringBuilder trace = new StringBuilder();
+		SimulationListener listener = new SimulationListener() {
+			public void visited(long position, Node node) {
+				trace.append(node.getName() + "\n");
+			}
+		};
+		SimulationResult result = _container.getDiagram().simulate(new StringReader(input), listener);
+		StringBuilder expected = new StringBuilder();
+		for (DiagramObject d : sim)
+			expected.append(d.getName() + "\n");
+		assertEquals(expected.toString(), trace.toString());
+		assertSame(sim.get(sim.size() - 1), result.getFinalNode());
+		assertEquals(input.length(), result.getLength());
+		assertEquals(-1, result.getStuckPosition());
+		
+		n3.setEnd(true);
+		assertTrue(_container.getDiagram().simulate(new ByteArrayInputStream("00".getBytes()), null).isAccepted());
+		result = _container.getDiagram().simulate("0017", null);
+		assertFalse(result.isAccepted());
+		assertEquals(3, result.getStuckPosition());
+	}
+
+	@Test
+	public void testAcceptAll() throws InvalidDFSMException {
+		n3.setEnd(true);
+		n7.setEnd(true);
+		Random random = new Random(42);
+		List<String> inputs = new ArrayList<String>();
+		for (int i = 0; i < 2000; i ++) {
+			StringBuilder input = new StringBuilder();
+			int length = random.nextInt(40);
+			for (int j = 0; j < length; j ++)
+				input.append((char)('0' + random.nextInt(i % 10 == 0 ? 4 : 3)));
+			inputs.add(input.toString());
+		}
+		BatchResult result = _container.getDiagram().acceptAll(inputs);
+		assertEquals(inputs.size(), result.size());
+		for (int i = 0; i < inputs.size(); i ++) {
+			SimulationResult single = _container.getDiagram().simulate(inputs.get(i), null);
+			assertEquals(single.isAccepted(), result.isAccepted(i));
+			if (single.isAccepted())
+				assertEquals(-1, result.getRejectPosition(i));
+			else if (single.getStuckPosition() >= 0)
+				assertEquals(single.getStuckPosition(), result.getRejectPosition(i));
+			else
+				assertEquals(inputs.get(i).length(), result.getRejectPosition(i));
+		}
+	}
+
+	@Test
+	public void testInterleavedBatch() throws InvalidDFSMException {
+		n3.setEnd(true);
+		n7.setEnd(true);
+		Random random = new Random(11);
+		List<String> inputs = new ArrayList<String>();
+		for (int i = 0; i < 3000; i ++) {
+			StringBuilder input = new StringBuilder();
+			int length = random.nextInt(i % 7 == 0 ? 300 : 20);
+			for (int j = 0; j < length; j ++)
+				input.append((char)('0' + random.nextInt(i % 10 == 0 ? 4 : 3)));
+			inputs.add(input.toString());
+		}
+		BatchResult sequential = _container.getDiagram().acceptAll(inputs, BatchStrategy.SEQUENTIAL);
+		BatchResult interleaved = _container.getDiagram().acceptAll(inputs, BatchStrategy.INTERLEAVED);
+		for (int i = 0; i < inputs.size(); i ++) {
+			assertEquals(sequential.isAccepted(i), interleaved.isAccepted(i));
+			assertEquals(sequential.getRejectPosition(i), interleaved.getRejectPosition(i));
+		}
+		//Fewer inputs than lanes.
+		interleaved = _container.getDiagram().acceptAll(inputs.subList(0, 3), BatchStrategy.INTERLEAVED);
+		for (int i = 0; i < 3; i ++)
+			assertEquals(sequential.getRejectPosition(i), interleaved.getRejectPosition(i));
+	}
+
+	@Test
+	public void testReachability() {
+		Diagram diagram = _container.getDiagram();
+		//Without an accept node, everything is dead, but trim keeps the start node.
+		assertEquals(10, diagram.analyzeReachability().getDead().size());
+		assertEquals(9, diagram.analyzeReachability().getUseless().size());
+		n3.setEnd(true);
+		assertTrue(diagram.analyzeReachability().getDead().isEmpty());
+		assertTrue(diagram.analyzeReachability().getUnreachable().isEmpty());
+
+		Node island = _container.createNode(0, 0);
+		diagram.addNode(island);
+		Node sink = _container.createNode(0, 0);
+		diagram.addNode(sink);
+		Edge toSink = _container.createEdge(n1, sink, EdgeDirection.SINGLE);
+		diagram.addEdge(toSink);
+		toSink.setText("3");
+		n1.addConnected(toSink);
+		sink.addConnected(toSink);
+		Edge fromIsland = _container.createEdge(island, n3, EdgeDirection.SINGLE);
+		diagram.addEdge(fromIsland);
+		fromIsland.setText("0");
+		island.addConnected(fromIsland);
+		n3.addConnected(fromIsland);
+		Reachability reachability = diagram.analyzeReachability();
+		assertSame(reachability, diagram.analyzeReachability());
+		assertTrue(reachability.isUnreachable(island));
+		assertFalse(reachability.isDead(island));
+		assertFalse(reachability.isUnreachable(sink));
+		assertTrue(reachability.isDead(sink));
+		assertFalse(reachability.isDead(n1));
+
+		int edges = diagram.getEdges().size();
+		List<DiagramObject> removed = diagram.trim();
+		assertEquals(4, removed.size());
+		assertFalse(diagram.getNodes().contains(island));
+		assertFalse(diagram.getNodes().contains(sink));
+		assertEquals(edges - 2, diagram.getEdges().size());
+		assertFalse(n1.getConnected().contains(toSink));
+		assertFalse(n3.getConnected().contains(fromIsland));
+		assertTrue(diagram.analyzeReachability().getUseless().isEmpty());
+		assertTrue(diagram.isValidDFSM());
+	}
+
+	@Test
+	public void testEquivalence() throws InvalidDFSMException, CloneNotSupportedException {
+		Diagram diagram = _container.getDiagram();
+		n3.setEnd(true);
+		Diagram minimized = diagram.minimize().getDiagram();
+		assertNull(diagram.distinguish(minimized));
+		assertTrue(minimized.isEquivalent(diagram));
+
+		Diagram changed = diagram.clone();
+		diagram.getNodeMap().get(n8).setEnd(true);
+		String witness = diagram.distinguish(changed);
+		assertNotNull(witness);
+		assertFalse(diagram.isEquivalent(changed));
+		assertTrue(diagram.simulate(witness, null).isAccepted() != changed.simulate(witness, null).isAccepted());
+		//No shorter string tells them apart.
+		List<String> shorter = new ArrayList<String>();
+		shorter.add("");
+		for (int length = 0; length < witness.length(); length ++) {
+			List<String> longer = new ArrayList<String>();
+			for (String s : shorter) {
+				assertEquals(diagram.simulate(s, null).isAccepted(), changed.simulate(s, null).isAccepted());
+				for (char c = '0'; c <= '2'; c ++)
+					longer.add(s + c);
+			}
+			shorter = longer;
+		}
+	}
+
+	@Test
+	public void testProduct() throws InvalidDFSMException, CloneNotSupportedException {
+		Diagram first = _container.getDiagram();
+		n3.setEnd(true);
+		Diagram second = first.clone();
+		first.getNodeMap().get(n8).setEnd(true);
+		first.getNodeMap().get(n3).setEnd(false);
+		Diagram intersection = first.intersection(second);
+		Diagram union = first.union(second);
+		Diagram difference = first.difference(second);
+		assertTrue(intersection.isValidDFSM());
+		assertTrue(union.isValidDFSM());
+		assertTrue(difference.isValidDFSM());
+		Random random = new Random(5);
+		for (int i = 0; i < 500; i ++) {
+			StringBuilder input = new StringBuilder();
+			int length = random.nextInt(15);
+			for (int j = 0; j < length; j ++)
+				input.append((char)('0' + random.nextInt(3)));
+			boolean a = first.simulate(input, null).isAccepted();
+			boolean b = second.simulate(input, null).isAccepted();
+			assertEquals(a && b, intersection.simulate(input, null).isAccepted());
+			assertEquals(a || b, union.simulate(input, null).isAccepted());
+			assertEquals(a && !b, difference.simulate(input, null).isAccepted());
+		}
+		assertNull(first.intersection(first).distinguish(first));
+		Diagram empty = first.difference(first);
+		assertEquals(empty.getNodes().size(), empty.analyzeReachability().getDead().size());
+	}
+
+	@Test
+	public void testWitnesses() throws InvalidDFSMException {
+		Diagram diagram = _container.getDiagram();
+		Witnesses witnesses = diagram.findWitnesses();
+		assertNull(witnesses.getShortestAccepted());
+		assertEquals("", witnesses.getShortestRejected());
+		assertEquals("", witnesses.getShortestPath(n1));
+		//n1 -2-> n3 -2-> n7 -0-> n0
+		assertEquals(3, witnesses.getShortestPath(n0).length());
+		assertSame(n0, diagram.simulate(witnesses.getShortestPath(n0), null).getFinalNode());
+
+		n7.setEnd(true);
+		n1.setEnd(true);
+		witnesses = diagram.findWitnesses();
+		assertSame(witnesses, diagram.findWitnesses());
+		assertEquals("", witnesses.getShortestAccepted());
+		String rejected = witnesses.getShortestRejected();
+		assertEquals(1, rejected.length());
+		assertFalse(diagram.simulate(rejected, null).isAccepted());
+		n1.setEnd(false);
+		assertEquals("22", diagram.findWitnesses().getShortestAccepted());
+	}
+
+	@Test
+	public void testCountAccepted() throws InvalidDFSMException {
+		Diagram diagram = _container.getDiagram();
+		assertEquals(BigInteger.ZERO, diagram.countAccepted(5));
+		n3.setEnd(true);
+		n8.setEnd(true);
+		//Brute force over all 3^length inputs.
+		for (int length = 0; length <= 7; length ++) {
+			int expected = 0;
+			int total = (int) Math.pow(3, length);
+			for (int code = 0; code < total; code ++) {
+				StringBuilder input = new StringBuilder();
+				for (int c = code, j = 0; j < length; j ++, c /= 3)
+					input.append((char)('0' + c % 3));
+				if (diagram.simulate(input, null).isAccepted())
+					expected ++;
+			}
+			assertEquals(BigInteger.valueOf(expected), diagram.countAccepted(length));
+			assertEquals(expected % 1000, diagram.countAccepted(length, 1000));
+		}
+		//Long lengths are counted by repeated squaring; check against stepping the table.
+		CompiledAutomaton automaton = diagram.compile();
+		BigInteger[] ways = new BigInteger[automaton.getStateCount()];
+		Arrays.fill(ways, BigInteger.ZERO);
+		ways[automaton.getStart()] = BigInteger.ONE;
+		for (int i = 0; i < 3000; i ++) {
+			BigInteger[] next = new BigInteger[ways.length];
+			Arrays.fill(next, BigInteger.ZERO);
+			for (int state = 0; state < ways.length; state ++) {
+				for (int symbol = 0; symbol < automaton.getSymbolCount(); symbol ++)
+					next[automaton.step(state, symbol)] = next[automaton.step(state, symbol)].add(ways[state]);
+			}
+			ways = next;
+		}
+		BigInteger exact = BigInteger.ZERO;
+		for (int state = 0; state < ways.length; state ++) {
+			if (automaton.isAccept(state))
+				exact = exact.add(ways[state]);
+		}
+		assertEquals(exact, diagram.countAccepted(3000));
+		long modulus = 1000000007L;
+		assertEquals(exact.mod(BigInteger.valueOf(modulus)).longValue(), diagram.countAccepted(3000, modulus));
+		assertTrue(diagram.countAccepted(Long.MAX_VALUE, modulus) < modulus);
+	}
+
+	@Test
+	public void testRandomAccepted() throws InvalidDFSMException, IOException {
+		Diagram diagram = _container.getDiagram();
+		assertTrue(diagram.randomAccepted(4).isEmpty());
+		assertNull(diagram.randomAccepted(4).next(new Random(1)));
+		n3.setEnd(true);
+		n8.setEnd(true);
+		//There are few accepted inputs of length 4, so each should be drawn about equally often.
+		RandomStringGenerator generator = diagram.randomAccepted(4);
+		int count = diagram.countAccepted(4).intValue();
+		Random random = new Random(3);
+		Map<String, Integer> drawn = new HashMap<String, Integer>();
+		int samples = 2000 * count;
+		for (int i = 0; i < samples; i ++) {
+			String input = generator.next(random);
+			assertEquals(4, input.length());
+			Integer times = drawn.get(input);
+			drawn.put(input, times == null ? 1 : times + 1);
+		}
+		assertEquals(count, drawn.size());
+		for (Map.Entry<String, Integer> entry : drawn.entrySet()) {
+			assertTrue(diagram.simulate(entry.getKey(), null).isAccepted());
+			assertEquals(2000, entry.getValue(), 250);
+		}
+
+		StringWriter out = new StringWriter();
+		diagram.randomAccepted(50).write(out, 100, random);
+		String[] lines = out.toString().split("\n");
+		assertEquals(100, lines.length);
+		for (String line : lines) {
+			assertEquals(50, line.length());
+			assertTrue(diagram.simulate(line, null).isAccepted());
+		}
+		//Long enough that the generator does without the table of running sums.
+		String input = diagram.randomAccepted(100000).next(random);
+		assertEquals(100000, input.length());
+		assertTrue(diagram.simulate(input, null).isAccepted());
+	}
+
+	@Test
+	public void testParallelSimulation() throws InvalidDFSMException, IOException {
+		n3.setEnd(true);
+		Random random = new Random(7);
+		StringBuilder input = new StringBuilder();
+		for (int i = 0; i < 3000000; i ++)
+			input.append((char)('0' + random.nextInt(3)));
+		SimulationResult expected = _container.getDiagram().simulate(input, null);
+		SimulationResult result = _container.getDiagram().simulateParallel(input);
+		assertSame(expected.getFinalNode(), result.getFinalNode());
+		assertEquals(expected.isAccepted(), result.isAccepted());
+		assertEquals(input.length(), result.getLength());
+		result = _container.getDiagram().simulateParallel(new StringReader(input.toString()));
+		assertSame(expected.getFinalNode(), result.getFinalNode());
+		
+		input.setCharAt(2500000, '9');
+		expected = _container.getDiagram().simulate(input, null);
+		result = _container.getDiagram().simulateParallel(input);
+		assertEquals(2500000, result.getStuckPosition());
+		assertSame(expected.getFinalNode(), result.getFinalNode());
+		result = _container.getDiagram().simulateParallel(new StringReader(input.toString()));
+		assertEquals(2500000, result.getStuckPosition());
+		assertSame(expected.getFinalNode(), result.getFinalNode());
+		
+		//A counter with more states than are run from every state streams sequentially.
+		Diagram counter = new Diagram();
+		Node[] states = new Node[2000];
+		for (int i = 0; i < states.length; i ++)
+			states[i] = counter.createNode(i * 150, 0, Node.DEFAULT_RADIUS, i == 0, i == 0, "q" + i);
+		for (int i = 0; i < states.length; i ++) {
+			connect(counter, states[i], states[(i + 1) % states.length], EdgeDirection.SINGLE).setText("0");
+			connect(counter, states[i], states[i], EdgeDirection.SINGLE).setText("1, 2");
+		}
+		expected = counter.simulate(input, null);
+		result = counter.simulateParallel(new StringReader(input.toString()));
+		assertEquals(2500000, result.getStuckPosition());
+		assertSame(expected.getFinalNode(), result.getFinalNode());
+		input.setCharAt(2500000, '0');
+		expected = counter.simulate(input, null);
+		result = counter.simulateParallel(new StringReader(input.toString()));
+		assertSame(expected.getFinalNode(), result.getFinalNode());
+		assertEquals(expected.isAccepted(), result.isAccepted());
+	}
+
+	@Test
+	public void testIncrementalValidation() {
+		assertTrue(_container.getDiagram().isValidDFSM());
+		
+		e1.setText("1");
+		assertFalse(_container.getDiagram().isValidDFSM());
+		try {
+			_container.getDiagram().deterministicSimulation("0");
+			fail();
+		} catch (InvalidDFSMException e) {
+			assertEquals("Node q_0 has multiple edges labeled 1.\nNode q_0 doesn't have an edge labeled 0.\n", e.getMessage());
+		}
+		e1.setText("0");
+		assertTrue(_container.getDiagram().isValidDFSM());
+		
+		n2.setStart(true);
+		assertFalse(_container.getDiagram().isValidDFSM());
+		n2.setStart(false);
+		assertTrue(_container.getDiagram().isValidDFSM());
+		
+		_container.getDiagram().removeEdge(e1);
+		n1.removeConnected(e1);
+		assertFalse(_container.getDiagram().isValidDFSM());
+		_container.getDiagram().addEdge(e1);
+		n1.addConnected(e1);
+		assertTrue(_container.getDiagram().isValidDFSM());
+		
+		e1.setDirection(EdgeDirection.DOUBLE);
+		assertFalse(_container.getDiagram().isValidDFSM());
+		e1.setDirection(EdgeDirection.SINGLE);
+		assertTrue(_container.getDiagram().isValidDFSM());
+	}
+
+	@Test
+	public void testDiagnostics() {
+		assertTrue(_container.getDiagram().diagnose().isValid());
+		
+		e1.setText("1");
+		e2.setDirection(EdgeDirection.DOUBLE);
+		DFSMDiagnostics diagnostics = _container.getDiagram().diagnose("09");
+		assertEquals(5, diagnostics.getErrorCount());
+		List<DFSMError> errors = diagnostics.getErrors();
+		assertEquals(DFSMErrorType.NON_SINGLE_EDGE, errors.get(0).getType());
+		assertSame(e2, errors.get(0).getEdge());
+		assertEquals(DFSMErrorType.DUPLICATE_LABEL, errors.get(1).getType());
+		assertSame(n1, errors.get(1).getNode());
+		assertEquals("1", errors.get(1).getSymbol());
+		assertEquals(DFSMErrorType.MISSING_TRANSITION, errors.get(2).getType());
+		assertEquals(DFSMErrorType.MISSING_TRANSITION, errors.get(3).getType());
+		assertTrue(errors.get(2).getNode() == n1 ? errors.get(3).getNode() == n2 : errors.get(3).getNode() == n1);
+		assertEquals(DFSMErrorType.UNKNOWN_INPUT, errors.get(4).getType());
+		assertEquals("9", errors.get(4).getSymbol());
+		
+		for (int i = 0; i < 300; i ++) {
+			Edge e = _container.createEdge(n1, n2, EdgeDirection.SINGLE);
+			_container.getDiagram().addEdge(e);
+			e.setText("");
+		}
+		diagnostics = _container.getDiagram().diagnose("", 10);
+		assertEquals(304, diagnostics.getErrorCount());
+		assertEquals(10, diagnostics.getErrors().size());
+		assertTrue(diagnostics.isTruncated());
+		assertTrue(diagnostics.getMessage().startsWith("There are 300 edges without a label.\n"));
+		int count = 0;
+		for (DFSMError error : diagnostics) {
+			assertNotNull(error.getType());
+			count ++;
+		}
+		assertEquals(304, count);
+		try {
+			_container.getDiagram().deterministicSimulation("0");
+			fail();
+		} catch (InvalidDFSMException e) {
+			assertEquals(304, e.getDiagnostics().getErrorCount());
+		}
+	}
+
+	@Test
+	public void testNondeterministicSimulation() throws InvalidDFSMException {
+		String input = "0010210222202201010201212";
+		List<DiagramObject> sim = _container.getDiagram().deterministicSimulation(input);
+		List<Set<DiagramObject>> nsim = _container.getDiagram().nondeterministicSimulation(input);
+		assertEquals(sim.size(), nsim.size());
+		for (int i = 0; i < sim.size(); i ++) {
+			assertEquals(1, nsim.get(i).size());
+			assertTrue(nsim.get(i).contains(sim.get(i)));
+		}
+		
+		Edge epsilon = _container.createEdge(n1, n5, EdgeDirection.SINGLE);
+		_container.getDiagram().addEdge(epsilon);
+		epsilon.setText(Edge.EPSILON);
+		assertFalse(_container.getDiagram().isValidDFSM());
+		assertTrue(_container.getDiagram().isValidNFA());
+		nsim = _container.getDiagram().nondeterministicSimulation("09");
+		assertEquals(2, nsim.get(0).size());
+		assertTrue(nsim.get(0).contains(n1) && nsim.get(0).contains(n5));
+		assertEquals(2, nsim.get(1).size());
+		assertTrue(nsim.get(1).contains(n2) && nsim.get(1).contains(n7));
+		assertTrue(nsim.get(2).isEmpty());
+		
+		assertFalse(_container.getDiagram().nondeterministicAccepts("0"));
+		n7.setEnd(true);
+		assertTrue(_container.getDiagram().nondeterministicAccepts("0"));
+		assertFalse(_container.getDiagram().nondeterministicAccepts("09"));
+		
+		n1.setStart(false);
+		try {
+			_container.getDiagram().nondeterministicSimulation("0");
+			fail();
+		} catch (InvalidDFSMException e) {
+			assertEquals("There is no start node.\n", e.getMessage());
+		}
+	}
+
+	@Test
+	public void testLazyDeterminization() throws InvalidDFSMException {
+		Edge epsilon = _container.createEdge(n1, n5, EdgeDirection.SINGLE);
+		_container.getDiagram().addEdge(epsilon);
+		epsilon.setText(Edge.EPSILON);
+		e2.setText("0,1");
+		n3.setEnd(true);
+		n7.setEnd(true);
+		
+		Random random = new Random(3);
+		LazyDFA small = new LazyDFA(_container.getDiagram().compileNFA(), 3);
+		for (int i = 0; i < 500; i ++) {
+			StringBuilder input = new StringBuilder();
+			int length = random.nextInt(30);
+			for (int j = 0; j < length; j ++)
+				input.append((char)('0' + random.nextInt(3)));
+			List<Set<DiagramObject>> sim = _container.getDiagram().nondeterministicSimulation(input.toString());
+			boolean accepted = false;
+			for (DiagramObject d : sim.get(sim.size() - 1))
+				accepted |= ((Node)d).isEnd();
+			assertEquals(accepted, _container.getDiagram().nondeterministicAccepts(input));
+			assertEquals(accepted, small.accepts(input));
+		}
+		assertTrue(small.getFlushCount() > 0);
+		assertTrue(small.getCachedStateCount() <= 3);
+		
+		Diagram dfa = _container.getDiagram().determinize();
+		assertTrue(dfa.isValidDFSM());
+		for (int i = 0; i < 200; i ++) {
+			StringBuilder input = new StringBuilder();
+			int length = random.nextInt(30);
+			for (int j = 0; j < length; j ++)
+				input.append((char)('0' + random.nextInt(3)));
+			List<DiagramObject> sim = dfa.deterministicSimulation(input.toString());
+			assertEquals(_container.getDiagram().nondeterministicAccepts(input), ((Node)sim.get(sim.size() - 1)).isEnd());
+		}
+	}
+
+	@Test
+	public void testMinimization() throws InvalidDFSMException {
+		//With no accept nodes every node is equivalent.
+		Minimization none = _container.getDiagram().minimize();
+		assertEquals(1, none.getBlockCount());
+		assertEquals(10, none.getOriginals(0).size());
+		assertSame(none.getNode(n1), none.getNode(n9));
+		assertTrue(none.getDiagram().isValidDFSM());
+		
+		n3.setEnd(true);
+		n7.setEnd(true);
+		Minimization minimized = _container.getDiagram().minimize();
+		Diagram diagram = minimized.getDiagram();
+		assertTrue(diagram.isValidDFSM());
+		assertEquals(minimized.getBlockCount(), diagram.getNodes().size());
+		assertTrue(minimized.getNode(n1).isStart());
+		assertTrue(minimized.getOriginals(minimized.getNode(n3)).contains(n3));
+		Random random = new Random(11);
+		for (int i = 0; i < 300; i ++) {
+			StringBuilder input = new StringBuilder();
+			int length = random.nextInt(30);
+			for (int j = 0; j < length; j ++)
+				input.append((char)('0' + random.nextInt(3)));
+			List<DiagramObject> original = _container.getDiagram().deterministicSimulation(input.toString());
+			List<DiagramObject> small = diagram.deterministicSimulation(input.toString());
+			Node last = (Node)original.get(original.size() - 1);
+			assertEquals(last.isEnd(), ((Node)small.get(small.size() - 1)).isEnd());
+			assertSame(minimized.getNode(last), small.get(small.size() - 1));
+		}
+		assertEquals(minimized.getBlockCount(), diagram.minimize().getBlockCount());
+	}
+
+
+	@Test
+	public void testRegex() throws InvalidDFSMException {
+		String[] regexes = {"a(b|c)*", "(a|)b+", "[a-b]c?", "((a|b)*c)+", "", "(|a|b)(c|)", "a\\*b", "(a+|b)*a?c", "()*",
+				"[\\]a]+", "a*?\\]", "(a|b)??c"};
+		List<String> inputs = new ArrayList<String>();
+		inputs.add("");
+		for (int i = 0; i < inputs.size() && inputs.get(i).length() < 5; i ++) {
+			for (char c : "abc*]".toCharArray())
+				inputs.add(inputs.get(i) + c);
+		}
+		for (String regex : regexes) {
+			Pattern pattern = Pattern.compile(regex);
+			RegexMatcher matcher = RegexMatcher.compile(regex);
+			RegexMatcher small = new RegexMatcher(regex, 2);
+			Diagram nfa = Diagram.fromRegex(regex, false);
+			Diagram dfa = Diagram.fromRegex(regex, true);
+			assertTrue(dfa.isValidDFSM());
+			for (String input : inputs) {
+				boolean expected = pattern.matcher(input).matches();
+				assertEquals(regex + " on " + input, expected, matcher.matches(input));
+				assertEquals(expected, small.matches(input));
+				assertEquals(expected, nfa.nondeterministicAccepts(input));
+				assertEquals(expected, dfa.nondeterministicAccepts(input));
+			}
+		}
+		assertEquals(4, Diagram.fromRegex("(a|b)*abb", true).getNodes().size());
+		
+		for (String bad : new String[] {"(a", "a)", "*a", "[ab", "[b-a]", "[^a]", "a|\\", "a.b", "\\d", "a{2}", "^a", "a$", "a}",
+				"[\\d]", "[]a]", "a*+", "a+*", "a??*", "[a[b]]", "[a&&b]"}) {
+			try {
+				RegexMatcher.compile(bad);
+				fail(bad);
+			} catch (PatternSyntaxException e) {
+			}
+		}
+		try {
+			Diagram.fromRegex("a,b", false);
+			fail();
+		} catch (InvalidDFSMException e) {
+			assertEquals("The character ',' cannot label an edge.\n", e.getMessage());
+		}
+		
+		//Thousands of literals, and deep nesting, compile to an NFA linear in the expression.
+		Random random = new Random(5);
+		List<String> words = new ArrayList<String>();
+		StringBuilder alternation = new StringBuilder();
+		for (int i = 0; i < 5000; i ++) {
+			char[] word = new char[3 + random.nextInt(6)];
+			for (int j = 0; j < word.length; j ++)
+				word[j] = (char)('a' + random.nextInt(26));
+			words.add(new String(word));
+			if (i > 0)
+				alternation.append('|');
+			alternation.append(word);
+		}
+		RegexMatcher dictionary = RegexMatcher.compile("(" + alternation + ")+");
+		assertTrue(dictionary.getNFAStateCount() <= 4 * alternation.length() + 8);
+		for (int i = 0; i + 1 < words.size(); i += 2)
+			assertTrue(dictionary.matches(words.get(i) + words.get(i + 1)));
+		assertFalse(dictionary.matches(""));
+		StringBuilder nested = new StringBuilder();
+		for (int i = 0; i < 100000; i ++)
+			nested.append('(');
+		nested.append('a');
+		for (int i = 0; i < 100000; i ++)
+			nested.append(")*");
+		RegexMatcher deep = RegexMatcher.compile(nested.toString());
+		assertTrue(deep.matches("aaa"));
+		assertFalse(deep.matches("ab"));
+	}
+
+	@Test
+	public void testToRegex() throws InvalidDFSMException {
+		Diagram diagram = _container.getDiagram();
+		assertNull(diagram.toRegex());
+		n3.setEnd(true);
+		n8.setEnd(true);
+		RegularExpression regex = diagram.toRegex();
+		String written = regex.toString();
+		assertEquals(regex.length(), written.length());
+		assertTrue(Diagram.fromRegex(written, true).isEquivalent(diagram));
+		Pattern pattern = Pattern.compile(written);
+		for (int length = 0; length <= 6; length ++) {
+			int total = (int) Math.pow(3, length);
+			for (int code = 0; code < total; code ++) {
+				StringBuilder input = new StringBuilder();
+				for (int c = code, j = 0; j < length; j ++, c /= 3)
+					input.append((char)('0' + c % 3));
+				assertEquals(diagram.simulate(input, null).isAccepted(), pattern.matcher(input).matches());
+			}
+		}
+		
+		Diagram small = Diagram.fromRegex("(a|b)*a(a|b)(a|b)", true);
+		RegularExpression smallRegex = small.toRegex();
+		assertTrue(Diagram.fromRegex(smallRegex.toString(), true).isEquivalent(small));
+		
+		//The written form of the 256 node DFSM is far too long to build, but the DAG is not.
+		Diagram large = Diagram.fromRegex("(a|b)*a(a|b)(a|b)(a|b)(a|b)(a|b)(a|b)(a|b)", true);
+		assertEquals(256, large.getNodes().size());
+		RegularExpression largeRegex = large.toRegex();
+		assertTrue(largeRegex.length() > Integer.MAX_VALUE);
+		assertTrue(largeRegex.getDagSize() < 1000000);
+	}
+
+	/**
+	 * Adds a headless edge between two nodes of a diagram.
+	 */
+	private static Edge connect(Diagram diagram, Node from, Node to, EdgeDirection direction) {
+		Edge edge = from == to ? new Edge(from, to, direction, "", Math.PI / 4)
+				: new Edge(from, to, direction, "", 100000.0, 0);
+		from.addConnected(edge);
+		to.addConnected(edge);
+		diagram.addEdge(edge);
+		return edge;
+	}
+
+	/**
+	 * Checks that the cycle of an analysis is a closed walk along its edges that uses no edge twice.
+	 */
+	private static void assertCycle(GraphAnalysis analysis) {
+		List<Node> cycle = analysis.getCycle();
+		List<Edge> edges = analysis.getCycleEdges();
+		assertEquals(cycle.size(), edges.size());
+		assertEquals(edges.size(), new java.util.HashSet<Edge>(edges).size());
+		for (int i = 0; i < cycle.size(); i ++) {
+			Node from = cycle.get(i);
+			Node to = cycle.get((i + 1) % cycle.size());
+			Edge e = edges.get(i);
+			boolean forward = e.getStartNode() == from && e.getEndNode() == to;
+			boolean backward = e.getDirection() != EdgeDirection.SINGLE && e.getStartNode() == to && e.getEndNode() == from;
+			assertTrue(forward || backward);
+		}
+	}
+
+	@Test
+	public void testGraphAnalysis() {
+		Diagram diagram = new Diagram();
+		Node[] nodes = new Node[6];
+		for (int i = 0; i < nodes.length; i ++) {
+			nodes[i] = new Node(i * 150, 0, Node.DEFAULT_RADIUS, false, false, "v_" + i);
+			diagram.addNode(nodes[i]);
+		}
+		connect(diagram, nodes[0], nodes[1], EdgeDirection.SINGLE);
+		connect(diagram, nodes[1], nodes[2], EdgeDirection.SINGLE);
+		Edge back = connect(diagram, nodes[2], nodes[0], EdgeDirection.SINGLE);
+		connect(diagram, nodes[2], nodes[3], EdgeDirection.SINGLE);
+		Edge both = connect(diagram, nodes[3], nodes[4], EdgeDirection.NONE);
+		GraphAnalysis analysis = diagram.analyzeGraph();
+		assertSame(analysis, diagram.analyzeGraph());
+		assertEquals(2, analysis.getComponentCount());
+		assertEquals(analysis.getComponent(nodes[0]), analysis.getComponent(nodes[4]));
+		assertFalse(analysis.getComponent(nodes[0]) == analysis.getComponent(nodes[5]));
+		assertEquals(3, analysis.getStrongComponentCount());
+		assertEquals(analysis.getStrongComponent(nodes[3]), analysis.getStrongComponent(nodes[4]));
+		assertTrue(analysis.getStrongComponent(nodes[0]) < analysis.getStrongComponent(nodes[3]));
+		assertNull(analysis.getTopologicalOrder());
+		assertEquals(3, analysis.getCycle().size());
+		assertCycle(analysis);
+		
+		//Without the back edge only the edge that goes both ways is left, which is not a cycle but
+		//still rules out a topological order.
+		diagram.removeEdge(back);
+		analysis = diagram.analyzeGraph();
+		assertNull(analysis.getCycle());
+		assertNull(analysis.getTopologicalOrder());
+		both.setDirection(EdgeDirection.SINGLE);
+		analysis = diagram.analyzeGraph();
+		List<Node> order = analysis.getTopologicalOrder();
+		assertEquals(6, order.size());
+		for (Edge e : diagram.getEdges())
+			assertTrue(order.indexOf(e.getStartNode()) < order.indexOf(e.getEndNode()));
+		
+		//Undirected: a second edge between the same nodes, then a triangle, then a loop.
+		both.setDirection(EdgeDirection.DOUBLE);
+		connect(diagram, nodes[4], nodes[3], EdgeDirection.NONE);
+		analysis = diagram.analyzeGraph();
+		assertEquals(2, analysis.getCycle().size());
+		assertCycle(analysis);
+		connect(diagram, nodes[5], nodes[5], EdgeDirection.NONE);
+		analysis = diagram.analyzeGraph();
+		assertEquals(Arrays.asList(nodes[5]), analysis.getCycle());
+		assertCycle(analysis);
+		
+		//A long chain closed into one cycle, searched without recursion.
+		Diagram chain = new Diagram();
+		Node[] path = new Node[5000];
+		for (int i = 0; i < path.length; i ++) {
+			path[i] = new Node(0, 0, Node.DEFAULT_RADIUS, false, false, "c_" + i);
+			chain.addNode(path[i]);
+			if (i > 0)
+				connect(chain, path[i - 1], path[i], i % 2 == 0 ? EdgeDirection.SINGLE : EdgeDirection.DOUBLE);
+		}
+		analysis = chain.analyzeGraph();
+		assertEquals(1, analysis.getComponentCount());
+		assertNull(analysis.getCycle());
+		connect(chain, path[path.length - 1], path[0], EdgeDirection.SINGLE);
+		analysis = chain.analyzeGraph();
+		assertEquals(1, analysis.getStrongComponentCount());
+		assertEquals(path.length, analysis.getCycle().size());
+		assertCycle(analysis);
+	}
+
+	@Test
+	public void testHeadlessModel() throws InvalidDFSMException, IOException {
+		//A DFSM built, simulated, saved and read back with no views.
+		Diagram diagram = new Diagram();
+		Node a = new Node(0, 0, Node.DEFAULT_RADIUS, true, false, "a");
+		Node b = new Node(150, 0, Node.DEFAULT_RADIUS, false, true, "b");
+		diagram.addNode(a);
+		diagram.addNode(b);
+		connect(diagram, a, b, EdgeDirection.SINGLE).setText("1");
+		connect(diagram, b, a, EdgeDirection.SINGLE).setText("1");
+		connect(diagram, a, a, EdgeDirection.SINGLE).setText("0");
+		connect(diagram, b, b, EdgeDirection.SINGLE).setText("0");
+		assertNull(a.getView());
+		assertFalse(diagram.simulate("0101", null).isAccepted());
+		assertTrue(diagram.simulate("0100", null).isAccepted());
+		java.io.File file = java.io.File.createTempFile("headless", ".json");
+		file.deleteOnExit();
+		DiagramProject.writeDiagram(file, diagram);
+		Diagram read = DiagramProject.readDiagram(file);
+		assertTrue(read.isEquivalent(diagram));
+		for (Node n : read.getNodes())
+			assertNull(n.getView());
+		
+		//Text set on the model shows on its view, and text typed into the view is set on the model.
+		_container.attachAll(read);
+		Node n = read.getNodes().iterator().next();
+		LabelView view = LabelView.of(n);
+		view.setEditing(true);
+		n.setText("q_7");
+		assertEquals("q_7", view.getTextField().getText());
+		view.getTextField().setText("r_2");
+		assertEquals("r_2", n.getText());
+		_container.detachAll(read);
+		assertSame(view, n.getView());
+		assertNull(view.getTextField());
+	}
+
+	@Test
+	public void testDiagramStore() throws CloneNotSupportedException, InvalidDFSMException {
+		Diagram diagram = new Diagram();
+		Node a = diagram.createNode(0, 0, Node.DEFAULT_RADIUS, true, false, "a");
+		Node b = diagram.createNode(150, 0, Node.DEFAULT_RADIUS, false, true, "b");
+		Node c = diagram.createNode(300, 0, Node.DEFAULT_RADIUS, false, false, "c");
+		Edge ab = connect(diagram, a, b, EdgeDirection.SINGLE);
+		Edge loop = connect(diagram, b, b, EdgeDirection.SINGLE);
+		Edge bc = connect(diagram, b, c, EdgeDirection.SINGLE);
+		assertEquals(Arrays.asList(a, b, c), new ArrayList<Node>(diagram.getNodes()));
+		assertEquals(3, b.getConnected().size());
+		assertTrue(b.getConnected().contains(loop));
+		assertFalse(a.getConnected().contains(bc));
+		
+		//Disconnecting while iterating visits every edge once, self loop included.
+		List<Edge> seen = new ArrayList<Edge>();
+		for (java.util.Iterator<Edge> it = b.getConnected().iterator(); it.hasNext(); ) {
+			Edge e = it.next();
+			seen.add(e);
+			it.remove();
+		}
+		assertEquals(3, seen.size());
+		assertTrue(seen.containsAll(Arrays.asList(ab, loop, bc)));
+		assertTrue(b.getConnected().isEmpty());
+		assertTrue(a.getConnected().contains(ab));
+		b.setConnected(Arrays.asList(ab, loop, bc));
+		
+		//A removed node keeps its data, and its place goes to the next node made.
+		b.setCenter(160, 10);
+		diagram.removeNode(b);
+		assertFalse(diagram.getNodes().contains(b));
+		assertEquals(160, b.getX(), 0);
+		assertEquals("b", b.getText());
+		assertTrue(b.isEnd());
+		assertTrue(b.getConnected().contains(loop));
+		Node d = diagram.createNode(450, 0, Node.DEFAULT_RADIUS, false, false, "d");
+		assertEquals(Arrays.asList(a, d, c), new ArrayList<Node>(diagram.getNodes()));
+		assertEquals(3, diagram.getNodes().size());
+		assertEquals(160, b.getX(), 0);
+		
+		//Added back (as undo does), it is the same node with the same edges.
+		diagram.removeNode(d);
+		diagram.addNode(b);
+		assertTrue(diagram.getNodes().contains(b));
+		assertTrue(b.getConnected().contains(bc));
+		ab.setText("0");
+		loop.setText("0,1");
+		bc.setText("1");
+		assertTrue(diagram.nondeterministicAccepts("01"));
+		
+		//A clone has its own nodes and edges.
+		Diagram cloned = diagram.clone();
+		Node clonedB = diagram.getNodeMap().get(b);
+		assertNotSame(b, clonedB);
+		assertTrue(cloned.getNodes().contains(clonedB));
+		assertFalse(cloned.getNodes().contains(b));
+		assertEquals(3, clonedB.getConnected().size());
+		for (Edge e : clonedB.getConnected()) {
+			assertTrue(cloned.getEdges().contains(e));
+			assertTrue(Arrays.asList(ab, loop, bc).contains(diagram.getEdgeMap().get(e)));
+		}
+		clonedB.setCenter(0, 0);
+		clonedB.setEnd(false);
+		assertEquals(160, b.getX(), 0);
+		assertTrue(b.isEnd());
+		assertTrue(diagram.nondeterministicAccepts("01"));
+		assertFalse(cloned.nondeterministicAccepts("01"));
+	}
+
+	@Test
+	public void testRemoveWhileIterating() {
+		for (boolean snapshot : new boolean[] { false, true }) {
+			Diagram diagram = new Diagram();
+			Node a = diagram.createNode(0, 0, Node.DEFAULT_RADIUS, true, false, "a");
+			Node b = diagram.createNode(150, 0, Node.DEFAULT_RADIUS, false, true, "b");
+			Node c = diagram.createNode(300, 0, Node.DEFAULT_RADIUS, false, false, "c");
+			Edge ab = connect(diagram, a, b, EdgeDirection.SINGLE);
+			Edge bc = connect(diagram, b, c, EdgeDirection.SINGLE);
+			Edge ca = connect(diagram, c, a, EdgeDirection.SINGLE);
+			if (snapshot)
+				diagram.snapshot();
+			
+			//A node removed ahead of the walk is skipped, not returned, and no free place comes back as null.
+			List<Node> nodes = new ArrayList<Node>();
+			for (Node n : diagram.getNodes()) {
+				nodes.add(n);
+				if (n == a)
+					diagram.removeNode(b);
+			}
+			assertEquals(Arrays.asList(a, c), nodes);
+			
+			if (snapshot)
+				diagram.snapshot();
+			List<Edge> edges = new ArrayList<Edge>();
+			for (java.util.Iterator<Edge> it = diagram.getEdges().iterator(); it.hasNext(); ) {
+				Edge e = it.next();
+				edges.add(e);
+				if (e == ab) {
+					it.remove();
+					diagram.removeEdge(bc);
+				}
+			}
+			assertEquals(Arrays.asList(ab, ca), edges);
+			assertEquals(Arrays.asList(ca), new ArrayList<Edge>(diagram.getEdges()));
+		}
+	}
+
+	@Test
+	public void testLabelSymbolsFollowText() throws CloneNotSupportedException, InvalidDFSMException {
+		//Two edges with the same label, one of which is changed after the diagram is compiled and cloned.
+		Diagram diagram = new Diagram();
+		Node a = diagram.createNode(0, 0, Node.DEFAULT_RADIUS, true, false, "a");
+		Node b = diagram.createNode(150, 0, Node.DEFAULT_RADIUS, false, true, "b");
+		Edge ab = connect(diagram, a, b, EdgeDirection.SINGLE);
+		Edge ba = connect(diagram, b, a, EdgeDirection.SINGLE);
+		ab.setText("0, 1");
+		ba.setText("0, 1");
+		connect(diagram, a, a, EdgeDirection.SINGLE).setText("2");
+		connect(diagram, b, b, EdgeDirection.SINGLE).setText("2");
+		assertTrue(diagram.isValidDFSM());
+		assertTrue(diagram.simulate("12", null).isAccepted());
+		Diagram cloned = diagram.clone();
+		
+		ab.setText("0, 1, \\epsilon");
+		assertFalse(diagram.isValidDFSM());
+		assertTrue(diagram.nondeterministicAccepts(""));
+		ab.setText("0, 2");
+		assertFalse(diagram.isValidDFSM());
+		ab.setText("0");
+		assertEquals(1, diagram.diagnose().getErrorCount());
+		assertFalse(diagram.nondeterministicAccepts("1"));
+		assertTrue(diagram.nondeterministicAccepts("0"));
+		
+		//The clone and the other edge keep the label they had.
+		assertEquals("0, 1", ba.getText());
+		assertTrue(diagram.nondeterministicAccepts("010"));
+		assertTrue(cloned.isValidDFSM());
+		assertTrue(cloned.simulate("1", null).isAccepted());
+	}
+
+	@Test
+	public void testSnapshot() throws Exception {
+		//Accepts the inputs with an odd number of 0s.
+		Diagram diagram = new Diagram();
+		Node a = diagram.createNode(0, 0, Node.DEFAULT_RADIUS, true, false, "a");
+		Node b = diagram.createNode(150, 0, Node.DEFAULT_RADIUS, false, true, "b");
+		Edge ab = connect(diagram, a, b, EdgeDirection.SINGLE);
+		Edge ba = connect(diagram, b, a, EdgeDirection.SINGLE);
+		ab.setText("0");
+		ba.setText("0");
+		connect(diagram, a, a, EdgeDirection.SINGLE).setText("1");
+		connect(diagram, b, b, EdgeDirection.SINGLE).setText("1");
+		final DiagramSnapshot snapshot = diagram.snapshot();
+		int revision = diagram.getRevision();
+		assertSame(snapshot, diagram.snapshot());
+		assertEquals(revision, snapshot.getRevision());
+		
+		//Edit every column the snapshot shares: it keeps what the diagram had.
+		ab.setText("0, 1");
+		a.setText("c");
+		b.setEnd(false);
+		ba.setDirection(EdgeDirection.DOUBLE);
+		ba.setEndNode(b);
+		Node d = diagram.createNode(300, 0, Node.DEFAULT_RADIUS, false, true, "d");
+		diagram.removeNode(d);
+		a.removeConnected(ba);
+		b.removeConnected(ba);
+		diagram.removeEdge(ba);
+		assertFalse(diagram.isValidDFSM());
+		assertNotSame(snapshot, diagram.snapshot());
+		assertTrue(snapshot.isValidDFSM());
+		DiagramGraph graph = snapshot.graph();
+		assertEquals(2, graph.getNodeCount());
+		assertEquals(4, graph.getEdgeCount());
+		assertEquals("a", graph.getText(graph.indexOf(a)));
+		assertTrue(graph.isAccept(graph.indexOf(b)));
+		
+		//Simulate and minimize the snapshot on another thread; the results carry its revision.
+		ExecutorService worker = Executors.newSingleThreadExecutor();
+		try {
+			BatchResult result = worker.submit(new Callable<BatchResult>() {
+				public BatchResult call() throws InvalidDFSMException {
+					return snapshot.acceptAll(Arrays.asList("0", "00", "101", "1"));
+				}
+			}).get();
+			assertEquals(revision, result.getRevision());
+			assertTrue(result.isAccepted(0));
+			assertFalse(result.isAccepted(1));
+			assertTrue(result.isAccepted(2));
+			assertFalse(result.isAccepted(3));
+			Minimization minimization = worker.submit(new Callable<Minimization>() {
+				public Minimization call() throws InvalidDFSMException {
+					return snapshot.minimize();
+				}
+			}).get();
+			assertEquals(revision, minimization.getRevision());
+			assertEquals(2, minimization.getBlockCount());
+			assertEquals("a", minimization.getDiagram().graph().getText(0));
+		} finally {
+			worker.shutdown();
+		}
+		
+		//A snapshot of the edited diagram sees the edits, and of an empty one has nothing to simulate.
+		DiagramSnapshot edited = diagram.snapshot();
+		assertEquals(diagram.getRevision(), edited.getRevision());
+		assertFalse(edited.isValidDFSM());
+		assertEquals(3, edited.graph().getEdgeCount());
+		assertEquals("c", edited.graph().getText(edited.graph().indexOf(a)));
+		String message = diagram.diagnose().getMessage();
+		long errorCount = diagram.diagnose().getErrorCount();
+		assertTrue(message.contains("Node c has multiple edges labeled 1"));
+		
+		//Its errors were frozen with it: later edits neither show in them nor stop them being read.
+		a.setText("e");
+		diagram.createNode(300, 0, Node.DEFAULT_RADIUS, true, false, "f");
+		try {
+			edited.minimize();
+			fail();
+		} catch (InvalidDFSMException e) {
+			assertEquals(message, e.getMessage());
+			assertEquals(errorCount, e.getDiagnostics().getErrorCount());
+			assertEquals(edited.getRevision(), e.getDiagnostics().getRevision());
+			List<DFSMError> errors = new ArrayList<DFSMError>();
+			for (DFSMError error : e.getDiagnostics())
+				errors.add(error);
+			assertEquals(e.getDiagnostics().getErrors(), errors);
+			boolean named = false;
+			for (DFSMError error : errors)
+				named |= error.getMessage().contains("Node c ");
+			assertTrue(named);
+		}
+		try {
+			new Diagram().snapshot().acceptAll(Arrays.asList("0"));
+			fail();
+		} catch (InvalidDFSMException e) {
+			assertEquals("There are no nodes in the FSM.\n", e.getMessage());
+		}
+	}
+
+	@Test
+	public void testLabelViewsVirtualized() {
+		//A grid of 50 by 50 nodes, 150 pixels apart, of which a 450 pixel square shows 9.
+		DrawingPanel panel = new DrawingPanel(DiagramProject.newProject());
+		int children = panel.getComponentCount();
+		Node[] nodes = new Node[2500];
+		for (int i = 0; i < nodes.length; i ++) {
+			nodes[i] = panel.createNode(i % 50 * 150 + 75, i / 50 * 150 + 75);
+			panel.getDiagram().addNode(nodes[i]);
+		}
+		assertEquals(children, panel.getComponentCount());
+		
+		//Only the views being edited inside the viewport hold a text field.
+		for (Node n : nodes)
+			LabelView.of(n).setEditing(true);
+		panel.layoutViews(new Rectangle(0, 0, 450, 450));
+		assertEquals(children + 9, panel.getComponentCount());
+		assertNotNull(LabelView.of(nodes[51]).getTextField());
+		assertNull(LabelView.of(nodes[3]).getTextField());
+		
+		//Scrolling hands the text fields on rather than making new ones.
+		JTextField field = LabelView.of(nodes[0]).getTextField();
+		panel.layoutViews(new Rectangle(3000, 3000, 450, 450));
+		assertEquals(children + 9, panel.getComponentCount());
+		assertNull(LabelView.of(nodes[0]).getTextField());
+		boolean reused = false;
+		for (Node n : nodes)
+			reused |= LabelView.of(n).getTextField() == field;
+		assertTrue(reused);
+		
+		//Text typed into a recycled field goes to the node it now edits.
+		Node shown = nodes[20 * 50 + 20];
+		LabelView.of(shown).getTextField().setText("x_1");
+		assertEquals("x_1", shown.getText());
+		assertEquals("q_0", nodes[0].getText());
+		
+		//Painting only stamps labels; it neither moves the text fields nor lays the labels out.
+		panel.setSize(7500, 7500);
+		BufferedImage image = new BufferedImage(450, 450, BufferedImage.TYPE_INT_ARGB);
+		Graphics g = image.createGraphics();
+		g.setClip(0, 0, 450, 450);
+		panel.paint(g);
+		g.dispose();
+		assertEquals(children + 9, panel.getComponentCount());
+		assertNotNull(LabelView.of(shown).getTextField());
+		
+		//Labels follow their nodes and edges as they move, rather than on the next paint.
+		Edge edge = panel.createEdge(nodes[0], nodes[1], EdgeDirection.SINGLE);
+		nodes[0].addConnected(edge);
+		nodes[1].addConnected(edge);
+		panel.getDiagram().addEdge(edge);
+		Rectangle name = new Rectangle(LabelView.of(nodes[0]).getBounds());
+		Rectangle label = new Rectangle(LabelView.of(edge).getBounds());
+		nodes[0].setCenter(nodes[0].getX(), nodes[0].getY() + 100);
+		assertEquals(name.y + 100, LabelView.of(nodes[0]).getBounds().y);
+		assertFalse(label.equals(LabelView.of(edge).getBounds()));
+		panel.clearSelected();
+		assertEquals(children, panel.getComponentCount());
+	}
 }
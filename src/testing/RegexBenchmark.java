@@ -0,0 +1,124 @@
+package testing;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.regex.Pattern;
+
+import backend.RegexMatcher;
+
+/**
+ * Compares RegexMatcher with java.util.regex on the same expressions and inputs: an alternation of
+ * many random words (an expression with thousands of literals), and (a?)^n a^n on a^n, which makes
+ * a backtracking matcher take time exponential in n.  Compiling and matching are timed separately.
+ *
+ * Usage: RegexBenchmark [words [inputs [n]]]
+ */
+public class RegexBenchmark {
+
+	public static void main(String[] args) {
+		int words = args.length > 0 ? Integer.parseInt(args[0]) : 5000;
+		int count = args.length > 1 ? Integer.parseInt(args[1]) : 200000;
+		int n = args.length > 2 ? Integer.parseInt(args[2]) : 22;
+		Random random = new Random(1);
+
+		List<String> dictionary = new ArrayList<String>(words);
+		StringBuilder regex = new StringBuilder("(");
+		for (int i = 0; i < words; i ++) {
+			dictionary.add(randomWord(random));
+			if (i > 0)
+				regex.append('|');
+			regex.append(dictionary.get(i));
+		}
+		regex.append(")+");
+		//Half the inputs are a few dictionary words run together, half are random letters.
+		List<String> inputs = new ArrayList<String>(count);
+		long characters = 0;
+		for (int i = 0; i < count; i ++) {
+			String input;
+			if (i % 2 == 0) {
+				StringBuilder builder = new StringBuilder();
+				for (int j = 0; j < 3; j ++)
+					builder.append(dictionary.get(random.nextInt(words)));
+				input = builder.toString();
+			}
+			else
+				input = randomWord(random) + randomWord(random);
+			inputs.add(input);
+			characters += input.length();
+		}
+		System.out.println("Alternation of " + words + " words (" + regex.length() + " characters), "
+				+ count + " inputs:");
+		compare(regex.toString(), inputs, characters);
+
+		StringBuilder pathological = new StringBuilder();
+		for (int i = 0; i < n; i ++)
+			pathological.append("a?");
+		for (int i = 0; i < n; i ++)
+			pathological.append('a');
+		StringBuilder input = new StringBuilder();
+		for (int i = 0; i < n; i ++)
+			input.append('a');
+		System.out.println("(a?)^" + n + " a^" + n + " on a^" + n + ":");
+		List<String> one = new ArrayList<String>();
+		one.add(input.toString());
+		compare(pathological.toString(), one, n);
+	}
+
+	/**
+	 * Compiles the expression with both matchers and times matching every input, warming up first
+	 * and keeping the better of two runs.
+	 */
+	private static void compare(String regex, List<String> inputs, long characters) {
+		long time = System.nanoTime();
+		RegexMatcher matcher = RegexMatcher.compile(regex);
+		report("RegexMatcher.compile", System.nanoTime() - time);
+		time = System.nanoTime();
+		Pattern pattern = Pattern.compile(regex);
+		report("Pattern.compile", System.nanoTime() - time);
+
+		int matched = 0;
+		for (String input : inputs) {
+			boolean ours = matcher.matches(input);
+			if (ours != pattern.matcher(input).matches())
+				throw new IllegalStateException("The matchers disagree on " + input);
+			if (ours)
+				matched ++;
+		}
+		System.out.println("  " + matched + " of " + inputs.size() + " inputs match");
+		long best = Long.MAX_VALUE;
+		for (int run = 0; run < 2; run ++) {
+			time = System.nanoTime();
+			for (String input : inputs)
+				matcher.matches(input);
+			best = Math.min(best, System.nanoTime() - time);
+		}
+		report("RegexMatcher.matches", characters, best);
+		best = Long.MAX_VALUE;
+		for (int run = 0; run < 2; run ++) {
+			time = System.nanoTime();
+			for (String input : inputs)
+				pattern.matcher(input).matches();
+			best = Math.min(best, System.nanoTime() - time);
+		}
+		report("Matcher.matches", characters, best);
+	}
+
+	/**
+	 * @return		A word of 3 to 8 random lowercase letters.
+	 */
+	private static String randomWord(Random random) {
+		char[] word = new char[3 + random.nextInt(6)];
+		for (int i = 0; i < word.length; i ++)
+			word[i] = (char) ('a' + random.nextInt(26));
+		return new String(word);
+	}
+
+	private static void report(String name, long nanos) {
+		System.out.printf("  %-30s %8.1f ms%n", name, nanos / 1e6);
+	}
+
+	private static void report(String name, long characters, long nanos) {
+		System.out.printf("  %-30s %8.1f ms  %8.1f M characters/s%n", name, nanos / 1e6, characters * 1e3 / nanos);
+	}
+}
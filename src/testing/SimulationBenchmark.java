@@ -0,0 +1,104 @@
+package testing;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import backend.BatchStrategy;
+import backend.Diagram;
+import backend.Edge;
+import backend.EdgeDirection;
+import backend.InvalidDFSMException;
+import backend.Node;
+
+/**
+ * Measures the throughput of simulating many inputs on a large random DFSM: one at a time with
+ * Diagram.deterministicSimulation, and in a batch with each BatchStrategy.  The transition table of
+ * the default machine is larger than the cache, which is where the interleaved strategy helps.
+ *
+ * Usage: SimulationBenchmark [states [symbols [inputs [length]]]]
+ */
+public class SimulationBenchmark {
+
+	public static void main(String[] args) throws InvalidDFSMException {
+		int states = args.length > 0 ? Integer.parseInt(args[0]) : 5000;
+		int symbols = args.length > 1 ? Integer.parseInt(args[1]) : 16;
+		int count = args.length > 2 ? Integer.parseInt(args[2]) : 20000;
+		int length = args.length > 3 ? Integer.parseInt(args[3]) : 200;
+		Random random = new Random(1);
+
+		System.out.println("Building a DFSM with " + states + " states and " + symbols + " symbols...");
+		Diagram diagram = randomDFSM(states, symbols, random);
+		List<String> inputs = new ArrayList<String>(count);
+		for (int i = 0; i < count; i ++) {
+			char[] input = new char[length];
+			for (int j = 0; j < length; j ++)
+				input[j] = (char) ('a' + random.nextInt(symbols));
+			inputs.add(new String(input));
+		}
+		long characters = (long) count * length;
+
+		//Warm up, then time each way twice and keep the better run.
+		for (int i = 0; i < Math.min(count, 2000); i ++)
+			diagram.deterministicSimulation(inputs.get(i));
+		diagram.acceptAll(inputs, BatchStrategy.SEQUENTIAL);
+		diagram.acceptAll(inputs, BatchStrategy.INTERLEAVED);
+		long best = Long.MAX_VALUE;
+		for (int run = 0; run < 2; run ++) {
+			long time = System.nanoTime();
+			for (String input : inputs)
+				diagram.deterministicSimulation(input);
+			best = Math.min(best, System.nanoTime() - time);
+		}
+		report("deterministicSimulation", characters, best);
+		for (BatchStrategy strategy : BatchStrategy.values()) {
+			best = Long.MAX_VALUE;
+			for (int run = 0; run < 2; run ++) {
+				long time = System.nanoTime();
+				diagram.acceptAll(inputs, strategy);
+				best = Math.min(best, System.nanoTime() - time);
+			}
+			report("acceptAll " + strategy, characters, best);
+		}
+	}
+
+	/**
+	 * Builds a complete DFSM whose every transition goes to a random state.
+	 */
+	private static Diagram randomDFSM(int states, int symbols, Random random) {
+		Diagram diagram = new Diagram();
+		Node[] nodes = new Node[states];
+		for (int i = 0; i < states; i ++) {
+			nodes[i] = new Node(i % 100 * 150, i / 100 * 150, Node.DEFAULT_RADIUS, i == 0, random.nextBoolean(), "q_" + i);
+			diagram.addNode(nodes[i]);
+		}
+		for (int i = 0; i < states; i ++) {
+			//Put all the symbols that go to the same state on one edge.
+			Map<Integer, StringBuilder> labels = new LinkedHashMap<Integer, StringBuilder>();
+			for (int symbol = 0; symbol < symbols; symbol ++) {
+				int target = random.nextInt(states);
+				StringBuilder label = labels.get(target);
+				if (label == null)
+					labels.put(target, new StringBuilder().append((char) ('a' + symbol)));
+				else
+					label.append(',').append((char) ('a' + symbol));
+			}
+			for (Map.Entry<Integer, StringBuilder> entry : labels.entrySet()) {
+				Node target = nodes[entry.getKey()];
+				String label = entry.getValue().toString();
+				Edge edge = target == nodes[i] ? new Edge(nodes[i], target, EdgeDirection.SINGLE, label, Math.PI / 4)
+						: new Edge(nodes[i], target, EdgeDirection.SINGLE, label, 100000.0, 0);
+				nodes[i].addConnected(edge);
+				target.addConnected(edge);
+				diagram.addEdge(edge);
+			}
+		}
+		return diagram;
+	}
+
+	private static void report(String name, long characters, long nanos) {
+		System.out.printf("%-32s %8.1f ms  %8.1f M characters/s%n", name, nanos / 1e6, characters * 1e3 / nanos);
+	}
+}